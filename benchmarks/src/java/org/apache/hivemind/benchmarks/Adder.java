@@ -0,0 +1,27 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+/**
+ * The service interface used by the benchmarks; small enough that the cost of a call is dominated
+ * by whatever sits between the caller and the implementation.
+ *
+ * @since 2.0
+ */
+public interface Adder
+{
+    public int add(int a, int b);
+}
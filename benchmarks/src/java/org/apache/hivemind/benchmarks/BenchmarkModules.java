@@ -0,0 +1,160 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.ConfigurationPointDefinition;
+import org.apache.hivemind.definition.Contribution;
+import org.apache.hivemind.definition.ContributionContext;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.apache.hivemind.definition.ServicePointDefinition;
+import org.apache.hivemind.definition.impl.ModuleDefinitionHelper;
+import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
+import org.apache.hivemind.definition.impl.RegistryDefinitionImpl;
+import org.apache.hivemind.impl.DefaultClassResolver;
+import org.apache.hivemind.impl.RegistryBuilder;
+import org.apache.hivemind.internal.ServiceModel;
+
+/**
+ * Builds the module definitions and registries used by the benchmarks.
+ *
+ * @since 2.0
+ */
+public final class BenchmarkModules
+{
+    private static final String[] SERVICE_MODELS =
+    { ServiceModel.PRIMITIVE, ServiceModel.SINGLETON, ServiceModel.THREADED, ServiceModel.POOLED };
+
+    private BenchmarkModules()
+    {
+    }
+
+    /**
+     * Creates a module containing a single service, <code>Adder</code>, implemented by
+     * {@link AdderImpl} and using the given service model.
+     */
+    public static ModuleDefinitionImpl newAdderModule(String moduleId, String serviceModel)
+    {
+        ModuleDefinitionImpl module = new ModuleDefinitionImpl(moduleId, null,
+                new DefaultClassResolver(), null);
+
+        ModuleDefinitionHelper helper = new ModuleDefinitionHelper(module);
+
+        ServicePointDefinition sp = helper.addServicePoint("Adder", Adder.class.getName());
+        helper.addSimpleServiceImplementation(sp, AdderImpl.class.getName(), serviceModel);
+
+        return module;
+    }
+
+    /**
+     * Creates a module containing <code>count</code> services, <code>Adder0</code>,
+     * <code>Adder1</code>, etc., each implemented by {@link AdderImpl} and using the given
+     * service model.
+     */
+    public static ModuleDefinitionImpl newAdderModule(String moduleId, String serviceModel,
+            int count)
+    {
+        ModuleDefinitionImpl module = new ModuleDefinitionImpl(moduleId, null,
+                new DefaultClassResolver(), null);
+
+        ModuleDefinitionHelper helper = new ModuleDefinitionHelper(module);
+
+        for (int i = 0; i < count; i++)
+        {
+            ServicePointDefinition sp = helper.addServicePoint("Adder" + i, Adder.class.getName());
+            helper.addSimpleServiceImplementation(sp, AdderImpl.class.getName(), serviceModel);
+        }
+
+        return module;
+    }
+
+    /**
+     * Creates a synthetic module, shaped like a typical application module: four services (one
+     * per service model), a list configuration point with a contribution and, for all but the first
+     * module, a dependency on, and a contribution to, the previous module.
+     */
+    public static ModuleDefinition newSyntheticModule(int index)
+    {
+        ModuleDefinitionImpl module = new ModuleDefinitionImpl(syntheticModuleId(index), null,
+                new DefaultClassResolver(), null);
+
+        ModuleDefinitionHelper helper = new ModuleDefinitionHelper(module);
+
+        for (int i = 0; i < SERVICE_MODELS.length; i++)
+        {
+            ServicePointDefinition sp = helper.addServicePoint(
+                    "Adder" + i,
+                    Adder.class.getName());
+            helper.addSimpleServiceImplementation(sp, AdderImpl.class.getName(), SERVICE_MODELS[i]);
+        }
+
+        ConfigurationPointDefinition cp = helper.addConfigurationPoint("Values", List.class
+                .getName(), false);
+
+        helper.addContributionDefinition(cp, new ValueContribution(module.getId()));
+
+        if (index > 0)
+        {
+            String previous = syntheticModuleId(index - 1);
+
+            module.addDependency(previous);
+            helper.addContributionDefinition(previous + ".Values", new ValueContribution(module
+                    .getId()));
+        }
+
+        return module;
+    }
+
+    private static String syntheticModuleId(int index)
+    {
+        return "benchmark.module" + index;
+    }
+
+    /**
+     * Constructs a registry containing the given modules (and the HiveMind core services).
+     */
+    public static Registry constructRegistry(ModuleDefinition[] modules)
+    {
+        RegistryDefinitionImpl definition = new RegistryDefinitionImpl();
+
+        for (int i = 0; i < modules.length; i++)
+            definition.addModule(modules[i]);
+
+        return new RegistryBuilder(definition).constructRegistry(Locale.getDefault());
+    }
+
+    private static final class ValueContribution implements Contribution
+    {
+        private final String _value;
+
+        ValueContribution(String value)
+        {
+            _value = value;
+        }
+
+        public void contribute(ContributionContext context)
+        {
+            List list = new ArrayList(Collections.singletonList(_value));
+
+            context.mergeContribution(list);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of <code>benchmarks.jar</code>. Accepts the standard JMH command line options but,
+ * unless <code>-rf</code> or <code>-rff</code> is given, writes the results as JSON to
+ * <code>hivemind-benchmarks.json</code>, so that runs can be compared by tools.
+ *
+ * @since 2.0
+ */
+public final class BenchmarkRunner
+{
+    public static final String DEFAULT_RESULT_FILE = "hivemind-benchmarks.json";
+
+    private BenchmarkRunner()
+    {
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        if (commandLine.shouldHelp())
+        {
+            commandLine.showHelp();
+            return;
+        }
+
+        if (commandLine.shouldList())
+        {
+            new Runner(commandLine).list();
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine);
+
+        if (!commandLine.getResultFormat().hasValue())
+            builder.resultFormat(ResultFormatType.JSON);
+
+        if (!commandLine.getResult().hasValue())
+            builder.result(DEFAULT_RESULT_FILE);
+
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading an already constructed configuration: looking it up in the registry, and
+ * iterating over its elements. Run with <code>-t</code> to measure contention between threads.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationBenchmark
+{
+    private static final String CONFIGURATION_ID = "benchmark.module0.Values";
+
+    private Registry _registry;
+
+    private List _configuration;
+
+    @Setup
+    public void setup()
+    {
+        _registry = BenchmarkModules.constructRegistry(new ModuleDefinition[]
+        { BenchmarkModules.newSyntheticModule(0), BenchmarkModules.newSyntheticModule(1),
+                BenchmarkModules.newSyntheticModule(2) });
+
+        _configuration = (List) _registry.getConfiguration(CONFIGURATION_ID);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _registry.shutdown();
+    }
+
+    @Benchmark
+    public Object lookup()
+    {
+        return _registry.getConfiguration(CONFIGURATION_ID);
+    }
+
+    @Benchmark
+    public int iterate()
+    {
+        int result = 0;
+
+        for (int i = 0; i < _configuration.size(); i++)
+            result += _configuration.get(i).hashCode();
+
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.Resource;
+import org.apache.hivemind.impl.DefaultClassResolver;
+import org.apache.hivemind.impl.DefaultErrorHandler;
+import org.apache.hivemind.parse.ModuleDescriptor;
+import org.apache.hivemind.parse.XmlResourceProcessor;
+import org.apache.hivemind.util.FileResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing a module descriptor containing a contribution of many elements, with SAX and
+ * with the streaming (StAX) parser. Run with <code>-prof gc</code> to compare the memory allocated.
+ *
+ * @since 2.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorParserBenchmark
+{
+    @Param(
+    { "sax", "stax" })
+    public String parser;
+
+    @Param(
+    { "10", "10000" })
+    public int elements;
+
+    private File _file;
+
+    private XmlResourceProcessor _processor;
+
+    private Resource _resource;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        _file = File.createTempFile("DescriptorParserBenchmark-", ".xml");
+
+        PrintWriter writer = new PrintWriter(new FileWriter(_file));
+
+        writer.println("<module id=\"benchmark.parse\" version=\"1.0.0\">");
+        writer.println("  <configuration-point id=\"Values\"/>");
+        writer.println("  <contribution configuration-id=\"Values\">");
+
+        for (int i = 0; i < elements; i++)
+            writer.println("    <value key=\"key" + i + "\" enabled=\"true\">Value " + i
+                    + "</value>");
+
+        writer.println("  </contribution>");
+        writer.println("</module>");
+        writer.close();
+
+        _processor = new XmlResourceProcessor(new DefaultClassResolver(),
+                new DefaultErrorHandler());
+        _processor.setStreaming(parser.equals("stax"));
+
+        _resource = new FileResource(_file.getPath());
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _file.delete();
+    }
+
+    @Benchmark
+    public ModuleDescriptor parse()
+    {
+        return _processor.processResource(_resource);
+    }
+}
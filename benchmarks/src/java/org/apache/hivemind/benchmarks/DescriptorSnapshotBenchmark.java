@@ -0,0 +1,196 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.Resource;
+import org.apache.hivemind.definition.RegistryDefinition;
+import org.apache.hivemind.definition.impl.RegistryDefinitionImpl;
+import org.apache.hivemind.impl.RegistryBuilder;
+import org.apache.hivemind.impl.XmlModuleReader;
+import org.apache.hivemind.parse.DescriptorSnapshot;
+import org.apache.hivemind.util.FileResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading module descriptors, and constructing a registry from them, with and without a
+ * {@link DescriptorSnapshot}. The snapshot only replaces the XML parsing of each descriptor: the
+ * recorded events still go through the descriptor parser, and the module definitions are still
+ * resolved and checked when the registry is built. <code>readDescriptors</code> shows the gain on
+ * reading the descriptors, <code>constructRegistry</code> what it amounts to for the whole
+ * startup.
+ *
+ * @since 2.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescriptorSnapshotBenchmark
+{
+    private static final int SERVICES = 4;
+
+    private static final int VALUES = 20;
+
+    @Param(
+    { "parse", "snapshot" })
+    public String mode;
+
+    @Param(
+    { "10", "100" })
+    public int modules;
+
+    private File _directory;
+
+    private Resource[] _resources;
+
+    private File _snapshotFile;
+
+    private Registry _registry;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        _directory = File.createTempFile("DescriptorSnapshotBenchmark-", "");
+        _directory.delete();
+        _directory.mkdir();
+
+        _resources = new Resource[modules];
+
+        for (int i = 0; i < modules; i++)
+            _resources[i] = new FileResource(writeDescriptor(i).getPath());
+
+        if (mode.equals("snapshot"))
+        {
+            DescriptorSnapshot snapshot = new DescriptorSnapshot();
+
+            read(snapshot);
+
+            _snapshotFile = new File(_directory, "descriptors.snapshot");
+
+            snapshot.write(_snapshotFile);
+        }
+    }
+
+    /**
+     * Writes a module with a few services, and a contribution of some values.
+     */
+    private File writeDescriptor(int index) throws IOException
+    {
+        File result = new File(_directory, "module" + index + ".xml");
+
+        PrintWriter writer = new PrintWriter(new FileWriter(result));
+
+        writer.println("<module id=\"benchmark.xml" + index + "\" version=\"1.0.0\">");
+
+        for (int i = 0; i < SERVICES; i++)
+        {
+            writer.println("  <service-point id=\"Adder" + i + "\" interface=\""
+                    + Adder.class.getName() + "\">");
+            writer.println("    <create-instance class=\"" + AdderImpl.class.getName() + "\"/>");
+            writer.println("  </service-point>");
+        }
+
+        writer.println("  <configuration-point id=\"Values\"/>");
+        writer.println("  <contribution configuration-id=\"Values\">");
+
+        for (int i = 0; i < VALUES; i++)
+            writer.println("    <value key=\"key" + i + "\" enabled=\"true\">Value " + i
+                    + "</value>");
+
+        writer.println("  </contribution>");
+        writer.println("</module>");
+        writer.close();
+
+        return result;
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdownRegistry()
+    {
+        if (_registry != null)
+        {
+            _registry.shutdown();
+            _registry = null;
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        File[] files = _directory.listFiles();
+
+        for (int i = 0; i < files.length; i++)
+            files[i].delete();
+
+        _directory.delete();
+    }
+
+    private RegistryDefinitionImpl read(DescriptorSnapshot snapshot)
+    {
+        RegistryDefinitionImpl result = new RegistryDefinitionImpl();
+
+        XmlModuleReader reader = new XmlModuleReader(result);
+
+        if (snapshot != null)
+            reader.setDescriptorSnapshot(snapshot);
+
+        for (int i = 0; i < _resources.length; i++)
+            reader.readModule(_resources[i]);
+
+        return result;
+    }
+
+    private RegistryDefinitionImpl read()
+    {
+        return read(_snapshotFile == null ? null : DescriptorSnapshot.read(_snapshotFile));
+    }
+
+    @Benchmark
+    public RegistryDefinition readDescriptors()
+    {
+        return read();
+    }
+
+    @Benchmark
+    public Registry constructRegistry()
+    {
+        _registry = new RegistryBuilder(read()).constructRegistry(Locale.getDefault());
+
+        return _registry;
+    }
+}
@@ -0,0 +1,240 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.InterceptorStack;
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.FusibleInterceptorConstructor;
+import org.apache.hivemind.definition.InterceptorConstructor;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.apache.hivemind.definition.ServicePointDefinition;
+import org.apache.hivemind.definition.impl.InterceptorDefinitionImpl;
+import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
+import org.apache.hivemind.internal.AbstractServiceInterceptorConstructor;
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.internal.ServiceModel;
+import org.apache.hivemind.lib.impl.MethodInterceptorFactory;
+import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
+import org.apache.hivemind.service.impl.FusedInterceptorClassFactory;
+import org.apache.hivemind.service.impl.LoggingInterceptorClassFactory;
+import org.apache.hivemind.service.impl.TracingInterceptorClassFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures calls through a stack of interceptors on a singleton service. Logging interceptors are
+ * generated by {@link LoggingInterceptorClassFactory} (with debug logging disabled, the usual
+ * production setting); tracing interceptors by {@link TracingInterceptorClassFactory} (with its
+ * default settings, so only slow invocations and exceptions are logged); method interceptors are
+ * JDK proxies built by
+ * {@link MethodInterceptorFactory}, wrapping a pass-through AOP Alliance interceptor.
+ * <p>
+ * When fused, the logging and tracing interceptors of a service (if there are several) are
+ * generated as a single class by {@link FusedInterceptorClassFactory}; method interceptors can't
+ * be fused.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterceptorBenchmark
+{
+    @Param(
+    { "logging", "tracing", "mixed", "methodInterceptor" })
+    public String interceptor;
+
+    @Param(
+    { "1", "4" })
+    public int depth;
+
+    @Param(
+    { "false", "true" })
+    public boolean fused;
+
+    private Registry _registry;
+
+    private Adder _adder;
+
+    private int _a = 3;
+
+    private int _b = 4;
+
+    @Setup
+    public void setup()
+    {
+        ModuleDefinitionImpl module = BenchmarkModules.newAdderModule(
+                "benchmark",
+                ServiceModel.SINGLETON);
+
+        ServicePointDefinition sp = module.getServicePoint("Adder");
+
+        for (int i = 0; i < depth; i++)
+        {
+            // "mixed" alternates logging and tracing interceptors.
+
+            String kind = interceptor.equals("mixed") ? (i % 2 == 0 ? "logging" : "tracing")
+                    : interceptor;
+
+            InterceptorConstructor constructor = kind.equals("logging") ? newLoggingConstructor(module)
+                    : kind.equals("tracing") ? newTracingConstructor(module)
+                            : newMethodInterceptorConstructor(module);
+
+            sp.addInterceptor(new InterceptorDefinitionImpl(module, interceptor + i, module
+                    .getLocation(), constructor));
+        }
+
+        _registry = BenchmarkModules.constructRegistry(new ModuleDefinition[]
+        { module });
+
+        _adder = (Adder) _registry.getService("benchmark.Adder", Adder.class);
+    }
+
+    private abstract class FusibleConstructor extends AbstractServiceInterceptorConstructor
+            implements FusibleInterceptorConstructor
+    {
+        FusibleConstructor(ModuleDefinition module)
+        {
+            super(module.getLocation());
+        }
+
+        public boolean isFusible(Module contributingModule)
+        {
+            return fused;
+        }
+    }
+
+    private InterceptorConstructor newLoggingConstructor(ModuleDefinition module)
+    {
+        return new FusibleConstructor(module)
+        {
+            public InterceptorFragment constructInterceptorFragment(
+                    InterceptorStack interceptorStack, Module contributingModule)
+            {
+                ClassFactory cf = (ClassFactory) contributingModule.getService(ClassFactory.class);
+
+                return new LoggingInterceptorClassFactory(cf).createInterceptorFragment(
+                        interceptorStack,
+                        Collections.EMPTY_LIST,
+                        null);
+            }
+
+            public void constructServiceInterceptor(InterceptorStack interceptorStack,
+                    Module contributingModule)
+            {
+                ClassFactory cf = (ClassFactory) contributingModule.getService(ClassFactory.class);
+                LoggingInterceptorClassFactory f = new LoggingInterceptorClassFactory(cf);
+                Class interceptorClass = f.constructInterceptorClass(
+                        interceptorStack,
+                        Collections.EMPTY_LIST);
+                Constructor c = interceptorClass.getConstructors()[0];
+
+                try
+                {
+                    interceptorStack.push(c.newInstance(new Object[]
+                    { interceptorStack.getServiceLog(), interceptorStack.peek() }));
+                }
+                catch (Exception ex)
+                {
+                    throw new ApplicationRuntimeException(ex);
+                }
+            }
+        };
+    }
+
+    private InterceptorConstructor newTracingConstructor(ModuleDefinition module)
+    {
+        return new FusibleConstructor(module)
+        {
+            public InterceptorFragment constructInterceptorFragment(
+                    InterceptorStack interceptorStack, Module contributingModule)
+            {
+                ClassFactory cf = (ClassFactory) contributingModule.getService(ClassFactory.class);
+
+                return new TracingInterceptorClassFactory(cf).createInterceptorFragment(
+                        interceptorStack,
+                        Collections.EMPTY_LIST);
+            }
+
+            public void constructServiceInterceptor(InterceptorStack interceptorStack,
+                    Module contributingModule)
+            {
+                ClassFactory cf = (ClassFactory) contributingModule.getService(ClassFactory.class);
+                TracingInterceptorClassFactory f = new TracingInterceptorClassFactory(cf);
+                Class interceptorClass = f.constructInterceptorClass(
+                        interceptorStack,
+                        Collections.EMPTY_LIST);
+                Constructor c = interceptorClass.getConstructors()[0];
+
+                try
+                {
+                    interceptorStack.push(c.newInstance(new Object[]
+                    { interceptorStack.getServiceLog(), interceptorStack.peek() }));
+                }
+                catch (Exception ex)
+                {
+                    throw new ApplicationRuntimeException(ex);
+                }
+            }
+        };
+    }
+
+    private InterceptorConstructor newMethodInterceptorConstructor(ModuleDefinition module)
+    {
+        return new AbstractServiceInterceptorConstructor(module.getLocation())
+        {
+            public void constructServiceInterceptor(InterceptorStack interceptorStack,
+                    Module contributingModule)
+            {
+                new MethodInterceptorFactory().createInterceptor(
+                        interceptorStack,
+                        contributingModule,
+                        new PassThroughMethodInterceptor());
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _registry.shutdown();
+    }
+
+    @Benchmark
+    public int invoke()
+    {
+        return _adder.add(_a, _b);
+    }
+}
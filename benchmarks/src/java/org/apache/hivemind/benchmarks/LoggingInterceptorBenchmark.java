@@ -0,0 +1,166 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.impl.SimpleLog;
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.InterceptorStack;
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.apache.hivemind.definition.ServicePointDefinition;
+import org.apache.hivemind.definition.impl.InterceptorDefinitionImpl;
+import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
+import org.apache.hivemind.internal.AbstractServiceInterceptorConstructor;
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.internal.ServiceModel;
+import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.impl.AsyncLogWriter;
+import org.apache.hivemind.service.impl.LoggingInterceptorClassFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures calls through a logging interceptor with debug logging enabled, logging either on the
+ * calling thread or through an {@link AsyncLogWriter}. The log discards its messages after
+ * counting them, so the measurement covers formatting and the interceptor, not I/O.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingInterceptorBenchmark
+{
+    /**
+     * A debug-enabled log that counts the characters logged.
+     */
+    private static class CountingLog extends SimpleLog
+    {
+        long _count;
+
+        CountingLog()
+        {
+            super("benchmark");
+
+            setLevel(LOG_LEVEL_DEBUG);
+        }
+
+        protected void log(int type, Object message, Throwable t)
+        {
+            _count += String.valueOf(message).length();
+        }
+    }
+
+    @Param(
+    { "sync", "async" })
+    public String mode;
+
+    @Param(
+    { "drop", "sample" })
+    public String overflow;
+
+    private Registry _registry;
+
+    private AsyncLogWriter _writer;
+
+    private Adder _adder;
+
+    private int _a = 3;
+
+    private int _b = 4;
+
+    @Setup
+    public void setup()
+    {
+        final boolean asynchronous = mode.equals("async");
+
+        if (asynchronous)
+            _writer = new AsyncLogWriter(8192, overflow);
+
+        ModuleDefinitionImpl module = BenchmarkModules.newAdderModule(
+                "benchmark",
+                ServiceModel.SINGLETON);
+
+        ServicePointDefinition sp = module.getServicePoint("Adder");
+
+        sp.addInterceptor(new InterceptorDefinitionImpl(module, "logging", module.getLocation(),
+                new AbstractServiceInterceptorConstructor(module.getLocation())
+                {
+                    public void constructServiceInterceptor(InterceptorStack interceptorStack,
+                            Module contributingModule)
+                    {
+                        ClassFactory cf = (ClassFactory) contributingModule
+                                .getService(ClassFactory.class);
+                        LoggingInterceptorClassFactory f = new LoggingInterceptorClassFactory(cf,
+                                asynchronous);
+                        Class interceptorClass = f.constructInterceptorClass(
+                                interceptorStack,
+                                Collections.EMPTY_LIST);
+                        Constructor c = interceptorClass.getConstructors()[0];
+
+                        Object[] parameters = asynchronous ? new Object[]
+                        { new CountingLog(), _writer, interceptorStack.peek() } : new Object[]
+                        { new CountingLog(), interceptorStack.peek() };
+
+                        try
+                        {
+                            interceptorStack.push(c.newInstance(parameters));
+                        }
+                        catch (Exception ex)
+                        {
+                            throw new ApplicationRuntimeException(ex);
+                        }
+                    }
+                }));
+
+        _registry = BenchmarkModules.constructRegistry(new ModuleDefinition[]
+        { module });
+
+        _adder = (Adder) _registry.getService("benchmark.Adder", Adder.class);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if (_writer != null)
+            _writer.shutdown();
+
+        _registry.shutdown();
+    }
+
+    @Benchmark
+    public int invoke()
+    {
+        return _adder.add(_a, _b);
+    }
+}
@@ -0,0 +1,110 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.impl.DefaultErrorHandler;
+import org.apache.hivemind.order.Orderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Orderer#getOrderedObjects()}, as used to order interceptors, pipeline filters
+ * and ordered configurations, over large sets of objects. The shapes are: independent objects; a
+ * single chain in which each object requires the previous one; and a dense graph in which each
+ * object requires up to eight randomly chosen earlier objects and is required by one later object.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrdererBenchmark
+{
+    @Param(
+    { "500", "5000" })
+    public int objects;
+
+    @Param(
+    { "independent", "chain", "dense" })
+    public String shape;
+
+    private Orderer _orderer;
+
+    @Setup
+    public void setup()
+    {
+        _orderer = new Orderer(new DefaultErrorHandler(), "object");
+
+        Random random = new Random(42);
+
+        for (int i = 0; i < objects; i++)
+        {
+            String prereqs = null;
+            String postreqs = null;
+
+            if (shape.equals("chain") && i > 0)
+                prereqs = name(i - 1);
+
+            if (shape.equals("dense") && i > 0)
+            {
+                StringBuffer buffer = new StringBuffer();
+                int count = 1 + random.nextInt(8);
+
+                for (int j = 0; j < count; j++)
+                {
+                    if (j > 0)
+                        buffer.append(',');
+
+                    buffer.append(name(random.nextInt(i)));
+                }
+
+                prereqs = buffer.toString();
+
+                if (i + 1 < objects)
+                    postreqs = name(i + 1 + random.nextInt(objects - i - 1));
+            }
+
+            _orderer.add(name(i), name(i), prereqs, postreqs);
+        }
+    }
+
+    private static String name(int index)
+    {
+        return "object" + index;
+    }
+
+    @Benchmark
+    public List order()
+    {
+        return _orderer.getOrderedObjects();
+    }
+}
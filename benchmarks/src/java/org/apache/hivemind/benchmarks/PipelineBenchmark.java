@@ -0,0 +1,97 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.impl.DefaultErrorHandler;
+import org.apache.hivemind.impl.ErrorLogImpl;
+import org.apache.hivemind.lib.impl.DefaultImplementationBuilderImpl;
+import org.apache.hivemind.lib.pipeline.PipelineAssembler;
+import org.apache.hivemind.service.impl.ClassFactoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures calls through a pipeline, assembled by {@link PipelineAssembler}, of pass-through
+ * filters in front of an {@link AdderImpl} terminator. Each filter adds one generated bridge to
+ * the call path.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark
+{
+    @Param(
+    { "0", "1", "4", "16" })
+    public int filters;
+
+    private Adder _pipeline;
+
+    private int _a = 3;
+
+    private int _b = 4;
+
+    @Setup
+    public void setup()
+    {
+        ClassFactoryImpl classFactory = new ClassFactoryImpl();
+
+        DefaultImplementationBuilderImpl defaultBuilder = new DefaultImplementationBuilderImpl();
+        defaultBuilder.setClassFactory(classFactory);
+
+        PipelineAssembler assembler = new PipelineAssembler(new ErrorLogImpl(
+                new DefaultErrorHandler(), LogFactory.getLog(PipelineBenchmark.class)),
+                "benchmark.Pipeline", Adder.class, AdderFilter.class, classFactory,
+                defaultBuilder);
+
+        String previous = null;
+
+        for (int i = 0; i < filters; i++)
+        {
+            String name = "filter" + i;
+
+            assembler.addFilter(name, previous, null, new PassThroughFilter(), null);
+
+            previous = name;
+        }
+
+        assembler.setTerminator(new AdderImpl(), null);
+
+        _pipeline = (Adder) assembler.createPipeline();
+    }
+
+    @Benchmark
+    public int invoke()
+    {
+        return _pipeline.add(_a, _b);
+    }
+}
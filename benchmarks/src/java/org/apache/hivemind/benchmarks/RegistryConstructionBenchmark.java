@@ -0,0 +1,84 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.apache.hivemind.impl.RegistryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RegistryBuilder#constructRegistry(java.util.Locale)} over synthetic registries
+ * (see {@link BenchmarkModules#newSyntheticModule(int)}). The module definitions are rebuilt
+ * before each invocation, as the builder adds the core services to the registry definition; the
+ * registry is shut down after each invocation.
+ *
+ * @since 2.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryConstructionBenchmark
+{
+    @Param(
+    { "10", "100", "1000" })
+    public int modules;
+
+    private ModuleDefinition[] _definitions;
+
+    private Registry _registry;
+
+    @Setup(Level.Invocation)
+    public void setup()
+    {
+        _definitions = new ModuleDefinition[modules];
+
+        for (int i = 0; i < modules; i++)
+            _definitions[i] = BenchmarkModules.newSyntheticModule(i);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown()
+    {
+        _registry.shutdown();
+        _registry = null;
+    }
+
+    @Benchmark
+    public Registry constructRegistry()
+    {
+        _registry = BenchmarkModules.constructRegistry(_definitions);
+
+        return _registry;
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.apache.hivemind.impl.RegistryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RegistryBuilder#updateRegistry(Registry, java.util.Collection)}, replacing one
+ * module of a synthetic registry (see {@link BenchmarkModules#newSyntheticModule(int)}) whose
+ * services have all been used. Compare with {@link RegistryConstructionBenchmark}, which
+ * constructs the whole registry.
+ *
+ * @since 2.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryUpdateBenchmark
+{
+    @Param(
+    { "10", "100", "1000" })
+    public int modules;
+
+    private RegistryBuilder _builder;
+
+    private Registry _registry;
+
+    private List _replacement;
+
+    @Setup(Level.Trial)
+    public void setupRegistry()
+    {
+        _builder = new RegistryBuilder();
+
+        for (int i = 0; i < modules; i++)
+            _builder.getRegistryDefinition().addModule(BenchmarkModules.newSyntheticModule(i));
+
+        _registry = _builder.constructRegistry(Locale.getDefault());
+
+        for (int i = 0; i < modules; i++)
+        {
+            for (int j = 0; j < 4; j++)
+                ((Adder) _registry.getService("benchmark.module" + i + ".Adder" + j, Adder.class))
+                        .add(1, 1);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupReplacement()
+    {
+        ModuleDefinition module = BenchmarkModules.newSyntheticModule(modules / 2);
+
+        _replacement = Collections.singletonList(module);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        _registry.shutdown();
+        _registry = null;
+    }
+
+    @Benchmark
+    public List updateRegistry()
+    {
+        return _builder.updateRegistry(_registry, _replacement);
+    }
+}
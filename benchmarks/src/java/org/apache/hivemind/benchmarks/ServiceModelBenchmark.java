@@ -0,0 +1,91 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of invoking a service through the proxy created by each service model,
+ * against a direct call on the implementation. Run with <code>-t</code> to measure contention
+ * between threads.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceModelBenchmark
+{
+    @Param(
+    { "primitive", "singleton", "threaded", "pooled" })
+    public String serviceModel;
+
+    private Registry _registry;
+
+    private Adder _proxy;
+
+    private Adder _direct;
+
+    private int _a = 3;
+
+    private int _b = 4;
+
+    @Setup
+    public void setup()
+    {
+        _registry = BenchmarkModules.constructRegistry(new ModuleDefinition[]
+        { BenchmarkModules.newAdderModule("benchmark", serviceModel) });
+
+        _proxy = (Adder) _registry.getService("benchmark.Adder", Adder.class);
+        _direct = new AdderImpl();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _registry.shutdown();
+    }
+
+    @Benchmark
+    public int direct()
+    {
+        return _direct.add(_a, _b);
+    }
+
+    @Benchmark
+    public int proxy()
+    {
+        return _proxy.add(_a, _b);
+    }
+}
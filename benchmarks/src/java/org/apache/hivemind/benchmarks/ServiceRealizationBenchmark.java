@@ -0,0 +1,139 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.apache.hivemind.internal.ServiceModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to realize many services at once, as happens just after an application
+ * starts: each of a number of threads obtains its share of a freshly constructed registry's
+ * services and invokes each once. Realizing a singleton service fabricates its proxy classes,
+ * so this mostly measures how well class fabrication scales across threads; divide
+ * <code>services</code> by the score for the throughput, in services per millisecond.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceRealizationBenchmark
+{
+    @Param(
+    { "1", "2", "4", "8" })
+    public int threads;
+
+    @Param(
+    { "64" })
+    public int services;
+
+    private ExecutorService _executor;
+
+    private Registry _registry;
+
+    @Setup
+    public void setup()
+    {
+        _executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void constructRegistry()
+    {
+        _registry = BenchmarkModules.constructRegistry(new ModuleDefinition[]
+        { BenchmarkModules.newAdderModule("benchmark", ServiceModel.SINGLETON, services) });
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdownRegistry()
+    {
+        _registry.shutdown();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int realizeServices() throws Exception
+    {
+        List futures = new ArrayList();
+
+        for (int i = 0; i < threads; i++)
+            futures.add(_executor.submit(new Realizer(i)));
+
+        int result = 0;
+
+        for (int i = 0; i < futures.size(); i++)
+            result += ((Integer) ((Future) futures.get(i)).get()).intValue();
+
+        return result;
+    }
+
+    /**
+     * Realizes every <code>threads</code>th service, starting with the given one.
+     */
+    private final class Realizer implements Callable
+    {
+        private final int _first;
+
+        Realizer(int first)
+        {
+            _first = first;
+        }
+
+        public Object call()
+        {
+            int result = 0;
+
+            for (int i = _first; i < services; i += threads)
+            {
+                Adder adder = (Adder) _registry.getService("benchmark.Adder" + i, Adder.class);
+
+                result += adder.add(i, 1);
+            }
+
+            return Integer.valueOf(result);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.benchmarks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hivemind.lib.util.StrategyRegistry;
+import org.apache.hivemind.lib.util.StrategyRegistryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link StrategyRegistry#getStrategy(Class)} for an exact registration, a registration
+ * found through the superclass chain, one found through an interface, and the fallback to
+ * <code>Object</code>. After the first lookup, each is answered from the registry's cache, so these
+ * measure the steady state; run with <code>-t</code> to measure contention.
+ *
+ * @since 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyRegistryBenchmark
+{
+    private StrategyRegistry _registry;
+
+    @Setup
+    public void setup()
+    {
+        _registry = new StrategyRegistryImpl();
+
+        _registry.register(Object.class, "object");
+        _registry.register(Number.class, "number");
+        _registry.register(String.class, "string");
+        _registry.register(List.class, "list");
+        _registry.register(Map.class, "map");
+        _registry.register(Serializable.class, "serializable");
+    }
+
+    @Benchmark
+    public Object exactClass()
+    {
+        return _registry.getStrategy(String.class);
+    }
+
+    @Benchmark
+    public Object superclass()
+    {
+        return _registry.getStrategy(Integer.class);
+    }
+
+    @Benchmark
+    public Object interfaceType()
+    {
+        return _registry.getStrategy(ArrayList.class);
+    }
+
+    @Benchmark
+    public Object objectFallback()
+    {
+        return _registry.getStrategy(Thread.class);
+    }
+
+    @Benchmark
+    public Object mixed()
+    {
+        _registry.getStrategy(HashMap.class);
+
+        return _registry.getStrategy(Long.class);
+    }
+}
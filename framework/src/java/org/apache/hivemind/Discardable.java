@@ -19,7 +19,9 @@ package org.apache.hivemind;
  * discarded. This interface is only used by the 
  * {@link org.apache.hivemind.impl.servicemodel.ThreadedServiceModel threaded service model},
  * which creates a service for a short period, then discards it when notified
- * by the {@link org.apache.hivemind.service.ThreadEventNotifier}.
+ * by the {@link org.apache.hivemind.service.ThreadEventNotifier}, and by the
+ * {@link org.apache.hivemind.impl.servicemodel.ScopedServiceModel scoped service model}, which
+ * discards the service when its {@link org.apache.hivemind.service.ServiceScope} is closed.
  * 
  * <p>
  * The service instance will be discarded regardless; this interface allows
@@ -55,6 +55,22 @@ public final class HiveMind
 
     public static final String AUTOWIRING_SERVICE = "hivemind.Autowiring";
 
+    /**
+     * The full id of the {@link org.apache.hivemind.service.ServicePoolMonitor} service.
+     * 
+     * @since 2.0
+     */
+
+    public static final String SERVICE_POOL_MONITOR_SERVICE = "hivemind.ServicePoolMonitor";
+
+    /**
+     * The full id of the {@link org.apache.hivemind.service.ServiceScopeManager} service.
+     * 
+     * @since 2.0
+     */
+
+    public static final String SERVICE_SCOPE_MANAGER_SERVICE = "hivemind.ServiceScopeManager";
+
     /**
      * An object used to synchronize access to {@link java.beans.Introspector} (which is not fully
      * threadsafe).
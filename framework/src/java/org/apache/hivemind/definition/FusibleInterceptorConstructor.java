@@ -0,0 +1,42 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.definition;
+
+import org.apache.hivemind.InterceptorStack;
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.service.InterceptorFragment;
+
+/**
+ * An {@link InterceptorConstructor} whose interceptor can be generated as an
+ * {@link InterceptorFragment}. When every interceptor of a service is fusible, the interceptors
+ * are fused into a single generated class, rather than stacked as one object per interceptor.
+ * 
+ * @since 2.0
+ */
+public interface FusibleInterceptorConstructor extends InterceptorConstructor
+{
+    /**
+     * Returns true if the constructor can create a fragment. This is checked for all the
+     * interceptors of a service before any fragment is created, and must not have side effects.
+     */
+    public boolean isFusible(Module contributingModule);
+
+    /**
+     * Creates the interceptor's fragment. The stack provides the service's id, interface and log;
+     * nothing is pushed onto it.
+     */
+    public InterceptorFragment constructInterceptorFragment(InterceptorStack interceptorStack,
+            Module contributingModule);
+}
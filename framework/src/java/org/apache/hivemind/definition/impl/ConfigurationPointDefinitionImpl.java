@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.hivemind.ApplicationRuntimeException;
@@ -36,7 +37,7 @@ import org.apache.hivemind.definition.Visibility;
  * 
  * @author Achim Huegen
  */
-public class ConfigurationPointDefinitionImpl extends ExtensionPointDefinitionImpl implements ConfigurationPointDefinition
+public class ConfigurationPointDefinitionImpl extends ExtensionPointDefinitionImpl implements ConfigurationPointDefinition, Cloneable
 {
     private String _containerClassName;
 
@@ -156,6 +157,64 @@ public class ConfigurationPointDefinitionImpl extends ExtensionPointDefinitionIm
         return (ConfigurationParserDefinition) _parsers.get(inputFormat);
     }
 
+    /**
+     * Returns a copy of the configuration point, whose contributions and parsers can be changed
+     * without affecting this configuration point. Used when modules are replaced in a running
+     * registry, where the configuration points in use must not change.
+     * @since 2.0
+     */
+    public ConfigurationPointDefinitionImpl copy()
+    {
+        ConfigurationPointDefinitionImpl result;
+
+        try
+        {
+            result = (ConfigurationPointDefinitionImpl) clone();
+        }
+        catch (CloneNotSupportedException ex)
+        {
+            throw new IllegalStateException(ex.getMessage());
+        }
+
+        result._contributions = new ArrayList(_contributions);
+        result._parsers = new HashMap(_parsers);
+
+        return result;
+    }
+
+    /**
+     * Removes the contributions and parsers defined by a module. Used, on a {@link #copy() copy},
+     * when the module is replaced in a running registry.
+     * @param moduleId  the id of the module
+     * @return  true if any contribution or parser was removed
+     * @since 2.0
+     */
+    public boolean removeExtensions(String moduleId)
+    {
+        boolean removedContributions = removeExtensions(_contributions, moduleId);
+        boolean removedParsers = removeExtensions(_parsers.values(), moduleId);
+
+        return removedContributions || removedParsers;
+    }
+
+    private static boolean removeExtensions(Collection extensions, String moduleId)
+    {
+        boolean result = false;
+
+        for (Iterator i = extensions.iterator(); i.hasNext();)
+        {
+            ExtensionDefinition extension = (ExtensionDefinition) i.next();
+
+            if (extension.getModuleId().equals(moduleId))
+            {
+                i.remove();
+                result = true;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * @see org.apache.hivemind.definition.ConfigurationPointDefinition#isLazy()
      */
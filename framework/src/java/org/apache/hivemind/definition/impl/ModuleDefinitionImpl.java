@@ -40,7 +40,7 @@ import org.apache.hivemind.impl.DefaultClassResolver;
  * 
  * @author Achim Huegen
  */
-public class ModuleDefinitionImpl implements ModuleDefinition
+public class ModuleDefinitionImpl implements ModuleDefinition, Cloneable
 {
     private String _id;
 
@@ -214,6 +214,58 @@ public class ModuleDefinitionImpl implements ModuleDefinition
         return Collections.unmodifiableCollection(_configurationPoints.values());
     }
 
+    /**
+     * Returns a copy of the module, whose extension points can be replaced (by
+     * {@link #replaceServicePoint(ServicePointDefinition)} and
+     * {@link #replaceConfigurationPoint(ConfigurationPointDefinition)}) without affecting this
+     * module. The extension points themselves are shared. Used when modules are replaced in a
+     * running registry.
+     * @since 2.0
+     */
+    public ModuleDefinitionImpl copy()
+    {
+        ModuleDefinitionImpl result;
+
+        try
+        {
+            result = (ModuleDefinitionImpl) clone();
+        }
+        catch (CloneNotSupportedException ex)
+        {
+            throw new IllegalStateException(ex.getMessage());
+        }
+
+        result._servicePoints = new HashMap(_servicePoints);
+        result._configurationPoints = new HashMap(_configurationPoints);
+        result._dependencies = new ArrayList(_dependencies);
+        result._unresolvedImplementations = new ArrayList(_unresolvedImplementations);
+        result._unresolvedContributions = new ArrayList(_unresolvedContributions);
+        result._unresolvedInterceptors = new ArrayList(_unresolvedInterceptors);
+        result._unresolvedConfigurationParsers = new ArrayList(_unresolvedConfigurationParsers);
+
+        return result;
+    }
+
+    /**
+     * Replaces the service point definition with the same id.
+     * @param servicePoint  the service point
+     * @since 2.0
+     */
+    public void replaceServicePoint(ServicePointDefinition servicePoint)
+    {
+        _servicePoints.put(servicePoint.getId(), servicePoint);
+    }
+
+    /**
+     * Replaces the configuration point definition with the same id.
+     * @param configurationPoint  the configuration point
+     * @since 2.0
+     */
+    public void replaceConfigurationPoint(ConfigurationPointDefinition configurationPoint)
+    {
+        _configurationPoints.put(configurationPoint.getId(), configurationPoint);
+    }
+
     /**
      * @see org.apache.hivemind.definition.ModuleDefinition#getDependencies()
      */
@@ -70,6 +70,22 @@ public class RegistryDefinitionImpl implements RegistryDefinition
         }
     }
     
+    /**
+     * Replaces the module with the same id, or adds the module if there is no such module.
+     * Extensions already resolved into the extension points of the replaced module are not
+     * carried over; that is the responsibility of the caller.
+     * @param module  the new module
+     * @return  the replaced module, or null if the module was added
+     * @since 2.0
+     */
+    public ModuleDefinition replaceModule(ModuleDefinition module)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Replacing module " + module.getId() + " in registry definition");
+
+        return (ModuleDefinition) _modules.put(module.getId(), module);
+    }
+
     /**
      * @see org.apache.hivemind.definition.RegistryDefinition#addPostProcessor(org.apache.hivemind.definition.RegistryDefinitionPostProcessor)
      */
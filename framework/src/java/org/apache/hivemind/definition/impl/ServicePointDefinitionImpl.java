@@ -34,7 +34,7 @@ import org.apache.hivemind.definition.Visibility;
  * 
  * @author Achim Huegen
  */
-public class ServicePointDefinitionImpl extends ExtensionPointDefinitionImpl implements ServicePointDefinition
+public class ServicePointDefinitionImpl extends ExtensionPointDefinitionImpl implements ServicePointDefinition, Cloneable
 {
     private String _interfaceClassName;
     
@@ -140,4 +140,62 @@ public class ServicePointDefinitionImpl extends ExtensionPointDefinitionImpl imp
         checkVisibility(interceptor);
         _interceptors.add(interceptor);
     }
+
+    /**
+     * Returns a copy of the service point, whose implementations and interceptors can be changed
+     * without affecting this service point. Used when modules are replaced in a running
+     * registry, where the service points in use must not change.
+     * @since 2.0
+     */
+    public ServicePointDefinitionImpl copy()
+    {
+        ServicePointDefinitionImpl result;
+
+        try
+        {
+            result = (ServicePointDefinitionImpl) clone();
+        }
+        catch (CloneNotSupportedException ex)
+        {
+            throw new IllegalStateException(ex.getMessage());
+        }
+
+        result._implementations = new ArrayList(_implementations);
+        result._interceptors = new ArrayList(_interceptors);
+
+        return result;
+    }
+
+    /**
+     * Removes the implementations and interceptors defined by a module. Used, on a
+     * {@link #copy() copy}, when the module is replaced in a running registry.
+     * @param moduleId  the id of the module
+     * @return  true if any implementation or interceptor was removed
+     * @since 2.0
+     */
+    public boolean removeExtensions(String moduleId)
+    {
+        boolean removedImplementations = removeExtensions(_implementations, moduleId);
+        boolean removedInterceptors = removeExtensions(_interceptors, moduleId);
+
+        return removedImplementations || removedInterceptors;
+    }
+
+    private static boolean removeExtensions(Collection extensions, String moduleId)
+    {
+        boolean result = false;
+
+        for (Iterator i = extensions.iterator(); i.hasNext();)
+        {
+            ExtensionDefinition extension = (ExtensionDefinition) i.next();
+
+            if (extension.getModuleId().equals(moduleId))
+            {
+                i.remove();
+                result = true;
+            }
+        }
+
+        return result;
+    }
 }
@@ -17,11 +17,19 @@ package org.apache.hivemind.impl;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,35 +44,81 @@ import org.apache.hivemind.impl.servicemodel.SingletonInnerProxy;
 import org.apache.hivemind.internal.AbstractConstructionContext;
 import org.apache.hivemind.internal.ConfigurationPoint;
 import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.internal.ServicePoint;
+import org.apache.hivemind.order.TaskGraph;
 import org.apache.hivemind.service.BodyBuilder;
 import org.apache.hivemind.service.ClassFab;
 import org.apache.hivemind.service.MethodSignature;
+import org.apache.hivemind.service.impl.ClassFabImpl;
 import org.apache.hivemind.util.ToStringBuilder;
 
 /**
  * Implementation of the {@link org.apache.hivemind.internal.ConfigurationPoint} interface; a
  * container for {@link org.apache.hivemind.definition.Contribution}s.
+ * <p>
+ * Contributions are normally processed one after another. When more than one thread is configured
+ * (see {@link #CONTRIBUTION_THREADS_PROPERTY}), they are processed concurrently, each into its own
+ * buffer; the buffers are then merged in the original contribution order, so the resulting
+ * configuration is the same. A contribution that reads or replaces the configuration data (rather
+ * than merging into it) depends on the contributions before it; it is discarded and processed
+ * again, in order, on the constructing thread.
  * 
  * @author Howard Lewis Ship
  */
 public final class ConfigurationPointImpl extends AbstractExtensionPoint implements
-        ConfigurationPoint
+        ConfigurationPoint, DependentExtensionPoint
 {
+    /**
+     * System property defining the maximum number of contributions to a single configuration
+     * point processed at the same time. Defaults to 1, processing contributions one after another.
+     * 
+     * @since 2.0
+     */
+    public static final String CONTRIBUTION_THREADS_PROPERTY = "org.apache.hivemind.contribution-threads";
+
     private static final Log LOG = LogFactory.getLog(ConfigurationPointImpl.class);
 
     /**
-     * The cached elements for the extension point (if caching is enabled).
+     * The configuration points whose contributions are processed, directly or indirectly, by the
+     * current thread when processing contributions in parallel; used to detect recursive
+     * configurations that would otherwise deadlock.
+     */
+    private static final ThreadLocal CONTRIBUTING = new ThreadLocal();
+
+    /**
+     * The cached elements for the extension point (if caching is enabled). Only set once the
+     * configuration is complete, and read without locking.
+     */
+    private volatile Object _configuration;
+
+    /**
+     * Guards construction of the configuration. A private lock, rather than this, so that
+     * contributions processed on other threads may use the configuration point (for example, its
+     * error log) while the configuration is constructed.
      */
-    private Object _configuration;
+    private final Object _lock = new Object();
+
+    /**
+     * The configuration data while contributions are being processed. Guarded by _lock.
+     */
+    private Object _contributionData;
     
     private Class _configurationInterface;
 
-    private Object _configurationProxy;
+    private volatile Object _configurationProxy;
 
     private Occurances _expectedCount;
 
     private boolean _building;
 
+    private int _contributionThreads = getContributionThreads();
+
+    /** Guarded by itself. */
+    private final Set _serviceDependencies = new LinkedHashSet();
+
+    /** Guarded by itself. */
+    private final Set _configurationDependencies = new LinkedHashSet();
+
     // TODO: use ShutdownCoordinator 
     private ShutdownCoordinator _shutdownCoordinator;
 
@@ -73,6 +127,28 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
         super(module, definition);
     }
 
+    /**
+     * Returns the number of threads configured with the {@link #CONTRIBUTION_THREADS_PROPERTY}
+     * system property.
+     * 
+     * @since 2.0
+     */
+    public static int getContributionThreads()
+    {
+        return Integer.getInteger(CONTRIBUTION_THREADS_PROPERTY, 1).intValue();
+    }
+
+    /**
+     * Sets the maximum number of contributions processed at the same time. Defaults to the value
+     * of the {@link #CONTRIBUTION_THREADS_PROPERTY} system property.
+     * 
+     * @since 2.0
+     */
+    public void setContributionThreads(int contributionThreads)
+    {
+        _contributionThreads = contributionThreads;
+    }
+
     public ConfigurationPointDefinition getConfigurationPointDefinition()
     {
         return (ConfigurationPointDefinition) super.getDefinition();
@@ -123,26 +199,50 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
     }
 
     /**
+     * Returns the configuration, or a proxy for it if the configuration is lazy and not yet
+     * constructed. Once the configuration (or proxy) exists, no lock is acquired.
+     * 
      * @see org.apache.hivemind.internal.ConfigurationPoint#getConfiguration()
      */
-    public synchronized Object getConfiguration()
+    public Object getConfiguration()
     {
-        if (_configuration != null)
-            return _configuration;
+        ServiceDependencyTracker.configurationRequested(this);
 
-        if (isLazy()) {
-            // Configuration is lazy, so return a proxy that generates the configuration
-            // the first time a member method is called
-            if (_configurationProxy == null)
-            {
-                _configurationProxy = createSingletonProxy();
+        Object result = _configuration;
+
+        if (result != null)
+            return result;
+
+        result = _configurationProxy;
+
+        if (result != null)
+            return result;
+
+        checkContributing();
+
+        return realizeConfiguration();
+    }
+
+    private Object realizeConfiguration()
+    {
+        synchronized (_lock)
+        {
+            if (_configuration != null)
+                return _configuration;
+
+            if (isLazy()) {
+                // Configuration is lazy, so return a proxy that generates the configuration
+                // the first time a member method is called
+                if (_configurationProxy == null)
+                {
+                    _configurationProxy = createSingletonProxy();
+                }
+                return _configurationProxy;
+                
+            } else {
+                // construct the container immediately
+                return constructConfiguration();
             }
-            return _configurationProxy;
-            
-        } else {
-            // construct the container immediately
-            _configuration = constructConfiguration();
-            return _configuration;
         }
     }
 
@@ -152,35 +252,119 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
      * Generates the real configuration object and stores it in a field.
      * Must be public so the proxy can access it.
      */
-    public synchronized Object constructConfiguration()
+    public Object constructConfiguration()
     {
-        // It's nice to have this protection, but (unlike services), you
-        // would really have to go out of your way to provoke
-        // a recursive configuration.
+        Object result = _configuration;
 
-        if (_building)
-            throw new ApplicationRuntimeException(ImplMessages
-                    .recursiveConfiguration(getExtensionPointId()));
+        if (result != null)
+            return result;
 
-        try
+        return buildConfiguration();
+    }
+
+    private Object buildConfiguration()
+    {
+        checkContributing();
+
+        synchronized (_lock)
         {
-            if (_configuration == null)
+            if (_configuration != null)
+                return _configuration;
+
+            // It's nice to have this protection, but (unlike services), you
+            // would really have to go out of your way to provoke
+            // a recursive configuration.
+
+            if (_building)
+                throw new ApplicationRuntimeException(ImplMessages
+                        .recursiveConfiguration(getExtensionPointId()));
+
+            _building = true;
+
+            // Services and configurations obtained by the contributions are its dependencies
+
+            ServiceDependencyTracker.beginConstruction(this);
+
+            try
             {
-                _building = true;
-                
                 processContributions();
+
+                // Publish the completed configuration; now that we have the real list, we don't
+                // need the proxy anymore, either.
+
+                _configuration = freeze(_contributionData);
+                _contributionData = null;
+                _configurationProxy = null;
+
+                return _configuration;
+            }
+            finally
+            {
+                ServiceDependencyTracker.endConstruction();
+
+                _building = false;
             }
+        }
+    }
+
+    /**
+     * A contribution processed on another thread, on behalf of this configuration point, would
+     * block on the lock (held by the thread waiting for it), rather than detect the recursion.
+     */
+    private void checkContributing()
+    {
+        Set contributing = (Set) CONTRIBUTING.get();
+
+        if (contributing != null && contributing.contains(this))
+            throw new ApplicationRuntimeException(ImplMessages
+                    .recursiveConfiguration(getExtensionPointId()));
+    }
 
-            // Now that we have the real list, we don't need the proxy anymore, either.
+    /**
+     * Replaces List and Map configurations with unmodifiable copies, sized to their contents, so
+     * that the configuration may be shared by any number of threads.
+     */
+    private Object freeze(Object configuration)
+    {
+        if (configuration instanceof List && List.class.equals(getConfigurationType()))
+        {
+            List list = (List) configuration;
 
-            _configurationProxy = null;
+            switch (list.size())
+            {
+                case 0:
+                    return Collections.EMPTY_LIST;
+
+                case 1:
+                    return Collections.singletonList(list.get(0));
 
-            return _configuration;
+                default:
+                    return Collections.unmodifiableList(Arrays.asList(list.toArray()));
+            }
         }
-        finally
+
+        if (configuration instanceof Map && Map.class.equals(getConfigurationType()))
         {
-            _building = false;
+            Map map = (Map) configuration;
+
+            if (map.isEmpty())
+                return Collections.EMPTY_MAP;
+
+            if (map instanceof SortedMap)
+                return Collections.unmodifiableSortedMap(new TreeMap((SortedMap) map));
+
+            if (map.size() == 1)
+            {
+                Map.Entry entry = (Map.Entry) map.entrySet().iterator().next();
+
+                return Collections.singletonMap(entry.getKey(), entry.getValue());
+            }
+
+            return Collections.unmodifiableMap(map instanceof LinkedHashMap ? new LinkedHashMap(
+                    map) : new HashMap(map));
         }
+
+        return configuration;
     }
 
     /**
@@ -198,15 +382,18 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
 
         try
         {
-            for (Iterator iterContrib = contributions.iterator(); iterContrib.hasNext();)
+            if (_contributionThreads > 1 && contributions.size() > 1)
+                processContributionsInParallel(contributions);
+            else
             {
-                ContributionDefinition cd = (ContributionDefinition) iterContrib.next();
-                Module definingModule = getModule().getRegistry().getModule(cd.getModuleId());
-                ContributionContext context = new ContributionContextImpl(definingModule, this);
-                cd.getContribution().contribute(context);
+                for (Iterator iterContrib = contributions.iterator(); iterContrib.hasNext();)
+                {
+                    ContributionDefinition cd = (ContributionDefinition) iterContrib.next();
+                    processContribution(cd);
+                }
             }
             // For backward compatibility create empty collections if nothing was contributed
-            if (_configuration == null) {
+            if (_contributionData == null) {
                 initEmptyCollection();
             }
         }
@@ -219,6 +406,212 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
 
     }
     
+    private void processContribution(ContributionDefinition cd)
+    {
+        ContributionContext context = new ContributionContextImpl(getDefiningModule(cd), this);
+        cd.getContribution().contribute(context);
+    }
+
+    private Module getDefiningModule(ContributionDefinition cd)
+    {
+        return getModule().getRegistry().getModule(cd.getModuleId());
+    }
+
+    /**
+     * Processes each contribution on a thread of its own, into a
+     * {@link BufferedContributionContext}, then merges the buffered contributions in order.
+     */
+    private void processContributionsInParallel(Collection contributions)
+    {
+        TaskGraph graph = new TaskGraph(LOG, getModule().getErrorHandler(), "contribution");
+
+        List contexts = new ArrayList(contributions.size());
+
+        Set contributing = new HashSet();
+
+        Set outer = (Set) CONTRIBUTING.get();
+
+        if (outer != null)
+            contributing.addAll(outer);
+
+        contributing.add(this);
+
+        int index = 0;
+
+        for (Iterator i = contributions.iterator(); i.hasNext();)
+        {
+            ContributionDefinition cd = (ContributionDefinition) i.next();
+
+            BufferedContributionContext context = new BufferedContributionContext(
+                    getDefiningModule(cd), this);
+
+            contexts.add(context);
+
+            graph.add(
+                    new ContributionRunnable(this, cd.getContribution(), context, contributing,
+                            Thread.currentThread()),
+                    getExtensionPointId() + " #" + index++,
+                    null,
+                    null);
+        }
+
+        graph.run(_contributionThreads);
+
+        Iterator i = contributions.iterator();
+
+        for (Iterator j = contexts.iterator(); j.hasNext();)
+        {
+            ContributionDefinition cd = (ContributionDefinition) i.next();
+            BufferedContributionContext context = (BufferedContributionContext) j.next();
+
+            if (context.isDependent())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Processing contribution from module " + cd.getModuleId()
+                            + " to " + getExtensionPointId() + " again, in order");
+
+                processContribution(cd);
+            }
+            else
+                context.replay();
+        }
+    }
+
+    /**
+     * Executes a contribution into a buffer, on behalf of this configuration point and of the
+     * thread constructing it (which waits for the contribution, possibly while it holds the
+     * construction locks of services).
+     */
+    private static final class ContributionRunnable implements Runnable
+    {
+        private final ConfigurationPointImpl _configurationPoint;
+
+        private final Contribution _contribution;
+
+        private final BufferedContributionContext _context;
+
+        private final Set _contributing;
+
+        private final Thread _constructingThread;
+
+        ContributionRunnable(ConfigurationPointImpl configurationPoint, Contribution contribution,
+                BufferedContributionContext context, Set contributing, Thread constructingThread)
+        {
+            _configurationPoint = configurationPoint;
+            _contribution = contribution;
+            _context = context;
+            _contributing = contributing;
+            _constructingThread = constructingThread;
+        }
+
+        public void run()
+        {
+            Object previous = CONTRIBUTING.get();
+
+            CONTRIBUTING.set(_contributing);
+
+            // A service being constructed by the waiting thread can't be obtained here
+
+            boolean delegated = Thread.currentThread() != _constructingThread;
+
+            if (delegated)
+                ServiceConstructionLock.beginWorkFor(_constructingThread);
+
+            ServiceDependencyTracker.beginConstruction(_configurationPoint);
+
+            try
+            {
+                _contribution.contribute(_context);
+            }
+            catch (RuntimeException ex)
+            {
+                // The contribution will be processed again, in order.
+
+                if (!_context.isDependent())
+                    throw ex;
+            }
+            finally
+            {
+                ServiceDependencyTracker.endConstruction();
+
+                if (delegated)
+                    ServiceConstructionLock.endWorkFor();
+
+                CONTRIBUTING.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Thrown from a {@link BufferedContributionContext} to abandon a contribution that depends on
+     * the configuration data provided by other contributions.
+     */
+    private static final class DependentContributionException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A {@link ContributionContext} that records the data merged by a single contribution, so that
+     * the contribution may be processed concurrently with others. Reading or replacing the
+     * configuration data is not possible without the contributions that precede this one; the
+     * contribution is then marked as dependent, and abandoned.
+     */
+    class BufferedContributionContext extends AbstractConstructionContext implements
+            ContributionContext
+    {
+        private final ConfigurationPoint _configurationPoint;
+
+        private final List _merged = new ArrayList();
+
+        private volatile boolean _dependent;
+
+        public BufferedContributionContext(Module definingModule,
+                ConfigurationPoint configurationPoint)
+        {
+            super(definingModule);
+            _configurationPoint = configurationPoint;
+        }
+
+        public Object getConfigurationData()
+        {
+            _dependent = true;
+
+            throw new DependentContributionException();
+        }
+
+        public void mergeContribution(Object contributionData)
+        {
+            _merged.add(contributionData);
+        }
+
+        public void setConfigurationData(Object data)
+        {
+            _dependent = true;
+
+            throw new DependentContributionException();
+        }
+
+        public ConfigurationPoint getConfigurationPoint()
+        {
+            return _configurationPoint;
+        }
+
+        boolean isDependent()
+        {
+            return _dependent;
+        }
+
+        /**
+         * Merges the recorded data into the configuration; invoked on the constructing thread.
+         */
+        void replay()
+        {
+            for (Iterator i = _merged.iterator(); i.hasNext();)
+                ConfigurationPointImpl.this.mergeContribution(i.next());
+        }
+    }
+
     /**
      * Implementation of {@link ContributionContext}.
      * Currently defined inline since it needs access to private methods of the outer configuration point. 
@@ -235,7 +628,7 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
 
         public Object getConfigurationData()
         {
-            return _configuration;
+            return _contributionData;
         }
 
         public void mergeContribution(Object contributionData)
@@ -245,7 +638,7 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
 
         public void setConfigurationData(Object data)
         {
-            _configuration = data;
+            _contributionData = data;
         }
 
         public ConfigurationPoint getConfigurationPoint()
@@ -260,15 +653,15 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
         // But what happens with the contribution count?
         // Move contribution count to xml?
         if (List.class.equals(getConfigurationType())) {
-            _configuration = new ArrayList();
+            _contributionData = new ArrayList();
         }
         else if (Map.class.equals(getConfigurationType())) {
-            _configuration = new HashMap(); 
+            _contributionData = new HashMap(); 
         }
     }
 
     /**
-     * Merges a contribution with the configuration data already present in the field _configuration.
+     * Merges a contribution with the configuration data already present in the field _contributionData.
      * TODO: Refactor as configurable service
      * @param contribution
      */
@@ -279,14 +672,14 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
                     contribution.getClass().getName() + " is not compatible to configuration type " + 
                     getConfigurationType().getName());
         }
-        if (_configuration == null) {
-            _configuration = contribution;
+        if (_contributionData == null) {
+            _contributionData = contribution;
         } else {
-            if (_configuration instanceof Collection) {
-                ((Collection) _configuration).addAll((Collection) contribution); 
+            if (_contributionData instanceof Collection) {
+                ((Collection) _contributionData).addAll((Collection) contribution); 
             }
-            else if (_configuration instanceof Map) {
-                ((Map) _configuration).putAll((Map) contribution); 
+            else if (_contributionData instanceof Map) {
+                ((Map) _contributionData).putAll((Map) contribution); 
             }
         }
         
@@ -298,6 +691,38 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
         _shutdownCoordinator = coordinator;
     }
 
+    public void addServiceDependency(ServicePoint dependency)
+    {
+        synchronized (_serviceDependencies)
+        {
+            _serviceDependencies.add(dependency);
+        }
+    }
+
+    public List getServiceDependencies()
+    {
+        synchronized (_serviceDependencies)
+        {
+            return new ArrayList(_serviceDependencies);
+        }
+    }
+
+    public void addConfigurationDependency(ConfigurationPoint dependency)
+    {
+        synchronized (_configurationDependencies)
+        {
+            _configurationDependencies.add(dependency);
+        }
+    }
+
+    public List getConfigurationDependencies()
+    {
+        synchronized (_configurationDependencies)
+        {
+            return new ArrayList(_configurationDependencies);
+        }
+    }
+
     public String getConfigurationTypeName()
     {
         return getConfigurationPointDefinition().getConfigurationTypeName();
@@ -366,29 +791,36 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
     private Class getSingletonProxyClass()
     {
         Class configurationInterface = getConfigurationType();
-        Class result = (Class) SINGLETON_PROXY_CACHE.get(configurationInterface);
-        if (result == null) {
-          result = createSingletonProxyClass();
-          SINGLETON_PROXY_CACHE.put(configurationInterface, result);
+
+        synchronized (SINGLETON_PROXY_CACHE)
+        {
+            Class result = (Class) SINGLETON_PROXY_CACHE.get(configurationInterface);
+            if (result == null) {
+              result = createSingletonProxyClass();
+              SINGLETON_PROXY_CACHE.put(configurationInterface, result);
+            }
+            return result;
         }
-        return result;
     }
     
     private Class getInnerProxyClass(Class deferredProxyClass)
     {
-        Class result = (Class) INNER_PROXY_CACHE.get(deferredProxyClass);
-        if (result == null) {
-          result = createInnerProxyClass(deferredProxyClass);
-          INNER_PROXY_CACHE.put(deferredProxyClass, result);
+        synchronized (INNER_PROXY_CACHE)
+        {
+            Class result = (Class) INNER_PROXY_CACHE.get(deferredProxyClass);
+            if (result == null) {
+              result = createInnerProxyClass(deferredProxyClass);
+              INNER_PROXY_CACHE.put(deferredProxyClass, result);
+            }
+            return result;
         }
-        return result;
     }
 
     /**
-     * Creates a class that implements the service interface. Implements a private synchronized
-     * method, _configuration(), that constructs the service as needed, and has each service interface
-     * method re-invoke on _configuration(). Adds a toString() method if the service interface does not
-     * define toString().
+     * Creates a class that implements the configuration interface. Each method re-invokes on a
+     * volatile field, _inner, which is initially the inner proxy and is later switched to the
+     * configuration itself, so no lock is needed per invocation. Adds a toString() method if the
+     * configuration interface does not define toString().
      */
     private Class createSingletonProxyClass()
     {
@@ -399,11 +831,15 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
 
 
         // This will initally be the inner proxy, then switch over to the
-        // service implementation.
+        // service implementation. The field is volatile, which needs the ClassFabImpl created
+        // by the hivemind.ClassFactory service.
 
-        classFab.addField("_inner", getConfigurationType());
+        ((ClassFabImpl) classFab).addField(
+                Modifier.PRIVATE | Modifier.VOLATILE,
+                "_inner",
+                getConfigurationType());
         classFab.addMethod(
-                Modifier.PUBLIC | Modifier.SYNCHRONIZED | Modifier.FINAL,
+                Modifier.PUBLIC | Modifier.FINAL,
                 new MethodSignature(void.class, "_setInner", new Class[]
                 { getConfigurationType() }, null),
                 "{ _inner = $1; }");
@@ -446,7 +882,6 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
         ClassFab classFab = builder.getClassFab();
 
         classFab.addField("_deferredProxy", deferredProxyClass);
-        classFab.addField("_configuration", getConfigurationType());
         classFab.addField("_configurationPoint", ConfigurationPointImpl.class);
 
         BodyBuilder body = new BodyBuilder();
@@ -468,28 +903,26 @@ public final class ConfigurationPointImpl extends AbstractExtensionPoint impleme
 
         // Method _configuration() will look up the configuration,
         // then update the deferred proxy to go directly to the
-        // configuration, bypassing itself!
+        // configuration, bypassing itself! The configuration point
+        // does its own locking, and always returns the same instance,
+        // so there's no need to synchronize here.
 
         body.clear();
         body.begin();
 
-        body.add("if (_configuration == null)");
-        body.begin();
-
-        body.add("_configuration = (");
+        body.add(getConfigurationType().getName());
+        body.add(" configuration = (");
         body.add(getConfigurationType().getName());
         body.addln(") _configurationPoint.constructConfiguration();");
 
-        body.add("_deferredProxy._setInner(_configuration);");
-
-        body.end();
+        body.addln("_deferredProxy._setInner(configuration);");
 
-        body.add("return _configuration;");
+        body.add("return configuration;");
 
         body.end();
 
         classFab.addMethod(
-                Modifier.PRIVATE | Modifier.FINAL | Modifier.SYNCHRONIZED,
+                Modifier.PRIVATE | Modifier.FINAL,
                 new MethodSignature(getConfigurationType(), "_configuration", null, null),
                 body.toString());
 
@@ -28,7 +28,7 @@ import org.apache.hivemind.internal.ServicePoint;
  * 
  * @author Howard Lewis Ship
  */
-public interface ConstructableServicePoint extends ServicePoint
+public interface ConstructableServicePoint extends ServicePoint, DependentExtensionPoint
 {
     /**
      * Returns the constructor that can create the core service implementation. Returns the service
@@ -91,4 +91,22 @@ public interface ConstructableServicePoint extends ServicePoint
      */
 
     void addRegistryShutdownListener(RegistryShutdownListener listener);
-}
\ No newline at end of file
+
+    /**
+     * Notes a listener that was added to the hivemind.ShutdownCoordinator service on behalf of a
+     * service implementation, so that the listener can be notified if the service point is
+     * replaced while the registry is running (the registry itself never needs this).
+     * 
+     * @since 2.0
+     */
+    void addServiceShutdownListener(RegistryShutdownListener listener);
+
+    /**
+     * Reverses {@link #addServiceShutdownListener(RegistryShutdownListener)}, for service
+     * implementations that are discarded. The listener may be the one noted, or the service
+     * implementation wrapped by it.
+     * 
+     * @since 2.0
+     */
+    void removeServiceShutdownListener(RegistryShutdownListener listener);
+}
@@ -37,14 +37,19 @@ import org.apache.hivemind.definition.impl.ModuleDefinitionHelper;
 import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
 import org.apache.hivemind.impl.servicemodel.PooledServiceModelFactory;
 import org.apache.hivemind.impl.servicemodel.PrimitiveServiceModelFactory;
+import org.apache.hivemind.impl.servicemodel.ScopedPooledServiceModelFactory;
+import org.apache.hivemind.impl.servicemodel.ScopedServiceModelFactory;
 import org.apache.hivemind.impl.servicemodel.SingletonServiceModelFactory;
 import org.apache.hivemind.impl.servicemodel.ThreadedServiceModelFactory;
 import org.apache.hivemind.internal.AbstractServiceImplementationConstructor;
+import org.apache.hivemind.internal.Module;
 import org.apache.hivemind.internal.ServiceModel;
 import org.apache.hivemind.service.Autowiring;
 import org.apache.hivemind.service.AutowiringStrategy;
 import org.apache.hivemind.service.ClassFactory;
 import org.apache.hivemind.service.InterfaceSynthesizer;
+import org.apache.hivemind.service.ServicePoolMonitor;
+import org.apache.hivemind.service.ServiceScopeManager;
 import org.apache.hivemind.service.ThreadEventNotifier;
 import org.apache.hivemind.service.ThreadLocalStorage;
 import org.apache.hivemind.service.ThreadLocale;
@@ -54,6 +59,9 @@ import org.apache.hivemind.service.impl.AutowiringStrategyContribution;
 import org.apache.hivemind.service.impl.ClassFactoryImpl;
 import org.apache.hivemind.service.impl.EagerLoader;
 import org.apache.hivemind.service.impl.InterfaceSynthesizerImpl;
+import org.apache.hivemind.service.impl.ServicePoolMonitorImpl;
+import org.apache.hivemind.service.impl.ServicePoolPrewarmer;
+import org.apache.hivemind.service.impl.ServiceScopeManagerImpl;
 import org.apache.hivemind.service.impl.ThreadEventNotifierImpl;
 import org.apache.hivemind.service.impl.ThreadLocalStorageImpl;
 import org.apache.hivemind.service.impl.ThreadLocaleImpl;
@@ -106,6 +114,10 @@ public class CoreServicesProvider implements RegistryProvider
         
         addServiceModelConfiguration();
         
+        addServicePools(md);
+        
+        addServiceScopeManager(md);
+        
         addAutowiring(md);
         
         addAutowiringStrategiesConfiguration();
@@ -196,13 +208,15 @@ public class CoreServicesProvider implements RegistryProvider
             {
                 EagerLoader result = new EagerLoader();
                 result.setServicePoints((List) context.getConfiguration("EagerLoad"));
+                result.setErrorHandler(context.getDefiningModule().getErrorHandler());
                 return result;
             }
         };
         helper.addServiceImplementation(spd, constructor, ServiceModel.PRIMITIVE);
         
         // Configuration to which services may be contributed. The corresponding services are instantiated eagerly, as the Registry is started. 
-        // The order in which services are instantiated is not specified.
+        // The order in which services are instantiated is not specified; with more than one startup thread
+        // they are instantiated concurrently.
 
         helper.addConfigurationPoint("EagerLoad", List.class.getName(), false);
     }
@@ -210,7 +224,8 @@ public class CoreServicesProvider implements RegistryProvider
     /**
      * A service which is used to bootstrap HiveMind; it obtains the hivemind.Startup configuration and runs each 
      * Runnable object or service within as the last step of the Registry construction phase.
-     * Note that the execution order is arbitrary and the startup objects are NOT executed in separate threads.
+     * Startup objects may be ordered relative to each other by contributing them wrapped in a StartupContribution;
+     * unless more than one startup thread is configured, they are executed one after another on the thread starting the Registry.
      */
     private void addStartup(ModuleDefinition md)
     {
@@ -223,13 +238,15 @@ public class CoreServicesProvider implements RegistryProvider
             {
                 StartupImpl result = new StartupImpl();
                 result.setRunnables((List) context.getConfiguration("Startup"));
+                result.setErrorHandler(context.getDefiningModule().getErrorHandler());
                 return result;
             }
         };
         helper.addServiceImplementation(spd, constructor, ServiceModel.PRIMITIVE);
         
         // A configuration to which startup objects may be contributed (as objects or services). 
-        // Startup objects must implement the java.lang.Runnable interface. Order of execution is expliclitly NOT defined.
+        // Startup objects must implement the java.lang.Runnable interface, or be StartupContributions naming and ordering
+        // such an object. The default startup services are named after the services.
 
         ConfigurationPointDefinition cpd = helper.addConfigurationPoint("Startup", List.class.getName(), false);
         
@@ -242,7 +259,8 @@ public class CoreServicesProvider implements RegistryProvider
                 for (Iterator iterServices = services.iterator(); iterServices.hasNext();)
                 {
                     String serviceName = (String) iterServices.next();
-                    contribution.add(context.getService(serviceName, Runnable.class));
+                    Runnable service = (Runnable) context.getService(serviceName, Runnable.class);
+                    contribution.add(new StartupContribution(serviceName, service, null, null));
                 }
                 context.mergeContribution(contribution);
             }});
@@ -272,6 +290,57 @@ public class CoreServicesProvider implements RegistryProvider
             }});
     }
     
+    /**
+     * Pool settings for services using the pooled service model, the service that exposes the
+     * pool statistics, and the service that pre-warms pools at startup. This service is contributed
+     * into the hivemind.Startup configuration.
+     */
+    private void addServicePools(ModuleDefinition md)
+    {
+        // Maps service ids to ServicePoolContribution; services without a contribution
+        // get an unbounded pool.
+
+        helper.addConfigurationPoint("ServicePools", Map.class.getName(), false);
+
+        ServicePointDefinition spd = helper.addServicePoint("ServicePoolMonitor", ServicePoolMonitor.class.getName());
+        helper.addSimpleServiceImplementation(spd, ServicePoolMonitorImpl.class.getName(), ServiceModel.SINGLETON);
+
+        spd = helper.addServicePoint("ServicePoolPrewarm", Runnable.class.getName());
+
+        // Define inline implementation constructor, that collects the service points of the pools to pre-warm
+        ImplementationConstructor constructor = new AbstractServiceImplementationConstructor(md.getLocation())
+        {
+            public Object constructCoreServiceImplementation(ImplementationConstructionContext context)
+            {
+                Module module = context.getDefiningModule();
+                Map pools = (Map) context.getConfiguration("ServicePools");
+
+                List servicePoints = new ArrayList();
+                for (Iterator iterPools = pools.values().iterator(); iterPools.hasNext();)
+                {
+                    ServicePoolContribution pool = (ServicePoolContribution) iterPools.next();
+                    if (pool.isPrewarm())
+                        servicePoints.add(module.getRegistry().getServicePoint(pool.getServiceId(), module));
+                }
+
+                ServicePoolPrewarmer result = new ServicePoolPrewarmer();
+                result.setServicePoints(servicePoints);
+                return result;
+            }
+        };
+        helper.addServiceImplementation(spd, constructor, ServiceModel.PRIMITIVE);
+    }
+
+    /**
+     * Creates the scopes to which the scoped service models bind service implementations, and
+     * tracks the scope attached to each thread.
+     */
+    private void addServiceScopeManager(ModuleDefinition md)
+    {
+        ServicePointDefinition spd = helper.addServicePoint("ServiceScopeManager", ServiceScopeManager.class.getName());
+        helper.addSimpleServiceImplementation(spd, ServiceScopeManagerImpl.class.getName(), ServiceModel.SINGLETON);
+    }
+
     /**
      * Returns default startup services for addition to "Startup" configuration.
      */
@@ -279,6 +348,7 @@ public class CoreServicesProvider implements RegistryProvider
     {
         List result = new ArrayList();
         result.add("hivemind.EagerLoad");
+        result.add("hivemind.ServicePoolPrewarm");
         return result;
     }
 
@@ -292,6 +362,8 @@ public class CoreServicesProvider implements RegistryProvider
         result.add(new ServiceModelContribution(ServiceModel.SINGLETON, new SingletonServiceModelFactory()));
         result.add(new ServiceModelContribution(ServiceModel.POOLED, new PooledServiceModelFactory()));
         result.add(new ServiceModelContribution(ServiceModel.THREADED, new ThreadedServiceModelFactory()));
+        result.add(new ServiceModelContribution(ServiceModel.SCOPED, new ScopedServiceModelFactory()));
+        result.add(new ServiceModelContribution(ServiceModel.SCOPED_POOLED, new ScopedPooledServiceModelFactory()));
         return result;
     }
 
@@ -0,0 +1,55 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+import java.util.List;
+
+import org.apache.hivemind.internal.ConfigurationPoint;
+import org.apache.hivemind.internal.ServicePoint;
+
+/**
+ * An extension point whose service implementation or configuration is constructed from the
+ * services and configurations of other extension points; these are recorded by
+ * {@link ServiceDependencyTracker} while it is constructed.
+ * 
+ * @since 2.0
+ */
+public interface DependentExtensionPoint
+{
+    /**
+     * Records a dependency on the service of another service point, which was obtained while the
+     * service implementation or configuration was being constructed.
+     */
+    void addServiceDependency(ServicePoint dependency);
+
+    /**
+     * Returns the service points recorded by {@link #addServiceDependency(ServicePoint)}, in the
+     * order in which they were first recorded.
+     */
+    List getServiceDependencies();
+
+    /**
+     * Records a dependency on the configuration of a configuration point, which was obtained while
+     * the service implementation or configuration was being constructed.
+     */
+    void addConfigurationDependency(ConfigurationPoint dependency);
+
+    /**
+     * Returns the configuration points recorded by
+     * {@link #addConfigurationDependency(ConfigurationPoint)}, in the order in which they were
+     * first recorded.
+     */
+    List getConfigurationDependencies();
+}
@@ -73,13 +73,25 @@ public class ExtensionResolver
         {
             ModuleDefinition module = (ModuleDefinition) iterModules.next();
         
-            resolveImplementations(module);
-            resolveInterceptors(module);
-            resolveContributions(module);
-            resolveConfigurationParsers(module);
+            resolveExtensions(module);
         }
     }
 
+    /**
+     * Resolves the unresolved extensions of a single module, against the extension points of
+     * all modules in the registry definition. Used when a module is replaced in a running
+     * registry, where the other modules have already been resolved.
+     * 
+     * @since 2.0
+     */
+    public void resolveExtensions(ModuleDefinition module)
+    {
+        resolveImplementations(module);
+        resolveInterceptors(module);
+        resolveContributions(module);
+        resolveConfigurationParsers(module);
+    }
+
     private void resolveImplementations(ModuleDefinition module)
     {
         for (Iterator iter = module.getImplementations().iterator(); iter.hasNext();)
@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.apache.hivemind.ClassResolver;
 import org.apache.hivemind.Location;
+import org.apache.hivemind.Registry;
 import org.apache.hivemind.Resource;
 import org.apache.hivemind.definition.InterceptorDefinition;
 import org.apache.hivemind.definition.ServicePointDefinition;
@@ -44,6 +45,11 @@ class ImplMessages
         return _formatter.format("recursive-service-build", point.getExtensionPointId());
     }
 
+    static String constructionDeadlock(ServicePoint point, String cycle)
+    {
+        return _formatter.format("construction-deadlock", point.getExtensionPointId(), cycle);
+    }
+
     static String recursiveConfiguration(String pointId)
     {
         return _formatter.format("recursive-configuration", pointId);
@@ -182,9 +188,29 @@ class ImplMessages
         return _formatter.getMessage("registry-already-started");
     }
 
-    static String noServicePointForInterface(Class interfaceClass)
+    static String registryFrozen()
+    {
+        return _formatter.getMessage("registry-frozen");
+    }
+
+    static String registryNotUpdatable(Registry registry)
+    {
+        return _formatter.format("registry-not-updatable", registry);
+    }
+
+    static String definitionNotUpdatable(Object definition)
+    {
+        return _formatter.format("definition-not-updatable", definition);
+    }
+
+    static String registryUpdateFailed(int errorCount)
+    {
+        return _formatter.format("registry-update-failed", new Integer(errorCount));
+    }
+
+    static String noServicePointForInterface(String interfaceName)
     {
-        return _formatter.format("no-service-point-for-interface", interfaceClass.getName());
+        return _formatter.format("no-service-point-for-interface", interfaceName);
     }
 
     static String noConfigurationPointForType(Class configurationType)
@@ -192,7 +218,7 @@ class ImplMessages
         return _formatter.format("no-configuration-point-for-type", configurationType.getName());
     }
 
-    static String multipleServicePointsForInterface(Class interfaceClass,
+    static String multipleServicePointsForInterface(String interfaceName,
             Collection matchingPoints)
     {
         StringBuffer buffer = new StringBuffer("{");
@@ -216,7 +242,7 @@ class ImplMessages
 
         return _formatter.format(
                 "multiple-service-points-for-interface",
-                interfaceClass.getName(),
+                interfaceName,
                 buffer);
     }
     
@@ -14,12 +14,19 @@
 
 package org.apache.hivemind.impl;
 
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.hivemind.ApplicationRuntimeException;
 import org.apache.hivemind.InterceptorStack;
+import org.apache.hivemind.definition.FusibleInterceptorConstructor;
+import org.apache.hivemind.definition.InterceptorConstructor;
 import org.apache.hivemind.definition.InterceptorDefinition;
 import org.apache.hivemind.internal.Module;
 import org.apache.hivemind.internal.ServicePoint;
+import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
+import org.apache.hivemind.service.impl.FusedInterceptorClassFactory;
 import org.apache.hivemind.util.ToStringBuilder;
 
 /**
@@ -111,7 +118,7 @@ public final class InterceptorStackImpl implements InterceptorStack
         try
         {
             _interceptorDefinition = interceptorDefinition;
-            Module contributingModule = getServiceModule().getRegistry().getModule(interceptorDefinition.getModuleId());
+            Module contributingModule = getContributingModule(interceptorDefinition);
             _interceptorDefinition.getInterceptorConstructor().constructServiceInterceptor(this, contributingModule);
         }
         finally
@@ -120,6 +127,81 @@ public final class InterceptorStackImpl implements InterceptorStack
         }
     }
 
+    /**
+     * Fuses the interceptor contributions into a single generated interceptor, which is pushed onto
+     * the stack, if all of their constructors are {@link FusibleInterceptorConstructor fusible}.
+     * 
+     * @param interceptorDefinitions
+     *            the contributions, in runtime order
+     * @return true if the contributions were fused, false if none of them was processed (they must
+     *         then be processed individually)
+     * @since 2.0
+     */
+    public boolean fuse(List interceptorDefinitions)
+    {
+        int count = interceptorDefinitions.size();
+        Module[] contributingModules = new Module[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            InterceptorDefinition id = (InterceptorDefinition) interceptorDefinitions.get(i);
+            InterceptorConstructor constructor = id.getInterceptorConstructor();
+
+            if (!(constructor instanceof FusibleInterceptorConstructor))
+                return false;
+
+            contributingModules[i] = getContributingModule(id);
+
+            if (!((FusibleInterceptorConstructor) constructor).isFusible(contributingModules[i]))
+                return false;
+        }
+
+        if (_log.isDebugEnabled())
+            _log.debug("Fusing " + count + " interceptors");
+
+        InterceptorFragment[] fragments = new InterceptorFragment[count];
+        StringBuffer description = new StringBuffer("[");
+
+        // Fragments are created in the order the interceptors would be, from the core outwards.
+
+        for (int i = count - 1; i >= 0; i--)
+        {
+            InterceptorDefinition id = (InterceptorDefinition) interceptorDefinitions.get(i);
+            FusibleInterceptorConstructor constructor = (FusibleInterceptorConstructor) id
+                    .getInterceptorConstructor();
+
+            fragments[i] = constructor.constructInterceptorFragment(this, contributingModules[i]);
+
+            if (fragments[i] == null)
+                throw new ApplicationRuntimeException(ImplMessages.nullInterceptor(id, _sep), id
+                        .getLocation(), null);
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0)
+                description.append(", ");
+
+            description.append(((InterceptorDefinition) interceptorDefinitions.get(i)).getName());
+        }
+
+        description.append("]");
+
+        ClassFactory classFactory = (ClassFactory) getServiceModule().getService(
+                "hivemind.ClassFactory",
+                ClassFactory.class);
+
+        _top = new FusedInterceptorClassFactory(classFactory).createInterceptor(this, fragments, description
+                .toString());
+
+        return true;
+    }
+
+    private Module getContributingModule(InterceptorDefinition interceptorDefinition)
+    {
+        return getServiceModule().getRegistry().getModule(interceptorDefinition.getModuleId());
+    }
+
 	public Log getServiceLog()
 	{
 		return _log;
@@ -0,0 +1,170 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.internal.ServicePoint;
+
+/**
+ * The service points that implement a particular service interface, with lookups by interface
+ * resolved in advance. Instances are cached by {@link RegistryInfrastructureImpl}, keyed on the
+ * interface name, so that lookup of a service by interface (as done for each autowired property)
+ * does not need to scan the service points. Only the name of the interface is kept, so that a
+ * cached instance does not keep the class (and its class loader) reachable.
+ * <p>
+ * The service point visible to callers outside any module (that is, the single public service
+ * point) is resolved when the instance is created. Private service points are only visible to
+ * their own module, so a lookup from a module only needs to re-check visibility when there are
+ * private service points for the interface.
+ *
+ * @since 2.0
+ */
+final class InterfaceServicePoints
+{
+    private final String _interfaceName;
+
+    private final ServicePoint[] _servicePoints;
+
+    private final boolean _containsPrivate;
+
+    private final int _publicCount;
+
+    /**
+     * The public service point, if there is exactly one.
+     */
+    private final ServicePoint _publicServicePoint;
+
+    /**
+     * @param interfaceName
+     *            the name of the service interface
+     * @param servicePoints
+     *            the service points whose service interface has the name, or null if there are
+     *            none
+     */
+    InterfaceServicePoints(String interfaceName, ServicePoint[] servicePoints)
+    {
+        _interfaceName = interfaceName;
+        _servicePoints = servicePoints == null ? new ServicePoint[0] : servicePoints;
+
+        ServicePoint publicPoint = null;
+        int publicCount = 0;
+
+        for (int i = 0; i < _servicePoints.length; i++)
+        {
+            ServicePoint point = _servicePoints[i];
+
+            if (point.visibleToModule(null))
+            {
+                publicPoint = point;
+                publicCount++;
+            }
+        }
+
+        _containsPrivate = publicCount < _servicePoints.length;
+        _publicCount = publicCount;
+        _publicServicePoint = publicCount == 1 ? publicPoint : null;
+    }
+
+    /**
+     * Returns the single service point visible to the module.
+     *
+     * @param module
+     *            the module making the request, or null for a request from outside any module
+     * @throws ApplicationRuntimeException
+     *             if no service point, or more than one service point, is visible
+     */
+    ServicePoint getServicePoint(Module module)
+    {
+        if (module == null || !_containsPrivate)
+        {
+            if (_publicCount == 1)
+                return _publicServicePoint;
+
+            throw notUnique(_publicCount);
+        }
+
+        ServicePoint result = null;
+        int count = 0;
+
+        for (int i = 0; i < _servicePoints.length; i++)
+        {
+            ServicePoint point = _servicePoints[i];
+
+            if (!point.visibleToModule(module))
+                continue;
+
+            result = point;
+            count++;
+        }
+
+        if (count == 1)
+            return result;
+
+        throw notUnique(count);
+    }
+
+    private ApplicationRuntimeException notUnique(int count)
+    {
+        if (count == 0)
+            return new ApplicationRuntimeException(ImplMessages
+                    .noServicePointForInterface(_interfaceName));
+
+        return new ApplicationRuntimeException(ImplMessages.multipleServicePointsForInterface(
+                _interfaceName,
+                Arrays.asList(_servicePoints)));
+    }
+
+    /**
+     * Returns true if exactly one service point is visible to the module.
+     */
+    boolean containsServicePoint(Module module)
+    {
+        if (module == null || !_containsPrivate)
+            return _publicCount == 1;
+
+        int count = 0;
+
+        for (int i = 0; i < _servicePoints.length; i++)
+        {
+            if (_servicePoints[i].visibleToModule(module))
+                count++;
+        }
+
+        return count == 1;
+    }
+
+    /**
+     * Returns the ids of the public service points.
+     */
+    List getPublicServiceIds()
+    {
+        List result = new ArrayList(_publicCount);
+
+        for (int i = 0; i < _servicePoints.length; i++)
+        {
+            ServicePoint point = _servicePoints[i];
+
+            if (point.visibleToModule(null))
+                result.add(point.getExtensionPointId());
+        }
+
+        return result;
+    }
+}
@@ -14,13 +14,16 @@
 
 package org.apache.hivemind.impl;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.ApplicationRuntimeException;
 import org.apache.hivemind.ErrorHandler;
+import org.apache.hivemind.Location;
 import org.apache.hivemind.Registry;
 import org.apache.hivemind.definition.ConfigurationPointDefinition;
 import org.apache.hivemind.definition.DefinitionMessages;
@@ -172,6 +175,57 @@ public final class RegistryBuilder
         return new RegistryImpl(infrastructure);
     }
     
+    /**
+     * Replaces modules in a registry previously constructed by this builder, without constructing
+     * a new registry. Only the extension points defined by, or extended by, the old and new
+     * modules are rebuilt, along with the services that depend on them; everything else in the
+     * registry is left in place. The registry definition is updated to match.
+     * <p>
+     * The new modules are resolved and checked before anything is changed; if any error is
+     * reported, an exception is thrown, and the registry and its definition are left as they
+     * were. Services obtained from the registry before the update should be obtained again.
+     * 
+     * @param registry
+     *            the registry, constructed by {@link #constructRegistry(Locale)}
+     * @param modules
+     *            the new {@link ModuleDefinition}s, replacing any modules with the same ids
+     * @return the sorted ids of the service points and configuration points that were rebuilt
+     *         or removed
+     * @see RegistryUpdater
+     * @since 2.0
+     */
+    public List updateRegistry(Registry registry, Collection modules)
+    {
+        if (!(registry instanceof RegistryImpl))
+            throw new ApplicationRuntimeException(ImplMessages.registryNotUpdatable(registry));
+
+        if (!(_registryDefinition instanceof RegistryDefinitionImpl))
+            throw new ApplicationRuntimeException(ImplMessages
+                    .definitionNotUpdatable(_registryDefinition));
+
+        RegistryInfrastructureImpl infrastructure = (RegistryInfrastructureImpl) ((RegistryImpl) registry)
+                .getInfrastructure();
+
+        synchronized (infrastructure)
+        {
+            CountingErrorHandler errorHandler = new CountingErrorHandler(_errorHandler);
+
+            RegistryUpdater updater = new RegistryUpdater(
+                    (RegistryDefinitionImpl) _registryDefinition, errorHandler);
+
+            RegistryDefinition candidate = updater.prepareModules(modules);
+
+            checkDependencies(candidate, errorHandler);
+            checkContributionCounts(candidate, errorHandler);
+
+            if (errorHandler.getErrorCount() > 0)
+                throw new ApplicationRuntimeException(ImplMessages
+                        .registryUpdateFailed(errorHandler.getErrorCount()));
+
+            return updater.replaceModules(infrastructure);
+        }
+    }
+
     /**
      * Constructs the registry from a specified {@link RegistryDefinition}.
      * @param definition  the registry definition
@@ -190,6 +244,11 @@ public final class RegistryBuilder
      * Checks if all dependencies of modules are present.
      */
     private void checkDependencies(RegistryDefinition definition)
+    {
+        checkDependencies(definition, _errorHandler);
+    }
+
+    private void checkDependencies(RegistryDefinition definition, ErrorHandler errorHandler)
     {
         for (Iterator iterModules = definition.getModules().iterator(); iterModules.hasNext();)
         {
@@ -198,19 +257,20 @@ public final class RegistryBuilder
             for (Iterator iterDependencies = module.getDependencies().iterator(); iterDependencies.hasNext();)
             {
                 String requiredModuleId = (String) iterDependencies.next();
-                checkModuleDependency(definition, module, requiredModuleId);
+                checkModuleDependency(definition, module, requiredModuleId, errorHandler);
             }
         }
         
     }
 
-    private void checkModuleDependency(RegistryDefinition definition, ModuleDefinition sourceModule, String requiredModuleId)
+    private void checkModuleDependency(RegistryDefinition definition, ModuleDefinition sourceModule, String requiredModuleId,
+            ErrorHandler errorHandler)
     {
         ModuleDefinition requiredModule = (ModuleDefinition) definition.getModule(requiredModuleId);
         if (requiredModule == null)
         {
             // TODO: Include Location in Dependencies 
-            _errorHandler.error(
+            errorHandler.error(
                     LOG,
                     DefinitionMessages.dependencyOnUnknownModule(requiredModuleId),
                     null,
@@ -223,6 +283,11 @@ public final class RegistryBuilder
      * Checks that each configuration extension point has the right number of contributions.
      */
     public void checkContributionCounts(RegistryDefinition definition)
+    {
+        checkContributionCounts(definition, _errorHandler);
+    }
+
+    private void checkContributionCounts(RegistryDefinition definition, ErrorHandler errorHandler)
     {
         for (Iterator iterModules = definition.getModules().iterator(); iterModules.hasNext();)
         {
@@ -231,12 +296,13 @@ public final class RegistryBuilder
             for (Iterator iterConfigurations = module.getConfigurationPoints().iterator(); iterConfigurations.hasNext();)
             {
                 ConfigurationPointDefinition cpd = (ConfigurationPointDefinition) iterConfigurations.next();
-                checkContributionCounts(module, cpd);
+                checkContributionCounts(module, cpd, errorHandler);
             }
         }
     }
     
-    private void checkContributionCounts(ModuleDefinition definingModule, ConfigurationPointDefinition configurationPoint)
+    private void checkContributionCounts(ModuleDefinition definingModule, ConfigurationPointDefinition configurationPoint,
+            ErrorHandler errorHandler)
     {
         Occurances expected = configurationPoint.getExpectedContributions();
 
@@ -245,7 +311,7 @@ public final class RegistryBuilder
         if (expected.inRange(actual))
             return;
 
-        _errorHandler.error(LOG, DefinitionMessages.wrongNumberOfContributions(
+        errorHandler.error(LOG, DefinitionMessages.wrongNumberOfContributions(
                 definingModule, configurationPoint,
                 actual,
                 expected), configurationPoint.getLocation(), null);
@@ -284,4 +350,31 @@ public final class RegistryBuilder
         return _errorHandler;
     }
 
+    /**
+     * Reports errors to another error handler, counting them; used to abandon an update of the
+     * registry when an error is reported, even if the error handler merely logs it.
+     */
+    private static class CountingErrorHandler implements ErrorHandler
+    {
+        private final ErrorHandler _delegate;
+
+        private int _errorCount;
+
+        CountingErrorHandler(ErrorHandler delegate)
+        {
+            _delegate = delegate;
+        }
+
+        public void error(Log log, String message, Location location, Throwable cause)
+        {
+            _errorCount++;
+
+            _delegate.error(log, message, location, cause);
+        }
+
+        int getErrorCount()
+        {
+            return _errorCount;
+        }
+    }
 }
\ No newline at end of file
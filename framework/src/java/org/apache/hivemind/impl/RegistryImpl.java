@@ -37,6 +37,17 @@ public class RegistryImpl implements Registry
         _infrastructure = infrastructure;
     }
 
+    /**
+     * Returns the infrastructure behind this registry, for
+     * {@link RegistryBuilder#updateRegistry(org.apache.hivemind.Registry, java.util.Collection)}.
+     * 
+     * @since 2.0
+     */
+    RegistryInfrastructure getInfrastructure()
+    {
+        return _infrastructure;
+    }
+
     public boolean containsConfiguration(String configurationId)
     {
         return _infrastructure.containsConfiguration(configurationId, null);
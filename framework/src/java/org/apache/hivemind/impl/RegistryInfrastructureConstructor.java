@@ -69,6 +69,10 @@ public class RegistryInfrastructureConstructor
         
         _infrastructure.setShutdownCoordinator(_shutdownCoordinator);
 
+        // No more extension points will be added; switch to read-only lookup tables.
+
+        _infrastructure.freeze();
+
         // The caller is responsible for invoking startup().
 
         return _infrastructure;
@@ -108,22 +112,35 @@ public class RegistryInfrastructureConstructor
             return;
         }
 
-        ModuleImpl module = new ModuleImpl();
-
-        module.setLocation(moduleDefinition.getLocation());
-        module.setModuleId(id);
-        module.setPackageName(moduleDefinition.getPackageName());
-        module.setClassResolver(moduleDefinition.getClassResolver());
+        ModuleImpl module = newModule(moduleDefinition, _infrastructure);
 
         addServicePoints(moduleDefinition, module);
         
         addConfigurationPoints(moduleDefinition, module);
         
-        module.setRegistry(_infrastructure);
         _infrastructure.addModule(module);
 
     }
 
+    /**
+     * Creates the module for a module definition; its extension points are created separately.
+     * 
+     * @since 2.0
+     */
+    static ModuleImpl newModule(ModuleDefinition moduleDefinition,
+            RegistryInfrastructure infrastructure)
+    {
+        ModuleImpl module = new ModuleImpl();
+
+        module.setLocation(moduleDefinition.getLocation());
+        module.setModuleId(moduleDefinition.getId());
+        module.setPackageName(moduleDefinition.getPackageName());
+        module.setClassResolver(moduleDefinition.getClassResolver());
+        module.setRegistry(infrastructure);
+
+        return module;
+    }
+
     private void addServicePoints(ModuleDefinition md, Module module)
     {
         String moduleId = md.getId();
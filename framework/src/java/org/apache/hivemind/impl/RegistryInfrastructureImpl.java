@@ -15,6 +15,9 @@
 package org.apache.hivemind.impl;
 
 import java.beans.Introspector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -22,6 +25,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.hivemind.ApplicationRuntimeException;
 import org.apache.hivemind.ErrorHandler;
@@ -43,6 +47,12 @@ import org.apache.hivemind.util.ToStringBuilder;
 
 /**
  * Implementation of {@link RegistryInfrastructure}.
+ * <p>
+ * Extension points are added while the registry is being constructed. Once
+ * {@link RegistryInfrastructureConstructor} has added everything, it invokes {@link #freeze()},
+ * which replaces the lookup tables with read-only copies; from then on the tables are never
+ * modified, and lookups by id, interface or type take no locks. When modules are replaced in the
+ * running registry (see {@link RegistryUpdater}), new read-only tables are built and swapped in.
  * 
  * @author Howard Lewis Ship
  */
@@ -53,27 +63,36 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
     /**
      * Map of {@link Module} keyed on module id.
      */
-    private Map _modules = new HashMap();
+    private volatile Map _modules = new HashMap();
 
     /**
      * Map of {@link ServicePoint} keyed on fully qualified service id.
      */
-    private Map _servicePoints = new HashMap();
+    private volatile Map _servicePoints = new HashMap();
 
     /**
-     * Map of List (of {@link ServicePoint}, keyed on class name service interface.
+     * Map of {@link ServicePoint}[], keyed on class name service interface.
      */
-    private Map _servicePointsByInterfaceClassName = new HashMap();
+    private volatile Map _servicePointsByInterfaceClassName = new HashMap();
     
     /**
-     * Map of List (of {@link ConfigurationPoint}, keyed on class name service interface.
+     * Map of {@link InterfaceServicePoints}, keyed on service interface name. Filled in on demand
+     * once the registry has been frozen, for interfaces that have service points only.
+     * Keying on the name keeps the interface classes (and their class loaders) collectable.
+     * 
+     * @since 2.0
      */
-    private Map _configurationPointsByTypeName = new HashMap();
+    private volatile Map _servicePointsByInterface = new ConcurrentHashMap();
+
+    /**
+     * Map of {@link ConfigurationPoint}[], keyed on class name of configuration type.
+     */
+    private volatile Map _configurationPointsByTypeName = new HashMap();
 
     /**
      * Map of {@link ConfigurationPoint} keyed on fully qualified configuration id.
      */
-    private Map _configurationPoints = new HashMap();
+    private volatile Map _configurationPoints = new HashMap();
 
     private ErrorHandler _errorHandler;
 
@@ -82,24 +101,28 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
     private ShutdownCoordinator _shutdownCoordinator;
 
     /**
-     * Map of {@link org.apache.hivemind.internal.ser.ServiceToken}, keyed on service id.
+     * Map of {@link org.apache.hivemind.internal.ser.ServiceToken}, keyed on service id. Populated
+     * by {@link #freeze()}.
      * 
      * @since 1.1
      */
 
-    private Map _serviceTokens;
+    private volatile Map _serviceTokens = Collections.EMPTY_MAP;
 
     /**
      * Map of {@link ServiceModelFactory}, keyed on service model name, loaded from
      * <code>hivemind.ServiceModels</code> configuration point.
      */
-    private Map _serviceModelFactories;
+    private volatile Map _serviceModelFactories;
 
     private boolean _started = false;
 
-    private boolean _shutdown = false;
+    /** @since 2.0 */
+    private boolean _frozen = false;
+
+    private volatile boolean _shutdown = false;
 
-    private ThreadEventNotifier _threadEventNotifier;
+    private volatile ThreadEventNotifier _threadEventNotifier;
 
     public RegistryInfrastructureImpl(ErrorHandler errorHandler, Locale locale)
     {
@@ -114,7 +137,7 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
     
     public void addModule(Module module)
     {
-        checkStarted();
+        checkModifiable();
 
         _modules.put(module.getModuleId(), module);
 
@@ -122,50 +145,223 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
 
     public void addServicePoint(ServicePoint point)
     {
-        checkStarted();
+        checkModifiable();
 
         _servicePoints.put(point.getExtensionPointId(), point);
 
-        addServicePointByInterface(point);
+        addServicePointByInterface(_servicePointsByInterfaceClassName, point);
     }
 
-    private void addServicePointByInterface(ServicePoint point)
+    private static void addServicePointByInterface(Map servicePointsByInterfaceClassName,
+            ServicePoint point)
     {
         String key = point.getServiceInterfaceClassName();
 
-        List l = (List) _servicePointsByInterfaceClassName.get(key);
+        ServicePoint[] existing = (ServicePoint[]) servicePointsByInterfaceClassName.get(key);
 
-        if (l == null)
-        {
-            l = new LinkedList();
-            _servicePointsByInterfaceClassName.put(key, l);
-        }
+        int count = existing == null ? 0 : existing.length;
+
+        ServicePoint[] points = new ServicePoint[count + 1];
 
-        l.add(point);
+        if (count > 0)
+            System.arraycopy(existing, 0, points, 0, count);
+
+        points[count] = point;
+
+        servicePointsByInterfaceClassName.put(key, points);
     }
 
     public void addConfigurationPoint(ConfigurationPoint point)
     {
-        checkStarted();
+        checkModifiable();
 
         _configurationPoints.put(point.getExtensionPointId(), point);
         
-        addConfigurationPointByType(point);
+        addConfigurationPointByType(_configurationPointsByTypeName, point);
     }
 
-    private void addConfigurationPointByType(ConfigurationPoint point)
+    private static void addConfigurationPointByType(Map configurationPointsByTypeName,
+            ConfigurationPoint point)
     {
         String key = point.getConfigurationType().getName();
 
-        List l = (List) _configurationPointsByTypeName.get(key);
+        ConfigurationPoint[] existing = (ConfigurationPoint[]) configurationPointsByTypeName
+                .get(key);
+
+        int count = existing == null ? 0 : existing.length;
+
+        ConfigurationPoint[] points = new ConfigurationPoint[count + 1];
 
-        if (l == null)
+        if (count > 0)
+            System.arraycopy(existing, 0, points, 0, count);
+
+        points[count] = point;
+
+        configurationPointsByTypeName.put(key, points);
+    }
+
+    /**
+     * Invoked once all modules and extension points have been added. Copies the lookup tables
+     * into read-only maps (sized for the actual number of entries) and creates the
+     * {@link ServiceToken} for each service point up front. After this, no further modules or
+     * extension points may be added, and the tables are only ever read, so they may be shared
+     * between threads without synchronization.
+     * 
+     * @since 2.0
+     */
+    void freeze()
+    {
+        checkModifiable();
+
+        _modules = freezeMap(_modules);
+        _servicePoints = freezeMap(_servicePoints);
+        _servicePointsByInterfaceClassName = freezeMap(_servicePointsByInterfaceClassName);
+        _configurationPoints = freezeMap(_configurationPoints);
+        _configurationPointsByTypeName = freezeMap(_configurationPointsByTypeName);
+
+        Map tokens = new HashMap(capacityFor(_servicePoints.size()));
+
+        Iterator i = _servicePoints.keySet().iterator();
+        while (i.hasNext())
         {
-            l = new LinkedList();
-            _configurationPointsByTypeName.put(key, l);
+            String serviceId = (String) i.next();
+
+            tokens.put(serviceId, new ServiceToken(serviceId));
         }
 
-        l.add(point);
+        _serviceTokens = Collections.unmodifiableMap(tokens);
+
+        _frozen = true;
+    }
+
+    /**
+     * Replaces modules and extension points once the registry has been frozen; used by
+     * {@link RegistryUpdater} when modules are replaced in the running registry. New read-only
+     * lookup tables are built and swapped in, so lookups in progress complete against the
+     * previous tables, and lookups still take no locks. The tables are published before the cache
+     * of service points by interface is discarded, so an out-of-date entry can only be stored
+     * into the discarded cache.
+     * 
+     * @param modules
+     *            modules to add, or to replace the modules with the same ids
+     * @param servicePoints
+     *            {@link ServicePoint}s to add, or to replace the service points with the same
+     *            ids, keyed on service point id; a null value removes the service point
+     * @param configurationPoints
+     *            {@link ConfigurationPoint}s, keyed on configuration point id, as with
+     *            servicePoints
+     * @since 2.0
+     */
+    synchronized void replaceExtensionPoints(Collection modules, Map servicePoints,
+            Map configurationPoints)
+    {
+        checkShutdown();
+
+        Map moduleTable = new HashMap(_modules);
+
+        for (Iterator i = modules.iterator(); i.hasNext();)
+        {
+            Module module = (Module) i.next();
+
+            moduleTable.put(module.getModuleId(), module);
+        }
+
+        Map servicePointTable = replaceEntries(_servicePoints, servicePoints);
+        Map servicePointsByInterfaceClassName = new HashMap();
+        Map tokens = new HashMap(capacityFor(servicePointTable.size()));
+
+        for (Iterator i = servicePointTable.values().iterator(); i.hasNext();)
+        {
+            ServicePoint point = (ServicePoint) i.next();
+            String serviceId = point.getExtensionPointId();
+
+            addServicePointByInterface(servicePointsByInterfaceClassName, point);
+
+            ServiceToken token = (ServiceToken) _serviceTokens.get(serviceId);
+
+            tokens.put(serviceId, token == null ? new ServiceToken(serviceId) : token);
+        }
+
+        Map configurationPointTable = replaceEntries(_configurationPoints, configurationPoints);
+        Map configurationPointsByTypeName = new HashMap();
+
+        for (Iterator i = configurationPointTable.values().iterator(); i.hasNext();)
+            addConfigurationPointByType(configurationPointsByTypeName, (ConfigurationPoint) i
+                    .next());
+
+        _modules = freezeMap(moduleTable);
+        _servicePoints = freezeMap(servicePointTable);
+        _servicePointsByInterfaceClassName = freezeMap(servicePointsByInterfaceClassName);
+        _configurationPoints = freezeMap(configurationPointTable);
+        _configurationPointsByTypeName = freezeMap(configurationPointsByTypeName);
+        _serviceTokens = Collections.unmodifiableMap(tokens);
+
+        _servicePointsByInterface = new ConcurrentHashMap();
+    }
+
+    private static Map replaceEntries(Map table, Map replacements)
+    {
+        Map result = new HashMap(table);
+
+        for (Iterator i = replacements.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry entry = (Map.Entry) i.next();
+
+            if (entry.getValue() == null)
+                result.remove(entry.getKey());
+            else
+                result.put(entry.getKey(), entry.getValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the service points of the registry, for {@link RegistryUpdater}.
+     * 
+     * @since 2.0
+     */
+    Collection getServicePoints()
+    {
+        return _servicePoints.values();
+    }
+
+    /**
+     * Returns the configuration points of the registry, for {@link RegistryUpdater}.
+     * 
+     * @since 2.0
+     */
+    Collection getConfigurationPoints()
+    {
+        return _configurationPoints.values();
+    }
+
+    /**
+     * Returns the coordinator used by the infrastructure to shutdown proxies and the like.
+     * 
+     * @since 2.0
+     */
+    ShutdownCoordinator getShutdownCoordinator()
+    {
+        return _shutdownCoordinator;
+    }
+
+    private static Map freezeMap(Map map)
+    {
+        Map result = new HashMap(capacityFor(map.size()));
+
+        result.putAll(map);
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns an initial capacity for a HashMap that will hold the given number of entries
+     * without rehashing.
+     */
+    private static int capacityFor(int size)
+    {
+        return size * 4 / 3 + 1;
     }
 
     /**
@@ -232,39 +428,43 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
 
     public Object getService(Class serviceInterface, Module module)
     {
-        String key = serviceInterface.getName();
+        ServicePoint point = getInterfaceServicePoints(serviceInterface).getServicePoint(module);
+
+        return point.getService(serviceInterface);
+    }
+
+    /**
+     * Returns the service points for the interface. Once the registry is frozen, the result is
+     * cached by interface name. Interfaces without service points are not cached, so lookups of
+     * arbitrary classes can't grow the cache.
+     * 
+     * @since 2.0
+     */
+    private InterfaceServicePoints getInterfaceServicePoints(Class serviceInterface)
+    {
+        // Read once: the cache is discarded when extension points are replaced
 
-        List servicePoints = (List) _servicePointsByInterfaceClassName.get(key);
+        Map cache = _servicePointsByInterface;
 
-        if (servicePoints == null)
-            servicePoints = Collections.EMPTY_LIST;
+        String interfaceName = serviceInterface.getName();
 
-        ServicePoint point = null;
-        int count = 0;
+        InterfaceServicePoints result = (InterfaceServicePoints) cache.get(interfaceName);
 
-        Iterator i = servicePoints.iterator();
-        while (i.hasNext())
+        if (result == null)
         {
-            ServicePoint sp = (ServicePoint) i.next();
+            ServicePoint[] servicePoints = (ServicePoint[]) _servicePointsByInterfaceClassName
+                    .get(interfaceName);
 
-            if (!sp.visibleToModule(module))
-                continue;
+            result = new InterfaceServicePoints(interfaceName, servicePoints);
 
-            point = sp;
+            // Two threads may build the same (equivalent) instance at the same time; either one
+            // may be cached.
 
-            count++;
+            if (_frozen && servicePoints != null)
+                cache.put(interfaceName, result);
         }
 
-        if (count == 0)
-            throw new ApplicationRuntimeException(ImplMessages
-                    .noServicePointForInterface(serviceInterface));
-
-        if (count > 1)
-            throw new ApplicationRuntimeException(ImplMessages.multipleServicePointsForInterface(
-                    serviceInterface,
-                    servicePoints));
-
-        return point.getService(serviceInterface);
+        return result;
     }
 
     public ConfigurationPoint getConfigurationPoint(String configurationId, Module module)
@@ -298,18 +498,17 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
     {
         String key = configurationType.getName();
 
-        List configurationPoints = (List) _configurationPointsByTypeName.get(key);
-
-        if (configurationPoints == null)
-            configurationPoints = Collections.EMPTY_LIST;
+        ConfigurationPoint[] configurationPoints = (ConfigurationPoint[]) _configurationPointsByTypeName
+                .get(key);
 
         ConfigurationPoint point = null;
         int count = 0;
 
-        Iterator i = configurationPoints.iterator();
-        while (i.hasNext())
+        int length = configurationPoints == null ? 0 : configurationPoints.length;
+
+        for (int i = 0; i < length; i++)
         {
-            ConfigurationPoint cp = (ConfigurationPoint) i.next();
+            ConfigurationPoint cp = configurationPoints[i];
 
             if (!cp.visibleToModule(module))
                 continue;
@@ -326,7 +525,7 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
         if (count > 1)
             throw new ApplicationRuntimeException(ImplMessages.multipleConfigurationPointsForType(
                     configurationType,
-                    configurationPoints));
+                    Arrays.asList(configurationPoints)));
 
         return point.getConfiguration();
     }
@@ -374,6 +573,7 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
 
         _servicePoints = null;
         _servicePointsByInterfaceClassName = null;
+        _servicePointsByInterface = null;
         _configurationPointsByTypeName = null;
         _configurationPoints = null;
         _shutdownCoordinator = null;
@@ -393,8 +593,8 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
     }
 
     /**
-     * Technically, this should be a synchronized method, but the _shutdown variable hardly ever
-     * changes, and the consequences are pretty minimal. See HIVEMIND-104.
+     * Not synchronized; the _shutdown variable is volatile and hardly ever changes. See
+     * HIVEMIND-104.
      */
 
     private void checkShutdown()
@@ -409,6 +609,14 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
             throw new IllegalStateException(ImplMessages.registryAlreadyStarted());
     }
 
+    private void checkModifiable()
+    {
+        checkStarted();
+
+        if (_frozen)
+            throw new IllegalStateException(ImplMessages.registryFrozen());
+    }
+
     /**
      * Starts up the Registry after all service and configuration points have been defined. This
      * locks down the Registry so that no further extension points may be added. This method may
@@ -435,12 +643,14 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
         startup.run();
     }
 
-    public synchronized ServiceModelFactory getServiceModelFactory(String name)
+    public ServiceModelFactory getServiceModelFactory(String name)
     {
-        if (_serviceModelFactories == null)
-            readServiceModelFactories();
+        Map factories = _serviceModelFactories;
 
-        ServiceModelFactory result = (ServiceModelFactory) _serviceModelFactories.get(name);
+        if (factories == null)
+            factories = readServiceModelFactories();
+
+        ServiceModelFactory result = (ServiceModelFactory) factories.get(name);
 
         if (result == null)
             throw new ApplicationRuntimeException(ImplMessages.unknownServiceModel(name));
@@ -448,11 +658,14 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
         return result;
     }
 
-    private void readServiceModelFactories()
+    private synchronized Map readServiceModelFactories()
     {
+        if (_serviceModelFactories != null)
+            return _serviceModelFactories;
+
         Map sm = (Map) getConfiguration("hivemind.ServiceModels", null);
 
-        _serviceModelFactories = new HashMap();
+        Map factories = new HashMap();
 
         Iterator i = sm.values().iterator();
 
@@ -462,19 +675,31 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
 
             String name = smc.getName();
 
-            _serviceModelFactories.put(name, smc.getFactory());
+            factories.put(name, smc.getFactory());
         }
+
+        _serviceModelFactories = factories;
+
+        return factories;
     }
 
-    public synchronized void cleanupThread()
+    public void cleanupThread()
     {
-        if (_threadEventNotifier == null)
-            _threadEventNotifier = (ThreadEventNotifier) getService(
+        ThreadEventNotifier notifier = _threadEventNotifier;
+
+        // Two threads may both look up the notifier; they get the same (proxy) instance.
+
+        if (notifier == null)
+        {
+            notifier = (ThreadEventNotifier) getService(
                     "hivemind.ThreadEventNotifier",
                     ThreadEventNotifier.class,
                     null);
 
-        _threadEventNotifier.fireThreadCleanup();
+            _threadEventNotifier = notifier;
+        }
+
+        notifier.fireThreadCleanup();
     }
 
     public boolean containsConfiguration(String configurationId, Module module)
@@ -490,25 +715,7 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
     {
         checkShutdown();
 
-        String key = serviceInterface.getName();
-
-        List servicePoints = (List) _servicePointsByInterfaceClassName.get(key);
-
-        if (servicePoints == null)
-            return false;
-
-        int count = 0;
-
-        Iterator i = servicePoints.iterator();
-        while (i.hasNext())
-        {
-            ServicePoint point = (ServicePoint) i.next();
-
-            if (point.visibleToModule(module))
-                count++;
-        }
-
-        return count == 1;
+        return getInterfaceServicePoints(serviceInterface).containsServicePoint(module);
     }
 
     public boolean containsService(String serviceId, Class serviceInterface, Module module)
@@ -542,22 +749,20 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
         return sp.getService(Object.class);
     }
 
-    public synchronized ServiceToken getServiceTokenForService(String serviceId)
+    /**
+     * Returns the token created by {@link #freeze()}. Tokens are simple value objects (resolved
+     * by service id), so for a registry that has not been frozen, a new token is created.
+     */
+    public ServiceToken getServiceTokenForService(String serviceId)
     {
         Defense.notNull(serviceId, "serviceId");
 
         checkShutdown();
 
-        if (_serviceTokens == null)
-            _serviceTokens = new HashMap();
-
         ServiceToken result = (ServiceToken) _serviceTokens.get(serviceId);
 
         if (result == null)
-        {
             result = new ServiceToken(serviceId);
-            _serviceTokens.put(serviceId, result);
-        }
 
         return result;
     }
@@ -584,23 +789,10 @@ public final class RegistryInfrastructureImpl implements RegistryInfrastructure,
      */
     public List getServiceIds(Class serviceInterface)
     {
-        final List serviceIds = new LinkedList();
-        if( serviceInterface == null )
-        {
-            return serviceIds;
-        }
-        for (Iterator i = _servicePoints.values().iterator(); i.hasNext();)
-        {
-            final ServicePoint servicePoint = (ServicePoint) i.next();
+        if (serviceInterface == null)
+            return new ArrayList();
 
-            if (serviceInterface.getName().equals( servicePoint.getServiceInterfaceClassName() )
-                    && servicePoint.visibleToModule(null))
-            {
-                serviceIds.add(servicePoint.getExtensionPointId());
-            }
-
-        }
-        return serviceIds;
+        return getInterfaceServicePoints(serviceInterface).getPublicServiceIds();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,579 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.ErrorHandler;
+import org.apache.hivemind.ShutdownCoordinator;
+import org.apache.hivemind.definition.ConfigurationParserDefinition;
+import org.apache.hivemind.definition.ConfigurationPointDefinition;
+import org.apache.hivemind.definition.ContributionDefinition;
+import org.apache.hivemind.definition.DefinitionMessages;
+import org.apache.hivemind.definition.ExtensionDefinition;
+import org.apache.hivemind.definition.ImplementationDefinition;
+import org.apache.hivemind.definition.InterceptorDefinition;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.apache.hivemind.definition.RegistryDefinition;
+import org.apache.hivemind.definition.ServicePointDefinition;
+import org.apache.hivemind.definition.UnresolvedExtension;
+import org.apache.hivemind.definition.impl.ConfigurationPointDefinitionImpl;
+import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
+import org.apache.hivemind.definition.impl.RegistryDefinitionImpl;
+import org.apache.hivemind.definition.impl.ServicePointDefinitionImpl;
+import org.apache.hivemind.internal.ConfigurationPoint;
+import org.apache.hivemind.internal.ExtensionPoint;
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.internal.ServicePoint;
+
+/**
+ * Replaces modules in a running registry, rebuilding only the parts of the registry affected by
+ * the change. Used by {@link RegistryBuilder#updateRegistry(org.apache.hivemind.Registry, Collection)}.
+ * <p>
+ * The update is prepared by {@link #prepareModules(Collection)} without changing the registry or
+ * its {@link RegistryDefinition}, which remain in use while the update is prepared: a candidate
+ * definition is assembled from the new module definitions, and from copies of the extension
+ * points of other modules that change; the extensions resolved from the replaced modules are
+ * left out of the copies, and only the extensions of the new modules are resolved. The affected
+ * extension points are those defined by the replaced and the new modules, and those whose
+ * implementations, interceptors, contributions or parsers changed. Once the candidate has been
+ * checked, {@link #replaceModules(RegistryInfrastructureImpl)} completes the update.
+ * <p>
+ * Service and configuration points that depend on an affected extension point, directly or
+ * indirectly, are affected as well. Dependencies are those recorded by
+ * {@link ServiceDependencyTracker} as services and configurations were constructed; a service
+ * or configuration that has not been constructed yet will simply be constructed from the updated
+ * registry.
+ * <p>
+ * New service and configuration points are created for the affected extension points and swapped
+ * into the registry, along with their definitions. All other extension points are kept, along
+ * with their services, configurations and generated proxy classes. The replaced service points
+ * are then shutdown; services obtained from them before the update are not updated, so clients
+ * should obtain their services from the registry again.
+ * <p>
+ * Post processors and initialization listeners are not invoked again, and new eager loaded
+ * services are constructed when first used rather than immediately.
+ * 
+ * @since 2.0
+ */
+public class RegistryUpdater
+{
+    private static final Log LOG = LogFactory.getLog(RegistryUpdater.class);
+
+    private ErrorHandler _errorHandler;
+
+    private RegistryDefinitionImpl _definition;
+
+    /** The new module definitions, keyed on module id. */
+    private final Map _newModules = new HashMap();
+
+    /**
+     * The registry definition after the update: the new modules, copies of the modules whose
+     * extension points change, and the other modules.
+     */
+    private final RegistryDefinitionImpl _candidate = new RegistryDefinitionImpl();
+
+    /** The modules of the candidate that take the place of modules of the registry definition. */
+    private final List _changedModules = new ArrayList();
+
+    /** Ids of the affected service points. */
+    private final Set _serviceIds = new HashSet();
+
+    /** Ids of the affected configuration points. */
+    private final Set _configurationIds = new HashSet();
+
+    /**
+     * @param definition
+     *            the definition the registry was constructed from; it is updated along with the
+     *            registry
+     */
+    public RegistryUpdater(RegistryDefinitionImpl definition, ErrorHandler errorHandler)
+    {
+        _definition = definition;
+        _errorHandler = errorHandler;
+    }
+
+    /**
+     * Prepares the update of the registry, without changing the registry or its definition. Only
+     * one update of a registry should be in progress at any time.
+     * 
+     * @param modules
+     *            the new {@link ModuleDefinition}s, which replace the modules with the same ids
+     * @return the registry definition as it will be after the update, for checking before the
+     *         update is completed by {@link #replaceModules(RegistryInfrastructureImpl)}
+     */
+    public RegistryDefinition prepareModules(Collection modules)
+    {
+        Set replacedIds = new HashSet();
+
+        for (Iterator i = modules.iterator(); i.hasNext();)
+        {
+            ModuleDefinition module = (ModuleDefinition) i.next();
+            ModuleDefinition previous = _definition.getModule(module.getId());
+
+            _newModules.put(module.getId(), module);
+
+            if (previous != null)
+            {
+                replacedIds.add(module.getId());
+                addExtensionPointIds(previous);
+            }
+
+            addExtensionPointIds(module);
+            addUnresolvedExtensionPointIds(module);
+        }
+
+        for (Iterator i = _definition.getModules().iterator(); i.hasNext();)
+        {
+            ModuleDefinition module = (ModuleDefinition) i.next();
+            ModuleDefinition newModule = (ModuleDefinition) _newModules.get(module.getId());
+
+            if (newModule == null)
+                _candidate.addModule(copyChangedExtensionPoints(module, replacedIds));
+            else
+                carryOverExtensions(module, newModule, replacedIds);
+        }
+
+        for (Iterator i = modules.iterator(); i.hasNext();)
+        {
+            ModuleDefinition module = (ModuleDefinition) i.next();
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Replacing module " + module.getId());
+
+            _candidate.addModule(module);
+            _changedModules.add(module);
+        }
+
+        ExtensionResolver resolver = new ExtensionResolver(_candidate, _errorHandler);
+
+        for (Iterator i = modules.iterator(); i.hasNext();)
+            resolver.resolveExtensions((ModuleDefinition) i.next());
+
+        return _candidate;
+    }
+
+    /**
+     * Completes the update prepared by {@link #prepareModules(Collection)}: replaces the modules
+     * in the registry definition, and the affected extension points in the registry.
+     * 
+     * @param infrastructure
+     *            the infrastructure of the registry, constructed from the registry definition
+     * @return the sorted ids of the service and configuration points rebuilt or removed
+     */
+    public List replaceModules(RegistryInfrastructureImpl infrastructure)
+    {
+        addDependents(infrastructure);
+
+        replaceExtensionPoints(infrastructure);
+
+        List result = new ArrayList(_serviceIds);
+        result.addAll(_configurationIds);
+
+        Collections.sort(result);
+
+        return result;
+    }
+
+    /**
+     * Returns the module, or a copy of it whose changing extension points are replaced by copies:
+     * those extended by the replaced modules (whose extensions are removed from the copies), and
+     * those the new modules are about to extend.
+     */
+    private ModuleDefinition copyChangedExtensionPoints(ModuleDefinition module, Set replacedIds)
+    {
+        ModuleDefinitionImpl result = null;
+
+        for (Iterator i = module.getServicePoints().iterator(); i.hasNext();)
+        {
+            ServicePointDefinition point = (ServicePointDefinition) i.next();
+            String pointId = point.getQualifiedId();
+
+            if (!_serviceIds.contains(pointId)
+                    && !hasExtensions(point.getImplementations(), replacedIds)
+                    && !hasExtensions(point.getInterceptors(), replacedIds))
+                continue;
+
+            ServicePointDefinitionImpl copy = ((ServicePointDefinitionImpl) checkUpdatable(
+                    point,
+                    ServicePointDefinitionImpl.class)).copy();
+
+            for (Iterator j = replacedIds.iterator(); j.hasNext();)
+                copy.removeExtensions((String) j.next());
+
+            if (result == null)
+                result = copyModule(module);
+
+            result.replaceServicePoint(copy);
+            _serviceIds.add(pointId);
+        }
+
+        for (Iterator i = module.getConfigurationPoints().iterator(); i.hasNext();)
+        {
+            ConfigurationPointDefinition point = (ConfigurationPointDefinition) i.next();
+            String pointId = point.getQualifiedId();
+
+            if (!_configurationIds.contains(pointId)
+                    && !hasExtensions(point.getContributions(), replacedIds)
+                    && !hasExtensions(point.getParsers(), replacedIds))
+                continue;
+
+            ConfigurationPointDefinitionImpl copy = ((ConfigurationPointDefinitionImpl) checkUpdatable(
+                    point,
+                    ConfigurationPointDefinitionImpl.class)).copy();
+
+            for (Iterator j = replacedIds.iterator(); j.hasNext();)
+                copy.removeExtensions((String) j.next());
+
+            if (result == null)
+                result = copyModule(module);
+
+            result.replaceConfigurationPoint(copy);
+            _configurationIds.add(pointId);
+        }
+
+        if (result == null)
+            return module;
+
+        _changedModules.add(result);
+
+        return result;
+    }
+
+    private ModuleDefinitionImpl copyModule(ModuleDefinition module)
+    {
+        return ((ModuleDefinitionImpl) checkUpdatable(module, ModuleDefinitionImpl.class)).copy();
+    }
+
+    /**
+     * Only the default definition implementations can be copied.
+     */
+    private Object checkUpdatable(Object definition, Class implementationClass)
+    {
+        if (!implementationClass.isInstance(definition))
+            throw new ApplicationRuntimeException(ImplMessages.definitionNotUpdatable(definition));
+
+        return definition;
+    }
+
+    private static boolean hasExtensions(Collection extensions, Set moduleIds)
+    {
+        for (Iterator i = extensions.iterator(); i.hasNext();)
+        {
+            if (isExtensionOf((ExtensionDefinition) i.next(), moduleIds))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static boolean isExtensionOf(ExtensionDefinition extension, Set moduleIds)
+    {
+        return moduleIds.contains(extension.getModuleId());
+    }
+
+    private void addExtensionPointIds(ModuleDefinition module)
+    {
+        for (Iterator i = module.getServicePoints().iterator(); i.hasNext();)
+            _serviceIds.add(((ServicePointDefinition) i.next()).getQualifiedId());
+
+        for (Iterator i = module.getConfigurationPoints().iterator(); i.hasNext();)
+            _configurationIds.add(((ConfigurationPointDefinition) i.next()).getQualifiedId());
+    }
+
+    /**
+     * Notes the extension points that the module's unresolved extensions are about to be resolved
+     * into.
+     */
+    private void addUnresolvedExtensionPointIds(ModuleDefinition module)
+    {
+        addUnresolvedExtensionPointIds(module.getImplementations(), _serviceIds);
+        addUnresolvedExtensionPointIds(module.getInterceptors(), _serviceIds);
+        addUnresolvedExtensionPointIds(module.getContributions(), _configurationIds);
+        addUnresolvedExtensionPointIds(module.getConfigurationParsers(), _configurationIds);
+    }
+
+    private void addUnresolvedExtensionPointIds(Collection extensions, Set ids)
+    {
+        for (Iterator i = extensions.iterator(); i.hasNext();)
+            ids.add(((UnresolvedExtension) i.next()).getExtensionPointId());
+    }
+
+    /**
+     * Copies the extensions that other modules (not themselves being replaced) made to the
+     * extension points of the previous module to the same extension points of the new module.
+     */
+    private void carryOverExtensions(ModuleDefinition previous, ModuleDefinition module,
+            Set replacedIds)
+    {
+        for (Iterator i = previous.getServicePoints().iterator(); i.hasNext();)
+        {
+            ServicePointDefinition point = (ServicePointDefinition) i.next();
+            ServicePointDefinition newPoint = module.getServicePoint(point.getId());
+
+            for (Iterator j = point.getImplementations().iterator(); j.hasNext();)
+            {
+                ImplementationDefinition implementation = (ImplementationDefinition) j.next();
+
+                if (!isExtensionOf(implementation, replacedIds)
+                        && checkServicePoint(newPoint, module, point, implementation))
+                    newPoint.addImplementation(implementation);
+            }
+
+            for (Iterator j = point.getInterceptors().iterator(); j.hasNext();)
+            {
+                InterceptorDefinition interceptor = (InterceptorDefinition) j.next();
+
+                if (!isExtensionOf(interceptor, replacedIds)
+                        && checkServicePoint(newPoint, module, point, interceptor))
+                    newPoint.addInterceptor(interceptor);
+            }
+        }
+
+        for (Iterator i = previous.getConfigurationPoints().iterator(); i.hasNext();)
+        {
+            ConfigurationPointDefinition point = (ConfigurationPointDefinition) i.next();
+            ConfigurationPointDefinition newPoint = module.getConfigurationPoint(point.getId());
+
+            for (Iterator j = point.getContributions().iterator(); j.hasNext();)
+            {
+                ContributionDefinition contribution = (ContributionDefinition) j.next();
+
+                if (!isExtensionOf(contribution, replacedIds)
+                        && checkConfigurationPoint(newPoint, module, point, contribution))
+                    newPoint.addContribution(contribution);
+            }
+
+            for (Iterator j = point.getParsers().iterator(); j.hasNext();)
+            {
+                ConfigurationParserDefinition parser = (ConfigurationParserDefinition) j.next();
+
+                if (!isExtensionOf(parser, replacedIds)
+                        && checkConfigurationPoint(newPoint, module, point, parser))
+                    newPoint.addParser(parser);
+            }
+        }
+    }
+
+    private boolean checkServicePoint(ServicePointDefinition newPoint, ModuleDefinition module,
+            ServicePointDefinition point, ExtensionDefinition extension)
+    {
+        if (newPoint != null)
+            return true;
+
+        _errorHandler.error(LOG, DefinitionMessages.unknownServicePoint(module.getId(), point
+                .getId()), extension.getLocation(), null);
+
+        return false;
+    }
+
+    private boolean checkConfigurationPoint(ConfigurationPointDefinition newPoint,
+            ModuleDefinition module, ConfigurationPointDefinition point,
+            ExtensionDefinition extension)
+    {
+        if (newPoint != null)
+            return true;
+
+        _errorHandler.error(LOG, DefinitionMessages.unknownConfigurationPoint(module.getId(), point
+                .getId()), extension.getLocation(), null);
+
+        return false;
+    }
+
+    /**
+     * Adds the service and configuration points that depend, directly or indirectly, on the
+     * affected extension points.
+     */
+    private void addDependents(RegistryInfrastructureImpl infrastructure)
+    {
+        boolean added = true;
+
+        while (added)
+        {
+            added = addDependents(infrastructure.getServicePoints(), _serviceIds, "Service point");
+
+            if (addDependents(
+                    infrastructure.getConfigurationPoints(),
+                    _configurationIds,
+                    "Configuration point"))
+                added = true;
+        }
+    }
+
+    /**
+     * Adds the ids of the points that depend on the affected extension points to the ids of the
+     * affected points.
+     * 
+     * @return true if any ids were added
+     */
+    private boolean addDependents(Collection points, Set ids, String kind)
+    {
+        boolean result = false;
+
+        for (Iterator i = points.iterator(); i.hasNext();)
+        {
+            DependentExtensionPoint point = (DependentExtensionPoint) i.next();
+            String id = ((ExtensionPoint) point).getExtensionPointId();
+
+            if (ids.contains(id) || !dependsOnAffectedPoint(point))
+                continue;
+
+            if (LOG.isDebugEnabled())
+                LOG.debug(kind + " " + id + " depends on a replaced extension point");
+
+            ids.add(id);
+            result = true;
+        }
+
+        return result;
+    }
+
+    private boolean dependsOnAffectedPoint(DependentExtensionPoint point)
+    {
+        for (Iterator i = point.getServiceDependencies().iterator(); i.hasNext();)
+        {
+            ServicePoint dependency = (ServicePoint) i.next();
+
+            if (_serviceIds.contains(dependency.getExtensionPointId()))
+                return true;
+        }
+
+        for (Iterator i = point.getConfigurationDependencies().iterator(); i.hasNext();)
+        {
+            ConfigurationPoint dependency = (ConfigurationPoint) i.next();
+
+            if (_configurationIds.contains(dependency.getExtensionPointId()))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Creates the new extension points, swaps them (and their definitions) into the registry, and
+     * shuts down the replaced service points.
+     */
+    private void replaceExtensionPoints(RegistryInfrastructureImpl infrastructure)
+    {
+        Map newModules = new HashMap();
+
+        for (Iterator i = _newModules.values().iterator(); i.hasNext();)
+        {
+            ModuleDefinition module = (ModuleDefinition) i.next();
+
+            newModules.put(module.getId(), RegistryInfrastructureConstructor.newModule(
+                    module,
+                    infrastructure));
+        }
+
+        ShutdownCoordinator coordinator = infrastructure.getShutdownCoordinator();
+        Map servicePoints = new HashMap();
+
+        for (Iterator i = _serviceIds.iterator(); i.hasNext();)
+        {
+            String serviceId = (String) i.next();
+            ServicePointDefinition definition = _candidate.getServicePoint(serviceId);
+            ServicePointImpl point = null;
+
+            if (definition != null)
+            {
+                point = new ServicePointImpl(findModule(
+                        infrastructure,
+                        newModules,
+                        definition.getModuleId()), definition);
+
+                point.setShutdownCoordinator(coordinator);
+            }
+
+            servicePoints.put(serviceId, point);
+        }
+
+        Map configurationPoints = new HashMap();
+
+        for (Iterator i = _configurationIds.iterator(); i.hasNext();)
+        {
+            String configurationId = (String) i.next();
+            ConfigurationPointDefinition definition = _candidate
+                    .getConfigurationPoint(configurationId);
+            ConfigurationPointImpl point = null;
+
+            if (definition != null)
+            {
+                point = new ConfigurationPointImpl(findModule(
+                        infrastructure,
+                        newModules,
+                        definition.getModuleId()), definition);
+
+                point.setShutdownCoordinator(coordinator);
+            }
+
+            configurationPoints.put(configurationId, point);
+        }
+
+        List replaced = new ArrayList();
+
+        for (Iterator i = infrastructure.getServicePoints().iterator(); i.hasNext();)
+        {
+            ServicePoint point = (ServicePoint) i.next();
+
+            if (_serviceIds.contains(point.getExtensionPointId()))
+                replaced.add(point);
+        }
+
+        for (Iterator i = _changedModules.iterator(); i.hasNext();)
+            _definition.replaceModule((ModuleDefinition) i.next());
+
+        infrastructure.replaceExtensionPoints(newModules.values(), servicePoints, configurationPoints);
+
+        shutdown(infrastructure, replaced);
+    }
+
+    private Module findModule(RegistryInfrastructureImpl infrastructure, Map newModules,
+            String moduleId)
+    {
+        Module result = (Module) newModules.get(moduleId);
+
+        return result != null ? result : infrastructure.getModule(moduleId);
+    }
+
+    /**
+     * Shuts down the replaced service points, each one's service implementations first, then its
+     * proxies and the like, just as the registry itself is shutdown.
+     */
+    private void shutdown(RegistryInfrastructureImpl infrastructure, List replaced)
+    {
+        if (replaced.isEmpty())
+            return;
+
+        ShutdownCoordinator coordinatorService = (ShutdownCoordinator) infrastructure.getService(
+                "hivemind.ShutdownCoordinator",
+                ShutdownCoordinator.class,
+                null);
+
+        for (Iterator i = replaced.iterator(); i.hasNext();)
+            ((ServicePointImpl) i.next()).shutdown(coordinatorService);
+    }
+}
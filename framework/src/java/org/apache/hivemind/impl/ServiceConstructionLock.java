@@ -0,0 +1,211 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.internal.ServicePoint;
+
+/**
+ * Reentrant lock held while a service is first realized. Callers publish the realized object
+ * through a volatile field and only acquire the lock when that field is still null, so the lock is
+ * never touched once the service exists.
+ * <p>
+ * The lock keeps track of which thread is waiting for which lock. A thread that would block on a
+ * lock whose owner is (directly or indirectly) waiting on the current thread fails with an
+ * {@link ApplicationRuntimeException} instead of deadlocking. That happens when two threads
+ * realize mutually dependent services at the same time; within a single thread, the same cycle is
+ * reported as a recursive service build.
+ * <p>
+ * A thread may also do work on behalf of another thread that waits for it to finish (see
+ * {@link #beginWorkFor(Thread)}), as when the contributions to a configuration are processed in
+ * parallel. Such a thread is treated as part of the waiting thread: requiring a lock owned by the
+ * waiting thread is reported as a recursive service build.
+ *
+ * @since 2.0
+ */
+public final class ServiceConstructionLock
+{
+    /**
+     * Guards the owner and hold count of every construction lock, as well as {@link #WAITING}.
+     * Only held briefly, never while a service is being constructed.
+     */
+    private static final Object GUARD = new Object();
+
+    /**
+     * Maps each blocked Thread to the ServiceConstructionLock it is waiting for.
+     */
+    private static final Map WAITING = new HashMap();
+
+    /**
+     * Maps each Thread working on behalf of another thread to that thread.
+     */
+    private static final Map WORKING_FOR = new HashMap();
+
+    private final ServicePoint _servicePoint;
+
+    private Thread _owner;
+
+    private int _holdCount;
+
+    public ServiceConstructionLock(ServicePoint servicePoint)
+    {
+        _servicePoint = servicePoint;
+    }
+
+    /**
+     * Acquires the lock, blocking while another thread owns it.
+     *
+     * @throws ApplicationRuntimeException
+     *             if blocking would deadlock the current thread
+     */
+    public void lock()
+    {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+
+        synchronized (GUARD)
+        {
+            if (_owner == current)
+            {
+                _holdCount++;
+                return;
+            }
+
+            if (_owner != null)
+            {
+                if (isWorkingFor(current, _owner))
+                    throw new ApplicationRuntimeException(ImplMessages
+                            .recursiveServiceBuild(_servicePoint));
+
+                checkForDeadlock(current);
+
+                WAITING.put(current, this);
+
+                try
+                {
+                    while (_owner != null)
+                    {
+                        try
+                        {
+                            GUARD.wait();
+                        }
+                        catch (InterruptedException ex)
+                        {
+                            interrupted = true;
+                        }
+                    }
+                }
+                finally
+                {
+                    WAITING.remove(current);
+                }
+            }
+
+            _owner = current;
+            _holdCount = 1;
+        }
+
+        if (interrupted)
+            current.interrupt();
+    }
+
+    public void unlock()
+    {
+        synchronized (GUARD)
+        {
+            if (_owner != Thread.currentThread())
+                throw new IllegalStateException();
+
+            if (--_holdCount == 0)
+            {
+                _owner = null;
+                GUARD.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Marks the current thread as working on behalf of the given thread, which waits until the
+     * work is done. Must be followed by {@link #endWorkFor()}. The waiting thread must be another
+     * thread.
+     */
+    public static void beginWorkFor(Thread waiting)
+    {
+        synchronized (GUARD)
+        {
+            WORKING_FOR.put(Thread.currentThread(), waiting);
+        }
+    }
+
+    public static void endWorkFor()
+    {
+        synchronized (GUARD)
+        {
+            WORKING_FOR.remove(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Returns true if the thread works, directly or indirectly, on behalf of the other thread.
+     * Invoked with {@link #GUARD} held.
+     */
+    private static boolean isWorkingFor(Thread thread, Thread other)
+    {
+        Thread waiting = (Thread) WORKING_FOR.get(thread);
+
+        while (waiting != null)
+        {
+            if (waiting == other)
+                return true;
+
+            waiting = (Thread) WORKING_FOR.get(waiting);
+        }
+
+        return false;
+    }
+
+    /**
+     * Follows the chain of owners and the locks they are waiting for, starting with this lock. If
+     * the chain leads back to the current thread, waiting would never end. Invoked with
+     * {@link #GUARD} held.
+     */
+    private void checkForDeadlock(Thread current)
+    {
+        StringBuffer buffer = new StringBuffer(_servicePoint.getExtensionPointId());
+
+        ServiceConstructionLock lock = this;
+
+        while (true)
+        {
+            Thread owner = lock._owner;
+
+            if (owner == current || isWorkingFor(current, owner))
+                throw new ApplicationRuntimeException(ImplMessages.constructionDeadlock(
+                        _servicePoint,
+                        buffer.toString()));
+
+            lock = (ServiceConstructionLock) WAITING.get(owner);
+
+            if (lock == null)
+                return;
+
+            buffer.append(", ");
+            buffer.append(lock._servicePoint.getExtensionPointId());
+        }
+    }
+}
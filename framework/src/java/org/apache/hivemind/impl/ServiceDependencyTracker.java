@@ -0,0 +1,119 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hivemind.internal.ConfigurationPoint;
+import org.apache.hivemind.internal.ServicePoint;
+
+/**
+ * Records the services obtained while a service implementation or a configuration is being
+ * constructed; these are the services it depends on. Service models bracket the construction of
+ * each implementation, and configuration points the processing of their contributions, with
+ * {@link #beginConstruction(DependentExtensionPoint)} and {@link #endConstruction()}, and each
+ * service point reports itself through {@link #serviceRequested(ServicePoint)} whenever its
+ * service is obtained (and each configuration point through
+ * {@link #configurationRequested(ConfigurationPoint)}). The dependencies are used to order the
+ * shutdown of services, and to find the services and configurations that must be rebuilt when a
+ * module is replaced in a running registry.
+ * 
+ * @since 2.0
+ */
+public final class ServiceDependencyTracker
+{
+    /**
+     * Stack (a List) of the DependentExtensionPoints being constructed by the current thread.
+     */
+    private static final ThreadLocal CONSTRUCTING = new ThreadLocal();
+
+    /**
+     * Number of constructions in progress, in all threads. Lets
+     * {@link #serviceRequested(ServicePoint)} skip the thread local in the common case.
+     */
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    private ServiceDependencyTracker()
+    {
+    }
+
+    public static void beginConstruction(DependentExtensionPoint point)
+    {
+        List stack = (List) CONSTRUCTING.get();
+
+        if (stack == null)
+        {
+            stack = new ArrayList();
+            CONSTRUCTING.set(stack);
+        }
+
+        stack.add(point);
+
+        ACTIVE.incrementAndGet();
+    }
+
+    public static void endConstruction()
+    {
+        List stack = (List) CONSTRUCTING.get();
+
+        stack.remove(stack.size() - 1);
+
+        if (stack.isEmpty())
+            CONSTRUCTING.set(null);
+
+        ACTIVE.decrementAndGet();
+    }
+
+    /**
+     * Invoked when the service of the given service point is obtained. If the current thread is
+     * constructing a service or configuration, the service point is recorded as one of its
+     * dependencies.
+     */
+    public static void serviceRequested(ServicePoint servicePoint)
+    {
+        DependentExtensionPoint constructing = getConstructing();
+
+        if (constructing != null && constructing != servicePoint)
+            constructing.addServiceDependency(servicePoint);
+    }
+
+    /**
+     * Invoked when the configuration of the given configuration point is obtained. If the current
+     * thread is constructing a service or configuration, the configuration point is recorded as
+     * one of its dependencies.
+     */
+    public static void configurationRequested(ConfigurationPoint configurationPoint)
+    {
+        DependentExtensionPoint constructing = getConstructing();
+
+        if (constructing != null && constructing != configurationPoint)
+            constructing.addConfigurationDependency(configurationPoint);
+    }
+
+    private static DependentExtensionPoint getConstructing()
+    {
+        if (ACTIVE.get() == 0)
+            return null;
+
+        List stack = (List) CONSTRUCTING.get();
+
+        if (stack == null)
+            return null;
+
+        return (DependentExtensionPoint) stack.get(stack.size() - 1);
+    }
+}
@@ -14,9 +14,12 @@
 
 package org.apache.hivemind.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,9 +32,11 @@ import org.apache.hivemind.definition.ImplementationDefinition;
 import org.apache.hivemind.definition.InterceptorDefinition;
 import org.apache.hivemind.definition.ServicePointDefinition;
 import org.apache.hivemind.events.RegistryShutdownListener;
+import org.apache.hivemind.internal.ConfigurationPoint;
 import org.apache.hivemind.internal.Module;
 import org.apache.hivemind.internal.ServiceModel;
 import org.apache.hivemind.internal.ServiceModelFactory;
+import org.apache.hivemind.internal.ServicePoint;
 import org.apache.hivemind.order.Orderer;
 import org.apache.hivemind.service.InterfaceSynthesizer;
 import org.apache.hivemind.util.ToStringBuilder;
@@ -46,13 +51,20 @@ import org.apache.hivemind.util.ToStringBuilder;
 public final class ServicePointImpl extends AbstractExtensionPoint implements
         ConstructableServicePoint
 {
-    private Object _service;
+    /**
+     * The service (usually a proxy) returned by the service model. Volatile so that, once set, it
+     * can be read without acquiring {@link #_constructionLock}.
+     */
+    private volatile Object _service;
 
+    /** Guarded by {@link #_constructionLock}. */
     private boolean _building;
 
-    private Class _serviceInterface;
+    private final ServiceConstructionLock _constructionLock;
+
+    private volatile Class _serviceInterface;
 
-    private Class _declaredInterface;
+    private volatile Class _declaredInterface;
 
     private List _orderedInterceptorDefinitions;
 
@@ -61,10 +73,30 @@ public final class ServicePointImpl extends AbstractExtensionPoint implements
     private ShutdownCoordinator _shutdownCoordinator;
 
     private ServiceModel _serviceModelObject;
+
+    /** Guarded by itself. */
+    private final Set _serviceDependencies = new LinkedHashSet();
+
+    /** Guarded by itself. */
+    private final Set _configurationDependencies = new LinkedHashSet();
+
+    /**
+     * Listeners added to the infrastructure's shutdown coordinator by
+     * {@link #addRegistryShutdownListener(RegistryShutdownListener)}. Guarded by itself.
+     */
+    private final List _shutdownListeners = new ArrayList();
+
+    /**
+     * Listeners added to the hivemind.ShutdownCoordinator service for the service
+     * implementations. Guarded by itself.
+     */
+    private final List _serviceShutdownListeners = new ArrayList();
     
     public ServicePointImpl(Module module, ServicePointDefinition definition)
     {
         super(module, definition);
+
+        _constructionLock = new ServiceConstructionLock(this);
     }
 
     protected void extendDescription(ToStringBuilder builder)
@@ -80,7 +112,17 @@ public final class ServicePointImpl extends AbstractExtensionPoint implements
             builder.append("building", _building);
     }
 
-    public synchronized Class getServiceInterface()
+    public Class getServiceInterface()
+    {
+        Class result = _serviceInterface;
+
+        if (result == null)
+            result = initServiceInterface();
+
+        return result;
+    }
+
+    private synchronized Class initServiceInterface()
     {
         if (_serviceInterface == null)
             _serviceInterface = lookupServiceInterface();
@@ -88,7 +130,17 @@ public final class ServicePointImpl extends AbstractExtensionPoint implements
         return _serviceInterface;
     }
 
-    public synchronized Class getDeclaredInterface()
+    public Class getDeclaredInterface()
+    {
+        Class result = _declaredInterface;
+
+        if (result == null)
+            result = initDeclaredInterface();
+
+        return result;
+    }
+
+    private synchronized Class initDeclaredInterface()
     {
         if (_declaredInterface == null)
             _declaredInterface = lookupDeclaredInterface();
@@ -142,41 +194,56 @@ public final class ServicePointImpl extends AbstractExtensionPoint implements
 
     /**
      * Invoked by {@link #getService(Class)} to get a service implementation from the
-     * {@link ServiceModel}.
-     * <p>
-     * TODO: I'm concerned that this synchronized method could cause a deadlock. It would take a LOT
-     * (mutually dependent services in multiple threads being realized at the same time).
+     * {@link ServiceModel}. Once the service exists, this is a simple volatile read; the
+     * construction lock is only acquired while the service is first realized. The lock detects
+     * the case where two threads realize mutually dependent services at the same time, which
+     * would otherwise deadlock.
      */
-    private synchronized Object getService()
+    private Object getService()
     {
-        if (_service == null)
-        {
+        Object result = _service;
 
-            if (_building)
-                throw new ApplicationRuntimeException(ImplMessages.recursiveServiceBuild(this));
+        if (result != null)
+            return result;
 
-            _building = true;
+        _constructionLock.lock();
 
-            try
+        try
+        {
+            if (_service == null)
             {
+                if (_building)
+                    throw new ApplicationRuntimeException(ImplMessages.recursiveServiceBuild(this));
 
-                ServiceModelFactory factory = getModule().getServiceModelFactory(getServiceModel());
+                _building = true;
 
-                _serviceModelObject = factory.createServiceModelForService(this);
+                try
+                {
+                    ServiceModelFactory factory = getModule().getServiceModelFactory(
+                            getServiceModel());
 
-                _service = _serviceModelObject.getService();
-            }
-            finally
-            {
-                _building = false;
+                    _serviceModelObject = factory.createServiceModelForService(this);
+
+                    _service = _serviceModelObject.getService();
+                }
+                finally
+                {
+                    _building = false;
+                }
             }
-        }
 
-        return _service;
+            return _service;
+        }
+        finally
+        {
+            _constructionLock.unlock();
+        }
     }
 
     public Object getService(Class serviceInterface)
     {
+        ServiceDependencyTracker.serviceRequested(this);
+
         Object result = getService();
 
         if (!serviceInterface.isAssignableFrom(result.getClass()))
@@ -267,6 +334,113 @@ public final class ServicePointImpl extends AbstractExtensionPoint implements
     public void addRegistryShutdownListener(RegistryShutdownListener listener)
     {
         _shutdownCoordinator.addRegistryShutdownListener(listener);
+
+        synchronized (_shutdownListeners)
+        {
+            _shutdownListeners.add(listener);
+        }
+    }
+
+    public void addServiceShutdownListener(RegistryShutdownListener listener)
+    {
+        synchronized (_serviceShutdownListeners)
+        {
+            _serviceShutdownListeners.add(listener);
+        }
+    }
+
+    public void removeServiceShutdownListener(RegistryShutdownListener listener)
+    {
+        synchronized (_serviceShutdownListeners)
+        {
+            for (Iterator i = _serviceShutdownListeners.iterator(); i.hasNext();)
+            {
+                Object registered = i.next();
+
+                if (registered == listener
+                        || (registered instanceof ServiceShutdownListener && ((ServiceShutdownListener) registered)
+                                .getListener() == listener))
+                {
+                    i.remove();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Invoked when the service point is replaced while the registry is running. Removes the
+     * listeners added on behalf of this service point from the shutdown coordinators, and
+     * notifies them: first those of the service implementations, then those of the
+     * infrastructure, in the reverse of the order in which they were added.
+     * 
+     * @param coordinatorService
+     *            the hivemind.ShutdownCoordinator service
+     * @since 2.0
+     */
+    void shutdown(ShutdownCoordinator coordinatorService)
+    {
+        shutdownListeners(coordinatorService, _serviceShutdownListeners);
+        shutdownListeners(_shutdownCoordinator, _shutdownListeners);
+    }
+
+    private void shutdownListeners(ShutdownCoordinator coordinator, List listeners)
+    {
+        List copy;
+
+        synchronized (listeners)
+        {
+            copy = new ArrayList(listeners);
+            listeners.clear();
+        }
+
+        for (int i = copy.size() - 1; i >= 0; i--)
+        {
+            RegistryShutdownListener listener = (RegistryShutdownListener) copy.get(i);
+
+            coordinator.removeRegistryShutdownListener(listener);
+
+            try
+            {
+                listener.registryDidShutdown();
+            }
+            catch (RuntimeException ex)
+            {
+                getLog().error(ImplMessages.shutdownCoordinatorFailure(listener, ex), ex);
+            }
+        }
+    }
+
+    public void addServiceDependency(ServicePoint dependency)
+    {
+        synchronized (_serviceDependencies)
+        {
+            _serviceDependencies.add(dependency);
+        }
+    }
+
+    public List getServiceDependencies()
+    {
+        synchronized (_serviceDependencies)
+        {
+            return new ArrayList(_serviceDependencies);
+        }
+    }
+
+    public void addConfigurationDependency(ConfigurationPoint dependency)
+    {
+        synchronized (_configurationDependencies)
+        {
+            _configurationDependencies.add(dependency);
+        }
+    }
+
+    public List getConfigurationDependencies()
+    {
+        synchronized (_configurationDependencies)
+        {
+            return new ArrayList(_configurationDependencies);
+        }
     }
 
     /**
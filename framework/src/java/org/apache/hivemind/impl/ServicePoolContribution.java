@@ -0,0 +1,146 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+/**
+ * Pool settings for a single service using the pooled service model, as contributed to the
+ * <code>hivemind.ServicePools</code> configuration point. Services without a contribution use
+ * the defaults: an unbounded pool whose idle instances are never evicted.
+ *
+ * @since 2.0
+ */
+public class ServicePoolContribution
+{
+    private String _serviceId;
+
+    private int _minIdle;
+
+    private int _maxActive;
+
+    private long _idleTimeout;
+
+    private boolean _prewarm;
+
+    private boolean _block = true;
+
+    private long _maxWait;
+
+    public ServicePoolContribution()
+    {
+    }
+
+    public ServicePoolContribution(String serviceId, int minIdle, int maxActive, long idleTimeout)
+    {
+        _serviceId = serviceId;
+        _minIdle = minIdle;
+        _maxActive = maxActive;
+        _idleTimeout = idleTimeout;
+    }
+
+    /**
+     * The fully qualified id of the pooled service.
+     */
+    public String getServiceId()
+    {
+        return _serviceId;
+    }
+
+    public void setServiceId(String serviceId)
+    {
+        _serviceId = serviceId;
+    }
+
+    /**
+     * The number of idle instances kept in the pool regardless of the idle timeout; also the number
+     * of instances created when the pool is pre-warmed.
+     */
+    public int getMinIdle()
+    {
+        return _minIdle;
+    }
+
+    public void setMinIdle(int minIdle)
+    {
+        _minIdle = minIdle;
+    }
+
+    /**
+     * The maximum number of instances in use at the same time, or 0 for no limit.
+     */
+    public int getMaxActive()
+    {
+        return _maxActive;
+    }
+
+    public void setMaxActive(int maxActive)
+    {
+        _maxActive = maxActive;
+    }
+
+    /**
+     * Time, in milliseconds, after which an idle instance is discarded, or 0 to keep idle
+     * instances forever.
+     */
+    public long getIdleTimeout()
+    {
+        return _idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout)
+    {
+        _idleTimeout = idleTimeout;
+    }
+
+    /**
+     * If true, the pool is filled with {@link #getMinIdle()} instances as the registry starts up.
+     */
+    public boolean isPrewarm()
+    {
+        return _prewarm;
+    }
+
+    public void setPrewarm(boolean prewarm)
+    {
+        _prewarm = prewarm;
+    }
+
+    /**
+     * If true (the default), a thread that needs an instance while {@link #getMaxActive()}
+     * instances are in use waits for one to be returned. If false, it fails immediately.
+     */
+    public boolean isBlock()
+    {
+        return _block;
+    }
+
+    public void setBlock(boolean block)
+    {
+        _block = block;
+    }
+
+    /**
+     * Maximum time, in milliseconds, to wait for an instance when the pool is exhausted, or 0 to
+     * wait indefinitely. Only used when {@link #isBlock() blocking}.
+     */
+    public long getMaxWait()
+    {
+        return _maxWait;
+    }
+
+    public void setMaxWait(long maxWait)
+    {
+        _maxWait = maxWait;
+    }
+}
@@ -0,0 +1,62 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+import org.apache.hivemind.events.RegistryShutdownListener;
+
+/**
+ * Wraps a service implementation that is a {@link RegistryShutdownListener}, identifying the
+ * service point of the implementation. Service models register these with the
+ * <code>hivemind.ShutdownCoordinator</code> service, so that services are shutdown before the
+ * services they depend on.
+ * 
+ * @since 2.0
+ */
+public final class ServiceShutdownListener implements RegistryShutdownListener
+{
+    private final RegistryShutdownListener _listener;
+
+    private final ConstructableServicePoint _servicePoint;
+
+    public ServiceShutdownListener(RegistryShutdownListener listener,
+            ConstructableServicePoint servicePoint)
+    {
+        _listener = listener;
+        _servicePoint = servicePoint;
+    }
+
+    /**
+     * The wrapped service implementation.
+     */
+    public RegistryShutdownListener getListener()
+    {
+        return _listener;
+    }
+
+    public ConstructableServicePoint getServicePoint()
+    {
+        return _servicePoint;
+    }
+
+    public void registryDidShutdown()
+    {
+        _listener.registryDidShutdown();
+    }
+
+    public String toString()
+    {
+        return _listener.toString();
+    }
+}
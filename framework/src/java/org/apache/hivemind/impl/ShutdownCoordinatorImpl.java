@@ -14,28 +14,78 @@
 
 package org.apache.hivemind.impl;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hivemind.ShutdownCoordinator;
 import org.apache.hivemind.events.RegistryShutdownListener;
+import org.apache.hivemind.internal.ServicePoint;
+import org.apache.hivemind.order.TaskGraph;
 import org.apache.hivemind.util.EventListenerList;
 
 /**
  * Manages a list of objects that implement the
  * {@link org.apache.hivemind.events.RegistryShutdownListener} interface.
+ * <p>
+ * Service implementations (registered as {@link ServiceShutdownListener}s) are shutdown before
+ * the services they depend on, that is, the services they obtained while being constructed. Other
+ * listeners are notified in the order in which they were added. By default, listeners are notified
+ * one at a time; when more threads are configured, listeners that do not depend on each other are
+ * notified concurrently. The time taken by each listener may be bounded, as may the time taken by
+ * the entire shutdown; a listener that exceeds its time limit is abandoned and the shutdown
+ * continues without it. The time taken by each listener is logged at debug level.
  * 
  * @author Howard Lewis Ship
  */
 public final class ShutdownCoordinatorImpl implements ShutdownCoordinator
 {
+    /**
+     * System property giving the number of threads used to notify listeners; defaults to 1.
+     * 
+     * @since 2.0
+     */
+    public static final String SHUTDOWN_THREADS_PROPERTY = "org.apache.hivemind.shutdown-threads";
+
+    /**
+     * System property giving the time, in milliseconds, allowed for each listener; defaults to 0
+     * (no limit).
+     * 
+     * @since 2.0
+     */
+    public static final String LISTENER_TIMEOUT_PROPERTY = "org.apache.hivemind.shutdown-listener-timeout";
+
+    /**
+     * System property giving the time, in milliseconds, allowed for notifying all listeners;
+     * defaults to 0 (no limit).
+     * 
+     * @since 2.0
+     */
+    public static final String SHUTDOWN_TIMEOUT_PROPERTY = "org.apache.hivemind.shutdown-timeout";
+
+    private static final Integer VISITING = new Integer(1);
+
+    private static final Integer VISITED = new Integer(2);
+
     private final Log _log;
 
     private Set alreadyShutdown;
 
+    private int _threads = Integer.getInteger(SHUTDOWN_THREADS_PROPERTY, 1).intValue();
+
+    private long _listenerTimeout = Long.getLong(LISTENER_TIMEOUT_PROPERTY, 0).longValue();
+
+    private long _timeout = Long.getLong(SHUTDOWN_TIMEOUT_PROPERTY, 0).longValue();
+
+    private TaskGraph _graph;
+
     public ShutdownCoordinatorImpl()
     {
         _log = LogFactory.getLog(ShutdownCoordinator.class);
@@ -55,8 +105,66 @@ public final class ShutdownCoordinatorImpl implements ShutdownCoordinator
     public synchronized void removeRegistryShutdownListener(
             RegistryShutdownListener s)
     {
-        if (_listenerList != null)
-            _listenerList.removeListener(s);
+        if (_listenerList == null)
+            return;
+
+        // The listener may have been added wrapped as a ServiceShutdownListener. The iterator is
+        // exhausted, so that the list does not copy itself needlessly.
+
+        Object registered = s;
+
+        for (Iterator i = _listenerList.getListeners(); i.hasNext();)
+        {
+            Object listener = i.next();
+
+            if (listener instanceof ServiceShutdownListener
+                    && ((ServiceShutdownListener) listener).getListener() == s)
+                registered = listener;
+        }
+
+        _listenerList.removeListener(registered);
+    }
+
+    /**
+     * Sets the number of threads used to notify listeners.
+     * 
+     * @since 2.0
+     */
+    public void setThreads(int threads)
+    {
+        _threads = threads;
+    }
+
+    /**
+     * Sets the time, in milliseconds, allowed for each listener, or 0 for no limit.
+     * 
+     * @since 2.0
+     */
+    public void setListenerTimeout(long listenerTimeout)
+    {
+        _listenerTimeout = listenerTimeout;
+    }
+
+    /**
+     * Sets the time, in milliseconds, allowed for notifying all listeners, or 0 for no limit.
+     * 
+     * @since 2.0
+     */
+    public void setTimeout(long timeout)
+    {
+        _timeout = timeout;
+    }
+
+    /**
+     * Returns the time, in milliseconds, taken by a listener during shutdown, or -1 if it was not
+     * notified. Service implementations are identified by service id, other listeners by their
+     * string representation.
+     * 
+     * @since 2.0
+     */
+    public long getElapsedTime(String name)
+    {
+        return _graph == null ? -1 : _graph.getElapsedTime(name);
     }
 
     public void shutdown()
@@ -68,38 +176,227 @@ public final class ShutdownCoordinatorImpl implements ShutdownCoordinator
 
         _listenerList = null;
 
+        if (alreadyShutdown == null)
+            alreadyShutdown = new HashSet();
+
+        List listeners = new ArrayList();
+
         while (i.hasNext())
         {
             RegistryShutdownListener s = (RegistryShutdownListener) i.next();
 
-            shutdown(s);
+            Object listener = s instanceof ServiceShutdownListener ? ((ServiceShutdownListener) s)
+                    .getListener() : s;
+
+            if (alreadyShutdown.add(new Long(System.identityHashCode(listener))))
+                listeners.add(s);
         }
 
-        _listenerList = null;
-    }
+        TaskGraph graph = new TaskGraph(_log, new DefaultErrorHandler(), "shutdown listener");
 
-    private void shutdown(RegistryShutdownListener s)
-    {
-        if (alreadyShutdown == null)
+        graph.setRunAfterFailure(true);
+        graph.setTaskTimeout(_listenerTimeout);
+        graph.setTimeout(_timeout);
+
+        addListeners(graph, listeners);
+
+        _graph = graph;
+
+        try
         {
-            alreadyShutdown = new HashSet();
+            graph.run(_threads);
         }
-        final Long id = new Long(System.identityHashCode(s));
-        if (!alreadyShutdown.contains(id))
+        catch (RuntimeException ex)
         {
-            try
+            // Only occurs when a listener times out or throws an Error; other failures are
+            // caught and logged by shutdown(RegistryShutdownListener).
+
+            _log.error(ex.getMessage(), ex);
+        }
+    }
+
+    private void addListeners(TaskGraph graph, List listeners)
+    {
+        int count = listeners.size();
+        String[] names = new String[count];
+        Set usedNames = new HashSet();
+
+        // Maps service id to a List of task names (a pooled service may have several
+        // implementations)
+
+        Map tasksByService = new HashMap();
+
+        for (int i = 0; i < count; i++)
+        {
+            Object listener = listeners.get(i);
+            String serviceId = null;
+            String name;
+
+            if (listener instanceof ServiceShutdownListener)
             {
-                s.registryDidShutdown();
+                serviceId = ((ServiceShutdownListener) listener).getServicePoint()
+                        .getExtensionPointId();
+                name = serviceId;
             }
-            catch (RuntimeException ex)
+            else
+                name = String.valueOf(listener);
+
+            if (!usedNames.add(name))
+                name = name + " #" + i;
+
+            names[i] = name;
+
+            if (serviceId != null)
             {
-                _log.error(ImplMessages.shutdownCoordinatorFailure(s, ex), ex);
+                List tasks = (List) tasksByService.get(serviceId);
+
+                if (tasks == null)
+                {
+                    tasks = new ArrayList();
+                    tasksByService.put(serviceId, tasks);
+                }
+
+                tasks.add(name);
             }
-            finally
+        }
+
+        Map dependencies = findDependencies(listeners, tasksByService);
+
+        for (int i = 0; i < count; i++)
+        {
+            final RegistryShutdownListener s = (RegistryShutdownListener) listeners.get(i);
+            String postreqs = null;
+
+            if (s instanceof ServiceShutdownListener)
+                postreqs = toTaskNames((Set) dependencies.get(((ServiceShutdownListener) s)
+                        .getServicePoint().getExtensionPointId()), tasksByService);
+
+            graph.add(new Runnable()
             {
-                alreadyShutdown.add(id);
+                public void run()
+                {
+                    shutdown(s);
+                }
+            }, names[i], null, postreqs);
+        }
+    }
+
+    /**
+     * Maps the id of each service with a listener to the ids of the services (also with listeners)
+     * it depends on, directly or through services without listeners. Dependency cycles are broken,
+     * as a cycle is no reason to prefer one order over another.
+     */
+    private Map findDependencies(List listeners, Map tasksByService)
+    {
+        Map result = new HashMap();
+        List serviceIds = new ArrayList();
+
+        for (Iterator i = listeners.iterator(); i.hasNext();)
+        {
+            Object listener = i.next();
+
+            if (!(listener instanceof ServiceShutdownListener))
+                continue;
+
+            ConstructableServicePoint point = ((ServiceShutdownListener) listener)
+                    .getServicePoint();
+            String serviceId = point.getExtensionPointId();
+
+            if (result.containsKey(serviceId))
+                continue;
+
+            serviceIds.add(serviceId);
+            result.put(serviceId, findDependencies(point, tasksByService));
+        }
+
+        Map state = new HashMap();
+
+        for (Iterator i = serviceIds.iterator(); i.hasNext();)
+            breakCycles((String) i.next(), result, state);
+
+        return result;
+    }
+
+    private Set findDependencies(ConstructableServicePoint point, Map tasksByService)
+    {
+        Set result = new LinkedHashSet();
+        Set visited = new HashSet();
+        List queue = new ArrayList(point.getServiceDependencies());
+
+        visited.add(point.getExtensionPointId());
+
+        while (!queue.isEmpty())
+        {
+            ServicePoint dependency = (ServicePoint) queue.remove(queue.size() - 1);
+            String serviceId = dependency.getExtensionPointId();
+
+            if (!visited.add(serviceId))
+                continue;
+
+            if (tasksByService.containsKey(serviceId))
+                result.add(serviceId);
+            else if (dependency instanceof ConstructableServicePoint)
+                queue.addAll(((ConstructableServicePoint) dependency).getServiceDependencies());
+        }
+
+        return result;
+    }
+
+    private void breakCycles(String serviceId, Map dependencies, Map state)
+    {
+        if (state.containsKey(serviceId))
+            return;
+
+        state.put(serviceId, VISITING);
+
+        Set serviceDependencies = (Set) dependencies.get(serviceId);
+
+        for (Iterator i = new ArrayList(serviceDependencies).iterator(); i.hasNext();)
+        {
+            String dependency = (String) i.next();
+
+            if (state.get(dependency) == VISITING)
+                serviceDependencies.remove(dependency);
+            else
+                breakCycles(dependency, dependencies, state);
+        }
+
+        state.put(serviceId, VISITED);
+    }
+
+    private String toTaskNames(Set serviceIds, Map tasksByService)
+    {
+        if (serviceIds == null || serviceIds.isEmpty())
+            return null;
+
+        StringBuffer buffer = new StringBuffer();
+
+        for (Iterator i = serviceIds.iterator(); i.hasNext();)
+        {
+            List tasks = (List) tasksByService.get(i.next());
+
+            for (Iterator j = tasks.iterator(); j.hasNext();)
+            {
+                if (buffer.length() > 0)
+                    buffer.append(',');
+
+                buffer.append(j.next());
             }
         }
+
+        return buffer.toString();
+    }
+
+    private void shutdown(RegistryShutdownListener s)
+    {
+        try
+        {
+            s.registryDidShutdown();
+        }
+        catch (RuntimeException ex)
+        {
+            _log.error(ImplMessages.shutdownCoordinatorFailure(s, ex), ex);
+        }
     }
 
 }
@@ -0,0 +1,98 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+import org.apache.hivemind.Orderable;
+
+/**
+ * Contribution to the <code>hivemind.Startup</code> configuration point that names a startup
+ * object and orders it relative to other named startup objects. The name may be omitted when no
+ * other startup object refers to it. Startup objects may also be contributed directly, as plain
+ * Runnable objects, in which case they are not ordered.
+ * 
+ * @since 2.0
+ */
+public class StartupContribution implements Orderable
+{
+    private String _name;
+
+    private Runnable _runnable;
+
+    private String _precedingNames;
+
+    private String _followingNames;
+
+    public StartupContribution()
+    {
+    }
+
+    public StartupContribution(String name, Runnable runnable, String precedingNames,
+            String followingNames)
+    {
+        _name = name;
+        _runnable = runnable;
+        _precedingNames = precedingNames;
+        _followingNames = followingNames;
+    }
+
+    public String getName()
+    {
+        return _name;
+    }
+
+    public void setName(String name)
+    {
+        _name = name;
+    }
+
+    /**
+     * The startup object to execute.
+     */
+    public Runnable getRunnable()
+    {
+        return _runnable;
+    }
+
+    public void setRunnable(Runnable runnable)
+    {
+        _runnable = runnable;
+    }
+
+    /**
+     * Names of startup objects that must complete before this one is started.
+     */
+    public String getPrecedingNames()
+    {
+        return _precedingNames;
+    }
+
+    public void setPrecedingNames(String precedingNames)
+    {
+        _precedingNames = precedingNames;
+    }
+
+    /**
+     * Names of startup objects that may only be started once this one has completed.
+     */
+    public String getFollowingNames()
+    {
+        return _followingNames;
+    }
+
+    public void setFollowingNames(String followingNames)
+    {
+        _followingNames = followingNames;
+    }
+}
@@ -14,36 +14,117 @@
 
 package org.apache.hivemind.impl;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.ErrorHandler;
+import org.apache.hivemind.order.TaskGraph;
 
 /**
  * Startup service for the HiveMind Registry. This service is invoked as the
  * {@link org.apache.hivemind.internal.RegistryInfrastructure#startup() last step} of the
  * {@link org.apache.hivemind.impl.RegistryBuilder#constructRegistry(java.util.Locale) registry construction}.
  * All contributions (java.lang.Runnable objects) to the <code>hivemind.Startup</code>
- * configuration point are executed serially in an arbitrary order. Note that the contributions are
- * <em>not</em> executed in separate Threads.
+ * configuration point are executed. Contributions may be wrapped in a {@link StartupContribution}
+ * to name them and order them relative to each other; unordered contributions are executed in the
+ * order in which they were contributed.
+ * <p>
+ * By default, the contributions are executed serially on the calling thread. When more threads are
+ * configured (see {@link #STARTUP_THREADS_PROPERTY}), contributions that are not ordered relative to
+ * each other are executed concurrently. The time taken by each contribution is logged at debug
+ * level.
  * <p>
  * HiveMind contributes the <code>hivemind.EagerLoad</code> (see
- * {@link org.apache.hivemind.service.impl.EagerLoader}) service to the
- * <code>hivemind.Startup</code> configuration.
+ * {@link org.apache.hivemind.service.impl.EagerLoader}) and
+ * <code>hivemind.ServicePoolPrewarm</code> services to the <code>hivemind.Startup</code>
+ * configuration, named after the services.
  * 
  * @author Howard Lewis Ship
  */
 public class StartupImpl extends BaseLocatable implements Runnable
 {
+    /**
+     * System property giving the number of threads used to execute startup objects, and to eagerly
+     * load services. The default, 1, executes everything on the thread that starts the Registry.
+     * 
+     * @since 2.0
+     */
+    public static final String STARTUP_THREADS_PROPERTY = "org.apache.hivemind.startup-threads";
+
+    private static final Log LOG = LogFactory.getLog(StartupImpl.class);
+
     private List _runnables;
 
+    private ErrorHandler _errorHandler = new DefaultErrorHandler();
+
+    private int _threads = getStartupThreads();
+
+    private TaskGraph _graph;
+
+    /**
+     * Returns the number of threads configured with the {@link #STARTUP_THREADS_PROPERTY} system
+     * property.
+     * 
+     * @since 2.0
+     */
+    public static int getStartupThreads()
+    {
+        return Integer.getInteger(STARTUP_THREADS_PROPERTY, 1).intValue();
+    }
+
     public void run()
     {
-        Iterator i = _runnables.iterator();
-        while (i.hasNext())
+        _graph = new TaskGraph(LOG, _errorHandler, "startup object");
+
+        Set names = new HashSet();
+
+        for (Iterator i = _runnables.iterator(); i.hasNext();)
+        {
+            Object r = i.next();
+
+            if (r instanceof StartupContribution && ((StartupContribution) r).getName() != null)
+                names.add(((StartupContribution) r).getName());
+        }
+
+        for (int i = 0; i < _runnables.size(); i++)
         {
-            Runnable r = (Runnable) i.next();
+            Object r = _runnables.get(i);
+            Runnable runnable = null;
+            String name = null;
+            String precedingNames = null;
+            String followingNames = null;
+
+            if (r instanceof StartupContribution)
+            {
+                StartupContribution c = (StartupContribution) r;
+
+                runnable = c.getRunnable();
+                name = c.getName();
+                precedingNames = c.getPrecedingNames();
+                followingNames = c.getFollowingNames();
+            }
+            else
+                runnable = (Runnable) r;
+
+            // Unnamed startup objects are named after the objects themselves, for the benefit
+            // of the timing messages.
 
-            r.run();
+            if (name == null)
+            {
+                name = String.valueOf(runnable);
+
+                if (!names.add(name))
+                    name = name + " #" + i;
+            }
+
+            _graph.add(runnable, name, precedingNames, followingNames);
         }
+
+        _graph.run(_threads);
     }
 
     public void setRunnables(List list)
@@ -51,4 +132,30 @@ public class StartupImpl extends BaseLocatable implements Runnable
         _runnables = list;
     }
 
+    /** @since 2.0 */
+    public void setErrorHandler(ErrorHandler errorHandler)
+    {
+        _errorHandler = errorHandler;
+    }
+
+    /**
+     * Sets the number of threads used to execute the startup objects.
+     * 
+     * @since 2.0
+     */
+    public void setThreads(int threads)
+    {
+        _threads = threads;
+    }
+
+    /**
+     * Returns the time, in milliseconds, taken by the named startup object during the most recent
+     * execution, or -1 if it was not executed.
+     * 
+     * @since 2.0
+     */
+    public long getElapsedTime(String name)
+    {
+        return _graph == null ? -1 : _graph.getElapsedTime(name);
+    }
 }
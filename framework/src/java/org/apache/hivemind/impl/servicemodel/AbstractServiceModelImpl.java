@@ -29,6 +29,8 @@ import org.apache.hivemind.events.RegistryShutdownListener;
 import org.apache.hivemind.impl.ConstructableServicePoint;
 import org.apache.hivemind.impl.InterceptorStackImpl;
 import org.apache.hivemind.impl.ProxyBuilder;
+import org.apache.hivemind.impl.ServiceDependencyTracker;
+import org.apache.hivemind.impl.ServiceShutdownListener;
 import org.apache.hivemind.internal.ImplementationConstructionContextImpl;
 import org.apache.hivemind.internal.Module;
 import org.apache.hivemind.internal.RegistryInfrastructure;
@@ -81,6 +83,11 @@ public abstract class AbstractServiceModelImpl implements ServiceModel
         // Then that's the order for interceptors list: A B C
         // To get that runtime execution order, we wrap C around the core,
         // wrap B around C, and wrap A around B.
+        // When A, B and C can all be generated as fragments, they are instead fused
+        // into a single interceptor, whose methods run A's, B's and C's code in that order.
+
+        if (count > 1 && stack.fuse(interceptors))
+            return stack.peek();
 
         for (int i = count - 1; i >= 0; i--)
         {
@@ -117,7 +124,20 @@ public abstract class AbstractServiceModelImpl implements ServiceModel
         Module definingModule = getRegistry().getModule(definingModuleId);
         ImplementationConstructionContext context = new ImplementationConstructionContextImpl(definingModule,
                 _servicePoint);
-        Object result = constructor.constructCoreServiceImplementation(context);
+        // Services obtained while constructing the implementation are its dependencies
+
+        Object result;
+
+        ServiceDependencyTracker.beginConstruction(_servicePoint);
+
+        try
+        {
+            result = constructor.constructCoreServiceImplementation(context);
+        }
+        finally
+        {
+            ServiceDependencyTracker.endConstruction();
+        }
 
         if (result == null)
             throw new ApplicationRuntimeException(ServiceModelMessages
@@ -261,8 +281,35 @@ public abstract class AbstractServiceModelImpl implements ServiceModel
             ShutdownCoordinator coordinator = ((ShutdownCoordinator) getServicePoint().getModule()
                     .getService(ShutdownCoordinator.class));
 
-            RegistryShutdownListener asListener = (RegistryShutdownListener) service;
+            // Identify the service, so that the coordinator can order its shutdown relative to
+            // the services it depends on
+
+            RegistryShutdownListener asListener = new ServiceShutdownListener(
+                    (RegistryShutdownListener) service, _servicePoint);
             coordinator.addRegistryShutdownListener(asListener);
+
+            _servicePoint.addServiceShutdownListener(asListener);
+        }
+    }
+
+    /**
+     * Reverses {@link #registerWithShutdownCoordinator(Object)}, for service implementations that
+     * are discarded before the registry is shutdown.
+     * 
+     * @param service
+     *            the service implementation
+     * @since 2.0
+     */
+    protected void unregisterWithShutdownCoordinator(Object service)
+    {
+        if (service instanceof RegistryShutdownListener)
+        {
+            ShutdownCoordinator coordinator = ((ShutdownCoordinator) getServicePoint().getModule()
+                    .getService(ShutdownCoordinator.class));
+
+            coordinator.removeRegistryShutdownListener((RegistryShutdownListener) service);
+
+            _servicePoint.removeServiceShutdownListener((RegistryShutdownListener) service);
         }
     }
-}
\ No newline at end of file
+}
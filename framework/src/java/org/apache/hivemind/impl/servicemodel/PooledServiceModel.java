@@ -14,8 +14,7 @@
 
 package org.apache.hivemind.impl.servicemodel;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
 
 import org.apache.hivemind.ApplicationRuntimeException;
 import org.apache.hivemind.HiveMind;
@@ -23,14 +22,18 @@ import org.apache.hivemind.PoolManageable;
 import org.apache.hivemind.events.RegistryShutdownListener;
 import org.apache.hivemind.impl.ConstructableServicePoint;
 import org.apache.hivemind.impl.ProxyUtils;
+import org.apache.hivemind.impl.ServicePoolContribution;
 import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.service.ServicePoolMonitor;
 import org.apache.hivemind.service.ThreadCleanupListener;
 import org.apache.hivemind.service.ThreadEventNotifier;
 
 /**
  * Similar to the
  * {@link org.apache.hivemind.impl.servicemodel.ThreadedServiceModel threaded service model},
- * except that, once created, services are pooled for later use.
+ * except that, once created, services are pooled for later use. The pool may be configured, per
+ * service, through the <code>hivemind.ServicePools</code> configuration point; see
+ * {@link ServicePool}.
  * 
  * @author Howard Lewis Ship
  */
@@ -47,7 +50,7 @@ public class PooledServiceModel extends AbstractServiceModelImpl
 
     private final ThreadLocal _activeService = new ThreadLocal();
 
-    private final List _servicePool = new ArrayList();
+    private final ServicePool _servicePool;
 
     /** @since 1.1 */
 
@@ -67,7 +70,7 @@ public class PooledServiceModel extends AbstractServiceModelImpl
         }
     };
 
-    private class PooledService implements ThreadCleanupListener
+    class PooledService implements ThreadCleanupListener
     {
         private Object _core;
 
@@ -125,7 +128,55 @@ public class PooledServiceModel extends AbstractServiceModelImpl
                 HiveMind.THREAD_EVENT_NOTIFIER_SERVICE,
                 ThreadEventNotifier.class);
 
+        ServicePoolContribution settings = findPoolSettings(module, servicePoint
+                .getExtensionPointId());
+
+        _servicePool = new ServicePool(servicePoint, settings)
+        {
+            protected Object createInstance()
+            {
+                return constructPooledService();
+            }
+
+            protected void discardInstance(Object instance)
+            {
+                unregisterWithShutdownCoordinator(((PooledService) instance).getService());
+            }
+        };
+
+        ServicePoolMonitor monitor = (ServicePoolMonitor) module.getService(
+                HiveMind.SERVICE_POOL_MONITOR_SERVICE,
+                ServicePoolMonitor.class);
+
+        monitor.addServicePool(servicePoint.getExtensionPointId(), _servicePool);
+
         _serviceProxy = constructServiceProxy();
+
+        if (settings.isPrewarm())
+            _servicePool.prewarm();
+
+        _servicePool.startEviction();
+
+        servicePoint.addRegistryShutdownListener(new RegistryShutdownListener()
+        {
+            public void registryDidShutdown()
+            {
+                _servicePool.stopEviction();
+            }
+        });
+    }
+
+    /**
+     * Returns the settings contributed for the service, or the defaults (an unbounded pool) if
+     * there is no contribution.
+     */
+    private static ServicePoolContribution findPoolSettings(Module module, String serviceId)
+    {
+        Map pools = (Map) module.getConfiguration("hivemind.ServicePools");
+
+        ServicePoolContribution result = (ServicePoolContribution) pools.get(serviceId);
+
+        return result == null ? new ServicePoolContribution() : result;
     }
 
     public Object getService()
@@ -146,7 +197,7 @@ public class PooledServiceModel extends AbstractServiceModelImpl
         Object proxy = ProxyUtils.createDelegatingProxy(
                 "PooledProxy",
                 this,
-                "getServiceImplementationForCurrentThread",
+                "getServiceImplementationForInvocation",
                 servicePoint);
 
         Object intercepted = addInterceptors(proxy);
@@ -159,6 +210,17 @@ public class PooledServiceModel extends AbstractServiceModelImpl
         return outerProxy;
     }
 
+    /**
+     * Invoked by the proxy to obtain the instance that a method invocation is delegated to; the
+     * instance bound to the current thread. Subclasses may bind instances differently.
+     * 
+     * @since 2.0
+     */
+    public Object getServiceImplementationForInvocation()
+    {
+        return getServiceImplementationForCurrentThread();
+    }
+
     public Object getServiceImplementationForCurrentThread()
     {
         PooledService pooled = (PooledService) _activeService.get();
@@ -167,8 +229,6 @@ public class PooledServiceModel extends AbstractServiceModelImpl
         {
             pooled = obtainPooledService();
 
-            pooled.activate();
-
             _notifier.addThreadCleanupListener(pooled);
             _activeService.set(pooled);
         }
@@ -176,29 +236,43 @@ public class PooledServiceModel extends AbstractServiceModelImpl
         return pooled.getService();
     }
 
-    private PooledService obtainPooledService()
+    /**
+     * Obtains an instance from the pool and activates it.
+     */
+    PooledService obtainPooledService()
     {
-        PooledService result = getServiceFromPool();
+        PooledService result = (PooledService) _servicePool.borrow();
 
-        if (result == null)
-            result = constructPooledService();
-
-        return result;
-    }
+        try
+        {
+            result.activate();
+        }
+        catch (RuntimeException ex)
+        {
+            // With a bounded pool, an instance that is never returned is a permanently lost
+            // slot.
 
-    private synchronized PooledService getServiceFromPool()
-    {
-        int count = _servicePool.size();
+            _servicePool.release(result);
 
-        if (count == 0)
-            return null;
+            throw ex;
+        }
 
-        return (PooledService) _servicePool.remove(count - 1);
+        return result;
     }
 
-    private synchronized void returnServiceToPool(PooledService pooled)
+    /**
+     * Passivates an instance and returns it to the pool.
+     */
+    void returnServiceToPool(PooledService pooled)
     {
-        _servicePool.add(pooled);
+        try
+        {
+            pooled.passivate();
+        }
+        finally
+        {
+            _servicePool.release(pooled);
+        }
     }
 
     private PooledService constructPooledService()
@@ -228,8 +302,6 @@ public class PooledServiceModel extends AbstractServiceModelImpl
     {
         _activeService.set(null);
 
-        pooled.passivate();
-
         returnServiceToPool(pooled);
     }
 
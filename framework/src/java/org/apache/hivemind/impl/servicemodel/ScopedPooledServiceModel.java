@@ -0,0 +1,107 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl.servicemodel;
+
+import org.apache.hivemind.impl.ConstructableServicePoint;
+import org.apache.hivemind.service.ServiceScope;
+import org.apache.hivemind.service.ServiceScopeListener;
+import org.apache.hivemind.service.ServiceScopeManager;
+
+/**
+ * Like the {@link org.apache.hivemind.impl.servicemodel.PooledServiceModel pooled service model},
+ * except that instances are bound to the {@link org.apache.hivemind.service.ServiceScope} attached
+ * to the current thread, and returned to the pool when the scope is closed, rather than when the
+ * thread is cleaned up. The pool is configured through <code>hivemind.ServicePools</code>, as with
+ * the pooled service model.
+ * 
+ * @since 2.0
+ */
+public class ScopedPooledServiceModel extends PooledServiceModel
+{
+    private final ServiceScopeManager _scopeManager;
+
+    /**
+     * The pooled instance bound to a scope.
+     */
+    private final class ScopedPooledService implements ServiceScopeListener
+    {
+        private final PooledService _pooled;
+
+        ScopedPooledService(PooledService pooled)
+        {
+            _pooled = pooled;
+        }
+
+        public void scopeDidClose()
+        {
+            returnServiceToPool(_pooled);
+        }
+    }
+
+    public ScopedPooledServiceModel(ConstructableServicePoint servicePoint)
+    {
+        super(servicePoint);
+
+        _scopeManager = ScopedServiceModel.findScopeManager(servicePoint.getModule());
+    }
+
+    /**
+     * Returns the instance bound to the active scope, obtaining one from the pool as necessary.
+     */
+    public Object getServiceImplementationForInvocation()
+    {
+        ServiceScope scope = ScopedServiceModel.findActiveScope(_scopeManager, getServicePoint());
+
+        ScopedPooledService scoped = (ScopedPooledService) scope.get(this);
+
+        if (scoped == null)
+            scoped = bindPooledService(scope);
+
+        return scoped._pooled.getService();
+    }
+
+    private ScopedPooledService bindPooledService(ServiceScope scope)
+    {
+        ScopedPooledService scoped = new ScopedPooledService(obtainPooledService());
+
+        ScopedPooledService result;
+
+        try
+        {
+            result = (ScopedPooledService) scope.bind(this, scoped);
+        }
+        catch (RuntimeException ex)
+        {
+            scoped.scopeDidClose();
+
+            throw ex;
+        }
+
+        // Another thread attached to the same scope may have won the race.
+
+        if (result != scoped)
+            scoped.scopeDidClose();
+
+        return result;
+    }
+
+    /**
+     * Instances can only be obtained within a scope; eager loading does nothing beyond the proxy
+     * (and pre-warming, if configured), which already exist.
+     */
+    public void instantiateService()
+    {
+    }
+}
@@ -0,0 +1,195 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl.servicemodel;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.Discardable;
+import org.apache.hivemind.HiveMind;
+import org.apache.hivemind.events.RegistryShutdownListener;
+import org.apache.hivemind.impl.ConstructableServicePoint;
+import org.apache.hivemind.impl.ProxyUtils;
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.internal.ServicePoint;
+import org.apache.hivemind.service.ServiceScope;
+import org.apache.hivemind.service.ServiceScopeListener;
+import org.apache.hivemind.service.ServiceScopeManager;
+
+/**
+ * Like the {@link org.apache.hivemind.impl.servicemodel.ThreadedServiceModel threaded service
+ * model}, except that service implementations are bound to the
+ * {@link org.apache.hivemind.service.ServiceScope} attached to the current thread, rather than to
+ * the thread itself. All threads attached to the same scope share the implementation, and the
+ * implementation is discarded when the scope is closed; no thread cleanup is needed.
+ * 
+ * @since 2.0
+ */
+public final class ScopedServiceModel extends AbstractServiceModelImpl
+{
+    private final Object _serviceProxy;
+
+    private final ServiceScopeManager _scopeManager;
+
+    private final Class _serviceInterface;
+
+    /**
+     * The implementation bound to a scope.
+     */
+    private static final class ScopedService implements ServiceScopeListener
+    {
+        private final Object _core;
+
+        private final Object _service;
+
+        ScopedService(Object core, Object service)
+        {
+            _core = core;
+            _service = service;
+        }
+
+        public void scopeDidClose()
+        {
+            if (_core instanceof Discardable)
+            {
+                Discardable d = (Discardable) _core;
+
+                d.threadDidDiscardService();
+            }
+        }
+    }
+
+    public ScopedServiceModel(ConstructableServicePoint servicePoint)
+    {
+        super(servicePoint);
+
+        _serviceInterface = servicePoint.getServiceInterface();
+
+        _scopeManager = findScopeManager(servicePoint.getModule());
+
+        _serviceProxy = createServiceProxy();
+    }
+
+    static ServiceScopeManager findScopeManager(Module module)
+    {
+        return (ServiceScopeManager) module.getService(
+                HiveMind.SERVICE_SCOPE_MANAGER_SERVICE,
+                ServiceScopeManager.class);
+    }
+
+    /**
+     * Returns the scope attached to the current thread.
+     * 
+     * @throws ApplicationRuntimeException
+     *             if no scope is attached
+     */
+    static ServiceScope findActiveScope(ServiceScopeManager scopeManager, ServicePoint point)
+    {
+        ServiceScope result = scopeManager.getActiveScope();
+
+        if (result == null)
+            throw new ApplicationRuntimeException(ServiceModelMessages.noActiveScope(point));
+
+        return result;
+    }
+
+    /**
+     * Always returns the service proxy.
+     */
+    public Object getService()
+    {
+        return _serviceProxy;
+    }
+
+    private Object createServiceProxy()
+    {
+        ConstructableServicePoint servicePoint = getServicePoint();
+
+        if (_log.isDebugEnabled())
+            _log.debug("Creating ScopedProxy for service " + servicePoint.getExtensionPointId());
+
+        Object proxy = ProxyUtils.createDelegatingProxy(
+                "ScopedProxy",
+                this,
+                "getServiceImplementationForCurrentScope",
+                servicePoint);
+
+        Object intercepted = addInterceptors(proxy);
+
+        RegistryShutdownListener outerProxy = ProxyUtils
+                .createOuterProxy(intercepted, servicePoint);
+
+        servicePoint.addRegistryShutdownListener(outerProxy);
+
+        return outerProxy;
+    }
+
+    /**
+     * Invoked by the proxy to return the service implementation for the active scope, constructing
+     * it as necessary.
+     */
+    public Object getServiceImplementationForCurrentScope()
+    {
+        ServiceScope scope = findActiveScope(_scopeManager, getServicePoint());
+
+        ScopedService scoped = (ScopedService) scope.get(this);
+
+        if (scoped == null)
+            scoped = constructInstanceForScope(scope);
+
+        return scoped._service;
+    }
+
+    private ScopedService constructInstanceForScope(ServiceScope scope)
+    {
+        ScopedService scoped;
+
+        try
+        {
+            Object core = constructCoreServiceImplementation();
+
+            if (core instanceof RegistryShutdownListener)
+                _log.error(ServiceModelMessages.scopedRegistryCleanupIgnored(getServicePoint()));
+
+            Object service = core;
+
+            if (!_serviceInterface.isInstance(core))
+                service = constructBridgeProxy(core);
+
+            scoped = new ScopedService(core, service);
+        }
+        catch (Exception ex)
+        {
+            throw new ApplicationRuntimeException(ServiceModelMessages.unableToConstructService(
+                    getServicePoint(),
+                    ex), ex);
+        }
+
+        ScopedService result = (ScopedService) scope.bind(this, scoped);
+
+        // Another thread attached to the same scope may have won the race.
+
+        if (result != scoped)
+            scoped.scopeDidClose();
+
+        return result;
+    }
+
+    /**
+     * Implementations can only be constructed within a scope; eager loading does nothing beyond
+     * the proxy, which already exists.
+     */
+    public void instantiateService()
+    {
+    }
+}
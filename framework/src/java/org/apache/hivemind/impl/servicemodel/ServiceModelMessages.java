@@ -40,11 +40,32 @@ class ServiceModelMessages
                 serviceType.getName());
     }
 
+    static String noActiveScope(ServicePoint point)
+    {
+        return _formatter.format("no-active-scope", point.getExtensionPointId());
+    }
+
+    static String recursiveServiceBuild(ServicePoint point)
+    {
+        return _formatter.format("recursive-service-build", point.getExtensionPointId());
+    }
+
     static String registryCleanupIgnored(ServicePoint point)
     {
         return _formatter.format("registry-cleanup-ignored", point.getExtensionPointId());
     }
 
+    static String scopedRegistryCleanupIgnored(ServicePoint point)
+    {
+        return _formatter.format("scoped-registry-cleanup-ignored", point.getExtensionPointId());
+    }
+
+    static String servicePoolExhausted(ServicePoint point, int maxActive)
+    {
+        return _formatter.format("service-pool-exhausted", point.getExtensionPointId(), new Integer(
+                maxActive));
+    }
+
     static String unableToConstructService(ServicePoint point, Throwable cause)
     {
         return _formatter.format("unable-to-construct-service", point.getExtensionPointId(), cause);
@@ -0,0 +1,510 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl.servicemodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.impl.ServicePoolContribution;
+import org.apache.hivemind.internal.ServicePoint;
+import org.apache.hivemind.service.ServicePoolStatistics;
+
+/**
+ * The pool of instances behind {@link PooledServiceModel}. Idle instances are kept on a number of
+ * stripes (a power of two, at least the number of processors); each thread returns instances to,
+ * and first looks for instances on, the stripe selected by its id, so threads seldom contend for
+ * the same monitor. A thread that finds its own stripe empty takes an instance from any other
+ * stripe before constructing a new one.
+ * <p>
+ * When a maximum is configured, the number of active instances is bounded by a semaphore. Once
+ * {@link #startEviction()} is invoked, idle instances that exceed the idle timeout are discarded
+ * periodically, by a daemon timer shared by all pools, but the pool never shrinks below the
+ * configured minimum.
+ *
+ * @since 2.0
+ */
+abstract class ServicePool implements ServicePoolStatistics
+{
+    private static final int MAX_STRIPES = 64;
+
+    private static final Log LOG = LogFactory.getLog(ServicePool.class);
+
+    /**
+     * The timer that runs the eviction tasks of all pools; created when the first task is
+     * scheduled, and cancelled (ending its thread) when the last task is cancelled.
+     */
+    private static Timer _evictionTimer;
+
+    private static int _evictionTaskCount;
+
+    private final ServicePoint _servicePoint;
+
+    private final Stripe[] _stripes;
+
+    private final int _mask;
+
+    private final int _minIdle;
+
+    private final int _maxActive;
+
+    private final int _maxIdle;
+
+    private final long _idleTimeoutNanos;
+
+    private final boolean _block;
+
+    private final long _maxWait;
+
+    /**
+     * Bounds the number of active instances; null for an unbounded pool.
+     */
+    private final Semaphore _permits;
+
+    private TimerTask _evictionTask;
+
+    private final AtomicInteger _idleCount = new AtomicInteger();
+
+    private final AtomicInteger _activeCount = new AtomicInteger();
+
+    private final AtomicLong _borrowCount = new AtomicLong();
+
+    private final AtomicLong _createdCount = new AtomicLong();
+
+    private final AtomicLong _evictedCount = new AtomicLong();
+
+    private final AtomicLong _exhaustedCount = new AtomicLong();
+
+    private final AtomicLong _totalBorrowNanos = new AtomicLong();
+
+    private final AtomicLong _maxBorrowNanos = new AtomicLong();
+
+    /**
+     * An idle instance, and the time it was returned to the pool.
+     */
+    private static final class Idle
+    {
+        final Object _instance;
+
+        final long _returned;
+
+        Idle(Object instance, long returned)
+        {
+            _instance = instance;
+            _returned = returned;
+        }
+    }
+
+    /**
+     * A stack of idle instances; the oldest instance is at the bottom. Instances are taken from the
+     * top, so recently used (and cache-warm) instances are preferred.
+     */
+    private static final class Stripe
+    {
+        private final List _idle = new ArrayList();
+
+        synchronized void push(Idle idle)
+        {
+            _idle.add(idle);
+        }
+
+        synchronized Idle pop()
+        {
+            int count = _idle.size();
+
+            return count == 0 ? null : (Idle) _idle.remove(count - 1);
+        }
+
+        synchronized Idle removeExpired(long expiration)
+        {
+            if (_idle.isEmpty())
+                return null;
+
+            Idle oldest = (Idle) _idle.get(0);
+
+            if (oldest._returned - expiration > 0)
+                return null;
+
+            return (Idle) _idle.remove(0);
+        }
+    }
+
+    ServicePool(ServicePoint servicePoint, ServicePoolContribution settings)
+    {
+        _servicePoint = servicePoint;
+
+        _maxActive = Math.max(settings.getMaxActive(), 0);
+        _maxIdle = _maxActive == 0 ? Integer.MAX_VALUE : _maxActive;
+        _minIdle = Math.min(Math.max(settings.getMinIdle(), 0), _maxIdle);
+        _idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(settings.getIdleTimeout(), 0));
+        _block = settings.isBlock();
+        _maxWait = Math.max(settings.getMaxWait(), 0);
+
+        _permits = _maxActive == 0 ? null : new Semaphore(_maxActive);
+
+        int count = stripeCount(Runtime.getRuntime().availableProcessors());
+
+        _stripes = new Stripe[count];
+        _mask = count - 1;
+
+        for (int i = 0; i < count; i++)
+            _stripes[i] = new Stripe();
+    }
+
+    private static int stripeCount(int processors)
+    {
+        int result = 1;
+
+        while (result < processors && result < MAX_STRIPES)
+            result <<= 1;
+
+        return result;
+    }
+
+    /**
+     * Constructs a new instance for the pool.
+     */
+    protected abstract Object createInstance();
+
+    /**
+     * Invoked when an instance is dropped from the pool and will not be used again.
+     */
+    protected abstract void discardInstance(Object instance);
+
+    /**
+     * Fills the pool with the minimum number of idle instances (never more than the maximum number
+     * of idle instances).
+     */
+    void prewarm()
+    {
+        long now = System.nanoTime();
+
+        for (int i = _idleCount.get(); i < _minIdle; i++)
+        {
+            Object instance = createInstance();
+
+            _createdCount.incrementAndGet();
+            _idleCount.incrementAndGet();
+
+            _stripes[i & _mask].push(new Idle(instance, now));
+        }
+    }
+
+    /**
+     * Obtains an idle instance, or constructs a new one. The caller must eventually pass the
+     * instance to {@link #release(Object)}.
+     *
+     * @throws ApplicationRuntimeException
+     *             if the maximum number of instances are active, and none is returned in time
+     */
+    Object borrow()
+    {
+        long start = System.nanoTime();
+
+        acquirePermit();
+
+        boolean success = false;
+
+        try
+        {
+            Object result = takeIdle();
+
+            if (result == null)
+            {
+                result = createInstance();
+                _createdCount.incrementAndGet();
+            }
+
+            _activeCount.incrementAndGet();
+            success = true;
+
+            return result;
+        }
+        finally
+        {
+            if (success)
+                recordBorrow(System.nanoTime() - start);
+            else if (_permits != null)
+                _permits.release();
+        }
+    }
+
+    /**
+     * Returns an instance previously obtained from {@link #borrow()}.
+     */
+    void release(Object instance)
+    {
+        _activeCount.decrementAndGet();
+
+        try
+        {
+            long now = System.nanoTime();
+
+            if (_idleCount.incrementAndGet() > _maxIdle)
+            {
+                _idleCount.decrementAndGet();
+                discard(instance);
+            }
+            else
+                homeStripe().push(new Idle(instance, now));
+        }
+        finally
+        {
+            if (_permits != null)
+                _permits.release();
+        }
+    }
+
+    /**
+     * Discards instances, on every stripe, that have been idle longer than the idle timeout.
+     */
+    void evictExpired()
+    {
+        if (_idleTimeoutNanos == 0)
+            return;
+
+        long now = System.nanoTime();
+
+        for (int i = 0; i < _stripes.length; i++)
+            evictExpired(_stripes[i], now);
+    }
+
+    /**
+     * Schedules the periodic discarding of expired idle instances, every idle timeout. Does
+     * nothing if the pool has no idle timeout, or eviction has already been started.
+     */
+    synchronized void startEviction()
+    {
+        if (_idleTimeoutNanos == 0 || _evictionTask != null)
+            return;
+
+        _evictionTask = new TimerTask()
+        {
+            public void run()
+            {
+                try
+                {
+                    evictExpired();
+                }
+                catch (RuntimeException ex)
+                {
+                    // Keep the shared timer thread alive for the other pools.
+
+                    LOG.error(ex.getMessage(), ex);
+                }
+            }
+        };
+
+        long period = Math.max(TimeUnit.NANOSECONDS.toMillis(_idleTimeoutNanos), 1);
+
+        synchronized (ServicePool.class)
+        {
+            if (_evictionTimer == null)
+                _evictionTimer = new Timer("HiveMind service pool eviction", true);
+
+            _evictionTimer.schedule(_evictionTask, period, period);
+            _evictionTaskCount++;
+        }
+    }
+
+    /**
+     * Cancels the periodic eviction started by {@link #startEviction()}, if any.
+     */
+    synchronized void stopEviction()
+    {
+        if (_evictionTask == null)
+            return;
+
+        _evictionTask.cancel();
+        _evictionTask = null;
+
+        synchronized (ServicePool.class)
+        {
+            if (--_evictionTaskCount == 0)
+            {
+                _evictionTimer.cancel();
+                _evictionTimer = null;
+            }
+        }
+    }
+
+    private void evictExpired(Stripe stripe, long now)
+    {
+        long expiration = now - _idleTimeoutNanos;
+
+        while (reserveEviction())
+        {
+            Idle idle = stripe.removeExpired(expiration);
+
+            if (idle == null)
+            {
+                _idleCount.incrementAndGet();
+                return;
+            }
+
+            discard(idle._instance);
+        }
+    }
+
+    /**
+     * Decrements the idle count, unless doing so would take it below the minimum.
+     */
+    private boolean reserveEviction()
+    {
+        while (true)
+        {
+            int idle = _idleCount.get();
+
+            if (idle <= _minIdle)
+                return false;
+
+            if (_idleCount.compareAndSet(idle, idle - 1))
+                return true;
+        }
+    }
+
+    private void discard(Object instance)
+    {
+        _evictedCount.incrementAndGet();
+
+        discardInstance(instance);
+    }
+
+    private Object takeIdle()
+    {
+        int home = homeIndex();
+
+        for (int i = 0; i < _stripes.length; i++)
+        {
+            Idle idle = _stripes[(home + i) & _mask].pop();
+
+            if (idle != null)
+            {
+                _idleCount.decrementAndGet();
+                return idle._instance;
+            }
+        }
+
+        return null;
+    }
+
+    private void acquirePermit()
+    {
+        if (_permits == null || _permits.tryAcquire())
+            return;
+
+        if (_block)
+        {
+            try
+            {
+                if (_maxWait == 0)
+                {
+                    _permits.acquire();
+                    return;
+                }
+
+                if (_permits.tryAcquire(_maxWait, TimeUnit.MILLISECONDS))
+                    return;
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        _exhaustedCount.incrementAndGet();
+
+        throw new ApplicationRuntimeException(ServiceModelMessages.servicePoolExhausted(
+                _servicePoint,
+                _maxActive));
+    }
+
+    private void recordBorrow(long elapsed)
+    {
+        _borrowCount.incrementAndGet();
+        _totalBorrowNanos.addAndGet(elapsed);
+
+        while (true)
+        {
+            long max = _maxBorrowNanos.get();
+
+            if (elapsed <= max || _maxBorrowNanos.compareAndSet(max, elapsed))
+                return;
+        }
+    }
+
+    private int homeIndex()
+    {
+        return (int) Thread.currentThread().getId() & _mask;
+    }
+
+    private Stripe homeStripe()
+    {
+        return _stripes[homeIndex()];
+    }
+
+    public int getActiveCount()
+    {
+        return _activeCount.get();
+    }
+
+    public int getIdleCount()
+    {
+        return _idleCount.get();
+    }
+
+    public int getMaxActive()
+    {
+        return _maxActive;
+    }
+
+    public long getBorrowCount()
+    {
+        return _borrowCount.get();
+    }
+
+    public long getCreatedCount()
+    {
+        return _createdCount.get();
+    }
+
+    public long getEvictedCount()
+    {
+        return _evictedCount.get();
+    }
+
+    public long getExhaustedCount()
+    {
+        return _exhaustedCount.get();
+    }
+
+    public long getTotalBorrowNanos()
+    {
+        return _totalBorrowNanos.get();
+    }
+
+    public long getMaxBorrowNanos()
+    {
+        return _maxBorrowNanos.get();
+    }
+}
@@ -21,6 +21,7 @@ import org.apache.hivemind.ApplicationRuntimeException;
 import org.apache.hivemind.events.RegistryShutdownListener;
 import org.apache.hivemind.impl.ConstructableServicePoint;
 import org.apache.hivemind.impl.ProxyBuilder;
+import org.apache.hivemind.impl.ServiceConstructionLock;
 import org.apache.hivemind.internal.ServicePoint;
 import org.apache.hivemind.service.BodyBuilder;
 import org.apache.hivemind.service.ClassFab;
@@ -40,35 +41,96 @@ public final class SingletonServiceModel extends AbstractServiceModelImpl
      */
     protected static final String SERVICE_ACCESSOR_METHOD_NAME = "_service";
 
-    private Object _serviceProxy;
+    private volatile Object _serviceProxy;
 
     private SingletonInnerProxy _innerProxy;
 
-    private Object _constructedService;
+    /**
+     * The constructed service implementation (with interceptors), published once construction
+     * completes so that the inner proxy can retrieve it without locking.
+     */
+    private volatile Object _constructedService;
+
+    /** Guarded by {@link #_constructionLock}. */
+    private boolean _building;
+
+    private final ServiceConstructionLock _constructionLock;
 
     public SingletonServiceModel(ConstructableServicePoint servicePoint)
     {
         super(servicePoint);
+
+        _constructionLock = new ServiceConstructionLock(servicePoint);
     }
 
-    public synchronized Object getService()
+    public Object getService()
     {
-        if (_serviceProxy == null)
-            _serviceProxy = createSingletonProxy();
+        Object result = _serviceProxy;
+
+        if (result != null)
+            return result;
+
+        _constructionLock.lock();
 
-        return _serviceProxy;
+        try
+        {
+            if (_serviceProxy == null)
+                _serviceProxy = createSingletonProxy();
+
+            return _serviceProxy;
+        }
+        finally
+        {
+            _constructionLock.unlock();
+        }
     }
 
     /**
-     * This is invoked by the proxy to create the actual implementation.
+     * This is invoked by the proxy to create the actual implementation. After the first
+     * invocation, the implementation is returned without locking.
      */
-    public synchronized Object getActualServiceImplementation()
+    public Object getActualServiceImplementation()
     {
-        if (_constructedService == null)
+        Object result = _constructedService;
+
+        if (result != null)
+            return result;
+
+        _constructionLock.lock();
+
+        try
         {
-            _constructedService = constructServiceImplementation();
-            registerWithShutdownCoordinator(_constructedService);
+            if (_constructedService == null)
+            {
+                if (_building)
+                    throw new ApplicationRuntimeException(ServiceModelMessages
+                            .recursiveServiceBuild(getServicePoint()));
+
+                _building = true;
+
+                try
+                {
+                    _constructedService = constructActualServiceImplementation();
+                }
+                finally
+                {
+                    _building = false;
+                }
+            }
+
+            return _constructedService;
         }
+        finally
+        {
+            _constructionLock.unlock();
+        }
+    }
+
+    private Object constructActualServiceImplementation()
+    {
+        Object result = constructServiceImplementation();
+
+        registerWithShutdownCoordinator(result);
 
         // The inner proxy needs the service to implement the service interface.
         // For bean services (not interface services) with no interceptors,
@@ -78,10 +140,10 @@ public final class SingletonServiceModel extends AbstractServiceModelImpl
 
         Class serviceInterface = getServicePoint().getServiceInterface();
 
-        if (!serviceInterface.isInstance(_constructedService))
-            _constructedService = constructBridgeProxy(_constructedService);
+        if (!serviceInterface.isInstance(result))
+            result = constructBridgeProxy(result);
 
-        return _constructedService;
+        return result;
     }
 
     /**
@@ -200,7 +262,6 @@ public final class SingletonServiceModel extends AbstractServiceModelImpl
         ClassFab classFab = builder.getClassFab();
 
         classFab.addField("_deferredProxy", deferredProxyClass);
-        classFab.addField("_service", serviceInterface);
         classFab.addField("_serviceModel", getClass());
 
         BodyBuilder body = new BodyBuilder();
@@ -222,28 +283,26 @@ public final class SingletonServiceModel extends AbstractServiceModelImpl
 
         // Method _service() will look up the service implementation,
         // then update the deferred proxy to go directly to the
-        // service implementation, bypassing itself!
+        // service implementation, bypassing itself! It is not synchronized;
+        // the service model publishes the implementation safely, and the
+        // update to the deferred proxy is idempotent.
 
         body.clear();
         body.begin();
 
-        body.add("if (_service == null)");
-        body.begin();
-
-        body.add("_service = (");
+        body.add(serviceInterface.getName());
+        body.add(" service = (");
         body.add(serviceInterface.getName());
         body.addln(") _serviceModel.getActualServiceImplementation();");
 
-        body.add("_deferredProxy._setInner(_service);");
-
-        body.end();
+        body.addln("_deferredProxy._setInner(service);");
 
-        body.add("return _service;");
+        body.add("return service;");
 
         body.end();
 
         classFab.addMethod(
-                Modifier.PRIVATE | Modifier.FINAL | Modifier.SYNCHRONIZED,
+                Modifier.PRIVATE | Modifier.FINAL,
                 new MethodSignature(serviceInterface, "_service", null, null),
                 body.toString());
 
@@ -49,6 +49,12 @@ public final class ThreadedServiceModel extends AbstractServiceModelImpl
      */
     private final ThreadLocal _activeService = new ThreadLocal();
 
+    /**
+     * The core implementation for the current thread, when it differs from the active service (a
+     * bridge to a bean service).
+     */
+    private final ThreadLocal _activeCore = new ThreadLocal();
+
     /** @since 1.1 */
 
     private Class _serviceInterface;
@@ -68,28 +74,29 @@ public final class ThreadedServiceModel extends AbstractServiceModelImpl
         _serviceProxy = createServiceProxy();
     }
 
-    class CleanupListener implements ThreadCleanupListener
+    /**
+     * Shared by all threads; the core implementation is found in the thread locals, so that
+     * binding an implementation to a thread doesn't require a new listener.
+     */
+    private final ThreadCleanupListener _cleanupListener = new ThreadCleanupListener()
     {
-        // The core itself
-        private final Object _core;
-
-        CleanupListener(Object core)
-        {
-            _core = core;
-        }
-
         public void threadDidCleanup()
         {
+            Object core = _activeCore.get();
+
+            if (core == null)
+                core = _activeService.get();
+
             unbindServiceFromCurrentThread();
 
-            if (_core instanceof Discardable)
+            if (core instanceof Discardable)
             {
-                Discardable d = (Discardable) _core;
+                Discardable d = (Discardable) core;
 
                 d.threadDidDiscardService();
             }
         }
-    }
+    };
 
     /**
      * Always returns the service proxy.
@@ -158,18 +165,23 @@ public final class ThreadedServiceModel extends AbstractServiceModelImpl
             if (core instanceof RegistryShutdownListener)
                 _log.error(ServiceModelMessages.registryCleanupIgnored(getServicePoint()));
 
-            _notifier.addThreadCleanupListener(new CleanupListener(core));
+            _notifier.addThreadCleanupListener(_cleanupListener);
 
             // Once more ... with bean services, its possible that
             // the factory generated bean does not implement the (synthetic) service
             // interface, so create a bridge to it.
 
+            Object result = core;
+
             if (!_serviceInterface.isInstance(core))
-                core = constructBridgeProxy(core);
+            {
+                result = constructBridgeProxy(core);
+                _activeCore.set(core);
+            }
 
-            _activeService.set(core);
+            _activeService.set(result);
 
-            return core;
+            return result;
         }
         catch (Exception ex)
         {
@@ -182,6 +194,7 @@ public final class ThreadedServiceModel extends AbstractServiceModelImpl
     private void unbindServiceFromCurrentThread()
     {
         _activeService.set(null);
+        _activeCore.set(null);
     }
 
     /**
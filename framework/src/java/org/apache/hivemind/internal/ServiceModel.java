@@ -28,6 +28,12 @@ public interface ServiceModel
     public static final String SINGLETON = "singleton";
     public static final String THREADED = "threaded";
     public static final String POOLED = "pooled";
+
+    /** @since 2.0 */
+    public static final String SCOPED = "scoped";
+
+    /** @since 2.0 */
+    public static final String SCOPED_POOLED = "scoped-pooled";
     
     
     /**
@@ -0,0 +1,425 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.methodmatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.HiveMind;
+import org.apache.hivemind.Location;
+import org.apache.hivemind.service.MethodSignature;
+
+/**
+ * The patterns of a {@link MethodMatcher}, compiled into a structure that quickly finds the
+ * patterns that may match a method: exact names are indexed in a map, name prefixes and suffixes in
+ * tries, and the remaining patterns (substrings, match any and, for patterns that could not be
+ * parsed, the errors) are bucketed by the parameter count they require. Only those candidates are
+ * checked against the method, and the earliest stored pattern that matches wins. Results are
+ * memoized per {@link MethodSignature}.
+ * <p>
+ * Instances are immutable, except for the memo, and may be used by many threads.
+ * 
+ * @since 2.0
+ */
+final class CompiledMethodMatcher
+{
+    private static final Object NO_MATCH = new Object();
+
+    /**
+     * Memoized in place of a null pattern value.
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Pattern[] _patterns;
+
+    private final Map _exactNames = new HashMap();
+
+    private final TrieNode _prefixes = new TrieNode();
+
+    private final TrieNode _suffixes = new TrieNode();
+
+    /**
+     * Indexed by required parameter count; the candidates that do not depend on the name.
+     */
+    private int[][] _otherByCount = new int[0][];
+
+    private int[] _otherAnyCount = EMPTY;
+
+    private final Map _memo = new ConcurrentHashMap();
+
+    /**
+     * A stored pattern, parsed into a filter.
+     */
+    private static final class Pattern
+    {
+        final Object _value;
+
+        final MethodFilter _filter;
+
+        /**
+         * The required number of parameters, or -1 if the pattern doesn't care.
+         */
+        final int _parameterCount;
+
+        /**
+         * Thrown if the pattern is reached while searching for a match (the pattern could not be
+         * parsed).
+         */
+        final RuntimeException _error;
+
+        Pattern(Object value, MethodFilter filter, RuntimeException error)
+        {
+            _value = value;
+            _filter = filter;
+            _error = error;
+            _parameterCount = filter == null ? -1 : parameterCount(filter);
+        }
+
+        boolean match(MethodSignature sig)
+        {
+            if (_parameterCount >= 0 && sig.getParameterTypes().length != _parameterCount)
+                return false;
+
+            return _filter.matchMethod(sig);
+        }
+    }
+
+    /**
+     * A node of a character trie. Children are kept in parallel arrays, sorted by character.
+     */
+    private static final class TrieNode
+    {
+        char[] _keys = new char[0];
+
+        TrieNode[] _children = new TrieNode[0];
+
+        /**
+         * Patterns whose prefix (or suffix) ends at this node.
+         */
+        int[] _patterns = EMPTY;
+
+        TrieNode child(char ch)
+        {
+            int low = 0;
+            int high = _keys.length - 1;
+
+            while (low <= high)
+            {
+                int mid = (low + high) >>> 1;
+                char key = _keys[mid];
+
+                if (key < ch)
+                    low = mid + 1;
+                else if (key > ch)
+                    high = mid - 1;
+                else
+                    return _children[mid];
+            }
+
+            return null;
+        }
+
+        TrieNode addChild(char ch)
+        {
+            TrieNode existing = child(ch);
+
+            if (existing != null)
+                return existing;
+
+            int count = _keys.length;
+            int position = 0;
+
+            while (position < count && _keys[position] < ch)
+                position++;
+
+            char[] keys = new char[count + 1];
+            TrieNode[] children = new TrieNode[count + 1];
+
+            System.arraycopy(_keys, 0, keys, 0, position);
+            System.arraycopy(_children, 0, children, 0, position);
+            System.arraycopy(_keys, position, keys, position + 1, count - position);
+            System.arraycopy(_children, position, children, position + 1, count - position);
+
+            TrieNode result = new TrieNode();
+
+            keys[position] = ch;
+            children[position] = result;
+
+            _keys = keys;
+            _children = children;
+
+            return result;
+        }
+    }
+
+    /**
+     * @param methodPatterns
+     *            the method patterns, in the order they were stored
+     * @param values
+     *            the value for each method pattern
+     * @param parser
+     *            used to parse each method pattern
+     */
+    CompiledMethodMatcher(String[] methodPatterns, Object[] values, MethodPatternParser parser)
+    {
+        int count = methodPatterns.length;
+
+        _patterns = new Pattern[count];
+
+        Map otherByCount = new HashMap();
+        List otherAnyCount = new ArrayList();
+
+        for (int i = 0; i < count; i++)
+        {
+            String methodPattern = methodPatterns[i];
+
+            Pattern pattern = parse(parser, methodPattern, values[i]);
+
+            _patterns[i] = pattern;
+
+            if (pattern._error == null && index(i, methodPattern))
+                continue;
+
+            if (pattern._parameterCount < 0)
+            {
+                otherAnyCount.add(new Integer(i));
+                continue;
+            }
+
+            Integer key = new Integer(pattern._parameterCount);
+            List bucket = (List) otherByCount.get(key);
+
+            if (bucket == null)
+            {
+                bucket = new ArrayList();
+                otherByCount.put(key, bucket);
+            }
+
+            bucket.add(new Integer(i));
+        }
+
+        _otherAnyCount = toArray(otherAnyCount);
+
+        int maxCount = -1;
+
+        Iterator i = otherByCount.keySet().iterator();
+        while (i.hasNext())
+            maxCount = Math.max(maxCount, ((Integer) i.next()).intValue());
+
+        _otherByCount = new int[maxCount + 1][];
+
+        for (int j = 0; j <= maxCount; j++)
+        {
+            List bucket = (List) otherByCount.get(new Integer(j));
+
+            _otherByCount[j] = bucket == null ? EMPTY : toArray(bucket);
+        }
+    }
+
+    private static Pattern parse(MethodPatternParser parser, String methodPattern, Object value)
+    {
+        try
+        {
+            return new Pattern(value, parser.parseMethodPattern(methodPattern), null);
+        }
+        catch (RuntimeException ex)
+        {
+            Location l = HiveMind.findLocation(new Object[]
+            { value, ex });
+
+            RuntimeException error = l == null ? ex : new ApplicationRuntimeException(
+                    MethodMatchMessages.exceptionAtLocation(l, ex), ex);
+
+            return new Pattern(value, null, error);
+        }
+    }
+
+    /**
+     * Adds the pattern to the exact name map, or one of the tries, based on its name pattern.
+     * Returns false if the name pattern can't be indexed (it's a substring or match any).
+     */
+    private boolean index(int patternIndex, String methodPattern)
+    {
+        int parenx = methodPattern.indexOf('(');
+        String namePattern = parenx < 0 ? methodPattern : methodPattern.substring(0, parenx);
+
+        boolean leading = namePattern.startsWith("*");
+        boolean trailing = namePattern.endsWith("*");
+
+        if (leading && trailing)
+            return false;
+
+        if (leading)
+        {
+            TrieNode node = _suffixes;
+
+            for (int i = namePattern.length() - 1; i > 0; i--)
+                node = node.addChild(namePattern.charAt(i));
+
+            node._patterns = append(node._patterns, patternIndex);
+
+            return true;
+        }
+
+        if (trailing)
+        {
+            TrieNode node = _prefixes;
+
+            for (int i = 0; i < namePattern.length() - 1; i++)
+                node = node.addChild(namePattern.charAt(i));
+
+            node._patterns = append(node._patterns, patternIndex);
+
+            return true;
+        }
+
+        int[] existing = (int[]) _exactNames.get(namePattern);
+
+        _exactNames.put(namePattern, append(existing == null ? EMPTY : existing, patternIndex));
+
+        return true;
+    }
+
+    private static int parameterCount(MethodFilter filter)
+    {
+        MethodFilter first = filter instanceof CompositeFilter ? ((CompositeFilter) filter)
+                .getFirstFilter() : filter;
+
+        return first instanceof ParameterCountFilter ? ((ParameterCountFilter) first)
+                .getParameterCount() : -1;
+    }
+
+    private static int[] append(int[] array, int value)
+    {
+        int[] result = new int[array.length + 1];
+
+        System.arraycopy(array, 0, result, 0, array.length);
+        result[array.length] = value;
+
+        return result;
+    }
+
+    private static int[] toArray(List integers)
+    {
+        int[] result = new int[integers.size()];
+
+        for (int i = 0; i < result.length; i++)
+            result[i] = ((Integer) integers.get(i)).intValue();
+
+        return result;
+    }
+
+    /**
+     * Returns the value of the earliest stored pattern that matches the method, or the default
+     * value.
+     */
+    Object get(MethodSignature sig, Object defaultValue)
+    {
+        Object result = _memo.get(sig);
+
+        if (result == null)
+        {
+            result = search(sig);
+
+            _memo.put(sig, result);
+        }
+
+        if (result == NO_MATCH)
+            return defaultValue;
+
+        return result == NULL_VALUE ? null : result;
+    }
+
+    private Object search(MethodSignature sig)
+    {
+        String name = sig.getName();
+        int parameterCount = sig.getParameterTypes().length;
+
+        // Candidates are visited out of order, so track the earliest match (and the earliest
+        // error) seen so far; a candidate later than the best match need not be checked.
+
+        int[] best =
+        { Integer.MAX_VALUE, Integer.MAX_VALUE };
+
+        int[] exact = (int[]) _exactNames.get(name);
+
+        if (exact != null)
+            check(exact, sig, best);
+
+        TrieNode node = _prefixes;
+
+        for (int i = 0; i < name.length() && node != null; i++)
+        {
+            node = node.child(name.charAt(i));
+
+            if (node != null)
+                check(node._patterns, sig, best);
+        }
+
+        node = _suffixes;
+
+        for (int i = name.length() - 1; i >= 0 && node != null; i--)
+        {
+            node = node.child(name.charAt(i));
+
+            if (node != null)
+                check(node._patterns, sig, best);
+        }
+
+        if (parameterCount < _otherByCount.length)
+            check(_otherByCount[parameterCount], sig, best);
+
+        check(_otherAnyCount, sig, best);
+
+        int match = best[0];
+        int error = best[1];
+
+        if (error < match)
+            throw _patterns[error]._error;
+
+        if (match == Integer.MAX_VALUE)
+            return NO_MATCH;
+
+        Object value = _patterns[match]._value;
+
+        return value == null ? NULL_VALUE : value;
+    }
+
+    private void check(int[] candidates, MethodSignature sig, int[] best)
+    {
+        for (int i = 0; i < candidates.length; i++)
+        {
+            int index = candidates[i];
+
+            if (index >= best[0] || index >= best[1])
+                continue;
+
+            Pattern pattern = _patterns[index];
+
+            if (pattern._error != null)
+                best[1] = index;
+            else if (pattern.match(sig))
+                best[0] = index;
+        }
+    }
+}
@@ -57,4 +57,9 @@ public class CompositeFilter extends MethodFilter
         return true;
     }
 
+    /** @since 2.0 */
+    MethodFilter getFirstFilter()
+    {
+        return (MethodFilter) _filters.get(0);
+    }
 }
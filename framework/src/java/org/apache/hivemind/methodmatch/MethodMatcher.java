@@ -15,12 +15,8 @@
 package org.apache.hivemind.methodmatch;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
-import org.apache.hivemind.ApplicationRuntimeException;
-import org.apache.hivemind.HiveMind;
-import org.apache.hivemind.Location;
 import org.apache.hivemind.service.MethodSignature;
 
 /**
@@ -56,53 +52,20 @@ import org.apache.hivemind.service.MethodSignature;
  */
 public class MethodMatcher
 {
-    private class StoredPattern
-    {
-        String _methodPattern;
-
-        MethodFilter _filter;
-
-        Object _patternValue;
-
-        StoredPattern(String pattern, Object value)
-        {
-            _methodPattern = pattern;
-            _patternValue = value;
-        }
-
-        boolean match(MethodSignature sig)
-        {
-            if (_filter == null)
-            {
-
-                try
-                {
-                    _filter = parseMethodPattern(_methodPattern);
-                }
-                catch (RuntimeException ex)
-                {
-                    Location l = HiveMind.findLocation(new Object[]
-                    { _patternValue, ex });
-
-                    if (l == null)
-                        throw ex;
-
-                    throw new ApplicationRuntimeException(MethodMatchMessages.exceptionAtLocation(
-                            l,
-                            ex), ex);
-                }
-            }
-
-            return _filter.matchMethod(sig);
-        }
-    }
-
     private MethodPatternParser _parser = new MethodPatternParser();
 
-    private List _methodInfos;
+    private List _methodPatterns;
+
+    private List _patternValues;
 
     private Object _defaultValue;
 
+    /**
+     * The stored patterns, compiled on the first call to {@link #get(MethodSignature)}; discarded
+     * when a pattern is stored.
+     */
+    private volatile CompiledMethodMatcher _compiled;
+
     /**
      * Constructor that takes a default value returned when no stored method pattern matches the
      * input to {@link #get(MethodSignature)}.
@@ -119,11 +82,6 @@ public class MethodMatcher
         this(null);
     }
 
-    private MethodFilter parseMethodPattern(String pattern)
-    {
-        return _parser.parseMethodPattern(pattern);
-    }
-
     /**
      * Stores a pattern and an associated value. Values can later be accessed via
      * {@link #get(MethodSignature)}.
@@ -135,39 +93,55 @@ public class MethodMatcher
      */
     public synchronized void put(String methodPattern, Object patternValue)
     {
-        if (_methodInfos == null)
-            _methodInfos = new ArrayList();
+        if (_methodPatterns == null)
+        {
+            _methodPatterns = new ArrayList();
+            _patternValues = new ArrayList();
+        }
 
-        StoredPattern sp = new StoredPattern(methodPattern, patternValue);
+        _methodPatterns.add(methodPattern);
+        _patternValues.add(patternValue);
 
-        _methodInfos.add(sp);
+        _compiled = null;
     }
 
     /**
-     * Returns a pattern value prevoiusly stored via {@link #put(String, Object)}. Iterates over
-     * the patterns stored, in the order in which they were stored, until a match is found.
+     * Returns a pattern value prevoiusly stored via {@link #put(String, Object)}. The value is
+     * that of the first pattern, in the order in which they were stored, that matches. Patterns are
+     * compiled (see {@link CompiledMethodMatcher}) and results are cached, so repeated calls are
+     * cheap and do not block each other.
      * 
      * @param sig
      *            the MethodSignature to find a matching pattern for
      * @return the pattern value for the matching pattern, or the default value if not found (the
      *         default value may be set in the constructor)
      */
-    public synchronized Object get(MethodSignature sig)
+    public Object get(MethodSignature sig)
     {
-        if (_methodInfos == null)
-            return _defaultValue;
+        CompiledMethodMatcher compiled = _compiled;
 
-        Iterator i = _methodInfos.iterator();
-        while (i.hasNext())
+        if (compiled == null)
+            compiled = compile();
+
+        return compiled.get(sig, _defaultValue);
+    }
+
+    private synchronized CompiledMethodMatcher compile()
+    {
+        if (_compiled == null)
         {
-            StoredPattern sp = (StoredPattern) i.next();
+            String[] methodPatterns = new String[0];
+            Object[] values = new Object[0];
 
-            if (sp.match(sig))
-                return sp._patternValue;
-        }
+            if (_methodPatterns != null)
+            {
+                methodPatterns = (String[]) _methodPatterns.toArray(methodPatterns);
+                values = _patternValues.toArray();
+            }
 
-        // Not found.
+            _compiled = new CompiledMethodMatcher(methodPatterns, values, _parser);
+        }
 
-        return _defaultValue;
+        return _compiled;
     }
-}
\ No newline at end of file
+}
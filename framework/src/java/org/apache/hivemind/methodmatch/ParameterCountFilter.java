@@ -36,4 +36,10 @@ public class ParameterCountFilter extends MethodFilter
         return method.getParameterTypes().length == _parameterCount;
     }
 
+    /** @since 2.0 */
+    int getParameterCount()
+    {
+        return _parameterCount;
+    }
+
 }
@@ -34,6 +34,12 @@ import org.apache.hivemind.util.StringUtils;
 /**
  * Used to order objects into an "execution" order. Each object must have a name. It may specify a
  * list of pre-requisites and a list of post-requisites.
+ * <p>
+ * The objects are ordered by a depth-first traversal of the dependency graph, which takes time
+ * linear in the number of objects and dependencies. Ties are broken deterministically: objects with
+ * no ordering relative to each other are kept in the order in which they were added. A dependency
+ * cycle is reported, naming each object in the cycle, and broken by ignoring the most recently
+ * declared dependency in the cycle.
  * 
  * @author Howard Lewis Ship
  */
@@ -49,10 +55,14 @@ public class Orderer
 
     private Map _nodeMap = null;
 
+    private List _nodes = null;
+
     private Node _leader;
 
     private Node _trailer;
 
+    private int _edgeCount;
+
     /**
      * Creates an instance using <code>org.apache.hivemind.order.Orderer</code> as the Log.
      */
@@ -152,14 +162,17 @@ public class Orderer
         try
         {
             _nodeMap = new HashMap();
+            _nodes = new ArrayList();
+            _edgeCount = 0;
 
             initializeGraph();
 
-            return _trailer.getOrder();
+            return order();
         }
         finally
         {
             _nodeMap = null;
+            _nodes = null;
             _leader = null;
             _trailer = null;
         }
@@ -170,17 +183,26 @@ public class Orderer
         addNodes();
 
         if (_leader == null)
-            _leader = new Node(null, "*-leader-*");
+            _leader = newNode(null, "*-leader-*");
 
         if (_trailer == null)
-            _trailer = new Node(null, "*-trailer-*");
+            _trailer = newNode(null, "*-trailer-*");
 
         addDependencies();
     }
 
     private Node getNode(String name)
     {
-        return (Node) _nodeMap.get(getOrderable(name));
+        return (Node) _nodeMap.get(name);
+    }
+
+    private Node newNode(Object object, String name)
+    {
+        Node result = new Node(object, name);
+
+        _nodes.add(result);
+
+        return result;
     }
 
     private void addNodes()
@@ -191,9 +213,9 @@ public class Orderer
         {
             ObjectOrdering o = (ObjectOrdering) i.next();
 
-            Node node = new Node(o.getObject(), o.getName());
+            Node node = newNode(o.getObject(), o.getName());
 
-            _nodeMap.put(o, node);
+            _nodeMap.put(o.getName(), node);
 
             if ("*".equals(o.getPostreqs()))
             {
@@ -236,24 +258,23 @@ public class Orderer
         addPreRequisites(orderable, node);
         addPostRequisites(orderable, node);
 
-        try
-        {
-            if (node != _leader)
-                node.addDependency(_leader);
-
-            if (node != _trailer)
-                _trailer.addDependency(node);
-        }
-        catch (ApplicationRuntimeException ex)
-        {
-            // This code is unreachable ... but nonetheless.
+        if (node != _leader)
+            addDependency(node, _leader, orderable);
 
-            String name = node.getName();
-            ObjectOrdering trigger = getOrderable(name);
+        if (node != _trailer)
+            addDependency(_trailer, node, orderable);
+    }
 
-            _errorLog.error(OrdererMessages.dependencyCycle(_objectType, orderable, ex), HiveMind
-                    .getLocation(trigger.getObject()), ex);
-        }
+    /**
+     * Records that the dependent node must follow the other node. Cycles are not checked for until
+     * all dependencies have been added.
+     * 
+     * @param trigger
+     *            the ordering that declared the dependency
+     */
+    private void addDependency(Node dependent, Node node, ObjectOrdering trigger)
+    {
+        dependent._dependencies.add(new Edge(dependent, node, trigger, _edgeCount++));
     }
 
     private void addPreRequisites(ObjectOrdering ordering, Node node)
@@ -280,18 +301,7 @@ public class Orderer
                 continue;
             }
 
-            try
-            {
-                node.addDependency(prenode);
-            }
-            catch (ApplicationRuntimeException ex)
-            {
-                _errorLog.error(
-                        OrdererMessages.dependencyCycle(_objectType, ordering, ex),
-                        HiveMind.getLocation(ordering.getObject()),
-                        ex);
-            }
-
+            addDependency(node, prenode, ordering);
         }
     }
 
@@ -318,90 +328,200 @@ public class Orderer
                         null);
             }
             else
+                addDependency(postnode, node, ordering);
+        }
+    }
+
+    /**
+     * Performs a depth-first traversal from the trailer, adding each object once all the objects it
+     * depends on have been added. Dependencies are visited in the order they were declared, which
+     * keeps the result deterministic. The traversal is iterative, so long chains of dependencies
+     * can't overflow the stack.
+     * <p>
+     * Reaching a node that is still on the traversal stack means there is a cycle; one dependency
+     * is removed from the cycle and the traversal is restarted.
+     */
+    private List order()
+    {
+        int count = _nodes.size();
+        Node[] stack = new Node[count];
+
+        while (true)
+        {
+            List result = new ArrayList(count);
+
+            for (int i = 0; i < count; i++)
             {
-                try
-                {
-                    postnode.addDependency(node);
-                }
-                catch (ApplicationRuntimeException ex)
+                Node node = (Node) _nodes.get(i);
+
+                node._state = Node.UNVISITED;
+                node._cursor = 0;
+            }
+
+            int depth = 0;
+            boolean cycle = false;
+
+            _trailer._state = Node.VISITING;
+            stack[depth++] = _trailer;
+
+            while (depth > 0 && !cycle)
+            {
+                Node node = stack[depth - 1];
+
+                if (node._cursor < node._dependencies.size())
                 {
-                    _errorLog.error(
-                            OrdererMessages.dependencyCycle(_objectType, ordering, ex),
-                            HiveMind.getLocation(ordering.getObject()),
-                            ex);
+                    Edge edge = (Edge) node._dependencies.get(node._cursor++);
+
+                    if (edge._removed)
+                        continue;
+
+                    Node next = edge._node;
+
+                    if (next._state == Node.UNVISITED)
+                    {
+                        next._state = Node.VISITING;
+                        stack[depth++] = next;
+                    }
+                    else if (next._state == Node.VISITING)
+                    {
+                        breakCycle(stack, depth, edge);
+                        cycle = true;
+                    }
+
+                    continue;
                 }
+
+                node._state = Node.VISITED;
+                depth--;
+
+                if (node._object != null)
+                    result.add(node._object);
             }
+
+            if (!cycle)
+                return result;
         }
     }
 
-    private static class Node
+    /**
+     * Removes the most recently declared dependency from the cycle closed by the edge, and reports
+     * the cycle.
+     */
+    private void breakCycle(Node[] stack, int depth, Edge closing)
     {
-        private Object _object;
+        int start = depth - 1;
+
+        while (stack[start] != closing._node)
+            start--;
 
-        private String _name;
+        // The edges of the cycle: each node on the stack, from the start of the cycle, was left
+        // through the dependency just before its cursor.
 
-        private List _dependencies;
+        int length = depth - start;
+        Edge[] cycle = new Edge[length];
 
-        public Node(Object o, String name)
+        for (int i = 0; i < length - 1; i++)
         {
-            _object = o;
-            _name = name;
-            _dependencies = new ArrayList();
+            Node node = stack[start + i];
+
+            cycle[i] = (Edge) node._dependencies.get(node._cursor - 1);
         }
 
-        public String getName()
+        cycle[length - 1] = closing;
+
+        int removed = 0;
+
+        for (int i = 1; i < length; i++)
+            if (cycle[i]._sequence > cycle[removed]._sequence)
+                removed = i;
+
+        Edge edge = cycle[removed];
+
+        edge._removed = true;
+
+        StringBuffer path = new StringBuffer();
+
+        for (int i = 0; i < length; i++)
         {
-            return _name;
+            path.append(cycle[(removed + i) % length]._dependent._name);
+            path.append(" -> ");
         }
 
-        public void addDependency(Node n)
-        {
-            if (n.isReachable(this))
-                throw new ApplicationRuntimeException(
-                        "A cycle has been detected from the initial object [" + _name + "]",
-                        HiveMind.getLocation(_object), null);
+        path.append(edge._dependent._name);
 
-            _dependencies.add(n);
-        }
+        ApplicationRuntimeException ex = new ApplicationRuntimeException(OrdererMessages
+                .cycleDetected(edge._dependent._name, path.toString()), HiveMind
+                .getLocation(edge._dependent._object), null);
 
-        private boolean isReachable(Node n)
-        {
-            boolean reachable = (n == this);
-            Iterator i = _dependencies.iterator();
+        _errorLog.error(
+                OrdererMessages.dependencyCycle(_objectType, edge._trigger, ex),
+                HiveMind.getLocation(edge._trigger.getObject()),
+                ex);
+    }
 
-            while (i.hasNext() && !reachable)
-            {
-                Node dep = (Node) i.next();
-                reachable = (dep == n) ? true : dep.isReachable(n);
-            }
+    private static final class Node
+    {
+        static final int UNVISITED = 0;
 
-            return reachable;
-        }
+        static final int VISITING = 1;
 
-        public List getOrder()
-        {
-            List result = new ArrayList();
-            fillOrder(result);
+        static final int VISITED = 2;
+
+        final Object _object;
+
+        final String _name;
+
+        /**
+         * The {@link Edge}s to the nodes this node must follow, in the order they were declared.
+         */
+        final List _dependencies = new ArrayList();
 
-            return result;
+        int _state;
+
+        /**
+         * Index of the next dependency to visit during traversal.
+         */
+        int _cursor;
+
+        Node(Object object, String name)
+        {
+            _object = object;
+            _name = name;
         }
 
-        private void fillOrder(List result)
+        String getName()
         {
-            if (result.contains(_object))
-                return;
+            return _name;
+        }
+    }
 
-            Iterator i = _dependencies.iterator();
+    /**
+     * A dependency: the dependent node must follow the other node.
+     */
+    private static final class Edge
+    {
+        final Node _dependent;
 
-            while (i.hasNext())
-            {
-                Node dep = (Node) i.next();
-                dep.fillOrder(result);
-            }
+        final Node _node;
 
-            if (_object != null)
-                result.add(_object);
+        /**
+         * The ordering that declared this dependency.
+         */
+        final ObjectOrdering _trigger;
+
+        /**
+         * Order in which dependencies were declared.
+         */
+        final int _sequence;
+
+        boolean _removed;
+
+        Edge(Node dependent, Node node, ObjectOrdering trigger, int sequence)
+        {
+            _dependent = dependent;
+            _node = node;
+            _trigger = trigger;
+            _sequence = sequence;
         }
     }
-
-}
\ No newline at end of file
+}
@@ -63,10 +63,48 @@ class OrdererMessages
         return _formatter.format("dependency-cycle", objectType, trigger.getName(), cause);
     }
 
+    static String cycleDetected(String initialName, String path)
+    {
+        return _formatter.format("cycle-detected", initialName, path);
+    }
+
     static String badDependency(String objectType, String dependencyName, ObjectOrdering ordering)
     {
         return _formatter.format("bad-dependency", objectType, dependencyName, ordering.getName());
 
     }
 
-}
\ No newline at end of file
+    static String taskCompleted(String taskType, String taskName, long elapsed)
+    {
+        return _formatter.format("task-completed", StringUtils.capitalize(taskType), taskName, new Long(
+                elapsed));
+    }
+
+    static String taskFailed(String taskType, String taskName, Throwable cause)
+    {
+        return _formatter.format("task-failed", taskType, taskName, cause);
+    }
+
+    static String taskSkipped(String taskType, String taskName)
+    {
+        return _formatter.format("task-skipped", StringUtils.capitalize(taskType), taskName);
+    }
+
+    static String interrupted(String taskType)
+    {
+        return _formatter.format("interrupted", taskType);
+    }
+
+    static String taskTimedOut(String taskType, String taskName, long timeout)
+    {
+        return _formatter.format("task-timed-out", StringUtils.capitalize(taskType), taskName, new Long(
+                timeout));
+    }
+
+    static String taskAbandoned(String taskType, String taskName, long timeout)
+    {
+        return _formatter.format("task-abandoned", StringUtils.capitalize(taskType), taskName, new Long(
+                timeout));
+    }
+
+}
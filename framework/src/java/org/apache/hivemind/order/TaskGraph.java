@@ -0,0 +1,622 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.order;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.ErrorHandler;
+import org.apache.hivemind.util.Defense;
+import org.apache.hivemind.util.StringUtils;
+
+/**
+ * Executes a set of named tasks (Runnable objects) that may declare pre- and post-requisites, in
+ * the manner of {@link Orderer}. The tasks are first ordered by an {@link Orderer}; that order is
+ * used as is when the tasks are executed on a single thread. When more threads are used, a task is
+ * started as soon as all the tasks it was declared to follow have finished, so tasks with no
+ * ordering relative to each other run concurrently.
+ * <p>
+ * The time taken by each task is logged (at debug level) and available from
+ * {@link #getElapsedTime(String)} after the tasks have been executed.
+ * <p>
+ * Failures are reported deterministically. On a single thread, execution stops at the first task
+ * that fails. On several threads, the tasks that follow a failed task are skipped, but all other
+ * tasks are executed; the failure of the earliest task (in the order computed by the
+ * {@link Orderer}) is then rethrown, and any other failures are logged. Alternately, tasks may be
+ * {@link #setRunAfterFailure(boolean) executed regardless} of the failure of the tasks they follow.
+ * <p>
+ * Execution may be bounded in time, both {@link #setTaskTimeout(long) per task} and
+ * {@link #setTimeout(long) overall}. A task that exceeds its time limit fails, and its thread is
+ * abandoned (it is a daemon thread); once the overall time limit expires, tasks that have not yet
+ * started are not executed. Time limits require executing the tasks on separate threads, even
+ * when only one thread is used.
+ * 
+ * @since 2.0
+ */
+public class TaskGraph
+{
+    private final Log _log;
+
+    private final String _taskType;
+
+    private final Orderer _orderer;
+
+    private final Map _tasks = new HashMap();
+
+    private boolean _runAfterFailure;
+
+    private long _taskTimeout;
+
+    private long _timeout;
+
+    /** Number of tasks not yet finished. Guarded by this. */
+    private int _remaining;
+
+    /** Tasks executing on a thread. Guarded by this. */
+    private final Set _running = new LinkedHashSet();
+
+    /**
+     * Creates a new instance.
+     * 
+     * @param log
+     *            used to log task timings, ordering errors and secondary failures
+     * @param taskType
+     *            user presentable name for the type of task to be executed; used in messages
+     */
+    public TaskGraph(Log log, ErrorHandler errorHandler, String taskType)
+    {
+        Defense.notNull(log, "log");
+        Defense.notNull(taskType, "taskType");
+
+        _log = log;
+        _taskType = taskType;
+        _orderer = new Orderer(log, errorHandler, taskType);
+    }
+
+    /**
+     * If true, tasks are executed even if a task they follow failed. Defaults to false.
+     */
+    public void setRunAfterFailure(boolean runAfterFailure)
+    {
+        _runAfterFailure = runAfterFailure;
+    }
+
+    /**
+     * The time, in milliseconds, after which an executing task is considered to have failed, or 0
+     * (the default) for no limit.
+     */
+    public void setTaskTimeout(long taskTimeout)
+    {
+        _taskTimeout = taskTimeout;
+    }
+
+    /**
+     * The time, in milliseconds, allowed for executing all the tasks, or 0 (the default) for no
+     * limit.
+     */
+    public void setTimeout(long timeout)
+    {
+        _timeout = timeout;
+    }
+
+    /**
+     * Adds a new task. All invocations of this method should occur before invoking
+     * {@link #run(int)}.
+     * 
+     * @param task
+     *            the task to execute
+     * @param name
+     *            a unique name for the task
+     * @param prereqs
+     *            a comma-separated list of the names of tasks that must finish before this task
+     *            starts, <code>*</code> to follow all other tasks, or null
+     * @param postreqs
+     *            a comma-separated list of the names of tasks that may only start once this task
+     *            has finished, <code>*</code> to precede all other tasks, or null
+     */
+    public void add(Runnable task, String name, String prereqs, String postreqs)
+    {
+        Defense.notNull(task, "task");
+
+        _orderer.add(new Task(task, name, prereqs, postreqs), name, prereqs, postreqs);
+    }
+
+    /**
+     * Executes all tasks, waiting for the last one to finish (or for the overall time limit to
+     * expire).
+     * 
+     * @param threads
+     *            the maximum number of tasks to execute at the same time; 1 (or less) executes the
+     *            tasks one after another on the calling thread, unless a time limit is set
+     */
+    public void run(int threads)
+    {
+        List ordered = _orderer.getOrderedObjects();
+
+        for (Iterator i = ordered.iterator(); i.hasNext();)
+        {
+            Task task = (Task) i.next();
+
+            _tasks.put(task._name, task);
+        }
+
+        boolean timed = _taskTimeout > 0 || _timeout > 0;
+
+        if (ordered.isEmpty() || (!timed && (threads <= 1 || ordered.size() == 1)))
+        {
+            runSequentially(ordered);
+            return;
+        }
+
+        link(ordered);
+
+        runInParallel(ordered, Math.max(1, Math.min(threads, ordered.size())));
+
+        rethrowFailure(ordered);
+    }
+
+    /**
+     * Returns the time, in milliseconds, taken to execute the named task, or -1 if the task was
+     * not executed.
+     */
+    public long getElapsedTime(String name)
+    {
+        Task task = (Task) _tasks.get(name);
+
+        return task == null ? -1 : task._elapsed;
+    }
+
+    private void runSequentially(List ordered)
+    {
+        for (Iterator i = ordered.iterator(); i.hasNext();)
+        {
+            Task task = (Task) i.next();
+            long startTime = System.currentTimeMillis();
+
+            task._failure = execute(task);
+            task._elapsed = System.currentTimeMillis() - startTime;
+
+            logCompleted(task);
+
+            if (task._failure != null && !_runAfterFailure)
+                rethrow(task._failure);
+        }
+
+        rethrowFailure(ordered);
+    }
+
+    /**
+     * Converts the pre- and post-requisites of each task into edges of the dependency graph.
+     * Edges that contradict the computed order (because they were ignored to break a cycle) are
+     * dropped, which keeps the graph acyclic.
+     */
+    private void link(List ordered)
+    {
+        for (int i = 0; i < ordered.size(); i++)
+        {
+            Task task = (Task) ordered.get(i);
+
+            task._index = i;
+        }
+
+        int count = ordered.size();
+
+        for (int i = 0; i < count; i++)
+        {
+            Task task = (Task) ordered.get(i);
+
+            if ("*".equals(task._prereqs))
+            {
+                for (int j = 0; j < i; j++)
+                    addEdge((Task) ordered.get(j), task);
+            }
+            else
+            {
+                String[] names = StringUtils.split(task._prereqs);
+
+                for (int j = 0; j < names.length; j++)
+                {
+                    Task prereq = (Task) _tasks.get(names[j]);
+
+                    if (prereq != null && prereq._index < i)
+                        addEdge(prereq, task);
+                }
+            }
+
+            if ("*".equals(task._postreqs))
+            {
+                for (int j = i + 1; j < count; j++)
+                    addEdge(task, (Task) ordered.get(j));
+            }
+            else
+            {
+                String[] names = StringUtils.split(task._postreqs);
+
+                for (int j = 0; j < names.length; j++)
+                {
+                    Task postreq = (Task) _tasks.get(names[j]);
+
+                    if (postreq != null && postreq._index > i)
+                        addEdge(task, postreq);
+                }
+            }
+        }
+    }
+
+    private void addEdge(Task from, Task to)
+    {
+        if (from._successors.add(to))
+            to._pending++;
+    }
+
+    private void runInParallel(List ordered, int threads)
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue(), new TaskThreadFactory(_taskType));
+
+        try
+        {
+            synchronized (this)
+            {
+                _remaining = ordered.size();
+
+                List ready = new ArrayList();
+
+                for (Iterator i = ordered.iterator(); i.hasNext();)
+                {
+                    Task task = (Task) i.next();
+
+                    if (task._pending == 0)
+                        ready.add(task);
+                }
+
+                submit(executor, ready);
+
+                awaitCompletion(executor, ordered);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new ApplicationRuntimeException(OrdererMessages.interrupted(_taskType), ex);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for all tasks to finish, enforcing the time limits. Invoked with the lock held.
+     */
+    private void awaitCompletion(ThreadPoolExecutor executor, List ordered)
+            throws InterruptedException
+    {
+        long deadline = _timeout > 0 ? System.currentTimeMillis() + _timeout : 0;
+
+        while (_remaining > 0)
+        {
+            long now = System.currentTimeMillis();
+
+            if (deadline > 0 && now >= deadline)
+            {
+                abandon(ordered, now);
+                return;
+            }
+
+            long wait = deadline > 0 ? deadline - now : 0;
+
+            if (_taskTimeout > 0)
+            {
+                List timedOut = new ArrayList();
+
+                for (Iterator i = _running.iterator(); i.hasNext();)
+                {
+                    Task task = (Task) i.next();
+                    long taskDeadline = task._startTime + _taskTimeout;
+
+                    if (now >= taskDeadline)
+                        timedOut.add(task);
+                    else if (wait == 0 || taskDeadline - now < wait)
+                        wait = taskDeadline - now;
+                }
+
+                for (Iterator i = timedOut.iterator(); i.hasNext();)
+                {
+                    Task task = (Task) i.next();
+
+                    // The thread executing the task is lost to the pool; replace it.
+
+                    executor.setMaximumPoolSize(executor.getMaximumPoolSize() + 1);
+                    executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+
+                    submit(executor, finish(task, new ApplicationRuntimeException(OrdererMessages
+                            .taskTimedOut(_taskType, task._name, _taskTimeout)), now
+                            - task._startTime));
+                }
+
+                if (!timedOut.isEmpty())
+                    continue;
+            }
+
+            wait(wait);
+        }
+    }
+
+    /**
+     * Invoked, with the lock held, once the overall time limit has expired.
+     */
+    private void abandon(List ordered, long now)
+    {
+        for (Iterator i = ordered.iterator(); i.hasNext();)
+        {
+            Task task = (Task) i.next();
+
+            if (task._finished)
+                continue;
+
+            if (_running.contains(task))
+            {
+                finish(task, new ApplicationRuntimeException(OrdererMessages.taskTimedOut(
+                        _taskType,
+                        task._name,
+                        _timeout)), now - task._startTime);
+                continue;
+            }
+
+            _log.warn(OrdererMessages.taskAbandoned(_taskType, task._name, _timeout));
+
+            task._finished = true;
+        }
+
+        _remaining = 0;
+    }
+
+    private void submit(final ThreadPoolExecutor executor, List tasks)
+    {
+        for (Iterator i = tasks.iterator(); i.hasNext();)
+        {
+            final Task task = (Task) i.next();
+
+            try
+            {
+                executor.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        List ready;
+
+                        if (task._skipped)
+                        {
+                            _log.warn(OrdererMessages.taskSkipped(_taskType, task._name));
+
+                            ready = finish(task, null, -1);
+                        }
+                        else
+                        {
+                            long startTime = start(task);
+
+                            // The task may have been abandoned while it was queued.
+
+                            if (startTime < 0)
+                                return;
+
+                            Throwable failure = execute(task);
+
+                            ready = finish(task, failure, System.currentTimeMillis() - startTime);
+                        }
+
+                        submit(executor, ready);
+                    }
+                });
+            }
+            catch (RejectedExecutionException ex)
+            {
+                // The overall time limit has expired; the remaining tasks have been abandoned.
+            }
+        }
+    }
+
+    /**
+     * Marks the task as executing and returns its start time, or -1 if the task has been abandoned.
+     */
+    private synchronized long start(Task task)
+    {
+        if (task._finished)
+            return -1;
+
+        task._startTime = System.currentTimeMillis();
+
+        _running.add(task);
+
+        // Let the waiting thread compute the deadline of the task
+
+        if (_taskTimeout > 0)
+            notifyAll();
+
+        return task._startTime;
+    }
+
+    /**
+     * Records the outcome of a task. Returns the successors of the task that are now ready to be
+     * started. Does nothing if the task has already been finished, because it timed out.
+     */
+    private synchronized List finish(Task task, Throwable failure, long elapsed)
+    {
+        if (task._finished)
+            return Collections.EMPTY_LIST;
+
+        task._finished = true;
+        task._failure = failure;
+        task._elapsed = elapsed;
+
+        _running.remove(task);
+
+        if (!task._skipped)
+            logCompleted(task);
+
+        List result = new ArrayList();
+        boolean skip = !_runAfterFailure && (task._skipped || failure != null);
+
+        for (Iterator i = task._successors.iterator(); i.hasNext();)
+        {
+            Task successor = (Task) i.next();
+
+            if (skip)
+                successor._skipped = true;
+
+            if (--successor._pending == 0)
+                result.add(successor);
+        }
+
+        _remaining--;
+
+        if (_remaining == 0)
+            notifyAll();
+
+        return result;
+    }
+
+    private Throwable execute(Task task)
+    {
+        try
+        {
+            task._runnable.run();
+
+            return null;
+        }
+        catch (RuntimeException ex)
+        {
+            return ex;
+        }
+        catch (Error err)
+        {
+            return err;
+        }
+    }
+
+    private void logCompleted(Task task)
+    {
+        if (_log.isDebugEnabled())
+            _log.debug(OrdererMessages.taskCompleted(_taskType, task._name, task._elapsed));
+    }
+
+    private synchronized void rethrowFailure(List ordered)
+    {
+        Throwable failure = null;
+
+        for (Iterator i = ordered.iterator(); i.hasNext();)
+        {
+            Task task = (Task) i.next();
+
+            if (task._failure == null)
+                continue;
+
+            if (failure == null)
+                failure = task._failure;
+            else
+                _log.error(
+                        OrdererMessages.taskFailed(_taskType, task._name, task._failure),
+                        task._failure);
+        }
+
+        if (failure != null)
+            rethrow(failure);
+    }
+
+    private static void rethrow(Throwable failure)
+    {
+        if (failure instanceof Error)
+            throw (Error) failure;
+
+        throw (RuntimeException) failure;
+    }
+
+    private static final class Task
+    {
+        final Runnable _runnable;
+
+        final String _name;
+
+        final String _prereqs;
+
+        final String _postreqs;
+
+        /** Successor Tasks, which may only start once this task has finished. */
+        final Set _successors = new LinkedHashSet();
+
+        int _index;
+
+        /** Number of predecessors that have not yet finished. Guarded by the TaskGraph. */
+        int _pending;
+
+        /** Set when a predecessor failed or was skipped. Guarded by the TaskGraph. */
+        boolean _skipped;
+
+        /** Guarded by the TaskGraph. */
+        boolean _finished;
+
+        /** Guarded by the TaskGraph. */
+        long _startTime;
+
+        Throwable _failure;
+
+        long _elapsed = -1;
+
+        Task(Runnable runnable, String name, String prereqs, String postreqs)
+        {
+            _runnable = runnable;
+            _name = name;
+            _prereqs = prereqs;
+            _postreqs = postreqs;
+        }
+    }
+
+    private static final class TaskThreadFactory implements ThreadFactory
+    {
+        private final String _taskType;
+
+        private final AtomicInteger _count = new AtomicInteger();
+
+        TaskThreadFactory(String taskType)
+        {
+            _taskType = taskType;
+        }
+
+        public Thread newThread(Runnable r)
+        {
+            Thread result = new Thread(r, "HiveMind " + _taskType + " " + _count.incrementAndGet());
+
+            result.setDaemon(true);
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service;
+
+/**
+ * The code contributed by a service interceptor to a fused interceptor: a single class, generated
+ * for a service whose interceptors all provide fragments, that implements each service method as
+ * a chain of private methods (one per fragment) rather than as a chain of interceptor objects.
+ * <p>
+ * A fragment is created for a single service (see
+ * {@link org.apache.hivemind.definition.FusibleInterceptorConstructor}); it adds its fields
+ * through the {@link InterceptorFusion} and keeps their names for use in its method bodies.
+ * 
+ * @since 2.0
+ */
+public interface InterceptorFragment
+{
+    /**
+     * Invoked once, before any method implementation is added, to add the fields used by the
+     * fragment's methods.
+     */
+    public void addFields(InterceptorFusion fusion);
+
+    /**
+     * Returns true if the fragment intercepts the method. A method that is not intercepted is
+     * passed straight through to the next fragment, or to the service.
+     */
+    public boolean isIntercepted(MethodSignature sig);
+
+    /**
+     * Adds the fragment's implementation of a service method, using
+     * {@link InterceptorFusion#addMethod(String)}.
+     * 
+     * @param next
+     *            the method that the implementation must invoke to proceed (the next fragment's
+     *            implementation, or the service's method), passing the method parameters, as in
+     *            <code>next + "($$)"</code>
+     */
+    public void addMethodImplementation(InterceptorFusion fusion, MethodSignature sig, String next);
+}
@@ -0,0 +1,57 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service;
+
+/**
+ * Passed to an {@link InterceptorFragment}, to add its code to the fused interceptor class.
+ * 
+ * @since 2.0
+ */
+public interface InterceptorFusion
+{
+    /**
+     * Returns the fused interceptor class, to which the fragment may add methods of its own (named
+     * with {@link #getUniqueName(String)}).
+     */
+    public ClassFab getClassFab();
+
+    /**
+     * Adds a field to the fused interceptor class, which is assigned the value when the interceptor
+     * is instantiated.
+     * 
+     * @param name
+     *            the suggested name of the field
+     * @param type
+     *            the type of the field, which may not be primitive
+     * @param value
+     *            the value of the field
+     * @return the name of the field, unique within the class
+     */
+    public String addField(String name, Class type, Object value);
+
+    /**
+     * Returns a name, based on the suggested name, that is unique within the fused interceptor
+     * class.
+     */
+    public String getUniqueName(String name);
+
+    /**
+     * Adds the fragment's implementation of the service method currently being implemented (see
+     * {@link InterceptorFragment#addMethodImplementation(InterceptorFusion, MethodSignature, String)}).
+     * 
+     * @return the method, to which catch handlers may be added
+     */
+    public MethodFab addMethod(String body);
+}
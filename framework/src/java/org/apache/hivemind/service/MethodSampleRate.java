@@ -0,0 +1,65 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service;
+
+import org.apache.hivemind.impl.BaseLocatable;
+import org.apache.hivemind.util.ToStringBuilder;
+
+/**
+ * A <code>sample</code> parameter to the <code>hivemind.TracingInterceptor</code>: the rate at
+ * which invocations of methods matching a pattern are sampled.
+ * 
+ * @since 2.0
+ */
+public class MethodSampleRate extends BaseLocatable
+{
+    private String _methodPattern;
+
+    private int _rate;
+
+    public String getMethodPattern()
+    {
+        return _methodPattern;
+    }
+
+    public void setMethodPattern(String methodPattern)
+    {
+        _methodPattern = methodPattern;
+    }
+
+    /**
+     * One invocation in this many is sampled; 0 to sample none.
+     */
+    public int getRate()
+    {
+        return _rate;
+    }
+
+    public void setRate(int rate)
+    {
+        _rate = rate;
+    }
+
+    public String toString()
+    {
+        ToStringBuilder builder = new ToStringBuilder(this);
+
+        builder.append("methodPattern", _methodPattern);
+        builder.append("rate", _rate);
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,43 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service;
+
+import java.util.List;
+
+/**
+ * Provides access to the {@link ServicePoolStatistics} of each service using the pooled service
+ * model. A pool is registered when its service model is created, which is when the service is
+ * first referenced.
+ *
+ * @since 2.0
+ */
+public interface ServicePoolMonitor
+{
+    /**
+     * Invoked by the pooled service model to register the statistics for a service.
+     */
+    public void addServicePool(String serviceId, ServicePoolStatistics statistics);
+
+    /**
+     * Returns the ids of the services whose pools have been registered, in no particular order.
+     */
+    public List getPooledServiceIds();
+
+    /**
+     * Returns the statistics for the pool of the given service, or null if no pool has been
+     * registered for the service.
+     */
+    public ServicePoolStatistics getStatistics(String serviceId);
+}
@@ -0,0 +1,72 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service;
+
+/**
+ * Counters maintained by the pool behind a service using the pooled service model. Values are
+ * read without locking, so a set of values read together is not necessarily consistent.
+ *
+ * @since 2.0
+ * @see org.apache.hivemind.service.ServicePoolMonitor
+ */
+public interface ServicePoolStatistics
+{
+    /**
+     * The number of instances currently bound to a thread.
+     */
+    public int getActiveCount();
+
+    /**
+     * The number of instances waiting in the pool.
+     */
+    public int getIdleCount();
+
+    /**
+     * The configured maximum number of active instances, or 0 if unbounded.
+     */
+    public int getMaxActive();
+
+    /**
+     * The number of times an instance was obtained from the pool.
+     */
+    public long getBorrowCount();
+
+    /**
+     * The number of instances constructed.
+     */
+    public long getCreatedCount();
+
+    /**
+     * The number of instances discarded, because they were idle too long or because the pool was
+     * already full when they were returned.
+     */
+    public long getEvictedCount();
+
+    /**
+     * The number of times an instance could not be obtained because the pool was exhausted.
+     */
+    public long getExhaustedCount();
+
+    /**
+     * The total time, in nanoseconds, spent obtaining instances, including time spent waiting for
+     * an instance and time spent constructing new instances.
+     */
+    public long getTotalBorrowNanos();
+
+    /**
+     * The longest time, in nanoseconds, spent obtaining a single instance.
+     */
+    public long getMaxBorrowNanos();
+}
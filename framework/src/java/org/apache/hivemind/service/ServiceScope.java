@@ -0,0 +1,54 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service;
+
+/**
+ * An explicit scope, such as a request, to which the
+ * {@link org.apache.hivemind.internal.ServiceModel#SCOPED scoped} service models bind service
+ * implementations. Unlike a thread, a scope may be handed from one thread to another (see
+ * {@link ServiceScopeManager#attach(ServiceScope)}), and its lifecycle is controlled by whoever
+ * created it: service implementations are discarded, or returned to their pool, when the scope is
+ * {@link #close() closed}.
+ * <p>
+ * Implementations are threadsafe.
+ * 
+ * @since 2.0
+ */
+public interface ServiceScope
+{
+    /**
+     * Returns the object bound to the scope with the given key, or null if none.
+     */
+    public Object get(Object key);
+
+    /**
+     * Binds an object to the scope, unless an object is already bound with the same key. If the
+     * object implements {@link ServiceScopeListener}, it is notified when the scope is closed.
+     * 
+     * @return the object bound to the key, which is the provided value unless another thread bound
+     *         an object first
+     * @throws org.apache.hivemind.ApplicationRuntimeException
+     *             if the scope has been closed
+     */
+    public Object bind(Object key, Object value);
+
+    /**
+     * Closes the scope, notifying bound listeners in the reverse of the order in which they were
+     * bound. Closing a scope that is already closed does nothing.
+     */
+    public void close();
+
+    public boolean isClosed();
+}
@@ -0,0 +1,29 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service;
+
+/**
+ * Implemented by objects bound to a {@link ServiceScope} that need to know when the scope is
+ * closed.
+ * 
+ * @since 2.0
+ */
+public interface ServiceScopeListener
+{
+    /**
+     * Invoked when the scope to which the listener was bound is closed.
+     */
+    public void scopeDidClose();
+}
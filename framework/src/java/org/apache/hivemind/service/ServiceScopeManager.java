@@ -0,0 +1,61 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service;
+
+/**
+ * Creates {@link ServiceScope}s and tracks the scope attached to each thread; available as
+ * service <code>hivemind.ServiceScopeManager</code>. Services using the
+ * {@link org.apache.hivemind.internal.ServiceModel#SCOPED scoped} service models bind their
+ * implementations to the scope attached to the current thread. A typical request looks like:
+ * 
+ * <pre>
+ * ServiceScope scope = manager.createScope();
+ * ServiceScope previous = manager.attach(scope);
+ * try
+ * {
+ *     // Handle the request
+ * }
+ * finally
+ * {
+ *     manager.attach(previous);
+ *     scope.close();
+ * }
+ * </pre>
+ * 
+ * Work handed to another thread carries the scope along by attaching it in that thread.
+ * 
+ * @since 2.0
+ */
+public interface ServiceScopeManager
+{
+    /**
+     * Creates a new scope, which is not attached to any thread.
+     */
+    public ServiceScope createScope();
+
+    /**
+     * Returns the scope attached to the current thread, or null.
+     */
+    public ServiceScope getActiveScope();
+
+    /**
+     * Attaches the scope to the current thread, replacing any previously attached scope.
+     * 
+     * @param scope
+     *            the scope to attach, or null to detach the current scope
+     * @return the previously attached scope, or null
+     */
+    public ServiceScope attach(ServiceScope scope);
+}
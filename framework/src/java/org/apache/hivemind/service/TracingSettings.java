@@ -0,0 +1,103 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service;
+
+import org.apache.hivemind.impl.BaseLocatable;
+import org.apache.hivemind.util.ToStringBuilder;
+
+/**
+ * A <code>settings</code> parameter to the <code>hivemind.TracingInterceptor</code>, used for all
+ * methods of the service.
+ * 
+ * @since 2.0
+ */
+public class TracingSettings extends BaseLocatable
+{
+    private int _sampleRate;
+
+    private int _rateLimit = 10;
+
+    private int _burst = 10;
+
+    private long _slowThreshold = 1000;
+
+    /**
+     * The sample rate of methods that do not match a {@link MethodSampleRate} pattern: one
+     * invocation in this many is sampled, or none if 0 (the default).
+     */
+    public int getSampleRate()
+    {
+        return _sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate)
+    {
+        _sampleRate = sampleRate;
+    }
+
+    /**
+     * The number of sampled invocations logged per second, or 0 for no limit. Defaults to 10.
+     */
+    public int getRateLimit()
+    {
+        return _rateLimit;
+    }
+
+    public void setRateLimit(int rateLimit)
+    {
+        _rateLimit = rateLimit;
+    }
+
+    /**
+     * The number of sampled invocations that may be logged at once, after a quiet period. Defaults
+     * to 10.
+     */
+    public int getBurst()
+    {
+        return _burst;
+    }
+
+    public void setBurst(int burst)
+    {
+        _burst = burst;
+    }
+
+    /**
+     * The time, in milliseconds, after which an invocation is slow, and always logged; or 0 to not
+     * log slow invocations. Defaults to 1000.
+     */
+    public long getSlowThreshold()
+    {
+        return _slowThreshold;
+    }
+
+    public void setSlowThreshold(long slowThreshold)
+    {
+        _slowThreshold = slowThreshold;
+    }
+
+    public String toString()
+    {
+        ToStringBuilder builder = new ToStringBuilder(this);
+
+        builder.append("sampleRate", _sampleRate);
+        builder.append("rateLimit", _rateLimit);
+        builder.append("burst", _burst);
+        builder.append("slowThreshold", new Long(_slowThreshold));
+
+        return builder.toString();
+    }
+}
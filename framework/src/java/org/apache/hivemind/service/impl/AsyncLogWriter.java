@@ -0,0 +1,418 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.util.Defense;
+
+/**
+ * Writes the method entry, exit and exception events of logging interceptors on a background
+ * thread, so that the intercepted methods pay only for recording the event. Events are recorded
+ * into a fixed ring of reusable slots, claimed without locking; the writer thread formats them
+ * (exactly as {@link LoggingUtils} does) and logs them in batches.
+ * <p>
+ * When the ring is full, events are dropped. With the {@link #OVERFLOW_SAMPLE sample} overflow
+ * policy, only one event in {@link #setSampleRate(int) sampleRate} is recorded once the ring is
+ * more than half full, leaving room for a representative sample of later events. The number of
+ * dropped events is logged periodically.
+ * <p>
+ * Since events are formatted later, on another thread, the arguments and results of methods are
+ * formatted as they are at that time. After {@link #shutdown()}, events are written
+ * synchronously.
+ * 
+ * @since 2.0
+ */
+public class AsyncLogWriter
+{
+    /** Overflow policy: events are recorded until the ring is full, then dropped. */
+    public static final String OVERFLOW_DROP = "drop";
+
+    /** Overflow policy: events are sampled once the ring is half full, then dropped when full. */
+    public static final String OVERFLOW_SAMPLE = "sample";
+
+    private static final Log LOG = LogFactory.getLog(AsyncLogWriter.class);
+
+    private static final int ENTRY = 1;
+
+    private static final int EXIT = 2;
+
+    private static final int VOID_EXIT = 3;
+
+    private static final int EXCEPTION = 4;
+
+    /** How long the writer thread waits for further events once the ring is empty. */
+    private static final long IDLE_NANOS = 10 * 1000 * 1000;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /**
+     * A recorded event. A slot is free for the event at position p in the ring when its sequence
+     * is p, and holds that event once its sequence is p + 1.
+     */
+    private static final class Slot
+    {
+        volatile long _sequence;
+
+        int _type;
+
+        Log _log;
+
+        String _methodName;
+
+        Object _value;
+
+        Throwable _exception;
+
+        void clear()
+        {
+            _log = null;
+            _methodName = null;
+            _value = null;
+            _exception = null;
+        }
+    }
+
+    private final Slot[] _slots;
+
+    private final int _mask;
+
+    /** The position of the next event to be recorded. */
+    private final AtomicLong _tail = new AtomicLong();
+
+    /** The position of the next event to be written; only advanced by the writer thread. */
+    private volatile long _head;
+
+    private final AtomicLong _dropped = new AtomicLong();
+
+    private final AtomicInteger _sampleCount = new AtomicInteger();
+
+    private final boolean _sample;
+
+    private int _sampleRate = 10;
+
+    private volatile boolean _shutdown;
+
+    /**
+     * Set by the writer thread once it stops writing events; a recorder that publishes an event
+     * afterwards writes it itself.
+     */
+    private volatile boolean _stopped;
+
+    private final Thread _thread;
+
+    /**
+     * Creates a writer and starts its thread.
+     * 
+     * @param capacity
+     *            the number of events that may be recorded but not yet written; rounded up to a
+     *            power of two
+     * @param overflow
+     *            the overflow policy, {@link #OVERFLOW_DROP} or {@link #OVERFLOW_SAMPLE}
+     */
+    public AsyncLogWriter(int capacity, String overflow)
+    {
+        Defense.notNull(overflow, "overflow");
+
+        if (!overflow.equals(OVERFLOW_DROP) && !overflow.equals(OVERFLOW_SAMPLE))
+            throw new ApplicationRuntimeException(ServiceMessages.unknownOverflowPolicy(overflow));
+
+        int size = 2;
+
+        while (size < capacity)
+            size <<= 1;
+
+        _slots = new Slot[size];
+        _mask = size - 1;
+
+        for (int i = 0; i < size; i++)
+        {
+            _slots[i] = new Slot();
+            _slots[i]._sequence = i;
+        }
+
+        _sample = overflow.equals(OVERFLOW_SAMPLE);
+
+        _thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                writeEvents();
+            }
+        }, "HiveMind async log writer " + THREAD_COUNT.incrementAndGet());
+
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * With the {@link #OVERFLOW_SAMPLE sample} overflow policy, one event in this many is recorded
+     * once the ring is more than half full. Defaults to 10.
+     */
+    public void setSampleRate(int sampleRate)
+    {
+        _sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * Returns the number of events dropped (or not sampled) so far.
+     */
+    public long getDroppedCount()
+    {
+        return _dropped.get();
+    }
+
+    public void entry(Log log, String methodName, Object[] args)
+    {
+        record(ENTRY, log, methodName, args, null);
+    }
+
+    public void exit(Log log, String methodName, Object result)
+    {
+        record(EXIT, log, methodName, result, null);
+    }
+
+    public void voidExit(Log log, String methodName)
+    {
+        record(VOID_EXIT, log, methodName, null, null);
+    }
+
+    public void exception(Log log, String methodName, Throwable t)
+    {
+        record(EXCEPTION, log, methodName, null, t);
+    }
+
+    private void record(int type, Log log, String methodName, Object value, Throwable exception)
+    {
+        if (_shutdown)
+        {
+            write(type, log, methodName, value, exception);
+            return;
+        }
+
+        long position = _tail.get();
+        Slot slot;
+
+        while (true)
+        {
+            slot = _slots[(int) position & _mask];
+
+            long difference = slot._sequence - position;
+
+            if (difference == 0)
+            {
+                if (_sample && !sampled(position))
+                {
+                    _dropped.incrementAndGet();
+                    return;
+                }
+
+                if (_tail.compareAndSet(position, position + 1))
+                    break;
+
+                position = _tail.get();
+            }
+            else if (difference < 0)
+            {
+                // The ring is full.
+
+                _dropped.incrementAndGet();
+                return;
+            }
+            else
+                position = _tail.get();
+        }
+
+        slot._type = type;
+        slot._log = log;
+        slot._methodName = methodName;
+        slot._value = value;
+        slot._exception = exception;
+
+        // Publishes the event to the writer thread.
+
+        slot._sequence = position + 1;
+
+        // The slot may have been claimed just before shutdown, and published after the writer
+        // thread's last batch.
+
+        if (_stopped)
+            drain();
+    }
+
+    /**
+     * Decides whether to record the event at the position; always true while the ring is at most
+     * half full.
+     */
+    private boolean sampled(long position)
+    {
+        if (position - _head <= _slots.length / 2)
+            return true;
+
+        return _sampleCount.incrementAndGet() % _sampleRate == 0;
+    }
+
+    private void writeEvents()
+    {
+        long reportedDropped = 0;
+
+        while (true)
+        {
+            int written = writeBatch();
+
+            long dropped = _dropped.get();
+
+            if (dropped != reportedDropped)
+            {
+                LOG.warn(ServiceMessages.loggingEventsDropped(dropped - reportedDropped));
+
+                reportedDropped = dropped;
+            }
+
+            if (written > 0)
+                continue;
+
+            if (_shutdown)
+            {
+                // Events published from now on are written by the threads that record them;
+                // any published before are written here.
+
+                _stopped = true;
+
+                drain();
+
+                return;
+            }
+
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+
+    /**
+     * Writes the events published after the writer thread stopped.
+     */
+    private synchronized void drain()
+    {
+        writeBatch();
+    }
+
+    /**
+     * Writes the events recorded so far; returns the number of events written.
+     */
+    private int writeBatch()
+    {
+        int count = 0;
+
+        while (true)
+        {
+            Slot slot = _slots[(int) _head & _mask];
+
+            if (slot._sequence != _head + 1)
+                return count;
+
+            try
+            {
+                write(slot._type, slot._log, slot._methodName, slot._value, slot._exception);
+            }
+            catch (RuntimeException ex)
+            {
+                LOG.error(ex.getMessage(), ex);
+            }
+
+            slot.clear();
+
+            // Frees the slot for the event one lap later.
+
+            slot._sequence = _head + _slots.length;
+
+            _head++;
+            count++;
+        }
+    }
+
+    private void write(int type, Log log, String methodName, Object value, Throwable exception)
+    {
+        switch (type)
+        {
+            case ENTRY:
+                LoggingUtils.entry(log, methodName, (Object[]) value);
+                break;
+
+            case EXIT:
+                LoggingUtils.exit(log, methodName, value);
+                break;
+
+            case VOID_EXIT:
+                LoggingUtils.voidExit(log, methodName);
+                break;
+
+            default:
+                LoggingUtils.exception(log, methodName, exception);
+                break;
+        }
+    }
+
+    /**
+     * Waits until all events recorded so far have been written.
+     */
+    public void flush()
+    {
+        long tail = _tail.get();
+
+        while (_thread.isAlive() && !written(tail))
+        {
+            LockSupport.unpark(_thread);
+
+            Thread.yield();
+        }
+    }
+
+    private boolean written(long position)
+    {
+        // The slot of the last event is freed, for the event one lap later, once the event has
+        // been written.
+
+        if (position == 0)
+            return true;
+
+        return _slots[(int) (position - 1) & _mask]._sequence >= position - 1 + _slots.length;
+    }
+
+    /**
+     * Writes the outstanding events and stops the writer thread. Events recorded afterwards are
+     * written synchronously.
+     */
+    public void shutdown()
+    {
+        _shutdown = true;
+
+        LockSupport.unpark(_thread);
+
+        try
+        {
+            _thread.join();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
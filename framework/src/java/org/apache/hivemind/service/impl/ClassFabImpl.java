@@ -123,9 +123,43 @@ public class ClassFabImpl extends AbstractFab implements ClassFab
 
     private List _constructors = new ArrayList();
 
+    /**
+     * List of {@link MethodFab}, in the order added.
+     * 
+     * @since 2.0
+     */
+    private List _methodFabs = new ArrayList();
+
+    /**
+     * @since 2.0
+     */
+    private final GeneratedClassCache _cache;
+
+    /**
+     * Steps that compile method and constructor bodies, held back until {@link #createClass()}
+     * when classes are cached (so that no compilation occurs if the class is found in the
+     * cache). Null when compiling each body as it is added.
+     * 
+     * @since 2.0
+     */
+    private final List _deferredSteps;
+
     public ClassFabImpl(CtClassSource source, CtClass ctClass)
+    {
+        this(source, ctClass, null);
+    }
+
+    /**
+     * @param cache
+     *            cache of previously fabricated classes, or null for no caching
+     * @since 2.0
+     */
+    public ClassFabImpl(CtClassSource source, CtClass ctClass, GeneratedClassCache cache)
     {
         super(source, ctClass);
+
+        _cache = cache;
+        _deferredSteps = cache == null ? null : new ArrayList();
     }
 
     /**
@@ -246,13 +280,24 @@ public class ClassFabImpl extends AbstractFab implements ClassFab
     }
     
     public void addField(String name, Class type)
+    {
+        addField(Modifier.PRIVATE, name, type);
+    }
+
+    /**
+     * Adds a new field with the given modifiers (for example, to make the field
+     * <code>volatile</code>), name and type.
+     * 
+     * @since 2.0
+     */
+    public void addField(int modifiers, String name, Class type)
     {
         CtClass ctType = convertClass(type);
 
         try
         {
             CtField field = new CtField(ctType, name, getCtClass());
-            field.setModifiers(Modifier.PRIVATE);
+            field.setModifiers(modifiers);
 
             getCtClass().addField(field);
         }
@@ -280,15 +325,15 @@ public class ClassFabImpl extends AbstractFab implements ClassFab
         CtClass[] ctParameters = convertClasses(ms.getParameterTypes());
         CtClass[] ctExceptions = convertClasses(ms.getExceptionTypes());
 
-        CtMethod method = new CtMethod(ctReturnType, ms.getName(), ctParameters, getCtClass());
+        final CtMethod method = new CtMethod(ctReturnType, ms.getName(), ctParameters,
+                getCtClass());
+        final MethodSignature signature = ms;
+        final String methodBody = body;
 
         try
         {
             method.setModifiers(modifiers);
-            method.setBody(body);
             method.setExceptionTypes(ctExceptions);
-
-            getCtClass().addMethod(method);
         }
         catch (Exception ex)
         {
@@ -298,11 +343,32 @@ public class ClassFabImpl extends AbstractFab implements ClassFab
                     ex), ex);
         }
 
+        compile(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    method.setBody(methodBody);
+
+                    getCtClass().addMethod(method);
+                }
+                catch (Exception ex)
+                {
+                    throw new ApplicationRuntimeException(ServiceMessages.unableToAddMethod(
+                            signature,
+                            getCtClass(),
+                            ex), ex);
+                }
+            }
+        });
+
         // Return a MethodFab so the caller can add catches.
 
-        MethodFab result = new MethodFabImpl(getSource(), ms, method, body);
+        MethodFab result = new MethodFabImpl(this, getSource(), ms, method, body);
 
         _methods.put(ms, result);
+        _methodFabs.add(result);
 
         return result;
     }
@@ -317,15 +383,12 @@ public class ClassFabImpl extends AbstractFab implements ClassFab
         CtClass[] ctParameters = convertClasses(parameterTypes);
         CtClass[] ctExceptions = convertClasses(exceptions);
 
+        final CtConstructor constructor = new CtConstructor(ctParameters, getCtClass());
+        final String constructorBody = body;
+
         try
         {
-            CtConstructor constructor = new CtConstructor(ctParameters, getCtClass());
             constructor.setExceptionTypes(ctExceptions);
-            constructor.setBody(body);
-
-            getCtClass().addConstructor(constructor);
-
-            _constructors.add(new AddedConstructor(parameterTypes, exceptions, body));
         }
         catch (Exception ex)
         {
@@ -333,6 +396,109 @@ public class ClassFabImpl extends AbstractFab implements ClassFab
                     getCtClass(),
                     ex), ex);
         }
+
+        compile(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    constructor.setBody(constructorBody);
+
+                    getCtClass().addConstructor(constructor);
+                }
+                catch (Exception ex)
+                {
+                    throw new ApplicationRuntimeException(ServiceMessages.unableToAddConstructor(
+                            getCtClass(),
+                            ex), ex);
+                }
+            }
+        });
+
+        _constructors.add(new AddedConstructor(parameterTypes, exceptions, body));
+    }
+
+    /**
+     * Performs a step that compiles code into the class; immediately, or (when caching) once it
+     * is known that the class must be compiled.
+     * 
+     * @since 2.0
+     */
+    void compile(Runnable step)
+    {
+        if (_deferredSteps == null)
+            step.run();
+        else
+            _deferredSteps.add(step);
+    }
+
+    /**
+     * Creates the class; when caching, the class is loaded from the cache if possible, and
+     * otherwise compiled and stored in the cache.
+     */
+    public Class createClass()
+    {
+        if (_cache == null)
+            return super.createClass();
+
+        List classNames = new ArrayList();
+        String definition = _cache.prepareDefinition(
+                getName(),
+                getDefinition(),
+                classNames,
+                getSource());
+        String[] names = (String[]) classNames.toArray(new String[classNames.size()]);
+
+        byte[] bytecode = _cache.find(names, definition);
+
+        if (bytecode != null)
+            return getSource().createClass(bytecode);
+
+        for (Iterator i = _deferredSteps.iterator(); i.hasNext();)
+            ((Runnable) i.next()).run();
+
+        _deferredSteps.clear();
+
+        bytecode = getSource().toBytecode(getCtClass());
+
+        _cache.store(names, definition, bytecode);
+
+        return super.createClass();
+    }
+
+    /**
+     * Returns the complete definition of the class: everything that determines its bytecode.
+     * 
+     * @since 2.0
+     */
+    private String getDefinition()
+    {
+        StringBuffer buffer = new StringBuffer();
+
+        try
+        {
+            buildClassAndInheritance(buffer);
+
+            buildFields(buffer);
+        }
+        catch (NotFoundException ex)
+        {
+            throw new ApplicationRuntimeException(ServiceMessages.unableToWriteClass(
+                    getCtClass(),
+                    ex), ex);
+        }
+
+        buildConstructors(buffer);
+
+        for (Iterator i = _methodFabs.iterator(); i.hasNext();)
+        {
+            buffer.append("\n");
+            buffer.append(i.next());
+            buffer.append("\n");
+        }
+
+        return buffer.toString();
     }
 
 }
\ No newline at end of file
@@ -14,8 +14,7 @@
 
 package org.apache.hivemind.service.impl;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.security.ProtectionDomain;
 
 /**
  * ClassLoader used to properly instantiate newly created classes.
@@ -25,7 +24,11 @@ import java.util.List;
  */
 class ClassFactoryClassLoader extends ClassLoader
 {
-    private List _loaders = new ArrayList();
+    /**
+     * The delegate class loaders; replaced (never modified) when a loader is added, so that it
+     * may be searched without a lock.
+     */
+    private volatile ClassLoader[] _loaders = new ClassLoader[0];
 
     public ClassFactoryClassLoader(ClassLoader parent)
     {
@@ -37,22 +40,36 @@ class ClassFactoryClassLoader extends ClassLoader
      */
     public synchronized void addDelegateLoader(ClassLoader loader)
     {
-        _loaders.add(loader);
+        ClassLoader[] loaders = new ClassLoader[_loaders.length + 1];
+
+        System.arraycopy(_loaders, 0, loaders, 0, _loaders.length);
+        loaders[_loaders.length] = loader;
+
+        _loaders = loaders;
+    }
+
+    /**
+     * Defines a fabricated class.
+     * 
+     * @since 2.0
+     */
+    Class defineClass(String name, byte[] bytecode, ProtectionDomain domain)
+    {
+        return defineClass(name, bytecode, 0, bytecode.length, domain);
     }
 
     /**
      * Searches each of the delegate class loaders for the given class.
      */
-    protected synchronized Class findClass(String name) throws ClassNotFoundException
+    protected Class findClass(String name) throws ClassNotFoundException
     {
-        int count = _loaders.size();
-        for (int i = 0; i < count; i++)
-        {
-            ClassLoader l = (ClassLoader) _loaders.get(i);
+        ClassLoader[] loaders = _loaders;
 
+        for (int i = 0; i < loaders.length; i++)
+        {
             try
             {
-                return l.loadClass(name);
+                return loaders[i].loadClass(name);
             }
             catch (ClassNotFoundException ex)
             {
@@ -61,4 +78,5 @@ class ClassFactoryClassLoader extends ClassLoader
         }
 
         throw new ClassNotFoundException(name);
-    }}
\ No newline at end of file
+    }
+}
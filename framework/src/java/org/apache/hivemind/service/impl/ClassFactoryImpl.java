@@ -14,6 +14,8 @@
 
 package org.apache.hivemind.service.impl;
 
+import java.io.File;
+
 import javassist.CtClass;
 
 import org.apache.hivemind.ApplicationRuntimeException;
@@ -28,6 +30,16 @@ import org.apache.hivemind.service.InterfaceFab;
  */
 public class ClassFactoryImpl implements ClassFactory
 {
+    /**
+     * System property naming a directory in which to cache fabricated classes between runs of
+     * the application. By default, no cache is used.
+     * 
+     * @see GeneratedClassCache
+     * @since 2.0
+     */
+    public static final String CLASS_CACHE_DIRECTORY_PROPERTY =
+        "org.apache.hivemind.class-cache-directory";
+
     /**
      * ClassPool shared by all modules (all CtClassSource instances).
      */
@@ -35,13 +47,39 @@ public class ClassFactoryImpl implements ClassFactory
 
     private CtClassSource _classSource = new CtClassSource(_pool);
 
+    private GeneratedClassCache _classCache;
+
+    public ClassFactoryImpl()
+    {
+        String directory = System.getProperty(CLASS_CACHE_DIRECTORY_PROPERTY);
+
+        if (directory != null)
+            _classCache = new GeneratedClassCache(new File(directory));
+    }
+
+    /**
+     * Sets the cache of fabricated classes, or null to compile every class.
+     * 
+     * @since 2.0
+     */
+    public void setClassCache(GeneratedClassCache classCache)
+    {
+        _classCache = classCache;
+    }
+
+    /** @since 2.0 */
+    public GeneratedClassCache getClassCache()
+    {
+        return _classCache;
+    }
+
     public ClassFab newClass(String name, Class superClass)
     {
         try
         {
             CtClass ctNewClass = _classSource.newClass(name, superClass);
 
-            return new ClassFabImpl(_classSource, ctNewClass);
+            return new ClassFabImpl(_classSource, ctNewClass, _classCache);
         }
         catch (Exception ex)
         {
@@ -60,7 +98,7 @@ public class ClassFactoryImpl implements ClassFactory
         {
             CtClass ctNewClass = _classSource.newInterface(name);
 
-            return new InterfaceFabImpl(_classSource, ctNewClass);
+            return new InterfaceFabImpl(_classSource, ctNewClass, _classCache);
         }
         catch (Exception ex)
         {
@@ -14,6 +14,10 @@
 
 package org.apache.hivemind.service.impl;
 
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javassist.CtClass;
 import javassist.NotFoundException;
 
@@ -31,7 +35,7 @@ public class CtClassSource
 {
     private HiveMindClassPool _pool;
 
-    private int _createdClassCount = 0;
+    private final AtomicInteger _createdClassCount = new AtomicInteger();
 
     /**
      * Returns the number of classes (and interfaces) created by this source.
@@ -42,7 +46,7 @@ public class CtClassSource
      */
     public int getCreatedClassCount()
     {
-        return _createdClassCount;
+        return _createdClassCount.get();
     }
 
     public CtClassSource(HiveMindClassPool pool)
@@ -119,7 +123,7 @@ public class CtClassSource
         {
             Class result = _pool.toClass(ctClass);
 
-            _createdClassCount++;
+            _createdClassCount.incrementAndGet();
 
             return result;
         }
@@ -129,4 +133,55 @@ public class CtClassSource
                     ex);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the bytecode for a fabricated class.
+     * 
+     * @since 2.0
+     */
+    public byte[] toBytecode(CtClass ctClass)
+    {
+        try
+        {
+            return ctClass.toBytecode();
+        }
+        catch (Throwable ex)
+        {
+            throw new ApplicationRuntimeException(ServiceMessages.unableToWriteClass(ctClass, ex),
+                    ex);
+        }
+    }
+
+    /**
+     * Returns the location of the class file for the named class, as seen by the class pool, or
+     * null if there is no such class file.
+     * 
+     * @since 2.0
+     */
+    public URL findClassFile(String className)
+    {
+        return _pool.find(className);
+    }
+
+    /**
+     * Converts previously generated bytecode into a real class, as with
+     * {@link #createClass(CtClass)}. The class replaces any CtClass of the same name.
+     * 
+     * @since 2.0
+     */
+    public Class createClass(byte[] bytecode)
+    {
+        CtClass ctClass;
+
+        try
+        {
+            ctClass = _pool.makeClass(new ByteArrayInputStream(bytecode));
+        }
+        catch (Throwable ex)
+        {
+            throw new ApplicationRuntimeException(ServiceMessages.unableToDefineClass(ex), ex);
+        }
+
+        return createClass(ctClass);
+    }
+}
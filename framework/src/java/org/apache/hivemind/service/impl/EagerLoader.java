@@ -14,33 +14,69 @@
 
 package org.apache.hivemind.service.impl;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.ErrorHandler;
+import org.apache.hivemind.impl.DefaultErrorHandler;
+import org.apache.hivemind.impl.StartupImpl;
 import org.apache.hivemind.internal.ServicePoint;
+import org.apache.hivemind.order.TaskGraph;
 import org.apache.hivemind.util.Defense;
 
 /**
  * Implementation of the <code>hivemind.EagerLoad</code> service, which
  * is contributed into to <code>hivemind.Startup</code> configuration point.
+ * <p>
+ * Services are instantiated one after another unless more threads are configured (see
+ * {@link StartupImpl#STARTUP_THREADS_PROPERTY}), in which case they are instantiated concurrently.
+ * The time taken to instantiate each service is logged at debug level.
  *
  * @author Howard Lewis Ship
  */
 public class EagerLoader implements Runnable
 {
+    private static final Log LOG = LogFactory.getLog(EagerLoader.class);
+
     private List _servicePoints;
 
+    private ErrorHandler _errorHandler = new DefaultErrorHandler();
+
+    private int _threads = StartupImpl.getStartupThreads();
+
+    private TaskGraph _graph;
+
     public void run()
     {
+        _graph = new TaskGraph(LOG, _errorHandler, "eager load");
+
+        Set ids = new HashSet();
+
         Iterator i = _servicePoints.iterator();
         while (i.hasNext())
         {
             Object untypedPoint = i.next();
             Defense.isContributionAssignable(untypedPoint, ServicePoint.class);
-            ServicePoint point = (ServicePoint) untypedPoint;
+            final ServicePoint point = (ServicePoint) untypedPoint;
+            String id = point.getExtensionPointId();
 
-            point.forceServiceInstantiation();
+            if (!ids.add(id))
+                continue;
+
+            _graph.add(new Runnable()
+            {
+                public void run()
+                {
+                    point.forceServiceInstantiation();
+                }
+            }, id, null, null);
         }
+
+        _graph.run(_threads);
     }
 
     public void setServicePoints(List list)
@@ -48,4 +84,30 @@ public class EagerLoader implements Runnable
         _servicePoints = list;
     }
 
+    /** @since 2.0 */
+    public void setErrorHandler(ErrorHandler errorHandler)
+    {
+        _errorHandler = errorHandler;
+    }
+
+    /**
+     * Sets the number of threads used to instantiate services.
+     * 
+     * @since 2.0
+     */
+    public void setThreads(int threads)
+    {
+        _threads = threads;
+    }
+
+    /**
+     * Returns the time, in milliseconds, taken to instantiate the identified service during the most
+     * recent execution, or -1 if it was not instantiated.
+     * 
+     * @since 2.0
+     */
+    public long getElapsedTime(String serviceId)
+    {
+        return _graph == null ? -1 : _graph.getElapsedTime(serviceId);
+    }
 }
@@ -0,0 +1,225 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.InterceptorStack;
+import org.apache.hivemind.service.BodyBuilder;
+import org.apache.hivemind.service.ClassFab;
+import org.apache.hivemind.service.ClassFabUtils;
+import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
+import org.apache.hivemind.service.InterceptorFusion;
+import org.apache.hivemind.service.MethodFab;
+import org.apache.hivemind.service.MethodIterator;
+import org.apache.hivemind.service.MethodSignature;
+
+/**
+ * Creates a fused interceptor: a single interceptor object that contains the code of several
+ * {@link InterceptorFragment}s. Each service method is implemented by the first intercepting
+ * fragment; its implementation invokes a private method added by the next intercepting fragment,
+ * and so on, until the last one invokes the next object in the interceptor stack. Compared to a
+ * stack of interceptor objects, the invocations are all within a single class, and can't be
+ * megamorphic, which lets the JIT inline the whole path.
+ * 
+ * @since 2.0
+ */
+public class FusedInterceptorClassFactory
+{
+    private ClassFactory _factory;
+
+    public FusedInterceptorClassFactory(ClassFactory factory)
+    {
+        _factory = factory;
+    }
+
+    /**
+     * Creates the fused interceptor (which is not pushed onto the stack).
+     * 
+     * @param stack
+     *            the stack, whose top object is invoked by the fused interceptor
+     * @param fragments
+     *            the fragments, in runtime order (the first fragment is invoked first)
+     * @param description
+     *            describes the fragments, for the interceptor's toString()
+     */
+    public Object createInterceptor(InterceptorStack stack, InterceptorFragment[] fragments,
+            String description)
+    {
+        Class serviceInterface = stack.getServiceInterface();
+
+        ClassFab classFab = _factory.newClass(
+                ClassFabUtils.generateClassName(serviceInterface),
+                Object.class);
+
+        classFab.addInterface(serviceInterface);
+
+        Class topClass = ClassFabUtils.getInstanceClass(classFab, stack.peek(), serviceInterface);
+
+        classFab.addField("_delegate", topClass);
+
+        Fusion fusion = new Fusion(classFab);
+
+        for (int i = 0; i < fragments.length; i++)
+            fragments[i].addFields(fusion);
+
+        MethodIterator mi = new MethodIterator(serviceInterface);
+
+        while (mi.hasNext())
+            addServiceMethod(fusion, fragments, mi.next());
+
+        if (!mi.getToString())
+            ClassFabUtils.addToStringMethod(classFab, "<FusedInterceptor " + description + " for "
+                    + stack.getServiceExtensionPointId() + "(" + serviceInterface.getName() + ")>");
+
+        classFab.addConstructor(new Class[]
+        { Object[].class, topClass }, null, fusion.getConstructorBody());
+
+        Class interceptorClass = classFab.createClass();
+
+        try
+        {
+            Constructor c = interceptorClass.getConstructors()[0];
+
+            return c.newInstance(new Object[]
+            { fusion.getFieldValues(), stack.peek() });
+        }
+        catch (Exception ex)
+        {
+            throw new ApplicationRuntimeException(ServiceMessages.errorInstantiatingInterceptor(
+                    description,
+                    stack,
+                    interceptorClass,
+                    ex), ex);
+        }
+    }
+
+    /**
+     * Adds the implementations of a service method, starting with the last (innermost) intercepting
+     * fragment, so that each method is added before the method that invokes it.
+     */
+    private void addServiceMethod(Fusion fusion, InterceptorFragment[] fragments,
+            MethodSignature sig)
+    {
+        List intercepting = new ArrayList();
+
+        for (int i = 0; i < fragments.length; i++)
+        {
+            if (fragments[i].isIntercepted(sig))
+                intercepting.add(fragments[i]);
+        }
+
+        String next = "_delegate." + sig.getName();
+
+        for (int i = intercepting.size() - 1; i >= 0; i--)
+        {
+            InterceptorFragment fragment = (InterceptorFragment) intercepting.get(i);
+
+            if (i == 0)
+                fusion.setMethod(Modifier.PUBLIC, sig);
+            else
+                fusion.setMethod(Modifier.PRIVATE, new MethodSignature(sig.getReturnType(), fusion
+                        .getUniqueName("_" + sig.getName()), sig.getParameterTypes(), sig
+                        .getExceptionTypes()));
+
+            fragment.addMethodImplementation(fusion, sig, next);
+
+            next = fusion.getMethodName();
+        }
+
+        if (intercepting.isEmpty())
+            fusion.getClassFab().addMethod(Modifier.PUBLIC, sig, "return ($r) " + next + "($$);");
+    }
+
+    private static class Fusion implements InterceptorFusion
+    {
+        private ClassFab _classFab;
+
+        private int _uid;
+
+        private List _fieldValues = new ArrayList();
+
+        private BodyBuilder _constructor = new BodyBuilder();
+
+        private int _modifiers;
+
+        private MethodSignature _sig;
+
+        Fusion(ClassFab classFab)
+        {
+            _classFab = classFab;
+
+            _constructor.begin();
+            _constructor.addln("_delegate = $2;");
+        }
+
+        public ClassFab getClassFab()
+        {
+            return _classFab;
+        }
+
+        public String addField(String name, Class type, Object value)
+        {
+            String fieldName = getUniqueName(name);
+
+            _classFab.addField(fieldName, type);
+
+            _constructor.addln("{0} = ({1}) $1[{2}];", fieldName, ClassFabUtils
+                    .getJavaClassName(type), Integer.toString(_fieldValues.size()));
+
+            _fieldValues.add(value);
+
+            return fieldName;
+        }
+
+        public String getUniqueName(String name)
+        {
+            return name + "$" + _uid++;
+        }
+
+        public MethodFab addMethod(String body)
+        {
+            return _classFab.addMethod(_modifiers, _sig, body);
+        }
+
+        void setMethod(int modifiers, MethodSignature sig)
+        {
+            _modifiers = modifiers;
+            _sig = sig;
+        }
+
+        String getMethodName()
+        {
+            return _sig.getName();
+        }
+
+        String getConstructorBody()
+        {
+            _constructor.end();
+
+            return _constructor.toString();
+        }
+
+        Object[] getFieldValues()
+        {
+            return _fieldValues.toArray();
+        }
+    }
+}
@@ -0,0 +1,481 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import javassist.bytecode.ClassFile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * An on-disk cache of the bytecode of classes fabricated by {@link ClassFabImpl}, so that the
+ * same class need not be compiled by Javassist each time the application starts. Entries are
+ * addressed by a SHA-1 hash of the class definition: its superclass, interfaces, fields,
+ * constructors and methods (including method bodies, catches and extensions).
+ * <p>
+ * Fabricated class names are unique to each run, so they are replaced with placeholders, both in
+ * the definition and in the stored bytecode: the class itself becomes {@link #CACHED_CLASS_NAME},
+ * and other fabricated classes it refers to (such as the outer proxy referenced by an inner
+ * proxy) are numbered in order of appearance. The definitions of the referenced classes are part
+ * of the definition of the class, by way of their hashes.
+ * <p>
+ * The definition also includes a checksum of the class file of each class it names (in field
+ * and method signatures, and in method bodies), so that a class compiled against one version of
+ * the application's libraries is not reused with another.
+ * <p>
+ * Problems reading the cache are logged, and treated as a miss.
+ * 
+ * @since 2.0
+ */
+public class GeneratedClassCache
+{
+    private static final Log LOG = LogFactory.getLog(GeneratedClassCache.class);
+
+    /**
+     * Name given to cached classes in place of the name of the fabricated class.
+     */
+    static final String CACHED_CLASS_NAME = "$HiveMindCachedClass";
+
+    private static final int MAGIC = 0x484d4343;
+
+    private final File _directory;
+
+    private static final Pattern CLASS_NAME_PATTERN = Pattern.compile("\\$[\\w$]+");
+
+    private static final Pattern QUALIFIED_NAME_PATTERN = Pattern
+            .compile("\\b[A-Za-z_][\\w$]*(\\.[A-Za-z_][\\w$]*)+");
+
+    /**
+     * Hash of the definition of each class fabricated through the cache, keyed on class name.
+     */
+    private final Map _keys = new ConcurrentHashMap();
+
+    /**
+     * Checksum of each class file named by a class definition, keyed on the location of the
+     * class file.
+     */
+    private final Map _checksums = new ConcurrentHashMap();
+
+    private final AtomicInteger _hitCount = new AtomicInteger();
+
+    private final AtomicInteger _missCount = new AtomicInteger();
+
+    public GeneratedClassCache(File directory)
+    {
+        _directory = directory;
+    }
+
+    public File getDirectory()
+    {
+        return _directory;
+    }
+
+    /**
+     * Returns the number of classes found in the cache.
+     */
+    public int getHitCount()
+    {
+        return _hitCount.get();
+    }
+
+    /**
+     * Returns the number of classes not found in the cache (and so compiled).
+     */
+    public int getMissCount()
+    {
+        return _missCount.get();
+    }
+
+    /**
+     * Replaces the names of the class, and any other fabricated classes it refers to, with
+     * placeholders, and adds the checksums of the class files of the other classes it names.
+     * 
+     * @param className
+     *            the name of the class being fabricated
+     * @param definition
+     *            the definition of the class
+     * @param classNames
+     *            receives the names replaced, in the order of their placeholders (the class
+     *            itself first)
+     * @param source
+     *            used to locate the class files of the classes named by the definition
+     * @return the definition, with placeholders, used to {@link #find(String[], String) find}
+     *         and {@link #store(String[], String, byte[]) store} the class
+     */
+    public String prepareDefinition(String className, String definition, List classNames,
+            CtClassSource source)
+    {
+        classNames.add(className);
+
+        StringBuffer buffer = new StringBuffer(definition.length());
+        StringBuffer references = new StringBuffer();
+        Matcher matcher = CLASS_NAME_PATTERN.matcher(definition);
+
+        while (matcher.find())
+        {
+            String name = matcher.group();
+            int index = classNames.indexOf(name);
+
+            if (index < 0)
+            {
+                String key = (String) _keys.get(name);
+
+                if (key == null)
+                    continue;
+
+                index = classNames.size();
+                classNames.add(name);
+
+                references.append("\nreferences ");
+                references.append(key);
+            }
+
+            matcher.appendReplacement(buffer, Matcher.quoteReplacement(getPlaceholder(index)));
+        }
+
+        matcher.appendTail(buffer);
+        buffer.append(references);
+
+        appendChecksums(buffer, definition, source);
+
+        String result = buffer.toString();
+
+        _keys.put(className, computeKey(result));
+
+        return result;
+    }
+
+    /**
+     * Appends the checksum of the class file of each class named in the definition. Names in
+     * method bodies may be followed by a member name (as in <code>java.lang.String.valueOf</code>),
+     * so the longest prefix of each name that identifies a class file is used.
+     */
+    private void appendChecksums(StringBuffer buffer, String definition, CtClassSource source)
+    {
+        Set names = new LinkedHashSet();
+        Matcher matcher = QUALIFIED_NAME_PATTERN.matcher(definition);
+
+        while (matcher.find())
+            names.add(matcher.group());
+
+        for (Iterator i = names.iterator(); i.hasNext();)
+        {
+            String name = (String) i.next();
+
+            while (true)
+            {
+                URL url = source.findClassFile(name);
+
+                if (url != null)
+                {
+                    buffer.append("\nclass ");
+                    buffer.append(name);
+                    buffer.append(' ');
+                    buffer.append(getChecksum(url));
+
+                    break;
+                }
+
+                int dotx = name.lastIndexOf('.');
+
+                // A name without a package can't be told apart from a field or variable.
+
+                if (name.indexOf('.') == dotx)
+                    break;
+
+                name = name.substring(0, dotx);
+            }
+        }
+    }
+
+    private String getChecksum(URL url)
+    {
+        String location = url.toExternalForm();
+        String result = (String) _checksums.get(location);
+
+        if (result == null)
+        {
+            result = computeChecksum(url);
+
+            _checksums.put(location, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the checksum of the class file, or its location if it can't be read (so that the
+     * class is still only reused with the same class file).
+     */
+    private static String computeChecksum(URL url)
+    {
+        try
+        {
+            InputStream in = url.openStream();
+
+            try
+            {
+                CRC32 crc = new CRC32();
+                byte[] block = new byte[4096];
+
+                while (true)
+                {
+                    int count = in.read(block);
+
+                    if (count < 0)
+                        break;
+
+                    crc.update(block, 0, count);
+                }
+
+                return Long.toHexString(crc.getValue());
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException ex)
+        {
+            return url.toExternalForm();
+        }
+    }
+
+    private static String getPlaceholder(int index)
+    {
+        return index == 0 ? CACHED_CLASS_NAME : CACHED_CLASS_NAME + "_" + index;
+    }
+
+    /**
+     * Finds the bytecode for the class definition.
+     * 
+     * @param classNames
+     *            the class names replaced by
+     *            {@link #prepareDefinition(String, String, List, CtClassSource)}
+     * @param definition
+     *            the class definition, with placeholders
+     * @return the bytecode, with the placeholders replaced by the class names, or null if not
+     *         cached
+     */
+    public byte[] find(String[] classNames, String definition)
+    {
+        File file = getFile(definition);
+
+        if (!file.exists())
+        {
+            _missCount.incrementAndGet();
+
+            return null;
+        }
+
+        try
+        {
+            byte[] bytecode = read(file, definition);
+
+            if (bytecode != null)
+            {
+                _hitCount.incrementAndGet();
+
+                return rename(bytecode, classNames, true);
+            }
+        }
+        catch (Exception ex)
+        {
+            LOG.warn(ServiceMessages.unableToReadCachedClass(file, ex), ex);
+        }
+
+        _missCount.incrementAndGet();
+
+        return null;
+    }
+
+    /**
+     * Stores the bytecode for the class definition, for use when the application is next
+     * started.
+     */
+    public void store(String[] classNames, String definition, byte[] bytecode)
+    {
+        File file = getFile(definition);
+        File temp = new File(file.getPath() + ".tmp");
+
+        try
+        {
+            byte[] renamed = rename(bytecode, classNames, false);
+
+            _directory.mkdirs();
+
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+
+            try
+            {
+                out.writeInt(MAGIC);
+                writeBytes(out, toUTF8(definition));
+                writeBytes(out, renamed);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            // Another instance may have stored the same class meanwhile; either copy will do.
+
+            if (!temp.renameTo(file))
+                temp.delete();
+        }
+        catch (Exception ex)
+        {
+            temp.delete();
+
+            LOG.warn(ServiceMessages.unableToWriteCachedClass(file, ex), ex);
+        }
+    }
+
+    private File getFile(String definition)
+    {
+        return new File(_directory, computeKey(definition) + ".class");
+    }
+
+    /**
+     * Reads the cached bytecode, or returns null if the file is for some other definition (with
+     * the same hash).
+     */
+    private byte[] read(File file, String definition) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+
+        try
+        {
+            if (in.readInt() != MAGIC)
+                return null;
+
+            if (!Arrays.equals(toUTF8(definition), readBytes(in)))
+                return null;
+
+            return readBytes(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException
+    {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException
+    {
+        byte[] result = new byte[in.readInt()];
+
+        in.readFully(result);
+
+        return result;
+    }
+
+    /**
+     * Replaces class names with placeholders, or (when restoring) placeholders with class names.
+     */
+    private static byte[] rename(byte[] bytecode, String[] classNames, boolean restore)
+            throws IOException
+    {
+        ClassFile classFile = new ClassFile(new DataInputStream(new ByteArrayInputStream(bytecode)));
+
+        for (int i = 0; i < classNames.length; i++)
+        {
+            String placeholder = getPlaceholder(i);
+
+            if (restore)
+                classFile.renameClass(placeholder, classNames[i]);
+            else
+                classFile.renameClass(classNames[i], placeholder);
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream(bytecode.length);
+
+        classFile.write(new DataOutputStream(result));
+
+        return result.toByteArray();
+    }
+
+    static String computeKey(String definition)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(toUTF8(definition));
+
+            StringBuffer buffer = new StringBuffer(2 * digest.length);
+
+            for (int i = 0; i < digest.length; i++)
+            {
+                int b = digest[i] & 0xff;
+
+                if (b < 0x10)
+                    buffer.append('0');
+
+                buffer.append(Integer.toHexString(b));
+            }
+
+            return buffer.toString();
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // SHA-1 is always available.
+
+            throw new IllegalStateException(ex.getMessage());
+        }
+    }
+
+    private static byte[] toUTF8(String value)
+    {
+        try
+        {
+            return value.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException ex)
+        {
+            // UTF-8 is always supported.
+
+            throw new IllegalStateException(ex.getMessage());
+        }
+    }
+}
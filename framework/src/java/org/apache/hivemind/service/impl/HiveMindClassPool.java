@@ -14,30 +14,43 @@
 
 package org.apache.hivemind.service.impl;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.security.ProtectionDomain;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javassist.CannotCompileException;
 import javassist.ClassPath;
 import javassist.ClassPool;
 import javassist.CtClass;
 import javassist.LoaderClassPath;
+import javassist.NotFoundException;
 
 /**
  * Used to ensure that {@link javassist.ClassPool#appendClassPath(javassist.ClassPath)} is invoked
  * with a synchronized lock. Additionally, wraps around a shared
  * {@link org.apache.hivemind.service.impl.ClassFactoryClassLoader}.
+ * <p>
+ * The pool is shared by all modules, since fabricated classes refer to one another (for example,
+ * an inner proxy to its outer proxy) and Javassist can only resolve such references within a
+ * single pool. To keep threads fabricating classes at the same time from queueing on the pool,
+ * its lock is only taken when the pool changes: lookups of known classes and class loaders, and
+ * the conversion of fabricated classes into real classes, are lock free.
  * 
  * @author Howard Lewis Ship
  */
 public class HiveMindClassPool extends ClassPool
 {
+    private static final ProtectionDomain PROTECTION_DOMAIN = HiveMindClassPool.class
+            .getProtectionDomain();
+
     private ClassFactoryClassLoader _loader = new ClassFactoryClassLoader(HiveMindClassPool.class.getClassLoader());
     
     /**
-     * Used to identify which class loaders have already been integrated into the pool.
+     * Used to identify which class loaders have already been integrated into the pool; the keys
+     * are the class loaders.
      */
-    private Set _loaders = new HashSet();
+    private Map _loaders = new ConcurrentHashMap();
 
     public HiveMindClassPool() 
     {
@@ -49,29 +62,65 @@ public class HiveMindClassPool extends ClassPool
     /**
      * Convienience method for adding to the ClassPath for a particular class loader.
      */
-    public synchronized void appendClassLoader(ClassLoader loader)
+    public void appendClassLoader(ClassLoader loader)
     {
-        if (loader == null || loader == _loader || _loaders.contains(loader))
+        if (loader == null || loader == _loader || _loaders.containsKey(loader))
             return;
 
-        _loader.addDelegateLoader(loader);
+        synchronized (this)
+        {
+            if (_loaders.containsKey(loader))
+                return;
+
+            _loader.addDelegateLoader(loader);
+
+            ClassPath path = new LoaderClassPath(loader);
+
+            appendClassPath(path);
+
+            _loaders.put(loader, Boolean.TRUE);
+        }
+    }
 
-        ClassPath path = new LoaderClassPath(loader);
+    /**
+     * Checks for a known class before obtaining the pool's lock; the lock is only needed to find
+     * and add a class not yet known to the pool.
+     * 
+     * @since 2.0
+     */
+    protected CtClass get0(String classname, boolean useCache) throws NotFoundException
+    {
+        if (useCache)
+        {
+            CtClass result = getCached(classname);
 
-        appendClassPath(path);
+            if (result != null)
+                return result;
+        }
 
-        _loaders.add(loader);
+        return super.get0(classname, useCache);
     }
 
     /**
      * Invoked to convert an fabricated class into a real class. The new classes' class loader will
      * be the delegating ClassFactoryClassLoader, which has visibility to all class loaders for all
-     * modules.
+     * modules. The class is defined directly by the class loader, without any lock held.
      * 
      * @since 1.1
      */
     public Class toClass(CtClass ctClass) throws CannotCompileException
     {
-        return ctClass.toClass(_loader, this.getClass().getProtectionDomain());
+        byte[] bytecode;
+
+        try
+        {
+            bytecode = ctClass.toBytecode();
+        }
+        catch (IOException ex)
+        {
+            throw new CannotCompileException(ex);
+        }
+
+        return _loader.defineClass(ctClass.getName(), bytecode, PROTECTION_DOMAIN);
     }
-}
\ No newline at end of file
+}
@@ -33,9 +33,26 @@ public class InterfaceFabImpl extends AbstractFab implements InterfaceFab
 {
     private List _methods = new ArrayList();
 
+    /**
+     * @since 2.0
+     */
+    private final GeneratedClassCache _cache;
+
     public InterfaceFabImpl(CtClassSource source, CtClass ctClass)
+    {
+        this(source, ctClass, null);
+    }
+
+    /**
+     * @param cache
+     *            cache of fabricated classes, or null for no caching
+     * @since 2.0
+     */
+    public InterfaceFabImpl(CtClassSource source, CtClass ctClass, GeneratedClassCache cache)
     {
         super(source, ctClass);
+
+        _cache = cache;
     }
 
     public String toString()
@@ -106,6 +123,16 @@ public class InterfaceFabImpl extends AbstractFab implements InterfaceFab
 
     public Class createInterface()
     {
+        // Interfaces are cheap to create, and aren't cached; but the cache must know of them so
+        // that classes implementing them can be cached.
+
+        if (_cache != null)
+            _cache.prepareDefinition(
+                    getCtClass().getName(),
+                    toString(),
+                    new ArrayList(),
+                    getSource());
+
         return createClass();
     }
 
@@ -25,6 +25,8 @@ import org.apache.hivemind.service.BodyBuilder;
 import org.apache.hivemind.service.ClassFab;
 import org.apache.hivemind.service.ClassFabUtils;
 import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
+import org.apache.hivemind.service.InterceptorFusion;
 import org.apache.hivemind.service.MethodContribution;
 import org.apache.hivemind.service.MethodFab;
 import org.apache.hivemind.service.MethodIterator;
@@ -48,9 +50,31 @@ public class LoggingInterceptorClassFactory
 {
     private ClassFactory _factory;
 
+    private boolean _asynchronous;
+
+    /**
+     * The expression that events are logged through: the static {@link LoggingUtils} methods, or
+     * the interceptor's {@link AsyncLogWriter}.
+     */
+    private String _logger;
+
     public LoggingInterceptorClassFactory(ClassFactory factory)
+    {
+        this(factory, false);
+    }
+
+    /**
+     * @param asynchronous
+     *            if true, the interceptor classes record events into an {@link AsyncLogWriter},
+     *            passed to their constructor as <code>(Log, AsyncLogWriter, delegate)</code>,
+     *            rather than logging them directly
+     * @since 2.0
+     */
+    public LoggingInterceptorClassFactory(ClassFactory factory, boolean asynchronous)
     {
         _factory = factory;
+        _asynchronous = asynchronous;
+        _logger = asynchronous ? "_writer." : "org.apache.hivemind.service.impl.LoggingUtils.";
     }
 
     /**
@@ -72,6 +96,27 @@ public class LoggingInterceptorClassFactory
     }
 
     protected void addServiceMethodImplementation(ClassFab classFab, MethodSignature sig)
+    {
+        MethodFab methodFab = classFab.addMethod(Modifier.PUBLIC, sig, buildMethodBody(
+                sig,
+                "_log",
+                _logger,
+                "_delegate." + sig.getName()));
+
+        addCatches(methodFab, sig, "_log", _logger);
+    }
+
+    /**
+     * Builds the body of a logged method.
+     * 
+     * @param log
+     *            the field containing the Log
+     * @param logger
+     *            the expression that events are logged through
+     * @param next
+     *            the method invoked to proceed
+     */
+    private String buildMethodBody(MethodSignature sig, String log, String logger, String next)
     {
         Class returnType = sig.getReturnType();
         String methodName = sig.getName();
@@ -81,10 +126,10 @@ public class LoggingInterceptorClassFactory
         BodyBuilder builder = new BodyBuilder();
 
         builder.begin();
-        builder.addln("boolean debug = _log.isDebugEnabled();");
+        builder.addln("boolean debug = " + log + ".isDebugEnabled();");
 
         builder.addln("if (debug)");
-        builder.add("  org.apache.hivemind.service.impl.LoggingUtils.entry(_log, ");
+        builder.add("  " + logger + "entry(" + log + ", ");
         builder.addQuoted(methodName);
         builder.addln(", $args);");
 
@@ -94,21 +139,20 @@ public class LoggingInterceptorClassFactory
             builder.add(" result = ");
         }
 
-        builder.add("_delegate.");
-        builder.add(methodName);
+        builder.add(next);
         builder.addln("($$);");
 
         if (isVoid)
         {
             builder.addln("if (debug)");
-            builder.add("  org.apache.hivemind.service.impl.LoggingUtils.voidExit(_log, ");
+            builder.add("  " + logger + "voidExit(" + log + ", ");
             builder.addQuoted(methodName);
             builder.addln(");");
         }
         else
         {
             builder.addln("if (debug)");
-            builder.add("  org.apache.hivemind.service.impl.LoggingUtils.exit(_log, ");
+            builder.add("  " + logger + "exit(" + log + ", ");
             builder.addQuoted(methodName);
             builder.addln(", ($w)result);");
             builder.addln("return result;");
@@ -116,13 +160,16 @@ public class LoggingInterceptorClassFactory
 
         builder.end();
 
-        MethodFab methodFab = classFab.addMethod(Modifier.PUBLIC, sig, builder.toString());
+        return builder.toString();
+    }
 
-        builder.clear();
+    private void addCatches(MethodFab methodFab, MethodSignature sig, String log, String logger)
+    {
+        BodyBuilder builder = new BodyBuilder();
 
         builder.begin();
-        builder.add("org.apache.hivemind.service.impl.LoggingUtils.exception(_log, ");
-        builder.addQuoted(methodName);
+        builder.add(logger + "exception(" + log + ", ");
+        builder.addQuoted(sig.getName());
         builder.addln(", $e);");
         builder.addln("throw $e;");
         builder.end();
@@ -218,6 +265,20 @@ public class LoggingInterceptorClassFactory
         return classFab.createClass();
     }
 
+    /**
+     * Creates a fragment with the interceptor's code, for a fused interceptor (see
+     * {@link FusedInterceptorClassFactory}).
+     * 
+     * @param writer
+     *            the writer that events are recorded into, if the factory is asynchronous
+     * @since 2.0
+     */
+    public InterceptorFragment createInterceptorFragment(InterceptorStack stack,
+            List parameters, AsyncLogWriter writer)
+    {
+        return new LoggingFragment(stack.getServiceLog(), writer, buildMethodMatcher(parameters));
+    }
+
     private void createInfrastructure(InterceptorStack stack, ClassFab classFab)
     {
         Class topClass = ClassFabUtils.getInstanceClass(classFab, stack.peek(), stack.getServiceInterface());
@@ -232,6 +293,18 @@ public class LoggingInterceptorClassFactory
 
         classFab.addField("_delegate", topClass);
 
+        if (_asynchronous)
+        {
+            classFab.addField("_writer", AsyncLogWriter.class);
+
+            classFab.addConstructor(
+                new Class[] { Log.class, AsyncLogWriter.class, topClass },
+                null,
+                "{ _log = $1; _writer = $2; _delegate = $3; }");
+
+            return;
+        }
+
         classFab.addConstructor(
             new Class[] { Log.class, topClass },
             null,
@@ -248,4 +321,51 @@ public class LoggingInterceptorClassFactory
         return mc == null || mc.getInclude();
     }
 
+    private class LoggingFragment implements InterceptorFragment
+    {
+        private Log _serviceLog;
+
+        private AsyncLogWriter _logWriter;
+
+        private MethodMatcher _matcher;
+
+        private String _logField;
+
+        private String _fragmentLogger;
+
+        LoggingFragment(Log serviceLog, AsyncLogWriter logWriter, MethodMatcher matcher)
+        {
+            _serviceLog = serviceLog;
+            _logWriter = logWriter;
+            _matcher = matcher;
+        }
+
+        public void addFields(InterceptorFusion fusion)
+        {
+            _logField = fusion.addField("_log", Log.class, _serviceLog);
+
+            _fragmentLogger = _asynchronous ? fusion.addField(
+                    "_writer",
+                    AsyncLogWriter.class,
+                    _logWriter)
+                    + "." : _logger;
+        }
+
+        public boolean isIntercepted(MethodSignature sig)
+        {
+            return includeMethod(_matcher, sig);
+        }
+
+        public void addMethodImplementation(InterceptorFusion fusion, MethodSignature sig,
+                String next)
+        {
+            MethodFab methodFab = fusion.addMethod(buildMethodBody(
+                    sig,
+                    _logField,
+                    _fragmentLogger,
+                    next));
+
+            addCatches(methodFab, sig, _logField, _fragmentLogger);
+        }
+    }
 }
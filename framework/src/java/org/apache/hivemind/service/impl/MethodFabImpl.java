@@ -32,6 +32,8 @@ import org.apache.hivemind.service.MethodSignature;
  */
 class MethodFabImpl implements MethodFab
 {
+    private ClassFabImpl _classFab;
+
     private CtClassSource _source;
 
     private MethodSignature _signature;
@@ -40,9 +42,10 @@ class MethodFabImpl implements MethodFab
 
     private StringBuffer _descriptionBody = new StringBuffer();
 
-    public MethodFabImpl(CtClassSource source, MethodSignature signature, CtMethod method,
-            String body)
+    public MethodFabImpl(ClassFabImpl classFab, CtClassSource source, MethodSignature signature,
+            CtMethod method, String body)
     {
+        _classFab = classFab;
         _source = source;
         _signature = signature;
         _method = method;
@@ -106,21 +109,27 @@ class MethodFabImpl implements MethodFab
         return buffer.toString();
     }
 
-    public void addCatch(Class exceptionClass, String catchBody)
+    public void addCatch(final Class exceptionClass, final String catchBody)
     {
-        CtClass ctException = _source.getCtClass(exceptionClass);
+        final CtClass ctException = _source.getCtClass(exceptionClass);
 
-        try
-        {
-            _method.addCatch(catchBody, ctException);
-        }
-        catch (Exception ex)
+        _classFab.compile(new Runnable()
         {
-            throw new ApplicationRuntimeException(ServiceMessages.unableToAddCatch(
-                    exceptionClass,
-                    _method,
-                    ex), ex);
-        }
+            public void run()
+            {
+                try
+                {
+                    _method.addCatch(catchBody, ctException);
+                }
+                catch (Exception ex)
+                {
+                    throw new ApplicationRuntimeException(ServiceMessages.unableToAddCatch(
+                            exceptionClass,
+                            _method,
+                            ex), ex);
+                }
+            }
+        });
 
         _descriptionBody.append("\ncatch(");
         _descriptionBody.append(exceptionClass.getName());
@@ -128,19 +137,25 @@ class MethodFabImpl implements MethodFab
         _descriptionBody.append(catchBody);
     }
 
-    public void extend(String body, boolean asFinally)
+    public void extend(final String body, final boolean asFinally)
     {
-        try
-        {
-            _method.insertAfter(body, asFinally);
-        }
-        catch (Exception ex)
+        _classFab.compile(new Runnable()
         {
-            throw new ApplicationRuntimeException(ServiceMessages.unableToExtendMethod(
-                    _signature,
-                    _method.getDeclaringClass().getName(),
-                    ex), ex);
-        }
+            public void run()
+            {
+                try
+                {
+                    _method.insertAfter(body, asFinally);
+                }
+                catch (Exception ex)
+                {
+                    throw new ApplicationRuntimeException(ServiceMessages.unableToExtendMethod(
+                            _signature,
+                            _method.getDeclaringClass().getName(),
+                            ex), ex);
+                }
+            }
+        });
 
         _descriptionBody.append("\n");
 
@@ -0,0 +1,181 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Decides which invocations of a method, intercepted by a tracing interceptor, are logged, and
+ * logs them. Invocations that are slow or that throw an exception are always logged; other
+ * invocations are sampled, and the samples are subject to a rate limit shared by the methods of
+ * the service. Invocations are logged at info level, once they complete, with their arguments,
+ * result and duration.
+ * 
+ * @since 2.0
+ * @see TracingInterceptorClassFactory
+ */
+public class MethodTracer
+{
+    private static final int BUFFER_SIZE = 100;
+
+    private final Log _log;
+
+    private final String _methodName;
+
+    private final int _sampleRate;
+
+    private final TokenBucket _rateLimit;
+
+    private final long _slowThreshold;
+
+    private final AtomicInteger _count = new AtomicInteger();
+
+    /**
+     * @param log
+     *            the log to write to
+     * @param methodName
+     *            the name of the traced method
+     * @param sampleRate
+     *            one invocation in this many is sampled, or none if 0
+     * @param rateLimit
+     *            limits the number of sampled invocations logged
+     * @param slowThreshold
+     *            the duration, in nanoseconds, of slow invocations, or 0 if none are slow
+     */
+    public MethodTracer(Log log, String methodName, int sampleRate, TokenBucket rateLimit,
+            long slowThreshold)
+    {
+        _log = log;
+        _methodName = methodName;
+        _sampleRate = sampleRate;
+        _rateLimit = rateLimit;
+        _slowThreshold = slowThreshold;
+    }
+
+    /**
+     * Returns true if an invocation that completed normally, taking the given time, should be
+     * logged.
+     * 
+     * @param elapsed
+     *            the duration of the invocation, in nanoseconds
+     */
+    public boolean isTraced(long elapsed)
+    {
+        // The cheapest checks come first; most invocations are neither slow nor sampled.
+
+        if (isSlow(elapsed))
+            return _log.isInfoEnabled();
+
+        if (_sampleRate <= 0)
+            return false;
+
+        if (_sampleRate > 1 && _count.incrementAndGet() % _sampleRate != 0)
+            return false;
+
+        return _log.isInfoEnabled() && _rateLimit.tryAcquire();
+    }
+
+    private boolean isSlow(long elapsed)
+    {
+        return _slowThreshold > 0 && elapsed >= _slowThreshold;
+    }
+
+    public void exit(long elapsed, Object[] args, Object result)
+    {
+        StringBuffer buffer = start(elapsed, args);
+
+        buffer.append(" [");
+        LoggingUtils.convert(buffer, result);
+        buffer.append("]");
+
+        _log.info(finish(buffer, elapsed));
+    }
+
+    public void voidExit(long elapsed, Object[] args)
+    {
+        _log.info(finish(start(elapsed, args), elapsed));
+    }
+
+    /**
+     * Logs an invocation that threw an exception; such invocations are always logged.
+     */
+    public void exception(long elapsed, Object[] args, Throwable t)
+    {
+        if (!_log.isInfoEnabled())
+            return;
+
+        StringBuffer buffer = new StringBuffer(BUFFER_SIZE);
+
+        buffer.append("EXCEPTION ");
+        appendInvocation(buffer, args);
+        buffer.append(" -- ");
+        buffer.append(t.getClass().getName());
+
+        _log.info(finish(buffer, elapsed), t);
+    }
+
+    private StringBuffer start(long elapsed, Object[] args)
+    {
+        StringBuffer buffer = new StringBuffer(BUFFER_SIZE);
+
+        buffer.append(isSlow(elapsed) ? "SLOW " : "TRACE ");
+        appendInvocation(buffer, args);
+
+        return buffer;
+    }
+
+    private void appendInvocation(StringBuffer buffer, Object[] args)
+    {
+        buffer.append(_methodName);
+        buffer.append("(");
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if (i > 0)
+                buffer.append(", ");
+
+            LoggingUtils.convert(buffer, args[i]);
+        }
+
+        buffer.append(")");
+    }
+
+    /**
+     * Appends the duration, in milliseconds with three decimal places.
+     */
+    private String finish(StringBuffer buffer, long elapsed)
+    {
+        long micros = elapsed / 1000;
+        long fraction = micros % 1000;
+
+        buffer.append(" (");
+        buffer.append(micros / 1000);
+        buffer.append('.');
+
+        if (fraction < 100)
+            buffer.append('0');
+
+        if (fraction < 10)
+            buffer.append('0');
+
+        buffer.append(fraction);
+        buffer.append(" ms)");
+
+        return buffer.toString();
+    }
+}
@@ -15,6 +15,7 @@
 package org.apache.hivemind.service.impl;
 
 import java.beans.EventSetDescriptor;
+import java.io.File;
 
 import javassist.CtClass;
 import javassist.CtMethod;
@@ -176,8 +177,43 @@ class ServiceMessages
         return _formatter.format("thread-cleanup-exception", cause);
     }
 
+    static String serviceScopeClosed()
+    {
+        return _formatter.getMessage("service-scope-closed");
+    }
+
+    static String serviceScopeCloseException(Throwable cause)
+    {
+        return _formatter.format("service-scope-close-exception", cause);
+    }
+
     static String unknownStrategy(String strategyName)
     {
         return _formatter.format("unknown-strategy", strategyName);
     }
-}
\ No newline at end of file
+
+    static String unableToDefineClass(Throwable cause)
+    {
+        return _formatter.format("unable-to-define-class", cause);
+    }
+
+    static String unableToReadCachedClass(File file, Throwable cause)
+    {
+        return _formatter.format("unable-to-read-cached-class", file, cause);
+    }
+
+    static String unableToWriteCachedClass(File file, Throwable cause)
+    {
+        return _formatter.format("unable-to-write-cached-class", file, cause);
+    }
+
+    static String unknownOverflowPolicy(String overflow)
+    {
+        return _formatter.format("unknown-overflow-policy", overflow);
+    }
+
+    static String loggingEventsDropped(long count)
+    {
+        return _formatter.format("logging-events-dropped", new Long(count));
+    }
+}
@@ -0,0 +1,48 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hivemind.service.ServicePoolMonitor;
+import org.apache.hivemind.service.ServicePoolStatistics;
+
+/**
+ * Implementation of the <code>hivemind.ServicePoolMonitor</code> service.
+ *
+ * @since 2.0
+ */
+public class ServicePoolMonitorImpl implements ServicePoolMonitor
+{
+    private final Map _pools = new ConcurrentHashMap();
+
+    public void addServicePool(String serviceId, ServicePoolStatistics statistics)
+    {
+        _pools.put(serviceId, statistics);
+    }
+
+    public List getPooledServiceIds()
+    {
+        return new ArrayList(_pools.keySet());
+    }
+
+    public ServicePoolStatistics getStatistics(String serviceId)
+    {
+        return (ServicePoolStatistics) _pools.get(serviceId);
+    }
+}
@@ -0,0 +1,49 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service.impl;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hivemind.internal.ServicePoint;
+
+/**
+ * Implementation of the <code>hivemind.ServicePoolPrewarm</code> service, which is contributed
+ * into the <code>hivemind.Startup</code> configuration point. Obtains each pooled service whose
+ * pool is to be pre-warmed; the pooled service model fills its pool as it is created. Unlike
+ * {@link EagerLoader}, no instance is bound to the startup thread.
+ *
+ * @since 2.0
+ */
+public class ServicePoolPrewarmer implements Runnable
+{
+    private List _servicePoints;
+
+    public void run()
+    {
+        Iterator i = _servicePoints.iterator();
+        while (i.hasNext())
+        {
+            ServicePoint point = (ServicePoint) i.next();
+
+            point.getService(point.getServiceInterface());
+        }
+    }
+
+    public void setServicePoints(List list)
+    {
+        _servicePoints = list;
+    }
+}
@@ -0,0 +1,119 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.service.ServiceScope;
+import org.apache.hivemind.service.ServiceScopeListener;
+import org.apache.hivemind.util.Defense;
+
+/**
+ * Implementation of {@link org.apache.hivemind.service.ServiceScope}. Lookups don't lock, so a
+ * scope shared by several threads doesn't serialize their service invocations.
+ * 
+ * @since 2.0
+ */
+public class ServiceScopeImpl implements ServiceScope
+{
+    private static final Log DEFAULT_LOG = LogFactory.getLog(ServiceScope.class);
+
+    private final Log _log;
+
+    private final Map _objects = new ConcurrentHashMap();
+
+    /**
+     * Guarded by this.
+     */
+    private final List _listeners = new ArrayList();
+
+    private volatile boolean _closed;
+
+    public ServiceScopeImpl()
+    {
+        this(DEFAULT_LOG);
+    }
+
+    public ServiceScopeImpl(Log log)
+    {
+        Defense.notNull(log, "log");
+
+        _log = log;
+    }
+
+    public Object get(Object key)
+    {
+        return _objects.get(key);
+    }
+
+    public synchronized Object bind(Object key, Object value)
+    {
+        if (_closed)
+            throw new ApplicationRuntimeException(ServiceMessages.serviceScopeClosed());
+
+        Object existing = _objects.get(key);
+
+        if (existing != null)
+            return existing;
+
+        _objects.put(key, value);
+
+        if (value instanceof ServiceScopeListener)
+            _listeners.add(value);
+
+        return value;
+    }
+
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (_closed)
+                return;
+
+            _closed = true;
+        }
+
+        // No further changes to the listeners are possible.
+
+        for (int i = _listeners.size() - 1; i >= 0; i--)
+        {
+            ServiceScopeListener listener = (ServiceScopeListener) _listeners.get(i);
+
+            try
+            {
+                listener.scopeDidClose();
+            }
+            catch (RuntimeException ex)
+            {
+                _log.warn(ServiceMessages.serviceScopeCloseException(ex), ex);
+            }
+        }
+
+        _listeners.clear();
+        _objects.clear();
+    }
+
+    public boolean isClosed()
+    {
+        return _closed;
+    }
+}
@@ -0,0 +1,50 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service.impl;
+
+import org.apache.hivemind.service.ServiceScope;
+import org.apache.hivemind.service.ServiceScopeManager;
+
+/**
+ * Implementation of the <code>hivemind.ServiceScopeManager</code> service.
+ * 
+ * @since 2.0
+ */
+public class ServiceScopeManagerImpl implements ServiceScopeManager
+{
+    private final ThreadLocal _activeScope = new ThreadLocal();
+
+    public ServiceScope createScope()
+    {
+        return new ServiceScopeImpl();
+    }
+
+    public ServiceScope getActiveScope()
+    {
+        return (ServiceScope) _activeScope.get();
+    }
+
+    public ServiceScope attach(ServiceScope scope)
+    {
+        ServiceScope result = (ServiceScope) _activeScope.get();
+
+        if (scope == null)
+            _activeScope.remove();
+        else
+            _activeScope.set(scope);
+
+        return result;
+    }
+}
@@ -14,18 +14,25 @@
 
 package org.apache.hivemind.service.impl;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hivemind.service.ThreadCleanupListener;
 import org.apache.hivemind.service.ThreadEventNotifier;
 import org.apache.hivemind.util.Defense;
-import org.apache.hivemind.util.EventListenerList;
 
 /**
  * Implementation of {@link org.apache.hivemind.service.ThreadEventNotifier}, available as service
  * <code>hivemind.ThreadEventNotifier</code>.
+ * <p>
+ * Each thread keeps its listeners in a list that is only ever accessed by that thread, so no
+ * synchronization is needed. The list is emptied, but kept, by {@link #fireThreadCleanup()}, so a
+ * thread that handles many requests reuses the same storage for each request. Only a
+ * {@link java.util.ArrayList} is stored in the thread, never an instance of a HiveMind class, so
+ * threads that outlive the registry (such as those of a servlet container) can't pin the HiveMind
+ * class loader.
  * 
  * @author Howard Lewis Ship
  */
@@ -33,6 +40,18 @@ public class ThreadEventNotifierImpl implements ThreadEventNotifier
 {
     private static final Log DEFAULT_LOG = LogFactory.getLog(ThreadEventNotifier.class);
 
+    /**
+     * Initial capacity of each thread's list of listeners; enough for a typical request.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * A list that held more listeners than this is discarded, rather than reused, once the
+     * listeners have been notified; that keeps a single unusual request from permanently
+     * enlarging a thread's storage.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 256;
+
     private final Log _log;
 
     private final ThreadLocal _storage = new ThreadLocal();
@@ -51,50 +70,57 @@ public class ThreadEventNotifierImpl implements ThreadEventNotifier
 
     public void addThreadCleanupListener(ThreadCleanupListener listener)
     {
-        EventListenerList list = (EventListenerList) _storage.get();
+        List list = (List) _storage.get();
 
         if (list == null)
         {
-            list = new EventListenerList();
+            list = new ArrayList(INITIAL_CAPACITY);
             _storage.set(list);
         }
 
-        list.addListener(listener);
+        list.add(listener);
     }
 
     public void removeThreadCleanupListener(ThreadCleanupListener listener)
     {
-        EventListenerList list = (EventListenerList) _storage.get();
+        List list = (List) _storage.get();
+
+        if (list == null)
+            return;
 
-        if (list != null)
-            list.removeListener(listener);
+        // The slot is cleared, rather than removed, as this may be invoked by a listener
+        // while fireThreadCleanup() is working through the list.
+
+        int count = list.size();
+
+        for (int i = 0; i < count; i++)
+        {
+            if (list.get(i) == listener)
+            {
+                list.set(i, null);
+                return;
+            }
+        }
     }
 
     public void fireThreadCleanup()
     {
-        // Here's where we need the CursorableLinkedList since listeners
-        // are free to unregister as listeners from threadDidCleanup() and
-        // we need to avoid concurrent modification errors.
-
-        EventListenerList list = (EventListenerList) _storage.get();
+        List list = (List) _storage.get();
 
         if (list == null)
             return;
 
-        Iterator i = list.getListeners();
-
-        // Discard the list of listeners as early as possible to ensure that
-        // they can in no way be retained, even if this thread aborts abnormally.
+        int count = list.size();
 
-        _storage.set(null);
-
-        while (i.hasNext())
+        for (int i = 0; i < count; i++)
         {
-            ThreadCleanupListener listener = (ThreadCleanupListener) i.next();
+            // Clear each slot before notifying the listener, so that no listener can be
+            // retained, even if this thread aborts abnormally.
+
+            ThreadCleanupListener listener = (ThreadCleanupListener) list.set(i, null);
 
-            // Each listener may decide to remove itself; that's OK,
-            // EventListenerList handles that kind of concurrent modification
-            // well.
+            if (listener == null)
+                continue;
 
             try
             {
@@ -105,6 +131,15 @@ public class ThreadEventNotifierImpl implements ThreadEventNotifier
                 _log.warn(ServiceMessages.threadCleanupException(ex), ex);
             }
         }
+
+        // Listeners added by other listeners are kept for the next cleanup.
+
+        if (list.size() > count)
+            list.subList(0, count).clear();
+        else if (count > MAX_RETAINED_CAPACITY)
+            _storage.set(null);
+        else
+            list.clear();
     }
 
 }
@@ -0,0 +1,75 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A rate limit: permits are granted at a fixed rate, with bursts of up to a number of permits
+ * after a quiet period. Permits are granted without locking: the bucket tracks the time at which
+ * it would be empty again, and a permit is granted when that time, advanced by one permit, is not
+ * too far in the future.
+ * 
+ * @since 2.0
+ */
+public class TokenBucket
+{
+    /** Nanoseconds per permit, or 0 if unlimited. */
+    private final long _interval;
+
+    /** How far ahead of the current time the bucket may be emptied. */
+    private final long _tolerance;
+
+    private final AtomicLong _emptyTime;
+
+    /**
+     * @param perSecond
+     *            the number of permits granted per second, or 0 for no limit
+     * @param burst
+     *            the number of permits that may be granted at once
+     */
+    public TokenBucket(int perSecond, int burst)
+    {
+        _interval = perSecond <= 0 ? 0 : 1000000000L / perSecond;
+        _tolerance = Math.max(1, burst) * _interval;
+        _emptyTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a permit, if one is available.
+     * 
+     * @return true if a permit was taken
+     */
+    public boolean tryAcquire()
+    {
+        if (_interval == 0)
+            return true;
+
+        while (true)
+        {
+            long now = System.nanoTime();
+            long emptyTime = _emptyTime.get();
+
+            long next = (emptyTime - now > 0 ? emptyTime : now) + _interval;
+
+            if (next - now > _tolerance)
+                return false;
+
+            if (_emptyTime.compareAndSet(emptyTime, next))
+                return true;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import java.lang.reflect.Modifier;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.hivemind.InterceptorStack;
+import org.apache.hivemind.methodmatch.MethodMatcher;
+import org.apache.hivemind.service.BodyBuilder;
+import org.apache.hivemind.service.ClassFab;
+import org.apache.hivemind.service.ClassFabUtils;
+import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
+import org.apache.hivemind.service.InterceptorFusion;
+import org.apache.hivemind.service.MethodFab;
+import org.apache.hivemind.service.MethodIterator;
+import org.apache.hivemind.service.MethodSampleRate;
+import org.apache.hivemind.service.MethodSignature;
+import org.apache.hivemind.service.TracingSettings;
+
+/**
+ * Factory for creation of interceptor classes that trace invocations of a service: a sample of
+ * invocations, limited to a number per second, plus any invocation that is slow or that throws an
+ * exception, are logged once they complete (see {@link MethodTracer}). Like
+ * {@link LoggingInterceptorClassFactory}, the logger used is the id of the service.
+ * <p>
+ * The parameters are a list of {@link MethodSampleRate}s, which select sample rates for methods
+ * by pattern, and an optional {@link TracingSettings}.
+ * <p>
+ * Each service method is implemented as a call to a private method that takes the start time of
+ * the invocation as an additional parameter, so that the exception handler (which can't see the
+ * method's local variables) can compute the duration of the invocation.
+ * 
+ * @since 2.0
+ */
+public class TracingInterceptorClassFactory
+{
+    private ClassFactory _factory;
+
+    public TracingInterceptorClassFactory(ClassFactory factory)
+    {
+        _factory = factory;
+    }
+
+    /**
+     * Creates the interceptor class; its constructor takes the Log and the next object in the
+     * interceptor stack.
+     */
+    public Class constructInterceptorClass(InterceptorStack stack, List parameters)
+    {
+        Class serviceInterfaceClass = stack.getServiceInterface();
+
+        String name = ClassFabUtils.generateClassName(serviceInterfaceClass);
+
+        ClassFab classFab = _factory.newClass(name, Object.class);
+
+        classFab.addInterface(serviceInterfaceClass);
+
+        Class topClass = ClassFabUtils.getInstanceClass(classFab, stack.peek(), stack
+                .getServiceInterface());
+
+        classFab.addField("_delegate", topClass);
+
+        TracingSettings settings = findSettings(parameters);
+        MethodMatcher matcher = buildMethodMatcher(parameters);
+
+        // The constructor creates one tracer per method, sharing a rate limit.
+
+        BodyBuilder constructor = new BodyBuilder();
+        constructor.begin();
+        constructor.addln("_delegate = $2;");
+        constructor.addln(
+                "{0} rateLimit = new {0}({1}, {2});",
+                TokenBucket.class.getName(),
+                Integer.toString(settings.getRateLimit()),
+                Integer.toString(settings.getBurst()));
+
+        MethodIterator mi = new MethodIterator(serviceInterfaceClass);
+        int index = 0;
+
+        while (mi.hasNext())
+        {
+            MethodSignature sig = mi.next();
+
+            MethodSampleRate rate = matcher == null ? null : (MethodSampleRate) matcher.get(sig);
+            int sampleRate = rate == null ? settings.getSampleRate() : rate.getRate();
+
+            String tracerField = "_tracer" + index;
+
+            classFab.addField(tracerField, MethodTracer.class);
+
+            constructor.add(tracerField + " = new " + MethodTracer.class.getName() + "($1, ");
+            constructor.addQuoted(sig.getName());
+            constructor.addln(", {0}, rateLimit, {1}L);", Integer.toString(sampleRate), Long
+                    .toString(settings.getSlowThreshold() * 1000000));
+
+            String tracedName = "_" + sig.getName() + "$traced" + index;
+
+            addTracedMethod(classFab, sig, tracerField, tracedName, "_delegate." + sig.getName());
+
+            classFab.addMethod(Modifier.PUBLIC, sig, buildEntryBody(tracedName));
+
+            index++;
+        }
+
+        constructor.end();
+
+        if (!mi.getToString())
+            addToStringMethod(stack, classFab);
+
+        classFab.addConstructor(new Class[]
+        { Log.class, topClass }, null, constructor.toString());
+
+        return classFab.createClass();
+    }
+
+    /**
+     * Adds the private method, taking the start time as its first parameter, that invokes the next
+     * method and traces the invocation.
+     */
+    private void addTracedMethod(ClassFab classFab, MethodSignature sig, String tracerField,
+            String tracedName, String next)
+    {
+        Class returnType = sig.getReturnType();
+        Class[] parameterTypes = sig.getParameterTypes();
+        boolean isVoid = (returnType == void.class);
+
+        Class[] tracedParameterTypes = new Class[parameterTypes.length + 1];
+        tracedParameterTypes[0] = long.class;
+        System.arraycopy(parameterTypes, 0, tracedParameterTypes, 1, parameterTypes.length);
+
+        MethodSignature tracedSig = new MethodSignature(returnType, tracedName,
+                tracedParameterTypes, sig.getExceptionTypes());
+
+        // Within the private method, $1 is the start time, and the service method's parameters
+        // follow.
+
+        StringBuffer args = new StringBuffer("new Object[] {");
+
+        for (int i = 0; i < parameterTypes.length; i++)
+        {
+            if (i > 0)
+                args.append(",");
+
+            args.append(" ($w) $");
+            args.append(i + 2);
+        }
+
+        args.append(" }");
+
+        StringBuffer delegateArgs = new StringBuffer();
+
+        for (int i = 0; i < parameterTypes.length; i++)
+        {
+            if (i > 0)
+                delegateArgs.append(", ");
+
+            delegateArgs.append("$");
+            delegateArgs.append(i + 2);
+        }
+
+        BodyBuilder builder = new BodyBuilder();
+
+        builder.begin();
+
+        if (!isVoid)
+        {
+            builder.add(ClassFabUtils.getJavaClassName(returnType));
+            builder.add(" result = ");
+        }
+
+        builder.addln("{0}({1});", next, delegateArgs.toString());
+        builder.addln("long elapsed = System.nanoTime() - $1;");
+        builder.addln("if ({0}.isTraced(elapsed))", tracerField);
+
+        if (isVoid)
+            builder.addln("  {0}.voidExit(elapsed, {1});", tracerField, args.toString());
+        else
+        {
+            builder.addln("  {0}.exit(elapsed, {1}, ($w) result);", tracerField, args.toString());
+            builder.addln("return result;");
+        }
+
+        builder.end();
+
+        MethodFab methodFab = classFab.addMethod(Modifier.PRIVATE, tracedSig, builder.toString());
+
+        builder.clear();
+
+        builder.begin();
+        builder.addln(
+                "{0}.exception(System.nanoTime() - $1, {1}, $e);",
+                tracerField,
+                args.toString());
+        builder.addln("throw $e;");
+        builder.end();
+
+        String body = builder.toString();
+
+        Class[] exceptions = sig.getExceptionTypes();
+
+        for (int i = 0; i < exceptions.length; i++)
+            methodFab.addCatch(exceptions[i], body);
+
+        methodFab.addCatch(RuntimeException.class, body);
+        methodFab.addCatch(Error.class, body);
+    }
+
+    /**
+     * Builds the body of the service method, which invokes the traced method.
+     */
+    private String buildEntryBody(String tracedName)
+    {
+        return "return ($r) " + tracedName + "(System.nanoTime(), $$);";
+    }
+
+    /**
+     * Creates a fragment with the interceptor's code, for a fused interceptor (see
+     * {@link FusedInterceptorClassFactory}).
+     */
+    public InterceptorFragment createInterceptorFragment(InterceptorStack stack, List parameters)
+    {
+        return new TracingFragment(stack.getServiceLog(), findSettings(parameters),
+                buildMethodMatcher(parameters));
+    }
+
+    private void addToStringMethod(InterceptorStack stack, ClassFab fab)
+    {
+        ClassFabUtils.addToStringMethod(fab, "<TracingInterceptor for "
+                + stack.getServiceExtensionPointId() + "("
+                + stack.getServiceInterface().getName() + ")>");
+    }
+
+    private TracingSettings findSettings(List parameters)
+    {
+        TracingSettings result = null;
+
+        Iterator i = parameters.iterator();
+        while (i.hasNext())
+        {
+            Object parameter = i.next();
+
+            if (parameter instanceof TracingSettings)
+                result = (TracingSettings) parameter;
+        }
+
+        return result == null ? new TracingSettings() : result;
+    }
+
+    private MethodMatcher buildMethodMatcher(List parameters)
+    {
+        MethodMatcher result = null;
+
+        Iterator i = parameters.iterator();
+        while (i.hasNext())
+        {
+            Object parameter = i.next();
+
+            if (!(parameter instanceof MethodSampleRate))
+                continue;
+
+            MethodSampleRate rate = (MethodSampleRate) parameter;
+
+            if (result == null)
+                result = new MethodMatcher();
+
+            result.put(rate.getMethodPattern(), rate);
+        }
+
+        return result;
+    }
+
+    private class TracingFragment implements InterceptorFragment
+    {
+        private Log _log;
+
+        private TracingSettings _settings;
+
+        private MethodMatcher _matcher;
+
+        private TokenBucket _rateLimit;
+
+        TracingFragment(Log log, TracingSettings settings, MethodMatcher matcher)
+        {
+            _log = log;
+            _settings = settings;
+            _matcher = matcher;
+            _rateLimit = new TokenBucket(settings.getRateLimit(), settings.getBurst());
+        }
+
+        public void addFields(InterceptorFusion fusion)
+        {
+            // The tracers are added with the methods that use them.
+        }
+
+        public boolean isIntercepted(MethodSignature sig)
+        {
+            return true;
+        }
+
+        public void addMethodImplementation(InterceptorFusion fusion, MethodSignature sig,
+                String next)
+        {
+            MethodSampleRate rate = _matcher == null ? null : (MethodSampleRate) _matcher.get(sig);
+            int sampleRate = rate == null ? _settings.getSampleRate() : rate.getRate();
+
+            MethodTracer tracer = new MethodTracer(_log, sig.getName(), sampleRate, _rateLimit,
+                    _settings.getSlowThreshold() * 1000000);
+
+            String tracerField = fusion.addField("_tracer", MethodTracer.class, tracer);
+            String tracedName = fusion.getUniqueName("_" + sig.getName() + "$traced");
+
+            addTracedMethod(fusion.getClassFab(), sig, tracerField, tracedName, next);
+
+            fusion.addMethod(buildEntryBody(tracedName));
+        }
+    }
+}
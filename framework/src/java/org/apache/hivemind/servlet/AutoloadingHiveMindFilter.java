@@ -16,6 +16,13 @@ package org.apache.hivemind.servlet;
 
 import java.io.IOException;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -42,6 +49,11 @@ import org.apache.hivemind.impl.RegistryBuilder;
  * 
  * Specializations can override the {@link #addWebInfDescriptor(ServletContext, ClassResolver, RegistryBuilder)} method.
  * to add custom modules.
+ * <p>
+ * When a rebuild is requested (see {@link #rebuildRegistry(HttpServletRequest)}), the new Registry
+ * is constructed on a background thread while requests continue to use the current one. Once
+ * built, it replaces the current Registry for new requests; the old Registry is shut down when the
+ * last request using it completes. If the rebuild fails, the current Registry remains in use.
  * 
  * @author Howard Lewis Ship
  */
@@ -57,9 +69,26 @@ public class AutoloadingHiveMindFilter implements Filter
 
     static final String REBUILD_REQUEST_KEY = "org.apache.hivemind.RebuildRegistry";
 
+    /** Milliseconds {@link #destroy()} waits for a rebuild in progress. */
+    private static final long SHUTDOWN_WAIT = 10000;
+
     private FilterConfig _filterConfig;
 
-    private Registry _registry;
+    /**
+     * The Registry used by new requests; replaced by the rebuild thread, and cleared by
+     * {@link #destroy()}, while synchronized on the filter.
+     */
+    private volatile RegistryGeneration _generation;
+
+    /** Set by {@link #destroy()}; a Registry rebuilt after that is not put into service. */
+    private boolean _destroyed;
+
+    private final AtomicBoolean _rebuildScheduled = new AtomicBoolean();
+
+    /** Rebuilds the Registry, and shuts down replaced Registries; started on first use. */
+    private ExecutorService _rebuildExecutor;
+
+    private volatile Future _lastRebuild;
 
     /**
      * Constructs a {@link Registry} and stores it into the <code>ServletContext</code>. Any
@@ -69,11 +98,18 @@ public class AutoloadingHiveMindFilter implements Filter
     {
         _filterConfig = config;
 
-        initializeRegistry();
+        Registry registry = buildRegistry();
 
+        if (registry != null)
+            _generation = new RegistryGeneration(registry);
     }
 
-    private void initializeRegistry()
+    /**
+     * Constructs a Registry, logging any exception.
+     * 
+     * @return the Registry, or null if it could not be constructed
+     */
+    private Registry buildRegistry()
     {
         long startTime = System.currentTimeMillis();
 
@@ -81,14 +117,18 @@ public class AutoloadingHiveMindFilter implements Filter
 
         try
         {
-            _registry = constructRegistry(_filterConfig);
+            Registry result = constructRegistry(_filterConfig);
 
-            LOG.info(ServletMessages.constructedRegistry(_registry, System.currentTimeMillis()
+            LOG.info(ServletMessages.constructedRegistry(result, System.currentTimeMillis()
                     - startTime));
+
+            return result;
         }
         catch (Exception ex)
         {
             LOG.error(ex.getMessage(), ex);
+
+            return null;
         }
     }
 
@@ -141,57 +181,199 @@ public class AutoloadingHiveMindFilter implements Filter
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException
     {
+        RegistryGeneration generation = acquireGeneration();
+        Registry registry = generation == null ? null : generation.getRegistry();
+
         try
         {
-            // I believe the _registry will only be null in a couple of test situations.
+            // I believe the registry will only be null in a couple of test situations.
 
-            if (_registry != null)
-                _registry.setupThread();
+            if (registry != null)
+                registry.setupThread();
 
-            request.setAttribute(REQUEST_KEY, _registry);
+            request.setAttribute(REQUEST_KEY, registry);
 
             chain.doFilter(request, response);
         }
         finally
         {
-            cleanupThread();
+            cleanupThread(registry);
+
+            if (generation != null && generation.release())
+                scheduleShutdown(generation);
 
             checkRegistryRebuild(request);
         }
     }
 
-    private synchronized void checkRegistryRebuild(ServletRequest request)
+    /**
+     * Returns the current generation, with a reference added for the request; or null if there is
+     * no Registry.
+     */
+    private RegistryGeneration acquireGeneration()
+    {
+        while (true)
+        {
+            RegistryGeneration generation = _generation;
+
+            if (generation == null || generation.acquire())
+                return generation;
+
+            // The generation was replaced and drained since it was read; the replacement is
+            // visible now.
+        }
+    }
+
+    private void checkRegistryRebuild(ServletRequest request)
     {
         if (request.getAttribute(REBUILD_REQUEST_KEY) == null)
             return;
 
-        Registry oldRegistry = _registry;
+        // Rebuild requests that arrive before the rebuild starts are satisfied by it.
 
-        // Replace the old Registry with a new one. All other threads, but this
-        // one, will begin using the new Registry. Hopefully, we didn't get
-        // rebuild requests on multiple threads.
+        if (!_rebuildScheduled.compareAndSet(false, true))
+            return;
 
-        initializeRegistry();
+        try
+        {
+            _lastRebuild = getRebuildExecutor().submit(new Runnable()
+            {
+                public void run()
+                {
+                    rebuild();
+                }
+            });
+        }
+        catch (RejectedExecutionException ex)
+        {
+            // The filter has been destroyed.
 
-        // Shutdown the old Registry. Perhaps we should sleep for a moment, first,
-        // to help ensure that other threads have "cleared out". If not, we'll see some
-        // instability at the instant we shutdown (i.e., all the proxies will get disabled).
-        // Alternately, we should create a WeakReference based monitor that shuts down the
-        // old registry when it is no longer used by any other threads. For the moment,
-        // this functionality is limited to development-time only (not production), so it isn't
-        // urgent.
+            _rebuildScheduled.set(false);
+        }
+    }
 
-        oldRegistry.shutdown();
+    /**
+     * Returns the rebuild executor, creating it on first use.
+     * 
+     * @throws RejectedExecutionException
+     *             if the filter has been destroyed (just like the executor itself, once shut
+     *             down)
+     */
+    private synchronized ExecutorService getRebuildExecutor()
+    {
+        if (_destroyed)
+            throw new RejectedExecutionException();
+
+        if (_rebuildExecutor == null)
+            _rebuildExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread result = new Thread(r, "HiveMind Registry rebuild");
+                    result.setDaemon(true);
+
+                    return result;
+                }
+            });
+
+        return _rebuildExecutor;
+    }
+
+    /**
+     * Constructs a new Registry and makes it current. Invoked on the rebuild thread.
+     */
+    private void rebuild()
+    {
+        _rebuildScheduled.set(false);
+
+        Registry registry = buildRegistry();
+
+        if (registry == null)
+        {
+            LOG.warn(ServletMessages.rebuildFailed());
+            return;
+        }
+
+        RegistryGeneration newGeneration = new RegistryGeneration(registry);
+        RegistryGeneration oldGeneration;
+
+        synchronized (this)
+        {
+            if (_destroyed)
+            {
+                // Too late; the new Registry is retired without ever being used.
+
+                oldGeneration = newGeneration;
+            }
+            else
+            {
+                oldGeneration = _generation;
+                _generation = newGeneration;
+            }
+        }
+
+        // Releases the filter's own reference; requests still using the old Registry will shut it
+        // down as the last one completes.
+
+        if (oldGeneration != null && oldGeneration.release())
+            shutdown(oldGeneration);
+    }
+
+    /**
+     * Shuts down a drained generation on the rebuild thread, so that the request that released it
+     * isn't delayed.
+     */
+    private void scheduleShutdown(final RegistryGeneration generation)
+    {
+        try
+        {
+            getRebuildExecutor().execute(new Runnable()
+            {
+                public void run()
+                {
+                    shutdown(generation);
+                }
+            });
+        }
+        catch (RejectedExecutionException ex)
+        {
+            // The filter has been destroyed.
+
+            shutdown(generation);
+        }
+    }
+
+    private void shutdown(RegistryGeneration generation)
+    {
+        try
+        {
+            generation.getRegistry().shutdown();
+        }
+        catch (Exception ex)
+        {
+            LOG.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Waits for the most recently scheduled rebuild to complete; used in tests.
+     */
+    void waitForRebuild() throws Exception
+    {
+        Future rebuild = _lastRebuild;
+
+        if (rebuild != null)
+            rebuild.get();
     }
 
     /**
      * Cleanup the thread, ignoring any exceptions that may be thrown.
      */
-    private void cleanupThread()
+    private void cleanupThread(Registry registry)
     {
         try
         {
-            _registry.cleanupThread();
+            registry.cleanupThread();
         }
         catch (Exception ex)
         {
@@ -200,12 +382,42 @@ public class AutoloadingHiveMindFilter implements Filter
     }
 
     /**
-     * Invokes {@link Registry#shutdown()}.
+     * Retires the current Registry, which is shut down (by way of {@link Registry#shutdown()})
+     * once any requests still using it complete, and waits for any rebuild in progress. A
+     * Registry rebuilt after this point is shut down without being used.
      */
     public void destroy()
     {
-        if (_registry != null)
-            _registry.shutdown();
+        ExecutorService executor;
+        RegistryGeneration generation;
+
+        synchronized (this)
+        {
+            _destroyed = true;
+
+            executor = _rebuildExecutor;
+            generation = _generation;
+
+            _generation = null;
+        }
+
+        if (executor != null)
+            executor.shutdown();
+
+        if (generation != null && generation.release())
+            shutdown(generation);
+
+        if (executor != null)
+        {
+            try
+            {
+                executor.awaitTermination(SHUTDOWN_WAIT, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
 
         _filterConfig = null;
     }
@@ -220,8 +432,9 @@ public class AutoloadingHiveMindFilter implements Filter
     }
 
     /**
-     * Sets a flag in the request that will cause the current Registry to be shutdown and replaced
-     * with a new Registry (at the end of the current request).
+     * Sets a flag in the request that will cause the current Registry to be replaced with a new
+     * Registry (constructed in the background, after the current request), and shut down once no
+     * longer in use.
      */
     public static void rebuildRegistry(HttpServletRequest request)
     {
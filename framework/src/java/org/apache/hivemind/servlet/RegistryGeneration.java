@@ -0,0 +1,75 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.servlet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hivemind.Registry;
+
+/**
+ * A Registry served by {@link AutoloadingHiveMindFilter}, with a count of the requests using it.
+ * The filter holds a reference of its own until the Registry is replaced (the generation is
+ * retired); the Registry may be shut down once the last reference is released.
+ * 
+ * @since 2.0
+ */
+class RegistryGeneration
+{
+    private final Registry _registry;
+
+    /** The filter's reference plus the requests in progress; 0 once drained. */
+    private final AtomicInteger _references = new AtomicInteger(1);
+
+    RegistryGeneration(Registry registry)
+    {
+        _registry = registry;
+    }
+
+    Registry getRegistry()
+    {
+        return _registry;
+    }
+
+    /**
+     * Adds a reference for a request, unless the generation has already drained.
+     * 
+     * @return true if the reference was added
+     */
+    boolean acquire()
+    {
+        while (true)
+        {
+            int references = _references.get();
+
+            if (references == 0)
+                return false;
+
+            if (_references.compareAndSet(references, references + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Releases a reference.
+     * 
+     * @return true if that was the last reference; the caller is responsible for shutting down
+     *         the Registry
+     */
+    boolean release()
+    {
+        return _references.decrementAndGet() == 0;
+    }
+}
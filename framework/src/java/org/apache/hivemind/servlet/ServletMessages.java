@@ -41,4 +41,9 @@ class ServletMessages
         return _formatter.format("constructed-registry", registry, new Long(millis));
     }
 
+    static String rebuildFailed()
+    {
+        return _formatter.getMessage("rebuild-failed");
+    }
+
 }
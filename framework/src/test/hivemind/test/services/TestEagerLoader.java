@@ -29,6 +29,7 @@ import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
 import org.apache.hivemind.internal.ServiceModel;
 import org.apache.hivemind.internal.ServicePoint;
 import org.apache.hivemind.service.impl.EagerLoader;
+import org.easymock.MockControl;
 
 /**
  * Tests for the {@link org.apache.hivemind.service.impl.EagerLoader} service.
@@ -42,7 +43,11 @@ public class TestEagerLoader extends FrameworkTestCase
         EagerLoader el = new EagerLoader();
         List l = new ArrayList();
 
-        ServicePoint sp = (ServicePoint) newMock(ServicePoint.class);
+        MockControl spc = newControl(ServicePoint.class);
+        ServicePoint sp = (ServicePoint) spc.getMock();
+
+        sp.getExtensionPointId();
+        spc.setReturnValue("foo.Bar");
 
         sp.forceServiceInstantiation();
    
@@ -16,9 +16,18 @@ package hivemind.test.services;
 
 import hivemind.test.FrameworkTestCase;
 
+import java.util.Collections;
+
+import org.apache.hivemind.ApplicationRuntimeException;
 import org.apache.hivemind.HiveMind;
 import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.Contribution;
+import org.apache.hivemind.definition.ContributionContext;
+import org.apache.hivemind.definition.impl.ModuleDefinitionHelper;
+import org.apache.hivemind.impl.ServicePoolContribution;
 import org.apache.hivemind.internal.ServiceModel;
+import org.apache.hivemind.service.ServicePoolMonitor;
+import org.apache.hivemind.service.ServicePoolStatistics;
 import org.apache.hivemind.service.ThreadEventNotifier;
 
 /**
@@ -50,4 +59,82 @@ public class TestPooledServiceModel extends FrameworkTestCase
 
         assertEquals("funky monkey", s.getValue());
     }
+
+    public void testConfiguredPool() throws Exception
+    {
+        StringHolderModule module = new StringHolderModule(ServiceModel.POOLED);
+
+        final ServicePoolContribution settings = new ServicePoolContribution(
+                "hivemind.test.services.StringHolder", 2, 2, 0);
+        settings.setPrewarm(true);
+        settings.setBlock(false);
+
+        new ModuleDefinitionHelper(module).addContributionDefinition(
+                "hivemind.ServicePools",
+                new Contribution()
+                {
+                    public void contribute(ContributionContext context)
+                    {
+                        context.mergeContribution(Collections.singletonMap(settings
+                                .getServiceId(), settings));
+                    }
+                });
+
+        Registry r = buildFrameworkRegistry(module);
+
+        ServicePoolMonitor monitor = (ServicePoolMonitor) r.getService(
+                HiveMind.SERVICE_POOL_MONITOR_SERVICE,
+                ServicePoolMonitor.class);
+
+        ServicePoolStatistics statistics = monitor
+                .getStatistics("hivemind.test.services.StringHolder");
+
+        // Pre-warmed as the registry started up.
+
+        assertEquals(2, statistics.getCreatedCount());
+        assertEquals(2, statistics.getIdleCount());
+
+        final StringHolder s = (StringHolder) r.getService(
+                "hivemind.test.services.StringHolder",
+                StringHolder.class);
+
+        s.setValue("barney");
+
+        final Throwable[] failure = new Throwable[1];
+
+        Runnable runnable = new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    s.getValue();
+                }
+                catch (Throwable t)
+                {
+                    failure[0] = t;
+                }
+            }
+        };
+
+        Thread second = new Thread(runnable);
+        second.start();
+        second.join();
+
+        assertNull(failure[0]);
+        assertEquals(2, statistics.getActiveCount());
+
+        Thread third = new Thread(runnable);
+        third.start();
+        third.join();
+
+        assertTrue(failure[0] instanceof ApplicationRuntimeException);
+        assertExceptionSubstring(failure[0], "all 2 pooled instances are in use");
+        assertEquals(1, statistics.getExhaustedCount());
+
+        r.cleanupThread();
+
+        assertEquals(1, statistics.getActiveCount());
+        assertEquals(2, statistics.getCreatedCount());
+    }
 }
@@ -0,0 +1,169 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package hivemind.test.services;
+
+import hivemind.test.FrameworkTestCase;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.HiveMind;
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.internal.ServiceModel;
+import org.apache.hivemind.service.ServicePoolMonitor;
+import org.apache.hivemind.service.ServicePoolStatistics;
+import org.apache.hivemind.service.ServiceScope;
+import org.apache.hivemind.service.ServiceScopeManager;
+
+/**
+ * Tests {@link org.apache.hivemind.impl.servicemodel.ScopedServiceModel} and
+ * {@link org.apache.hivemind.impl.servicemodel.ScopedPooledServiceModel}.
+ * 
+ * @since 2.0
+ */
+public class TestScopedServiceModel extends FrameworkTestCase
+{
+    private ServiceScopeManager getScopeManager(Registry r)
+    {
+        return (ServiceScopeManager) r.getService(
+                HiveMind.SERVICE_SCOPE_MANAGER_SERVICE,
+                ServiceScopeManager.class);
+    }
+
+    private StringHolder getStringHolder(Registry r)
+    {
+        return (StringHolder) r.getService(
+                "hivemind.test.services.StringHolder",
+                StringHolder.class);
+    }
+
+    public void testNoActiveScope()
+    {
+        Registry r = buildFrameworkRegistry(new StringHolderModule(ServiceModel.SCOPED));
+
+        StringHolder s = getStringHolder(r);
+
+        try
+        {
+            s.getValue();
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(
+                    ex,
+                    "Service hivemind.test.services.StringHolder is bound to a service scope");
+        }
+    }
+
+    public void testBoundToScope() throws Exception
+    {
+        Registry r = buildFrameworkRegistry(new StringHolderModule(ServiceModel.SCOPED));
+
+        final ServiceScopeManager manager = getScopeManager(r);
+        final StringHolder s = getStringHolder(r);
+
+        final ServiceScope first = manager.createScope();
+        ServiceScope second = manager.createScope();
+
+        assertNull(manager.attach(first));
+
+        s.setValue("fred");
+
+        // Thread cleanup has no effect on scoped services.
+
+        r.cleanupThread();
+
+        assertEquals("fred", s.getValue());
+
+        assertSame(first, manager.attach(second));
+
+        assertNull(s.getValue());
+
+        final String[] value = new String[1];
+
+        Thread other = new Thread()
+        {
+            public void run()
+            {
+                manager.attach(first);
+
+                value[0] = s.getValue();
+
+                manager.attach(null);
+            }
+        };
+
+        other.start();
+        other.join();
+
+        assertEquals("fred", value[0]);
+
+        manager.attach(null);
+
+        first.close();
+        second.close();
+
+        assertTrue(first.isClosed());
+
+        manager.attach(first);
+
+        try
+        {
+            s.getValue();
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(ex, "service scope that has been closed");
+        }
+
+        manager.attach(null);
+    }
+
+    public void testScopedPooledReturnedOnClose()
+    {
+        Registry r = buildFrameworkRegistry(new StringHolderModule(ServiceModel.SCOPED_POOLED));
+
+        ServiceScopeManager manager = getScopeManager(r);
+        StringHolder s = getStringHolder(r);
+
+        ServiceScope scope = manager.createScope();
+        manager.attach(scope);
+
+        s.setValue("barney");
+
+        ServicePoolMonitor monitor = (ServicePoolMonitor) r.getService(
+                HiveMind.SERVICE_POOL_MONITOR_SERVICE,
+                ServicePoolMonitor.class);
+
+        ServicePoolStatistics statistics = monitor
+                .getStatistics("hivemind.test.services.StringHolder");
+
+        assertEquals(1, statistics.getActiveCount());
+
+        scope.close();
+
+        assertEquals(0, statistics.getActiveCount());
+        assertEquals(1, statistics.getIdleCount());
+
+        manager.attach(manager.createScope());
+
+        // Same (unmanaged) instance, back from the pool.
+
+        assertEquals("barney", s.getValue());
+        assertEquals(1, statistics.getCreatedCount());
+
+        manager.attach(null).close();
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.hivemind.definition.ContributionContext;
 import org.apache.hivemind.definition.ServicePointDefinition;
 import org.apache.hivemind.definition.impl.ModuleDefinitionHelper;
 import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
+import org.apache.hivemind.impl.StartupContribution;
 import org.apache.hivemind.impl.StartupImpl;
 import org.apache.hivemind.internal.ServiceModel;
 
@@ -52,6 +53,37 @@ public class TestStartup extends FrameworkTestCase
         assertEquals(true, fixture.getDidRun());
     }
 
+    public void testOrderedStartupImpl()
+    {
+        final List executed = new ArrayList();
+
+        List l = new ArrayList();
+        l.add(new StartupContribution("second", new Runnable()
+        {
+            public void run()
+            {
+                executed.add("second");
+            }
+        }, "first", null));
+        l.add(new StartupContribution("first", new Runnable()
+        {
+            public void run()
+            {
+                executed.add("first");
+            }
+        }, null, null));
+
+        StartupImpl s = new StartupImpl();
+
+        s.setRunnables(l);
+        s.setThreads(2);
+        s.run();
+
+        assertListsEqual(new Object[]
+        { "first", "second" }, executed);
+        assertTrue(s.getElapsedTime("second") >= 0);
+    }
+
     public void testStartupContribution() throws Exception
     {
         Registry r = createRegistry();
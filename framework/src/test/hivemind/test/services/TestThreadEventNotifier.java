@@ -114,4 +114,51 @@ public class TestThreadEventNotifier extends FrameworkTestCase
 
         verifyControls();
     }
+
+    public void testListenerRemovedDuringCleanup()
+    {
+        final ThreadEventNotifier n = new ThreadEventNotifierImpl();
+
+        final Listener l2 = new Listener();
+
+        ThreadCleanupListener l1 = new ThreadCleanupListener()
+        {
+            public void threadDidCleanup()
+            {
+                n.removeThreadCleanupListener(l2);
+            }
+        };
+
+        n.addThreadCleanupListener(l1);
+        n.addThreadCleanupListener(l2);
+
+        n.fireThreadCleanup();
+
+        assertEquals(false, l2._cleanup);
+    }
+
+    public void testListenerAddedDuringCleanupNotifiedByNextCleanup()
+    {
+        final ThreadEventNotifier n = new ThreadEventNotifierImpl();
+
+        final Listener l2 = new Listener();
+
+        ThreadCleanupListener l1 = new ThreadCleanupListener()
+        {
+            public void threadDidCleanup()
+            {
+                n.addThreadCleanupListener(l2);
+            }
+        };
+
+        n.addThreadCleanupListener(l1);
+
+        n.fireThreadCleanup();
+
+        assertEquals(false, l2._cleanup);
+
+        n.fireThreadCleanup();
+
+        assertEquals(true, l2._cleanup);
+    }
 }
@@ -0,0 +1,266 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.impl;
+
+import hivemind.test.FrameworkTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.ConfigurationPointDefinition;
+import org.apache.hivemind.definition.Contribution;
+import org.apache.hivemind.definition.ContributionContext;
+import org.apache.hivemind.definition.ImplementationConstructionContext;
+import org.apache.hivemind.definition.ServicePointDefinition;
+import org.apache.hivemind.definition.impl.ModuleDefinitionHelper;
+import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
+import org.apache.hivemind.internal.AbstractServiceImplementationConstructor;
+import org.apache.hivemind.internal.ServiceModel;
+
+/**
+ * Tests processing of the contributions to a configuration point on several threads (see
+ * {@link ConfigurationPointImpl#CONTRIBUTION_THREADS_PROPERTY}).
+ * 
+ * @since 2.0
+ */
+public class TestParallelContributions extends FrameworkTestCase
+{
+    private static final String CONFIGURATION_ID = "hivemind.test.parallel.Values";
+
+    private ModuleDefinitionHelper _helper;
+
+    private ConfigurationPointDefinition _point;
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        System.setProperty(ConfigurationPointImpl.CONTRIBUTION_THREADS_PROPERTY, "4");
+
+        ModuleDefinitionImpl module = createModuleDefinition("hivemind.test.parallel");
+
+        _helper = new ModuleDefinitionHelper(module);
+        _point = _helper.addConfigurationPoint("Values", List.class.getName(), false);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        System.getProperties().remove(ConfigurationPointImpl.CONTRIBUTION_THREADS_PROPERTY);
+
+        super.tearDown();
+    }
+
+    private void addValueContribution(final int value, final long delay)
+    {
+        _helper.addContributionDefinition(_point, new Contribution()
+        {
+            public void contribute(ContributionContext context)
+            {
+                try
+                {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException ex)
+                {
+                    throw new ApplicationRuntimeException(ex);
+                }
+
+                context.mergeContribution(new ArrayList(Collections.singletonList(new Integer(
+                        value))));
+            }
+        });
+    }
+
+    private Registry buildRegistry()
+    {
+        return buildFrameworkRegistry(_helper.getModule());
+    }
+
+    public void testMergedInContributionOrder() throws Exception
+    {
+        // Later contributions finish first
+
+        for (int i = 0; i < 10; i++)
+            addValueContribution(i, 5 * (10 - i));
+
+        List values = (List) buildRegistry().getConfiguration(CONFIGURATION_ID);
+
+        assertEquals(10, values.size());
+
+        for (int i = 0; i < 10; i++)
+            assertEquals(new Integer(i), values.get(i));
+    }
+
+    public void testDependentContributionProcessedInOrder() throws Exception
+    {
+        addValueContribution(1, 20);
+
+        _helper.addContributionDefinition(_point, new Contribution()
+        {
+            public void contribute(ContributionContext context)
+            {
+                List data = (List) context.getConfigurationData();
+
+                data.add(new Integer(data.size() + 1));
+            }
+        });
+
+        addValueContribution(3, 0);
+
+        List values = (List) buildRegistry().getConfiguration(CONFIGURATION_ID);
+
+        assertEquals(3, values.size());
+        assertEquals(new Integer(1), values.get(0));
+        assertEquals(new Integer(2), values.get(1));
+        assertEquals(new Integer(3), values.get(2));
+    }
+
+    public void testEarliestFailureReported() throws Exception
+    {
+        addValueContribution(0, 0);
+
+        for (int i = 1; i < 3; i++)
+        {
+            final String message = "Failure #" + i;
+            final long delay = 20 / i;
+
+            _helper.addContributionDefinition(_point, new Contribution()
+            {
+                public void contribute(ContributionContext context)
+                {
+                    try
+                    {
+                        Thread.sleep(delay);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        // Ignored
+                    }
+
+                    throw new ApplicationRuntimeException(message);
+                }
+            });
+        }
+
+        Registry r = buildRegistry();
+
+        interceptLogging();
+
+        try
+        {
+            r.getConfiguration(CONFIGURATION_ID);
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(ex, "Unable to construct configuration " + CONFIGURATION_ID
+                    + ": Failure #1");
+        }
+    }
+
+    public void testRecursiveConfiguration() throws Exception
+    {
+        addValueContribution(0, 0);
+
+        _helper.addContributionDefinition(_point, new Contribution()
+        {
+            public void contribute(ContributionContext context)
+            {
+                context.mergeContribution(new ArrayList((List) context.getConfigurationPoint()
+                        .getConfiguration()));
+            }
+        });
+
+        Registry r = buildRegistry();
+
+        interceptLogging();
+
+        try
+        {
+            r.getConfiguration(CONFIGURATION_ID);
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(ex, "A recursive call to construct configuration "
+                    + CONFIGURATION_ID + " has occured.");
+        }
+    }
+
+    /**
+     * A contribution, processed on another thread, that uses the service whose construction
+     * requires the configuration. The constructing thread waits for the contribution while it
+     * holds the service's construction lock, so the contribution must fail instead of waiting
+     * for the lock.
+     */
+    public void testRecursiveServiceConstruction() throws Exception
+    {
+        final String serviceId = "hivemind.test.parallel.Service";
+
+        ServicePointDefinition service = _helper.addServicePoint("Service", Runnable.class
+                .getName());
+
+        _helper.addServiceImplementation(service, new AbstractServiceImplementationConstructor(
+                _helper.getModule().getLocation())
+        {
+            public Object constructCoreServiceImplementation(
+                    ImplementationConstructionContext context)
+            {
+                final List values = (List) context.getConfiguration(CONFIGURATION_ID);
+
+                return new Runnable()
+                {
+                    public void run()
+                    {
+                        values.size();
+                    }
+                };
+            }
+        }, ServiceModel.SINGLETON);
+
+        addValueContribution(0, 0);
+
+        _helper.addContributionDefinition(_point, new Contribution()
+        {
+            public void contribute(ContributionContext context)
+            {
+                Runnable r = (Runnable) context.getService(serviceId, Runnable.class);
+
+                r.run();
+            }
+        });
+
+        Registry r = buildRegistry();
+
+        interceptLogging();
+
+        Runnable runnable = (Runnable) r.getService(serviceId, Runnable.class);
+
+        try
+        {
+            runnable.run();
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(ex, "A recursive call to construct service " + serviceId
+                    + " has occured.");
+        }
+    }
+}
@@ -175,6 +175,69 @@ public class TestRegistryInfrastructure extends FrameworkTestCase
         }
     }
 
+    /**
+     * Once frozen, no further extension points may be added, but lookups continue to work.
+     * 
+     * @since 2.0
+     */
+    public void testFreeze()
+    {
+        RegistryInfrastructureImpl r = new RegistryInfrastructureImpl( null, null );
+        ModuleDefinition moduleDefinition = createModuleDefinition("module1");
+        final ModuleImpl module1 = new ModuleImpl();
+        module1.setClassResolver( new DefaultClassResolver() );
+        module1.setModuleId( "module1" );
+        r.addModule( module1 );
+        r.addServicePoint( createServicePoint(moduleDefinition, module1, "foo", ResultSet.class, Visibility.PUBLIC ) );
+
+        r.freeze();
+
+        try
+        {
+            r.addServicePoint( createServicePoint(moduleDefinition, module1, "bar", ResultSet.class, Visibility.PUBLIC ) );
+            unreachable();
+        }
+        catch( IllegalStateException ex )
+        {
+            assertEquals( ImplMessages.registryFrozen(), ex.getMessage() );
+        }
+
+        assertSame( module1, r.getModule( "module1" ) );
+        assertEquals( "module1.foo", r.getServicePoint( "module1.foo", null ).getExtensionPointId() );
+        assertTrue( r.containsService( ResultSet.class, null ) );
+        assertSame( r.getServiceTokenForService( "module1.foo" ), r.getServiceTokenForService( "module1.foo" ) );
+    }
+
+    /**
+     * Lookups by interface are cached by interface name once frozen; visibility is still checked
+     * against the calling module.
+     * 
+     * @since 2.0
+     */
+    public void testContainsServiceByInterfaceWhenFrozen()
+    {
+        RegistryInfrastructureImpl r = new RegistryInfrastructureImpl( null, null );
+        final ModuleImpl module1 = new ModuleImpl();
+        module1.setClassResolver( new DefaultClassResolver() );
+        module1.setModuleId( "module1" );
+        final ModuleImpl module2 = new ModuleImpl();
+        module2.setClassResolver( new DefaultClassResolver() );
+        module2.setModuleId( "module2" );
+        r.addServicePoint( createServicePoint(createModuleDefinition("module1"), module1, "foo", ResultSet.class, Visibility.PRIVATE ) );
+        r.addServicePoint( createServicePoint(createModuleDefinition("module2"), module2, "bar", ResultSet.class, Visibility.PUBLIC ) );
+
+        r.freeze();
+
+        for (int i = 0; i < 2; i++)
+        {
+            assertTrue( r.containsService( ResultSet.class, null ) );
+            assertTrue( r.containsService( ResultSet.class, module2 ) );
+            assertFalse( r.containsService( ResultSet.class, module1 ) );
+            assertFalse( r.containsService( String.class, null ) );
+            assertEquals( Collections.singletonList( "module2.bar" ), r.getServiceIds( ResultSet.class ) );
+        }
+    }
+
     public void testUnknownServiceModelFactory()
     {
         MockControl cpc = newControl( ConfigurationPoint.class );
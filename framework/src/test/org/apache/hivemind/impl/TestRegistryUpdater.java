@@ -0,0 +1,500 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+import hivemind.test.FrameworkTestCase;
+import hivemind.test.services.StringHolder;
+import hivemind.test.services.impl.StringHolderImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.ConfigurationPointDefinition;
+import org.apache.hivemind.definition.Contribution;
+import org.apache.hivemind.definition.ContributionContext;
+import org.apache.hivemind.definition.ImplementationConstructionContext;
+import org.apache.hivemind.definition.ServicePointDefinition;
+import org.apache.hivemind.definition.impl.ContributionDefinitionImpl;
+import org.apache.hivemind.definition.impl.ModuleDefinitionHelper;
+import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
+import org.apache.hivemind.events.RegistryShutdownListener;
+import org.apache.hivemind.internal.AbstractServiceImplementationConstructor;
+import org.apache.hivemind.internal.ServiceModel;
+
+/**
+ * Tests for {@link RegistryUpdater}, by way of
+ * {@link RegistryBuilder#updateRegistry(Registry, java.util.Collection)}.
+ * 
+ * @since 2.0
+ */
+public class TestRegistryUpdater extends FrameworkTestCase
+{
+    private RegistryBuilder _builder;
+
+    public static class ShutdownStringHolder extends StringHolderImpl implements
+            RegistryShutdownListener
+    {
+        private boolean _shutdown;
+
+        public void registryDidShutdown()
+        {
+            _shutdown = true;
+        }
+
+        public boolean isShutdown()
+        {
+            return _shutdown;
+        }
+    }
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        _builder = new RegistryBuilder();
+    }
+
+    private Registry buildRegistry(ModuleDefinitionImpl[] modules)
+    {
+        for (int i = 0; i < modules.length; i++)
+            _builder.getRegistryDefinition().addModule(modules[i]);
+
+        return _builder.constructRegistry(Locale.getDefault());
+    }
+
+    private List update(Registry registry, ModuleDefinitionImpl module)
+    {
+        return _builder.updateRegistry(registry, Collections.singletonList(module));
+    }
+
+    /**
+     * Adds a singleton StringHolder service, whose implementation is returned by the holder
+     * parameter when the value is null.
+     */
+    private ServicePointDefinition addHolder(ModuleDefinitionImpl module, String pointId,
+            final String value, final StringHolder holder)
+    {
+        ModuleDefinitionHelper helper = new ModuleDefinitionHelper(module);
+
+        ServicePointDefinition point = helper.addServicePoint(pointId, StringHolder.class
+                .getName());
+
+        helper.addServiceImplementation(point, new AbstractServiceImplementationConstructor(
+                module.getLocation())
+        {
+            public Object constructCoreServiceImplementation(
+                    ImplementationConstructionContext context)
+            {
+                StringHolder result = holder == null ? new StringHolderImpl() : holder;
+
+                if (value != null)
+                    result.setValue(value);
+
+                return result;
+            }
+        }, ServiceModel.SINGLETON);
+
+        return point;
+    }
+
+    /**
+     * Adds a StringHolder service whose value is copied from another StringHolder service when
+     * it is constructed.
+     */
+    private void addCopy(ModuleDefinitionImpl module, String pointId, final String sourceId)
+    {
+        ModuleDefinitionHelper helper = new ModuleDefinitionHelper(module);
+
+        ServicePointDefinition point = helper.addServicePoint(pointId, StringHolder.class
+                .getName());
+
+        helper.addServiceImplementation(point, new AbstractServiceImplementationConstructor(
+                module.getLocation())
+        {
+            public Object constructCoreServiceImplementation(
+                    ImplementationConstructionContext context)
+            {
+                StringHolder source = (StringHolder) context.getService(
+                        sourceId,
+                        StringHolder.class);
+
+                StringHolder result = new StringHolderImpl();
+
+                result.setValue("copy of " + source.getValue());
+
+                return result;
+            }
+        }, ServiceModel.SINGLETON);
+    }
+
+    private String getValue(Registry registry, String serviceId)
+    {
+        return ((StringHolder) registry.getService(serviceId, StringHolder.class)).getValue();
+    }
+
+    public void testUnchangedServicesKept() throws Exception
+    {
+        ModuleDefinitionImpl alpha = createModuleDefinition("alpha");
+        addHolder(alpha, "Holder", "alpha", null);
+
+        ModuleDefinitionImpl beta = createModuleDefinition("beta");
+        addHolder(beta, "Holder", "beta", null);
+
+        Registry registry = buildRegistry(new ModuleDefinitionImpl[]
+        { alpha, beta });
+
+        StringHolder betaHolder = (StringHolder) registry.getService(
+                "beta.Holder",
+                StringHolder.class);
+
+        assertEquals("alpha", getValue(registry, "alpha.Holder"));
+        assertEquals("beta", betaHolder.getValue());
+
+        ModuleDefinitionImpl newAlpha = createModuleDefinition("alpha");
+        addHolder(newAlpha, "Holder", "new alpha", null);
+
+        List rebuilt = update(registry, newAlpha);
+
+        assertEquals(Collections.singletonList("alpha.Holder"), rebuilt);
+
+        assertEquals("new alpha", getValue(registry, "alpha.Holder"));
+        assertSame(betaHolder, registry.getService("beta.Holder", StringHolder.class));
+
+        registry.shutdown();
+    }
+
+    public void testDependentServicesRebuilt() throws Exception
+    {
+        ModuleDefinitionImpl alpha = createModuleDefinition("alpha");
+        addHolder(alpha, "Holder", "alpha", null);
+
+        ModuleDefinitionImpl beta = createModuleDefinition("beta");
+        addCopy(beta, "Copy", "alpha.Holder");
+        addCopy(beta, "CopyOfCopy", "beta.Copy");
+        addCopy(beta, "Unused", "alpha.Holder");
+        addHolder(beta, "Holder", "beta", null);
+
+        Registry registry = buildRegistry(new ModuleDefinitionImpl[]
+        { alpha, beta });
+
+        assertEquals("copy of copy of alpha", getValue(registry, "beta.CopyOfCopy"));
+        assertEquals("beta", getValue(registry, "beta.Holder"));
+
+        ModuleDefinitionImpl newAlpha = createModuleDefinition("alpha");
+        addHolder(newAlpha, "Holder", "new alpha", null);
+
+        List rebuilt = update(registry, newAlpha);
+
+        // beta.Unused was never constructed, so does not need to be rebuilt
+
+        assertEquals(Arrays.asList(new String[]
+        { "alpha.Holder", "beta.Copy", "beta.CopyOfCopy" }), rebuilt);
+
+        assertEquals("copy of copy of new alpha", getValue(registry, "beta.CopyOfCopy"));
+        assertEquals("copy of new alpha", getValue(registry, "beta.Unused"));
+
+        registry.shutdown();
+    }
+
+    public void testReplacedServicesShutdown() throws Exception
+    {
+        ShutdownStringHolder implementation = new ShutdownStringHolder();
+
+        ModuleDefinitionImpl alpha = createModuleDefinition("alpha");
+        addHolder(alpha, "Holder", "alpha", implementation);
+
+        Registry registry = buildRegistry(new ModuleDefinitionImpl[]
+        { alpha });
+
+        StringHolder holder = (StringHolder) registry.getService("alpha.Holder", StringHolder.class);
+
+        assertEquals("alpha", holder.getValue());
+
+        ModuleDefinitionImpl newAlpha = createModuleDefinition("alpha");
+        addHolder(newAlpha, "Holder", "new alpha", null);
+
+        update(registry, newAlpha);
+
+        assertTrue(implementation.isShutdown());
+
+        try
+        {
+            holder.getValue();
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(ex, "The HiveMind Registry has been shutdown.");
+        }
+
+        assertEquals("new alpha", getValue(registry, "alpha.Holder"));
+
+        registry.shutdown();
+    }
+
+    public void testRemovedServicePoint() throws Exception
+    {
+        ModuleDefinitionImpl alpha = createModuleDefinition("alpha");
+        addHolder(alpha, "Holder", "alpha", null);
+        addHolder(alpha, "Other", "other", null);
+
+        Registry registry = buildRegistry(new ModuleDefinitionImpl[]
+        { alpha });
+
+        assertEquals("other", getValue(registry, "alpha.Other"));
+
+        ModuleDefinitionImpl newAlpha = createModuleDefinition("alpha");
+        addHolder(newAlpha, "Holder", "new alpha", null);
+
+        List rebuilt = update(registry, newAlpha);
+
+        assertEquals(Arrays.asList(new String[]
+        { "alpha.Holder", "alpha.Other" }), rebuilt);
+
+        assertFalse(registry.containsService("alpha.Other", StringHolder.class));
+        assertEquals("new alpha", getValue(registry, "alpha.Holder"));
+        assertEquals(Collections.singletonList("alpha.Holder"), registry
+                .getServiceIds(StringHolder.class));
+
+        registry.shutdown();
+    }
+
+    private void addValue(ModuleDefinitionImpl module, String configurationId, final String value)
+    {
+        module.addContribution(configurationId, new ContributionDefinitionImpl(module, module
+                .getLocation(), new Contribution()
+        {
+            public void contribute(ContributionContext context)
+            {
+                context.mergeContribution(new ArrayList(Collections.singletonList(value)));
+            }
+        }, false));
+    }
+
+    public void testContributionsOfOtherModulesCarriedOver() throws Exception
+    {
+        ModuleDefinitionImpl alpha = createModuleDefinition("alpha");
+        ConfigurationPointDefinition point = new ModuleDefinitionHelper(alpha)
+                .addConfigurationPoint("Values", List.class.getName(), false);
+        addValue(alpha, "alpha.Values", "alpha");
+
+        ModuleDefinitionImpl beta = createModuleDefinition("beta");
+        addValue(beta, "alpha.Values", "beta");
+
+        Registry registry = buildRegistry(new ModuleDefinitionImpl[]
+        { alpha, beta });
+
+        assertEquals(2, ((List) registry.getConfiguration("alpha.Values")).size());
+        assertEquals(2, point.getContributions().size());
+
+        ModuleDefinitionImpl newAlpha = createModuleDefinition("alpha");
+        new ModuleDefinitionHelper(newAlpha).addConfigurationPoint(
+                "Values",
+                List.class.getName(),
+                false);
+        addValue(newAlpha, "alpha.Values", "new alpha");
+
+        assertEquals(Collections.singletonList("alpha.Values"), update(registry, newAlpha));
+
+        List values = (List) registry.getConfiguration("alpha.Values");
+
+        assertEquals(2, values.size());
+        assertTrue(values.contains("beta"));
+        assertTrue(values.contains("new alpha"));
+
+        ModuleDefinitionImpl newBeta = createModuleDefinition("beta");
+        addValue(newBeta, "alpha.Values", "new beta");
+
+        assertEquals(Collections.singletonList("alpha.Values"), update(registry, newBeta));
+
+        values = (List) registry.getConfiguration("alpha.Values");
+
+        assertEquals(2, values.size());
+        assertTrue(values.contains("new alpha"));
+        assertTrue(values.contains("new beta"));
+
+        registry.shutdown();
+    }
+
+    public void testServiceDependingOnConfigurationRebuilt() throws Exception
+    {
+        ModuleDefinitionImpl alpha = createModuleDefinition("alpha");
+        new ModuleDefinitionHelper(alpha).addConfigurationPoint("Values", List.class.getName(), false);
+        addValue(alpha, "alpha.Values", "alpha");
+
+        ModuleDefinitionImpl beta = createModuleDefinition("beta");
+        ModuleDefinitionHelper helper = new ModuleDefinitionHelper(beta);
+        ServicePointDefinition point = helper.addServicePoint("Holder", StringHolder.class
+                .getName());
+
+        helper.addServiceImplementation(point, new AbstractServiceImplementationConstructor(beta
+                .getLocation())
+        {
+            public Object constructCoreServiceImplementation(
+                    ImplementationConstructionContext context)
+            {
+                List values = (List) context.getConfiguration("alpha.Values");
+
+                StringHolder result = new StringHolderImpl();
+                result.setValue(values.toString());
+
+                return result;
+            }
+        }, ServiceModel.SINGLETON);
+
+        Registry registry = buildRegistry(new ModuleDefinitionImpl[]
+        { alpha, beta });
+
+        assertEquals("[alpha]", getValue(registry, "beta.Holder"));
+
+        ModuleDefinitionImpl newAlpha = createModuleDefinition("alpha");
+        new ModuleDefinitionHelper(newAlpha).addConfigurationPoint(
+                "Values",
+                List.class.getName(),
+                false);
+        addValue(newAlpha, "alpha.Values", "new alpha");
+
+        assertEquals(Arrays.asList(new String[]
+        { "alpha.Values", "beta.Holder" }), update(registry, newAlpha));
+
+        assertEquals("[new alpha]", getValue(registry, "beta.Holder"));
+
+        registry.shutdown();
+    }
+
+    public void testConfigurationDependingOnServiceRebuilt() throws Exception
+    {
+        ModuleDefinitionImpl alpha = createModuleDefinition("alpha");
+        addHolder(alpha, "Holder", "alpha", null);
+
+        ModuleDefinitionImpl beta = createModuleDefinition("beta");
+        new ModuleDefinitionHelper(beta).addConfigurationPoint("Holders", List.class.getName(), false);
+
+        // The contribution turns a service id into the service.
+
+        beta.addContribution("beta.Holders", new ContributionDefinitionImpl(beta, beta
+                .getLocation(), new Contribution()
+        {
+            public void contribute(ContributionContext context)
+            {
+                Object holder = context.getService("alpha.Holder", StringHolder.class);
+
+                context.mergeContribution(new ArrayList(Collections.singletonList(holder)));
+            }
+        }, false));
+
+        addHolder(beta, "Holder", "beta", null);
+
+        Registry registry = buildRegistry(new ModuleDefinitionImpl[]
+        { alpha, beta });
+
+        StringHolder holder = (StringHolder) ((List) registry.getConfiguration("beta.Holders"))
+                .get(0);
+
+        assertEquals("alpha", holder.getValue());
+        assertEquals("beta", getValue(registry, "beta.Holder"));
+
+        ModuleDefinitionImpl newAlpha = createModuleDefinition("alpha");
+        addHolder(newAlpha, "Holder", "new alpha", null);
+
+        assertEquals(Arrays.asList(new String[]
+        { "alpha.Holder", "beta.Holders" }), update(registry, newAlpha));
+
+        // The rebuilt configuration holds the new service, not the one that has been shutdown.
+
+        holder = (StringHolder) ((List) registry.getConfiguration("beta.Holders")).get(0);
+
+        assertEquals("new alpha", holder.getValue());
+
+        registry.shutdown();
+    }
+
+    public void testDefinitionsInUseNotChanged() throws Exception
+    {
+        ModuleDefinitionImpl alpha = createModuleDefinition("alpha");
+        ConfigurationPointDefinition point = new ModuleDefinitionHelper(alpha)
+                .addConfigurationPoint("Values", List.class.getName(), false);
+        addValue(alpha, "alpha.Values", "alpha");
+
+        ModuleDefinitionImpl beta = createModuleDefinition("beta");
+        addValue(beta, "alpha.Values", "beta");
+
+        Registry registry = buildRegistry(new ModuleDefinitionImpl[]
+        { alpha, beta });
+
+        ModuleDefinitionImpl newBeta = createModuleDefinition("beta");
+        addValue(newBeta, "alpha.Values", "new beta");
+
+        assertEquals(Collections.singletonList("alpha.Values"), update(registry, newBeta));
+
+        // The configuration point in use was not changed; the registry definition now has a copy.
+
+        assertEquals(2, point.getContributions().size());
+
+        ConfigurationPointDefinition newPoint = _builder.getRegistryDefinition()
+                .getConfigurationPoint("alpha.Values");
+
+        assertNotSame(point, newPoint);
+        assertEquals(2, newPoint.getContributions().size());
+        assertSame(point, alpha.getConfigurationPoint("Values"));
+
+        registry.shutdown();
+    }
+
+    public void testInvalidUpdateRejected() throws Exception
+    {
+        ModuleDefinitionImpl alpha = createModuleDefinition("alpha");
+        addHolder(alpha, "Holder", "alpha", null);
+
+        ModuleDefinitionImpl beta = createModuleDefinition("beta");
+        addCopy(beta, "Copy", "alpha.Holder");
+
+        Registry registry = buildRegistry(new ModuleDefinitionImpl[]
+        { alpha, beta });
+
+        assertEquals("copy of alpha", getValue(registry, "beta.Copy"));
+
+        ModuleDefinitionImpl newAlpha = createModuleDefinition("alpha");
+        addHolder(newAlpha, "Holder", "new alpha", null);
+        newAlpha.addDependency("missing");
+
+        interceptLogging(RegistryBuilder.class.getName());
+
+        try
+        {
+            update(registry, newAlpha);
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(ex, "Unable to update the registry: 1 error(s) were reported.");
+        }
+
+        assertLoggedMessage("Required module missing does not exist.");
+
+        // Neither the registry nor its definition were changed.
+
+        assertSame(alpha, _builder.getRegistryDefinition().getModule("alpha"));
+        assertEquals("alpha", getValue(registry, "alpha.Holder"));
+        assertEquals("copy of alpha", getValue(registry, "beta.Copy"));
+
+        registry.shutdown();
+    }
+}
@@ -0,0 +1,164 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl;
+
+import hivemind.test.FrameworkTestCase;
+
+import java.util.Locale;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.definition.ModuleDefinition;
+import org.apache.hivemind.definition.Visibility;
+import org.apache.hivemind.definition.impl.ServicePointDefinitionImpl;
+import org.apache.hivemind.internal.Module;
+
+/**
+ * Tests for {@link org.apache.hivemind.impl.ServiceConstructionLock}.
+ *
+ * @since 2.0
+ */
+public class TestServiceConstructionLock extends FrameworkTestCase
+{
+    private ServicePointImpl newServicePoint(Module module, String id)
+    {
+        ModuleDefinition moduleDefinition = createModuleDefinition("test");
+        ServicePointDefinitionImpl definition = new ServicePointDefinitionImpl(moduleDefinition,
+                id, newLocation(), Visibility.PUBLIC, "java.lang.Runnable");
+
+        return new ServicePointImpl(module, definition);
+    }
+
+    private Module newModule()
+    {
+        ModuleImpl result = new ModuleImpl();
+        result.setModuleId("test");
+        result.setClassResolver(getClassResolver());
+        result.setPackageName("");
+        result.setRegistry(new RegistryInfrastructureImpl(new StrictErrorHandler(), Locale
+                .getDefault()));
+        return result;
+    }
+
+    private void waitUntilBlocked(Thread thread) throws Exception
+    {
+        while (thread.getState() != Thread.State.WAITING)
+            Thread.sleep(10);
+    }
+
+    public void testReentrant() throws Exception
+    {
+        final ServiceConstructionLock lock = new ServiceConstructionLock(newServicePoint(
+                newModule(),
+                "Fred"));
+
+        lock.lock();
+        lock.lock();
+        lock.unlock();
+
+        final boolean[] acquired = new boolean[1];
+
+        Thread other = new Thread()
+        {
+            public void run()
+            {
+                lock.lock();
+                acquired[0] = true;
+                lock.unlock();
+            }
+        };
+
+        other.start();
+
+        waitUntilBlocked(other);
+
+        assertFalse(acquired[0]);
+
+        lock.unlock();
+
+        other.join();
+
+        assertTrue(acquired[0]);
+    }
+
+    public void testUnlockByNonOwner()
+    {
+        ServiceConstructionLock lock = new ServiceConstructionLock(newServicePoint(
+                newModule(),
+                "Fred"));
+
+        try
+        {
+            lock.unlock();
+            unreachable();
+        }
+        catch (IllegalStateException ex)
+        {
+            // Expected.
+        }
+    }
+
+    public void testDeadlockDetected() throws Exception
+    {
+        Module module = newModule();
+
+        final ServiceConstructionLock a = new ServiceConstructionLock(newServicePoint(module, "A"));
+        final ServiceConstructionLock b = new ServiceConstructionLock(newServicePoint(module, "B"));
+
+        final Throwable[] failure = new Throwable[1];
+
+        a.lock();
+
+        Thread other = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    b.lock();
+                    a.lock();
+                    a.unlock();
+                    b.unlock();
+                }
+                catch (Throwable t)
+                {
+                    failure[0] = t;
+                }
+            }
+        };
+
+        other.start();
+
+        waitUntilBlocked(other);
+
+        try
+        {
+            b.lock();
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(
+                    ex,
+                    "Unable to construct service test.B: it is being constructed by another thread");
+            assertExceptionSubstring(ex, "(services test.B, test.A)");
+        }
+
+        a.unlock();
+
+        other.join();
+
+        assertNull(failure[0]);
+    }
+}
@@ -0,0 +1,300 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.impl.servicemodel;
+
+import hivemind.test.FrameworkTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.impl.ServicePoolContribution;
+import org.apache.hivemind.internal.ServicePoint;
+
+/**
+ * Tests for {@link org.apache.hivemind.impl.servicemodel.ServicePool}.
+ *
+ * @since 2.0
+ */
+public class TestServicePool extends FrameworkTestCase
+{
+    private static class ListPool extends ServicePool
+    {
+        private int _count;
+
+        private final List _discarded = new ArrayList();
+
+        ListPool(ServicePoint servicePoint, ServicePoolContribution settings)
+        {
+            super(servicePoint, settings);
+        }
+
+        protected Object createInstance()
+        {
+            return "instance-" + _count++;
+        }
+
+        protected void discardInstance(Object instance)
+        {
+            _discarded.add(instance);
+        }
+    }
+
+    private ServicePoint newServicePoint()
+    {
+        return (ServicePoint) newMock(ServicePoint.class);
+    }
+
+    private ServicePoint newServicePoint(String serviceId)
+    {
+        ServicePoint result = newServicePoint();
+
+        result.getExtensionPointId();
+        setReturnValue(result, serviceId);
+
+        return result;
+    }
+
+    public void testUnboundedDefaults()
+    {
+        ServicePoint point = newServicePoint();
+
+        replayControls();
+
+        ServicePool pool = new ListPool(point, new ServicePoolContribution());
+
+        Object first = pool.borrow();
+        Object second = pool.borrow();
+
+        assertEquals(2, pool.getActiveCount());
+
+        pool.release(second);
+        pool.release(first);
+
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(2, pool.getIdleCount());
+
+        // The most recently returned instance on the thread's stripe comes back first.
+
+        assertSame(first, pool.borrow());
+
+        assertEquals(3, pool.getBorrowCount());
+        assertEquals(2, pool.getCreatedCount());
+        assertEquals(0, pool.getMaxActive());
+        assertTrue(pool.getMaxBorrowNanos() <= pool.getTotalBorrowNanos());
+
+        verifyControls();
+    }
+
+    public void testFailFastWhenExhausted()
+    {
+        ServicePoint point = newServicePoint("foo.bar.Baz");
+
+        replayControls();
+
+        ServicePoolContribution settings = new ServicePoolContribution("foo.bar.Baz", 0, 1, 0);
+        settings.setBlock(false);
+
+        ServicePool pool = new ListPool(point, settings);
+
+        Object instance = pool.borrow();
+
+        try
+        {
+            pool.borrow();
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertEquals(
+                    "Unable to obtain an instance of service foo.bar.Baz: all 1 pooled instances are in use.",
+                    ex.getMessage());
+        }
+
+        assertEquals(1, pool.getExhaustedCount());
+
+        pool.release(instance);
+
+        assertSame(instance, pool.borrow());
+
+        verifyControls();
+    }
+
+    public void testBlockUntilReturned() throws Exception
+    {
+        ServicePoint point = newServicePoint();
+
+        replayControls();
+
+        final ServicePool pool = new ListPool(point, new ServicePoolContribution("foo.bar.Baz", 0,
+                1, 0));
+
+        final Object instance = pool.borrow();
+
+        Thread other = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException ex)
+                {
+                    // Ignore.
+                }
+
+                pool.release(instance);
+            }
+        };
+
+        other.start();
+
+        assertSame(instance, pool.borrow());
+
+        other.join();
+
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(0, pool.getExhaustedCount());
+
+        verifyControls();
+    }
+
+    public void testMaxWait()
+    {
+        ServicePoint point = newServicePoint("foo.bar.Baz");
+
+        replayControls();
+
+        ServicePoolContribution settings = new ServicePoolContribution("foo.bar.Baz", 0, 1, 0);
+        settings.setMaxWait(10);
+
+        ServicePool pool = new ListPool(point, settings);
+
+        pool.borrow();
+
+        try
+        {
+            pool.borrow();
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(ex, "all 1 pooled instances are in use");
+        }
+
+        assertEquals(1, pool.getExhaustedCount());
+
+        verifyControls();
+    }
+
+    public void testIdleEvictionKeepsMinimum() throws Exception
+    {
+        ServicePoint point = newServicePoint();
+
+        replayControls();
+
+        ListPool pool = new ListPool(point, new ServicePoolContribution("foo.bar.Baz", 1, 0, 1));
+
+        Object first = pool.borrow();
+        Object second = pool.borrow();
+        Object third = pool.borrow();
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        Thread.sleep(20);
+
+        pool.evictExpired();
+
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(2, pool.getEvictedCount());
+        assertEquals(2, pool._discarded.size());
+
+        verifyControls();
+    }
+
+    public void testPrewarm()
+    {
+        ServicePoint point = newServicePoint();
+
+        replayControls();
+
+        ServicePool pool = new ListPool(point, new ServicePoolContribution("foo.bar.Baz", 3, 0, 0));
+
+        pool.prewarm();
+
+        assertEquals(3, pool.getCreatedCount());
+        assertEquals(3, pool.getIdleCount());
+
+        pool.borrow();
+
+        assertEquals(3, pool.getCreatedCount());
+        assertEquals(2, pool.getIdleCount());
+
+        verifyControls();
+    }
+
+    public void testPrewarmLimitedToMaxActive()
+    {
+        ServicePoint point = newServicePoint();
+
+        replayControls();
+
+        ServicePool pool = new ListPool(point, new ServicePoolContribution("foo.bar.Baz", 5, 2, 0));
+
+        pool.prewarm();
+
+        assertEquals(2, pool.getCreatedCount());
+        assertEquals(2, pool.getIdleCount());
+
+        verifyControls();
+    }
+
+    public void testPeriodicEviction() throws Exception
+    {
+        ServicePoint point = newServicePoint();
+
+        replayControls();
+
+        ListPool pool = new ListPool(point, new ServicePoolContribution("foo.bar.Baz", 0, 0, 10));
+
+        pool.startEviction();
+
+        try
+        {
+            Object first = pool.borrow();
+            Object second = pool.borrow();
+
+            pool.release(first);
+            pool.release(second);
+
+            // No further use of the pool; the timer discards the idle instances.
+
+            for (int i = 0; i < 100 && pool.getEvictedCount() < 2; i++)
+                Thread.sleep(10);
+
+            assertEquals(0, pool.getIdleCount());
+            assertEquals(2, pool.getEvictedCount());
+        }
+        finally
+        {
+            pool.stopEviction();
+        }
+
+        verifyControls();
+    }
+}
@@ -112,4 +112,103 @@ public class TestMethodMatcher extends AbstractMethodTestCase
             assertEquals(true, matchesPattern);
         }
     }
-}
\ No newline at end of file
+
+    private MethodSignature newSignature(String name, int parameterCount)
+    {
+        Class[] parameterTypes = new Class[parameterCount];
+
+        for (int i = 0; i < parameterCount; i++)
+            parameterTypes[i] = int.class;
+
+        return new MethodSignature(void.class, name, parameterTypes, null);
+    }
+
+    /** @since 2.0 */
+    public void testNamePatterns()
+    {
+        _m.put("set*", "prefix");
+        _m.put("*Listener", "suffix");
+        _m.put("*Value*", "infix");
+        _m.put("perform", "exact");
+
+        assertEquals("prefix", _m.get(newSignature("setName", 1)));
+        assertEquals("prefix", _m.get(newSignature("set", 1)));
+        assertEquals("prefix", _m.get(newSignature("setListener", 1)));
+        assertEquals("suffix", _m.get(newSignature("addListener", 1)));
+        assertEquals("suffix", _m.get(newSignature("Listener", 1)));
+        assertEquals("infix", _m.get(newSignature("getValueAt", 1)));
+        assertEquals("exact", _m.get(newSignature("perform", 0)));
+        assertEquals(null, _m.get(newSignature("performAll", 0)));
+        assertEquals(null, _m.get(newSignature("getName", 0)));
+    }
+
+    /** @since 2.0 */
+    public void testEarliestPatternWins()
+    {
+        _m.put("*Name(1)", "suffix-one");
+        _m.put("get*(0)", "prefix-none");
+        _m.put("*", "star");
+        _m.put("getName", "exact");
+
+        assertEquals("prefix-none", _m.get(newSignature("getName", 0)));
+        assertEquals("suffix-one", _m.get(newSignature("getName", 1)));
+        assertEquals("star", _m.get(newSignature("getName", 2)));
+    }
+
+    /** @since 2.0 */
+    public void testParameterCounts()
+    {
+        _m.put("*(2)", "two");
+        _m.put("*(int)", "int");
+        _m.put("run()", "none");
+
+        assertEquals("two", _m.get(newSignature("add", 2)));
+        assertEquals("int", _m.get(newSignature("add", 1)));
+        assertEquals("none", _m.get(newSignature("run", 0)));
+        assertEquals(null, _m.get(newSignature("run", 3)));
+    }
+
+    /** @since 2.0 */
+    public void testNullValueMatches()
+    {
+        MethodMatcher m = new MethodMatcher("DEFAULT");
+
+        m.put("get*", null);
+
+        assertEquals(null, m.get(newSignature("getName", 0)));
+        assertEquals(null, m.get(newSignature("getName", 0)));
+        assertEquals("DEFAULT", m.get(newSignature("setName", 1)));
+    }
+
+    /** @since 2.0 */
+    public void testInvalidPatternNotReached()
+    {
+        _m.put("hashCode", "match");
+        _m.put("*(", "invalid");
+
+        assertEquals("match", _m.get(getMethodSignature(this, "hashCode")));
+
+        try
+        {
+            _m.get(getMethodSignature(this, "toString"));
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertEquals("Method pattern '*(' contains an invalid parameters pattern.", ex
+                    .getMessage());
+        }
+    }
+
+    /** @since 2.0 */
+    public void testPutDiscardsCachedResults()
+    {
+        MethodSignature sig = newSignature("getName", 0);
+
+        assertEquals(null, _m.get(sig));
+
+        _m.put("get*", "prefix");
+
+        assertEquals("prefix", _m.get(sig));
+    }
+}
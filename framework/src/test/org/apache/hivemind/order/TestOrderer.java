@@ -172,7 +172,8 @@ public class TestOrderer extends FrameworkTestCase
         eh.error(
                 LOG,
                 "Unable to order cartoon character 'wilma' due to dependency cycle:"
-                        + " A cycle has been detected from the initial object [wilma]",
+                        + " A cycle has been detected from the initial object [wilma]:"
+                        + " wilma -> barney -> betty -> fred -> wilma (each must follow the next)",
                 null,
                 new ApplicationRuntimeException(""));
 
@@ -204,7 +205,8 @@ public class TestOrderer extends FrameworkTestCase
         eh
                 .error(
                         LOG,
-                        "Unable to order cartoon character 'betty' due to dependency cycle: A cycle has been detected from the initial object [fred]",
+                        "Unable to order cartoon character 'betty' due to dependency cycle: A cycle has been detected from the initial object [fred]:"
+                                + " fred -> betty -> wilma -> barney -> fred (each must follow the next)",
                         null,
                         new ApplicationRuntimeException(""));
 
@@ -342,4 +344,92 @@ public class TestOrderer extends FrameworkTestCase
                     "Unable to order cartoon characters: Unknown character exception",
                     msg);
     }
-}
\ No newline at end of file
+
+    /** @since 2.0 */
+    public void testSeparateCyclesEachReported() throws Exception
+    {
+        MockControl c = newControl(ErrorHandler.class);
+        ErrorHandler eh = (ErrorHandler) c.getMock();
+
+        eh.error(
+                LOG,
+                "Unable to order cartoon character 'barney' due to dependency cycle:"
+                        + " A cycle has been detected from the initial object [barney]:"
+                        + " barney -> fred -> barney (each must follow the next)",
+                null,
+                new ApplicationRuntimeException(""));
+        eh.error(
+                LOG,
+                "Unable to order cartoon character 'betty' due to dependency cycle:"
+                        + " A cycle has been detected from the initial object [betty]:"
+                        + " betty -> wilma -> betty (each must follow the next)",
+                null,
+                new ApplicationRuntimeException(""));
+
+        c.setMatcher(new AggregateArgumentsMatcher(new ArgumentMatcher[]
+        { null, null, null, new TypeMatcher() }));
+
+        replayControls();
+
+        Orderer o = new Orderer(LOG, eh, "cartoon character");
+
+        o.add("FRED", "fred", "barney", null);
+        o.add("WILMA", "wilma", "betty", null);
+        o.add("BARNEY", "barney", "fred", null);
+        o.add("BETTY", "betty", "wilma", null);
+
+        List l = o.getOrderedObjects();
+
+        assertListsEqual(new Object[]
+        { "BARNEY", "FRED", "BETTY", "WILMA" }, l);
+
+        verifyControls();
+    }
+
+    /** @since 2.0 */
+    public void testEqualObjectsKept() throws Exception
+    {
+        Orderer o = new Orderer(getErrorHandler(), "cartoon character");
+
+        String first = new String("DINO");
+        String second = new String("DINO");
+
+        o.add(first, "dino", null, null);
+        o.add(second, "dino2", "dino", null);
+
+        replayControls();
+
+        List l = o.getOrderedObjects();
+
+        assertEquals(2, l.size());
+        assertSame(first, l.get(0));
+        assertSame(second, l.get(1));
+
+        verifyControls();
+    }
+
+    /** @since 2.0 */
+    public void testLongChain() throws Exception
+    {
+        Orderer o = new Orderer(getErrorHandler(), "cartoon character");
+
+        int count = 5000;
+
+        // Added in reverse, each requiring the next; the deep dependency chain must not overflow
+        // the stack.
+
+        for (int i = count - 1; i >= 0; i--)
+            o.add(new Integer(i), "node" + i, i == 0 ? null : "node" + (i - 1), null);
+
+        replayControls();
+
+        List l = o.getOrderedObjects();
+
+        assertEquals(count, l.size());
+
+        for (int i = 0; i < count; i++)
+            assertEquals(new Integer(i), l.get(i));
+
+        verifyControls();
+    }
+}
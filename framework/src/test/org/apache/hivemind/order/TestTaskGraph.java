@@ -0,0 +1,238 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.order;
+
+import hivemind.test.FrameworkTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.impl.DefaultErrorHandler;
+
+/**
+ * Tests for {@link org.apache.hivemind.order.TaskGraph}.
+ * 
+ * @since 2.0
+ */
+public class TestTaskGraph extends FrameworkTestCase
+{
+    private static final Log LOG = LogFactory.getLog(TestTaskGraph.class);
+
+    private final List _executed = Collections.synchronizedList(new ArrayList());
+
+    private class Recorder implements Runnable
+    {
+        private final String _name;
+
+        Recorder(String name)
+        {
+            _name = name;
+        }
+
+        public void run()
+        {
+            _executed.add(_name);
+        }
+    }
+
+    private class Failure implements Runnable
+    {
+        private final String _message;
+
+        Failure(String message)
+        {
+            _message = message;
+        }
+
+        public void run()
+        {
+            throw new ApplicationRuntimeException(_message);
+        }
+    }
+
+    /**
+     * Waits for another task to reach the barrier, which can only happen if both run at the same
+     * time.
+     */
+    private class Rendezvous extends Recorder
+    {
+        private final CyclicBarrier _barrier;
+
+        Rendezvous(String name, CyclicBarrier barrier)
+        {
+            super(name);
+            _barrier = barrier;
+        }
+
+        public void run()
+        {
+            try
+            {
+                _barrier.await(10, TimeUnit.SECONDS);
+            }
+            catch (Exception ex)
+            {
+                throw new ApplicationRuntimeException(ex);
+            }
+
+            super.run();
+        }
+    }
+
+    private TaskGraph newGraph()
+    {
+        return new TaskGraph(LOG, new DefaultErrorHandler(), "task");
+    }
+
+    public void testSequentialOrder()
+    {
+        TaskGraph g = newGraph();
+
+        g.add(new Recorder("fred"), "fred", "wilma", null);
+        g.add(new Recorder("barney"), "barney", null, "*");
+        g.add(new Recorder("wilma"), "wilma", null, null);
+
+        g.run(1);
+
+        assertListsEqual(new Object[]
+        { "barney", "wilma", "fred" }, _executed);
+
+        assertTrue(g.getElapsedTime("fred") >= 0);
+        assertEquals(-1, g.getElapsedTime("betty"));
+    }
+
+    public void testSequentialFailureStopsExecution()
+    {
+        TaskGraph g = newGraph();
+
+        g.add(new Recorder("fred"), "fred", null, null);
+        g.add(new Failure("barney failed"), "barney", null, null);
+        g.add(new Recorder("wilma"), "wilma", null, null);
+
+        try
+        {
+            g.run(1);
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertEquals("barney failed", ex.getMessage());
+        }
+
+        assertListsEqual(new Object[]
+        { "fred" }, _executed);
+        assertEquals(-1, g.getElapsedTime("wilma"));
+    }
+
+    public void testParallelExecution()
+    {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        TaskGraph g = newGraph();
+
+        g.add(new Recorder("pebbles"), "pebbles", "fred,barney", null);
+        g.add(new Rendezvous("fred", barrier), "fred", null, null);
+        g.add(new Rendezvous("barney", barrier), "barney", null, null);
+        g.add(new Recorder("dino"), "dino", null, "fred");
+
+        g.run(4);
+
+        assertEquals(4, _executed.size());
+        assertEquals("dino", _executed.get(0));
+        assertEquals("pebbles", _executed.get(3));
+    }
+
+    public void testParallelFailuresAreDeterministic()
+    {
+        TaskGraph g = newGraph();
+
+        g.add(new Failure("fred failed"), "fred", null, null);
+        g.add(new Recorder("pebbles"), "pebbles", "fred", null);
+        g.add(new Failure("barney failed"), "barney", null, null);
+        g.add(new Recorder("wilma"), "wilma", null, null);
+
+        interceptLogging(TestTaskGraph.class.getName());
+
+        try
+        {
+            g.run(3);
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertEquals("fred failed", ex.getMessage());
+        }
+
+        assertListsEqual(new Object[]
+        { "wilma" }, _executed);
+        assertEquals(-1, g.getElapsedTime("pebbles"));
+
+        List events = getInterceptedLogEvents();
+
+        assertLoggedMessage(
+                "Task 'pebbles' was not executed, as it follows a task that failed.",
+                events);
+        assertLoggedMessage("Additional failure of task 'barney': barney failed", events);
+    }
+
+    public void testOverallTimeout() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        TaskGraph g = newGraph();
+
+        g.add(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException ex)
+                {
+                    // Abandoned
+                }
+            }
+        }, "fred", null, null);
+        g.add(new Recorder("barney"), "barney", "fred", null);
+
+        g.setTimeout(100);
+
+        interceptLogging(TestTaskGraph.class.getName());
+
+        try
+        {
+            g.run(1);
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertEquals("Task 'fred' did not complete within 100 ms.", ex.getMessage());
+        }
+        finally
+        {
+            release.countDown();
+        }
+
+        assertEquals(0, _executed.size());
+        assertLoggedMessage("Task 'barney' was not executed, as the time limit of 100 ms expired.");
+    }
+}
@@ -0,0 +1,232 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.logging.impl.SimpleLog;
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.test.HiveMindTestCase;
+
+/**
+ * Tests for {@link org.apache.hivemind.service.impl.AsyncLogWriter}.
+ * 
+ * @since 2.0
+ */
+public class TestAsyncLogWriter extends HiveMindTestCase
+{
+    /**
+     * Records the messages logged at debug level; the first message may be held until released.
+     */
+    private static class RecordingLog extends SimpleLog
+    {
+        final List messages = new ArrayList();
+
+        final CountDownLatch started = new CountDownLatch(1);
+
+        CountDownLatch release = new CountDownLatch(0);
+
+        RecordingLog()
+        {
+            super("RecordingLog");
+
+            setLevel(LOG_LEVEL_DEBUG);
+        }
+
+        protected void log(int type, Object message, Throwable t)
+        {
+            started.countDown();
+
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException ex)
+            {
+                throw new RuntimeException(ex);
+            }
+
+            synchronized (messages)
+            {
+                messages.add(message);
+            }
+        }
+    }
+
+    public void testEventsWrittenInOrder()
+    {
+        RecordingLog log = new RecordingLog();
+        AsyncLogWriter writer = new AsyncLogWriter(256, AsyncLogWriter.OVERFLOW_DROP);
+
+        for (int i = 0; i < 100; i++)
+        {
+            writer.entry(log, "run", new Object[]
+            { new Integer(i) });
+            writer.exit(log, "run", "done");
+        }
+
+        writer.voidExit(log, "close");
+        writer.exception(log, "close", new IllegalStateException("closed"));
+
+        writer.flush();
+
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(202, log.messages.size());
+        assertEquals("BEGIN run(0)", log.messages.get(0));
+        assertEquals("END run() [done]", log.messages.get(1));
+        assertEquals("BEGIN run(99)", log.messages.get(198));
+        assertEquals("END close()", log.messages.get(200));
+        assertEquals("EXCEPTION close() -- java.lang.IllegalStateException", log.messages.get(201));
+
+        writer.shutdown();
+    }
+
+    public void testDropWhenFull() throws Exception
+    {
+        RecordingLog log = new RecordingLog();
+        log.release = new CountDownLatch(1);
+
+        AsyncLogWriter writer = new AsyncLogWriter(4, AsyncLogWriter.OVERFLOW_DROP);
+
+        // The writer thread takes the first event, then blocks writing it.
+
+        writer.voidExit(log, "first");
+        log.started.await();
+
+        for (int i = 0; i < 10; i++)
+            writer.voidExit(log, "m" + i);
+
+        // The slot of the first event is still in use, leaving room for three more.
+
+        assertEquals(7, writer.getDroppedCount());
+
+        log.release.countDown();
+        writer.flush();
+
+        assertEquals(4, log.messages.size());
+        assertEquals("END first()", log.messages.get(0));
+        assertEquals("END m2()", log.messages.get(3));
+
+        writer.shutdown();
+    }
+
+    public void testSampleWhenBehind() throws Exception
+    {
+        RecordingLog log = new RecordingLog();
+        log.release = new CountDownLatch(1);
+
+        AsyncLogWriter writer = new AsyncLogWriter(8, AsyncLogWriter.OVERFLOW_SAMPLE);
+        writer.setSampleRate(2);
+
+        writer.voidExit(log, "first");
+        log.started.await();
+
+        // The first four events fill half of the ring; one in two of the remaining are
+        // recorded until the ring is full.
+
+        for (int i = 0; i < 12; i++)
+            writer.voidExit(log, "m" + i);
+
+        log.release.countDown();
+        writer.flush();
+
+        assertEquals(8, log.messages.size());
+        assertEquals(5, writer.getDroppedCount());
+        assertEquals("END m3()", log.messages.get(4));
+        assertEquals("END m5()", log.messages.get(5));
+
+        writer.shutdown();
+    }
+
+    public void testWriteAfterShutdown()
+    {
+        RecordingLog log = new RecordingLog();
+        AsyncLogWriter writer = new AsyncLogWriter(4, AsyncLogWriter.OVERFLOW_DROP);
+
+        writer.voidExit(log, "before");
+        writer.shutdown();
+
+        writer.voidExit(log, "after");
+
+        assertEquals(2, log.messages.size());
+        assertEquals("END after()", log.messages.get(1));
+    }
+
+    /**
+     * Events recorded while the writer shuts down are written either by the writer thread or by
+     * the recording thread; none are lost.
+     */
+    public void testNoEventsLostAtShutdown() throws Exception
+    {
+        for (int round = 0; round < 20; round++)
+        {
+            final RecordingLog log = new RecordingLog();
+            final AsyncLogWriter writer = new AsyncLogWriter(65536, AsyncLogWriter.OVERFLOW_DROP);
+            final CountDownLatch go = new CountDownLatch(1);
+
+            Thread[] threads = new Thread[4];
+
+            for (int i = 0; i < threads.length; i++)
+            {
+                threads[i] = new Thread()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            go.await();
+                        }
+                        catch (InterruptedException ex)
+                        {
+                            return;
+                        }
+
+                        for (int j = 0; j < 2000; j++)
+                            writer.voidExit(log, "run");
+                    }
+                };
+
+                threads[i].start();
+            }
+
+            go.countDown();
+            writer.shutdown();
+
+            for (int i = 0; i < threads.length; i++)
+                threads[i].join();
+
+            assertEquals(0, writer.getDroppedCount());
+            assertEquals(8000, log.messages.size());
+        }
+    }
+
+    public void testUnknownOverflowPolicy()
+    {
+        try
+        {
+            new AsyncLogWriter(4, "block");
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertEquals(
+                    "Unknown overflow policy 'block' (expected 'drop' or 'sample').",
+                    ex.getMessage());
+        }
+    }
+}
@@ -18,15 +18,24 @@ import hivemind.test.services.AbstractIntWrapper;
 import hivemind.test.services.FailService;
 import hivemind.test.services.SimpleService;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.DataFormatException;
 
+import javassist.ClassPool;
 import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.CtNewMethod;
 import junit.framework.AssertionFailedError;
 
 import org.apache.hivemind.ApplicationRuntimeException;
@@ -450,6 +459,259 @@ public class TestClassFab extends HiveMindTestCase
     	assertFalse(cf.canConvert(JdkBeanInterfaceFactory.createJdkBean().getClass()));
     }
     
+    private File newCacheDirectory() throws IOException
+    {
+        File result = File.createTempFile("classcache", "");
+
+        result.delete();
+        result.mkdir();
+
+        return result;
+    }
+
+    private Class createCachedRunnable(GeneratedClassCache cache, String className,
+            String runBody)
+    {
+        return createCachedRunnable(cache, className, runBody, null);
+    }
+
+    private Class createCachedRunnable(GeneratedClassCache cache, String className,
+            String runBody, ClassLoader loader)
+    {
+        // A new class pool for each class, as if the application had been restarted.
+
+        HiveMindClassPool pool = new HiveMindClassPool();
+
+        pool.appendClassLoader(loader);
+
+        CtClassSource source = new CtClassSource(pool);
+        ClassFab cf = new ClassFabImpl(source, source.newClass(className, Object.class), cache);
+
+        cf.addInterface(Runnable.class);
+        cf.addField("_map", Map.class);
+        cf.addConstructor(new Class[]
+        { Map.class }, null, "{ _map = $1; }");
+
+        MethodFab mf = cf.addMethod(
+                Modifier.PUBLIC,
+                new MethodSignature(void.class, "run", null, null),
+                runBody);
+
+        mf.addCatch(NullPointerException.class, "return;");
+
+        return cf.createClass();
+    }
+
+    /** @since 2.0 */
+    public void testCachedClass() throws Exception
+    {
+        GeneratedClassCache cache = new GeneratedClassCache(newCacheDirectory());
+
+        createCachedRunnable(cache, "$CachedRunnable_1", "_map.put(\"run\", getClass().getName());");
+
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        Class c = createCachedRunnable(
+                cache,
+                "$CachedRunnable_2",
+                "_map.put(\"run\", getClass().getName());");
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals("$CachedRunnable_2", c.getName());
+
+        Map map = new HashMap();
+        Runnable r = (Runnable) c.getConstructors()[0].newInstance(new Object[]
+        { map });
+
+        r.run();
+
+        assertEquals("$CachedRunnable_2", map.get("run"));
+
+        // The catch was cached along with the method body.
+
+        r = (Runnable) c.getConstructors()[0].newInstance(new Object[]
+        { null });
+
+        r.run();
+    }
+
+    private Class createCachedHolder(GeneratedClassCache cache, String suffix) throws Exception
+    {
+        CtClassSource source = new CtClassSource(new HiveMindClassPool());
+
+        ClassFab inner = new ClassFabImpl(source, source.newClass("$Inner_" + suffix,
+                Object.class), cache);
+        inner.addConstructor(null, null, "{ }");
+
+        Class innerClass = inner.createClass();
+
+        ClassFab holder = new ClassFabImpl(source, source.newClass("$Holder_" + suffix,
+                Object.class), cache);
+
+        holder.addInterface(Runnable.class);
+        holder.addField("_inner", innerClass);
+        holder.addMethod(
+                Modifier.PUBLIC,
+                new MethodSignature(void.class, "run", null, null),
+                "_inner = new " + innerClass.getName() + "();");
+
+        return holder.createClass();
+    }
+
+    /** @since 2.0 */
+    public void testCachedClassReferencingFabricatedClass() throws Exception
+    {
+        GeneratedClassCache cache = new GeneratedClassCache(newCacheDirectory());
+
+        createCachedHolder(cache, "1");
+
+        Class holderClass = createCachedHolder(cache, "2");
+
+        assertEquals(2, cache.getHitCount());
+
+        Runnable holder = (Runnable) holderClass.newInstance();
+
+        holder.run();
+
+        // The cached holder refers to this run's inner class, not the one it was compiled with.
+
+        assertEquals("$Inner_2", holderClass.getDeclaredField("_inner").getType().getName());
+    }
+
+    /** @since 2.0 */
+    public void testCacheMissOnChangedDefinition() throws Exception
+    {
+        GeneratedClassCache cache = new GeneratedClassCache(newCacheDirectory());
+
+        createCachedRunnable(cache, "$ChangedRunnable_1", "_map.clear();");
+        createCachedRunnable(cache, "$ChangedRunnable_2", "_map.put(\"run\", null);");
+
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * Returns a class loader for a version of the class <code>cache.Version</code>, whose
+     * <code>get()</code> method returns the version.
+     */
+    private ClassLoader newVersionClassLoader(String version) throws Exception
+    {
+        File directory = newCacheDirectory();
+        ClassPool pool = new ClassPool(true);
+        CtClass ctClass = pool.makeClass("cache.Version");
+
+        CtMethod method = CtNewMethod.make("public static String get() { return \"" + version
+                + "\"; }", ctClass);
+        ctClass.addMethod(method);
+        ctClass.writeFile(directory.getPath());
+
+        return new URLClassLoader(new URL[]
+        { directory.toURL() });
+    }
+
+    private String runVersionRunnable(GeneratedClassCache cache, String className,
+            ClassLoader loader) throws Exception
+    {
+        Class c = createCachedRunnable(
+                cache,
+                className,
+                "_map.put(\"run\", cache.Version.get());",
+                loader);
+
+        Map map = new HashMap();
+        Runnable r = (Runnable) c.getConstructors()[0].newInstance(new Object[]
+        { map });
+
+        r.run();
+
+        return (String) map.get("run");
+    }
+
+    /** @since 2.0 */
+    public void testCacheMissOnChangedReferencedClass() throws Exception
+    {
+        GeneratedClassCache cache = new GeneratedClassCache(newCacheDirectory());
+
+        assertEquals("1", runVersionRunnable(cache, "$VersionRunnable_1", newVersionClassLoader("1")));
+        assertEquals("1", runVersionRunnable(cache, "$VersionRunnable_2", newVersionClassLoader("1")));
+
+        assertEquals(1, cache.getHitCount());
+
+        // The same definition, compiled against a different class file, is not reused.
+
+        assertEquals("2", runVersionRunnable(cache, "$VersionRunnable_3", newVersionClassLoader("2")));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /** @since 2.0 */
+    public void testBadMethodBodyWithCache() throws Exception
+    {
+        GeneratedClassCache cache = new GeneratedClassCache(newCacheDirectory());
+
+        try
+        {
+            // With a cache, method bodies are not compiled until the class is created.
+
+            createCachedRunnable(cache, "BadCachedMethodBody", "fail;");
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(
+                    ex,
+                    "Unable to add method void run() to class BadCachedMethodBody:");
+        }
+    }
+
+    /** @since 2.0 */
+    public void testConcurrentFabrication() throws Exception
+    {
+        final List failures = Collections.synchronizedList(new ArrayList());
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int index = i;
+
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int j = 0; j < 25; j++)
+                        {
+                            ClassFab cf = newClassFab("Concurrent_" + index + "_" + j, Object.class);
+
+                            cf.addInterface(Runnable.class);
+                            cf.addMethod(
+                                    Modifier.PUBLIC,
+                                    new MethodSignature(void.class, "run", null, null),
+                                    "{ }");
+
+                            ((Runnable) cf.createClass().newInstance()).run();
+                        }
+                    }
+                    catch (Throwable ex)
+                    {
+                        failures.add(ex);
+                    }
+                }
+            };
+
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++)
+            threads[i].join();
+
+        assertEquals(Collections.EMPTY_LIST, failures);
+        assertEquals(100, _source.getCreatedClassCount());
+    }
+
     /** @since 1.1 */
     private void contains(String actual, String expected)
     {
@@ -0,0 +1,291 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.service.impl;
+
+import hivemind.test.FrameworkTestCase;
+import hivemind.test.services.StringHolder;
+import hivemind.test.services.impl.StringHolderImpl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.hivemind.InterceptorStack;
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.definition.FusibleInterceptorConstructor;
+import org.apache.hivemind.definition.InterceptorConstructor;
+import org.apache.hivemind.definition.ServicePointDefinition;
+import org.apache.hivemind.definition.impl.InterceptorDefinitionImpl;
+import org.apache.hivemind.definition.impl.ModuleDefinitionHelper;
+import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
+import org.apache.hivemind.impl.RegistryBuilder;
+import org.apache.hivemind.internal.AbstractServiceInterceptorConstructor;
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.internal.ServiceModel;
+import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
+import org.apache.hivemind.service.InterceptorFusion;
+import org.apache.hivemind.service.MethodSignature;
+
+/**
+ * Tests for {@link FusedInterceptorClassFactory}, by way of interceptors on a service.
+ * 
+ * @since 2.0
+ */
+public class TestFusedInterceptorClassFactory extends FrameworkTestCase
+{
+    /**
+     * Appends a suffix to the value returned by the getValue() method.
+     */
+    public static class SuffixHolder implements StringHolder
+    {
+        private StringHolder _delegate;
+
+        private String _suffix;
+
+        public SuffixHolder(StringHolder delegate, String suffix)
+        {
+            _delegate = delegate;
+            _suffix = suffix;
+        }
+
+        public String getValue()
+        {
+            return _delegate.getValue() + _suffix;
+        }
+
+        public void setValue(String value)
+        {
+            _delegate.setValue(value);
+        }
+    }
+
+    public static class FailingHolder extends StringHolderImpl
+    {
+        public String getValue()
+        {
+            throw new IllegalStateException("No value.");
+        }
+    }
+
+    /**
+     * Creates interceptors that append a suffix, either as a {@link SuffixHolder}, or (when
+     * fused) as a fragment.
+     */
+    private static class SuffixConstructor extends AbstractServiceInterceptorConstructor implements
+            FusibleInterceptorConstructor
+    {
+        private String _suffix;
+
+        private boolean _fusible;
+
+        SuffixConstructor(String suffix, boolean fusible)
+        {
+            super(null);
+
+            _suffix = suffix;
+            _fusible = fusible;
+        }
+
+        public void constructServiceInterceptor(InterceptorStack interceptorStack,
+                Module contributingModule)
+        {
+            interceptorStack.push(new SuffixHolder((StringHolder) interceptorStack.peek(),
+                    _suffix));
+        }
+
+        public boolean isFusible(Module contributingModule)
+        {
+            return _fusible;
+        }
+
+        public InterceptorFragment constructInterceptorFragment(
+                InterceptorStack interceptorStack, Module contributingModule)
+        {
+            return new InterceptorFragment()
+            {
+                private String _field;
+
+                public void addFields(InterceptorFusion fusion)
+                {
+                    _field = fusion.addField("_suffix", String.class, _suffix);
+                }
+
+                public boolean isIntercepted(MethodSignature sig)
+                {
+                    return sig.getName().equals("getValue");
+                }
+
+                public void addMethodImplementation(InterceptorFusion fusion,
+                        MethodSignature sig, String next)
+                {
+                    fusion.addMethod("return " + next + "($$) + " + _field + ";");
+                }
+            };
+        }
+    }
+
+    private ModuleDefinitionImpl _module;
+
+    private ServicePointDefinition _point;
+
+    private Registry _registry;
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        _module = new ModuleDefinitionImpl("fused", newLocation(), getClassResolver(), null);
+
+        ModuleDefinitionHelper helper = new ModuleDefinitionHelper(_module);
+
+        _point = helper.addServicePoint("StringHolder", StringHolder.class.getName());
+    }
+
+    protected void tearDown() throws Exception
+    {
+        if (_registry != null)
+            _registry.shutdown();
+
+        super.tearDown();
+    }
+
+    private void addInterceptor(String name, InterceptorConstructor constructor)
+    {
+        _point.addInterceptor(new InterceptorDefinitionImpl(_module, name, _module.getLocation(),
+                constructor));
+    }
+
+    private StringHolder buildService(Class implementationClass)
+    {
+        new ModuleDefinitionHelper(_module).addSimpleServiceImplementation(
+                _point,
+                implementationClass.getName(),
+                ServiceModel.SINGLETON);
+
+        RegistryBuilder builder = new RegistryBuilder();
+        builder.getRegistryDefinition().addModule(_module);
+
+        _registry = builder.constructRegistry(Locale.getDefault());
+
+        return (StringHolder) _registry.getService(StringHolder.class);
+    }
+
+    public void testFusedInRuntimeOrder()
+    {
+        addInterceptor("a", new SuffixConstructor("A", true));
+        addInterceptor("b", new SuffixConstructor("B", true));
+        addInterceptor("c", new SuffixConstructor("C", true));
+
+        StringHolder holder = buildService(StringHolderImpl.class);
+
+        holder.setValue("x");
+
+        // a is invoked first, so its suffix is appended last.
+
+        assertEquals("xCBA", holder.getValue());
+    }
+
+    public void testNotFusedUnlessAllFusible()
+    {
+        addInterceptor("a", new SuffixConstructor("A", true));
+        addInterceptor("b", new SuffixConstructor("B", false));
+        addInterceptor("c", new SuffixConstructor("C", true));
+
+        StringHolder holder = buildService(StringHolderImpl.class);
+
+        holder.setValue("x");
+
+        assertEquals("xCBA", holder.getValue());
+    }
+
+    public void testFusedLoggingAndTracing()
+    {
+        final ClassFactory cf = new ClassFactoryImpl();
+
+        addInterceptor("logging", new SuffixConstructor(null, true)
+        {
+            public InterceptorFragment constructInterceptorFragment(
+                    InterceptorStack interceptorStack, Module contributingModule)
+            {
+                return new LoggingInterceptorClassFactory(cf).createInterceptorFragment(
+                        interceptorStack,
+                        Collections.EMPTY_LIST,
+                        null);
+            }
+        });
+        addInterceptor("tracing", new SuffixConstructor(null, true)
+        {
+            public InterceptorFragment constructInterceptorFragment(
+                    InterceptorStack interceptorStack, Module contributingModule)
+            {
+                return new TracingInterceptorClassFactory(cf).createInterceptorFragment(
+                        interceptorStack,
+                        Collections.EMPTY_LIST);
+            }
+        });
+
+        interceptLogging("fused.StringHolder");
+
+        StringHolder holder = buildService(StringHolderImpl.class);
+
+        holder.setValue("x");
+
+        assertEquals("x", holder.getValue());
+
+        List events = getInterceptedLogEvents();
+
+        assertLoggedMessage("Fusing 2 interceptors", events);
+        assertLoggedMessage("BEGIN setValue(x)", events);
+        assertLoggedMessage("END getValue() [x]", events);
+    }
+
+    public void testFusedInterceptorRethrowsExceptions()
+    {
+        final ClassFactory cf = new ClassFactoryImpl();
+
+        addInterceptor("a", new SuffixConstructor("A", true));
+        addInterceptor("logging", new SuffixConstructor(null, true)
+        {
+            public InterceptorFragment constructInterceptorFragment(
+                    InterceptorStack interceptorStack, Module contributingModule)
+            {
+                return new LoggingInterceptorClassFactory(cf).createInterceptorFragment(
+                        interceptorStack,
+                        Collections.EMPTY_LIST,
+                        null);
+            }
+        });
+
+        interceptLogging("fused.StringHolder");
+
+        StringHolder holder = buildService(FailingHolder.class);
+
+        try
+        {
+            holder.getValue();
+            unreachable();
+        }
+        catch (IllegalStateException ex)
+        {
+            assertEquals("No value.", ex.getMessage());
+        }
+
+        List events = getInterceptedLogEvents();
+
+        assertLoggedMessage("Fusing 2 interceptors", events);
+        assertLoggedMessage("EXCEPTION getValue() -- java.lang.IllegalStateException", events);
+    }
+}
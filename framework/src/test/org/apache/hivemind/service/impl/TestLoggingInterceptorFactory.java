@@ -99,6 +99,58 @@ public class TestLoggingInterceptorFactory extends FrameworkTestCase
         verifyControls();
     }
     
+    public void testAsynchronousLogging() throws Exception
+    {
+        ClassFactory cf = new ClassFactoryImpl();
+
+        Runnable r = (Runnable) newMock(Runnable.class);
+        MockControl logControl = newControl(Log.class);
+        Log log = (Log) logControl.getMock();
+
+        LoggingInterceptorClassFactory f = new LoggingInterceptorClassFactory(cf, true);
+        AsyncLogWriter writer = new AsyncLogWriter(16, AsyncLogWriter.OVERFLOW_DROP);
+
+        MockControl spControl = newControl(ServicePoint.class);
+        ServicePoint sp = (ServicePoint) spControl.getMock();
+
+        sp.getServiceInterface();
+        spControl.setReturnValue(Runnable.class);
+
+        sp.getExtensionPointId();
+        spControl.setReturnValue("foo.bar");
+
+        replayControls();
+
+        InterceptorStackImpl is = new InterceptorStackImpl(log, sp, r);
+
+        Class interceptorClass = f.constructInterceptorClass(is, Collections.EMPTY_LIST);
+        Constructor c = interceptorClass.getConstructors()[0];
+
+        is.push(c.newInstance(new Object[] { is.getServiceLog(), writer, is.peek() }));
+
+        Runnable ri = (Runnable) is.peek();
+
+        verifyControls();
+
+        log.isDebugEnabled();
+        logControl.setReturnValue(true);
+
+        log.debug("BEGIN run()");
+        log.debug("END run()");
+
+        r.run();
+
+        replayControls();
+
+        ri.run();
+
+        writer.flush();
+
+        verifyControls();
+
+        writer.shutdown();
+    }
+    
     public void testJavassistProxies() throws Exception {
         
         Registry reg = createRegistry(new JavassistBeanInterfaceFactory(newLocation(), "module"));
@@ -0,0 +1,290 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import hivemind.test.FrameworkTestCase;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.impl.SimpleLog;
+import org.apache.hivemind.impl.InterceptorStackImpl;
+import org.apache.hivemind.internal.ServicePoint;
+import org.apache.hivemind.service.MethodSampleRate;
+import org.apache.hivemind.service.TracingSettings;
+import org.easymock.MockControl;
+
+/**
+ * Tests for {@link org.apache.hivemind.service.impl.TracingInterceptorClassFactory}.
+ * 
+ * @since 2.0
+ */
+public class TestTracingInterceptorFactory extends FrameworkTestCase
+{
+    public static interface Traced
+    {
+        int add(int a, int b);
+
+        void pause(long millis);
+
+        void fail(String message) throws IOException;
+
+        void abort(String message);
+    }
+
+    public static class TracedImpl implements Traced
+    {
+        public int add(int a, int b)
+        {
+            return a + b;
+        }
+
+        public void pause(long millis)
+        {
+            try
+            {
+                Thread.sleep(millis);
+            }
+            catch (InterruptedException ex)
+            {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        public void fail(String message) throws IOException
+        {
+            throw new IOException(message);
+        }
+
+        public void abort(String message)
+        {
+            throw new LinkageError(message);
+        }
+    }
+
+    /**
+     * Records the messages logged at info level.
+     */
+    private static class RecordingLog extends SimpleLog
+    {
+        final List messages = new ArrayList();
+
+        final List exceptions = new ArrayList();
+
+        RecordingLog()
+        {
+            super("RecordingLog");
+
+            setLevel(LOG_LEVEL_INFO);
+        }
+
+        protected void log(int type, Object message, Throwable t)
+        {
+            messages.add(message);
+            exceptions.add(t);
+        }
+    }
+
+    private RecordingLog _log = new RecordingLog();
+
+    private Traced newInterceptor(List parameters) throws Exception
+    {
+        MockControl spControl = newControl(ServicePoint.class);
+        ServicePoint sp = (ServicePoint) spControl.getMock();
+
+        sp.getServiceInterface();
+        spControl.setReturnValue(Traced.class);
+
+        sp.getExtensionPointId();
+        spControl.setReturnValue("foo.bar");
+
+        replayControls();
+
+        InterceptorStackImpl is = new InterceptorStackImpl(_log, sp, new TracedImpl());
+
+        TracingInterceptorClassFactory f = new TracingInterceptorClassFactory(
+                new ClassFactoryImpl());
+
+        Class interceptorClass = f.constructInterceptorClass(is, parameters);
+        Constructor c = interceptorClass.getConstructors()[0];
+
+        is.push(c.newInstance(new Object[]
+        { is.getServiceLog(), is.peek() }));
+
+        verifyControls();
+
+        return (Traced) is.peek();
+    }
+
+    private TracingSettings newSettings(int sampleRate, int rateLimit, long slowThreshold)
+    {
+        TracingSettings result = new TracingSettings();
+
+        result.setSampleRate(sampleRate);
+        result.setRateLimit(rateLimit);
+        result.setSlowThreshold(slowThreshold);
+
+        return result;
+    }
+
+    private void assertMessage(String expectedPrefix, int index)
+    {
+        String message = (String) _log.messages.get(index);
+
+        assertTrue(message, message.startsWith(expectedPrefix));
+        assertTrue(message, message.endsWith(" ms)"));
+    }
+
+    public void testSampleRateByMethod() throws Exception
+    {
+        MethodSampleRate rate = new MethodSampleRate();
+        rate.setMethodPattern("add");
+        rate.setRate(2);
+
+        List parameters = new ArrayList();
+        parameters.add(rate);
+        parameters.add(newSettings(0, 0, 0));
+
+        Traced traced = newInterceptor(parameters);
+
+        for (int i = 0; i < 4; i++)
+            assertEquals(i + 1, traced.add(i, 1));
+
+        traced.pause(0);
+
+        assertEquals(2, _log.messages.size());
+        assertMessage("TRACE add(1, 1) [2] (", 0);
+        assertMessage("TRACE add(3, 1) [4] (", 1);
+    }
+
+    public void testRateLimit() throws Exception
+    {
+        TracingSettings settings = newSettings(1, 1, 0);
+        settings.setBurst(2);
+
+        Traced traced = newInterceptor(Collections.singletonList(settings));
+
+        for (int i = 0; i < 10; i++)
+            traced.add(i, i);
+
+        assertEquals(2, _log.messages.size());
+        assertMessage("TRACE add(0, 0) [0] (", 0);
+        assertMessage("TRACE add(1, 1) [2] (", 1);
+    }
+
+    public void testSlowInvocationsAlwaysTraced() throws Exception
+    {
+        TracingSettings settings = newSettings(0, 1, 20);
+        settings.setBurst(1);
+
+        Traced traced = newInterceptor(Collections.singletonList(settings));
+
+        traced.pause(0);
+        traced.pause(30);
+        traced.pause(30);
+
+        assertEquals(2, _log.messages.size());
+        assertMessage("SLOW pause(30) (", 0);
+        assertMessage("SLOW pause(30) (", 1);
+    }
+
+    public void testExceptionsAlwaysTraced() throws Exception
+    {
+        Traced traced = newInterceptor(Collections.EMPTY_LIST);
+
+        try
+        {
+            traced.fail("Boom");
+            unreachable();
+        }
+        catch (IOException ex)
+        {
+            assertEquals("Boom", ex.getMessage());
+        }
+
+        assertEquals(1, _log.messages.size());
+        assertMessage("EXCEPTION fail(Boom) -- java.io.IOException (", 0);
+        assertTrue(_log.exceptions.get(0) instanceof IOException);
+    }
+
+    public void testRuntimeExceptionsAlwaysTraced() throws Exception
+    {
+        Traced traced = newInterceptor(Collections.EMPTY_LIST);
+
+        try
+        {
+            traced.pause(-1);
+            unreachable();
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // Thrown by Thread.sleep()
+        }
+
+        assertEquals(1, _log.messages.size());
+        assertMessage("EXCEPTION pause(-1) -- java.lang.IllegalArgumentException (", 0);
+    }
+
+    public void testErrorsAlwaysTraced() throws Exception
+    {
+        Traced traced = newInterceptor(Collections.EMPTY_LIST);
+
+        try
+        {
+            traced.abort("Boom");
+            unreachable();
+        }
+        catch (LinkageError ex)
+        {
+            assertEquals("Boom", ex.getMessage());
+        }
+
+        assertEquals(1, _log.messages.size());
+        assertMessage("EXCEPTION abort(Boom) -- java.lang.LinkageError (", 0);
+    }
+
+    public void testNotTracedBelowInfo() throws Exception
+    {
+        _log.setLevel(SimpleLog.LOG_LEVEL_WARN);
+
+        Traced traced = newInterceptor(Collections.singletonList(newSettings(1, 0, 0)));
+
+        traced.add(1, 2);
+
+        try
+        {
+            traced.fail("Boom");
+            unreachable();
+        }
+        catch (IOException ex)
+        {
+            // Expected
+        }
+
+        assertEquals(0, _log.messages.size());
+    }
+
+    public void testToString() throws Exception
+    {
+        Traced traced = newInterceptor(Collections.EMPTY_LIST);
+
+        assertEquals("<TracingInterceptor for foo.bar(" + Traced.class.getName() + ")>", traced
+                .toString());
+    }
+}
@@ -15,6 +15,12 @@
 package org.apache.hivemind.servlet;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -223,9 +229,321 @@ public class TestAutoloadingHiveMindFilter extends HiveMindTestCase
 
         f.doFilter(request, response, chain);
 
+        // The Registry is rebuilt in the background; the old one is shut down once it is no
+        // longer in use.
+
+        f.waitForRebuild();
+
+        verifyControls();
+
+        assertEquals(true, l.getDidShutdown());
+    }
+
+    /**
+     * Returns a request that stores its attributes; other methods return null.
+     */
+    private HttpServletRequest newRequest()
+    {
+        final Map attributes = new HashMap();
+
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class[]
+                { HttpServletRequest.class },
+                new InvocationHandler()
+                {
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        if (method.getName().equals("setAttribute"))
+                            attributes.put(args[0], args[1]);
+
+                        if (method.getName().equals("getAttribute"))
+                            return attributes.get(args[0]);
+
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Returns a FilterConfig that may be used to construct the Registry any number of times.
+     */
+    private FilterConfig newRebuildingFilterConfig()
+    {
+        MockControl control = newControl(FilterConfig.class);
+        FilterConfig config = (FilterConfig) control.getMock();
+
+        config.getServletContext();
+        control.setReturnValue(newMock(ServletContext.class), MockControl.ONE_OR_MORE);
+
+        return config;
+    }
+
+    private static class BlockingChainFixture implements FilterChain
+    {
+        private final CountDownLatch _started = new CountDownLatch(1);
+
+        private final CountDownLatch _release = new CountDownLatch(1);
+
+        public void doFilter(ServletRequest request, ServletResponse response)
+                throws IOException, ServletException
+        {
+            _started.countDown();
+
+            try
+            {
+                _release.await();
+            }
+            catch (InterruptedException ex)
+            {
+                throw new ServletException(ex);
+            }
+        }
+    }
+
+    private static class NullChainFixture implements FilterChain
+    {
+        public void doFilter(ServletRequest request, ServletResponse response)
+        {
+        }
+    }
+
+    public void testRequestInProgressKeepsOldRegistry() throws Exception
+    {
+        FilterConfig filterConfig = newRebuildingFilterConfig();
+
+        replayControls();
+
+        final AutoloadingHiveMindFilter f = new AutoloadingHiveMindFilter();
+
+        f.init(filterConfig);
+
+        final HttpServletRequest slowRequest = newRequest();
+        final BlockingChainFixture slowChain = new BlockingChainFixture();
+
+        Thread slow = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    f.doFilter(slowRequest, null, slowChain);
+                }
+                catch (Exception ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+
+        slow.start();
+        slowChain._started.await();
+
+        Registry oldRegistry = AutoloadingHiveMindFilter.getRegistry(slowRequest);
+
+        ShutdownListenerFixture l = new ShutdownListenerFixture();
+        ((ShutdownCoordinator) oldRegistry.getService(ShutdownCoordinator.class))
+                .addRegistryShutdownListener(l);
+
+        f.doFilter(newRequest(), null, new RebuildRegistryChainFixture());
+
+        f.waitForRebuild();
+
+        HttpServletRequest request = newRequest();
+        f.doFilter(request, null, new NullChainFixture());
+
+        Registry newRegistry = AutoloadingHiveMindFilter.getRegistry(request);
+
+        assertNotSame(oldRegistry, newRegistry);
+        assertEquals(false, l.getDidShutdown());
+
+        // Once the last request using it completes, the old Registry is shut down by the
+        // rebuild thread; waiting for a later rebuild ensures that has happened.
+
+        slowChain._release.countDown();
+        slow.join();
+
+        f.doFilter(newRequest(), null, new RebuildRegistryChainFixture());
+        f.waitForRebuild();
+
+        assertEquals(true, l.getDidShutdown());
+
+        f.destroy();
+
         verifyControls();
+    }
+
+    public void testDestroyWithRequestInProgress() throws Exception
+    {
+        FilterConfig filterConfig = newRebuildingFilterConfig();
+
+        replayControls();
+
+        final AutoloadingHiveMindFilter f = new AutoloadingHiveMindFilter();
+
+        f.init(filterConfig);
+
+        final HttpServletRequest slowRequest = newRequest();
+        final BlockingChainFixture slowChain = new BlockingChainFixture();
+
+        Thread slow = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    f.doFilter(slowRequest, null, slowChain);
+                }
+                catch (Exception ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+
+        slow.start();
+        slowChain._started.await();
+
+        Registry registry = AutoloadingHiveMindFilter.getRegistry(slowRequest);
+
+        ShutdownListenerFixture l = new ShutdownListenerFixture();
+        ((ShutdownCoordinator) registry.getService(ShutdownCoordinator.class))
+                .addRegistryShutdownListener(l);
+
+        f.destroy();
+
+        assertEquals(false, l.getDidShutdown());
+
+        // The request is the last to release the Registry, and shuts it down (just once).
+
+        slowChain._release.countDown();
+        slow.join();
 
         assertEquals(true, l.getDidShutdown());
+
+        verifyControls();
+    }
+
+    private static class SlowRebuildFilterFixture extends AutoloadingHiveMindFilter
+    {
+        private final CountDownLatch _rebuilding = new CountDownLatch(1);
+
+        private final CountDownLatch _release = new CountDownLatch(1);
+
+        private final ShutdownListenerFixture _listener = new ShutdownListenerFixture();
+
+        private int _count;
+
+        protected Registry constructRegistry(FilterConfig config)
+        {
+            if (_count++ == 0)
+                return super.constructRegistry(config);
+
+            _rebuilding.countDown();
+
+            try
+            {
+                _release.await();
+            }
+            catch (InterruptedException ex)
+            {
+                throw new RuntimeException(ex);
+            }
+
+            Registry result = super.constructRegistry(config);
+
+            ((ShutdownCoordinator) result.getService(ShutdownCoordinator.class))
+                    .addRegistryShutdownListener(_listener);
+
+            return result;
+        }
+    }
+
+    public void testRebuildCompletingAfterDestroy() throws Exception
+    {
+        FilterConfig filterConfig = newRebuildingFilterConfig();
+
+        replayControls();
+
+        final SlowRebuildFilterFixture f = new SlowRebuildFilterFixture();
+
+        f.init(filterConfig);
+
+        f.doFilter(newRequest(), null, new RebuildRegistryChainFixture());
+
+        f._rebuilding.await();
+
+        Thread destroy = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                f.destroy();
+            }
+        });
+
+        destroy.start();
+
+        // Give destroy() a chance to get ahead of the rebuild; the rebuilt Registry must be shut
+        // down in either order.
+
+        Thread.sleep(100);
+
+        f._release.countDown();
+
+        f.waitForRebuild();
+        destroy.join();
+
+        assertEquals(true, f._listener.getDidShutdown());
+
+        verifyControls();
+    }
+
+    private static class FailingRebuildFilterFixture extends AutoloadingHiveMindFilter
+    {
+        private int _count;
+
+        protected Registry constructRegistry(FilterConfig config)
+        {
+            if (_count++ > 0)
+                throw new ApplicationRuntimeException("Forced failure.");
+
+            return super.constructRegistry(config);
+        }
+    }
+
+    public void testFailedRebuildKeepsRegistry() throws Exception
+    {
+        FilterConfig filterConfig = newRebuildingFilterConfig();
+
+        replayControls();
+
+        AutoloadingHiveMindFilter f = new FailingRebuildFilterFixture();
+
+        f.init(filterConfig);
+
+        interceptLogging(AutoloadingHiveMindFilter.class.getName());
+
+        HttpServletRequest request = newRequest();
+        f.doFilter(request, null, new RebuildRegistryChainFixture());
+
+        f.waitForRebuild();
+
+        assertLoggedMessage("Unable to rebuild the HiveMind Registry");
+
+        Registry registry = AutoloadingHiveMindFilter.getRegistry(request);
+
+        request = newRequest();
+        f.doFilter(request, null, new NullChainFixture());
+
+        assertSame(registry, AutoloadingHiveMindFilter.getRegistry(request));
+
+        // Still in service
+
+        registry.getService(ShutdownCoordinator.class);
+
+        f.destroy();
+
+        verifyControls();
     }
 
     private FilterConfig newFilterConfig() throws Exception
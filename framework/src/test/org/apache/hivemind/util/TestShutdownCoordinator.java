@@ -14,12 +14,25 @@
 
 package org.apache.hivemind.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.hivemind.ApplicationRuntimeException;
 import org.apache.hivemind.Registry;
 import org.apache.hivemind.ShutdownCoordinator;
+import org.apache.hivemind.definition.ImplementationConstructionContext;
+import org.apache.hivemind.definition.ServicePointDefinition;
+import org.apache.hivemind.definition.impl.ModuleDefinitionHelper;
+import org.apache.hivemind.definition.impl.ModuleDefinitionImpl;
 import org.apache.hivemind.events.RegistryShutdownListener;
 import org.apache.hivemind.impl.RegistryBuilder;
 import org.apache.hivemind.impl.ShutdownCoordinatorImpl;
+import org.apache.hivemind.internal.AbstractServiceImplementationConstructor;
+import org.apache.hivemind.internal.ServiceModel;
 
 import hivemind.test.FrameworkTestCase;
 
@@ -100,4 +113,161 @@ public class TestShutdownCoordinator extends FrameworkTestCase
         assertLoggedMessagePattern("Unable to shutdown .*: I'm just not in the mood\\.");
     }
 
+    private static class OrderedFixture implements Runnable, RegistryShutdownListener
+    {
+        private final String _name;
+
+        private final List _shutdownOrder;
+
+        private final Runnable _dependency;
+
+        OrderedFixture(String name, List shutdownOrder, Runnable dependency)
+        {
+            _name = name;
+            _shutdownOrder = shutdownOrder;
+            _dependency = dependency;
+        }
+
+        public void run()
+        {
+            if (_dependency != null)
+                _dependency.run();
+        }
+
+        public void registryDidShutdown()
+        {
+            _shutdownOrder.add(_name);
+        }
+    }
+
+    private void addOrderedFixture(ModuleDefinitionHelper helper, ModuleDefinitionImpl module,
+            final String name, final String dependencyId, final List shutdownOrder)
+    {
+        ServicePointDefinition spd = helper.addServicePoint(name, Runnable.class.getName());
+
+        helper.addServiceImplementation(spd, new AbstractServiceImplementationConstructor(module
+                .getLocation())
+        {
+            public Object constructCoreServiceImplementation(
+                    ImplementationConstructionContext context)
+            {
+                Runnable dependency = dependencyId == null ? null : (Runnable) context.getService(
+                        dependencyId,
+                        Runnable.class);
+
+                return new OrderedFixture(name, shutdownOrder, dependency);
+            }
+        }, ServiceModel.SINGLETON);
+    }
+
+    public void testServicesShutdownBeforeTheirDependencies()
+    {
+        List shutdownOrder = new ArrayList();
+
+        ModuleDefinitionImpl module = createModuleDefinition("ordered");
+        ModuleDefinitionHelper helper = new ModuleDefinitionHelper(module);
+
+        addOrderedFixture(helper, module, "Front", "ordered.Middle", shutdownOrder);
+        addOrderedFixture(helper, module, "Middle", "ordered.Back", shutdownOrder);
+        addOrderedFixture(helper, module, "Back", null, shutdownOrder);
+
+        Registry r = buildFrameworkRegistry(module);
+
+        // Realize the services from the back, so that each registers for shutdown before the
+        // services that depend on it.
+
+        ((Runnable) r.getService("ordered.Back", Runnable.class)).run();
+        ((Runnable) r.getService("ordered.Middle", Runnable.class)).run();
+        ((Runnable) r.getService("ordered.Front", Runnable.class)).run();
+
+        r.shutdown();
+
+        assertListsEqual(new Object[]
+        { "Front", "Middle", "Back" }, shutdownOrder);
+    }
+
+    public void testParallelShutdown()
+    {
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final List shutdown = Collections.synchronizedList(new ArrayList());
+
+        ShutdownCoordinatorImpl c = new ShutdownCoordinatorImpl();
+
+        for (int i = 0; i < 2; i++)
+        {
+            c.addRegistryShutdownListener(new RegistryShutdownListener()
+            {
+                public void registryDidShutdown()
+                {
+                    try
+                    {
+                        barrier.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (Exception ex)
+                    {
+                        throw new ApplicationRuntimeException(ex);
+                    }
+
+                    shutdown.add(this);
+                }
+
+                public String toString()
+                {
+                    return "<Rendezvous>";
+                }
+            });
+        }
+
+        c.setThreads(2);
+        c.shutdown();
+
+        assertEquals(2, shutdown.size());
+        assertTrue(c.getElapsedTime("<Rendezvous>") >= 0);
+    }
+
+    public void testListenerTimeout() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        Fixture f = new Fixture();
+
+        ShutdownCoordinatorImpl c = new ShutdownCoordinatorImpl();
+
+        c.addRegistryShutdownListener(new RegistryShutdownListener()
+        {
+            public void registryDidShutdown()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException ex)
+                {
+                    // Abandoned
+                }
+            }
+
+            public String toString()
+            {
+                return "<Hung>";
+            }
+        });
+        c.addRegistryShutdownListener(f);
+
+        c.setListenerTimeout(100);
+
+        interceptLogging();
+
+        try
+        {
+            c.shutdown();
+        }
+        finally
+        {
+            release.countDown();
+        }
+
+        assertEquals(true, f.isShutdown());
+        assertLoggedMessage("Shutdown listener '<Hung>' did not complete within 100 ms.");
+    }
+
 }
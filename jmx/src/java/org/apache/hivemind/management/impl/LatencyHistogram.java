@@ -0,0 +1,105 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.management.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies with a fixed relative precision, in the style of HdrHistogram. Each
+ * power of two range of values is split into 16 equally sized buckets, so any recorded value is
+ * known to within 1/16th (about 6%) of its magnitude, from single nanoseconds to centuries, using
+ * a fixed 960 buckets. Recording a value increments a single bucket, without locking.
+ * 
+ * @since 2.0
+ */
+final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    static int bucketIndex(long value)
+    {
+        if (value < SUB_BUCKET_COUNT)
+            return value < 0 ? 0 : (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+
+        return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /**
+     * Returns the largest value that is recorded in the bucket.
+     */
+    static long highestValueInBucket(int index)
+    {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        int subBucket = index & (SUB_BUCKET_COUNT - 1);
+
+        long lowest = ((long) (SUB_BUCKET_COUNT + subBucket)) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+
+    void record(long value)
+    {
+        _buckets.incrementAndGet(bucketIndex(value));
+    }
+
+    /**
+     * Returns the value at the given percentile: the highest value in the bucket containing the
+     * recorded value that is greater than or equal to that fraction of all recorded values.
+     * 
+     * @param percentile
+     *            a fraction between 0 and 1, such as 0.99
+     * @return the value, or 0 if no values have been recorded
+     */
+    long getValueAtPercentile(double percentile)
+    {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            counts[i] = _buckets.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seen += counts[i];
+
+            if (seen >= target)
+                return highestValueInBucket(i);
+        }
+
+        return highestValueInBucket(BUCKET_COUNT - 1);
+    }
+}
@@ -33,8 +33,16 @@ public interface PerformanceCollector
      * @param method
      *            the executed method
      * @param executionTime
-     *            the duration of the method execution
+     *            the duration of the method execution, in milliseconds
      */
     public void addMeasurement(MethodSignature method, long executionTime);
 
+    /**
+     * Returns the counter that collects the data for a method; the performance monitor interceptor
+     * records measurements directly into the counter.
+     * 
+     * @since 2.0
+     */
+    public PerformanceCounter getCounter(MethodSignature method);
+
 }
\ No newline at end of file
@@ -14,10 +14,9 @@
 
 package org.apache.hivemind.management.impl;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -27,8 +26,8 @@ import javax.management.JMException;
 import javax.management.ObjectName;
 
 import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.FusibleInterceptorFactory;
 import org.apache.hivemind.InterceptorStack;
-import org.apache.hivemind.ServiceInterceptorFactory;
 import org.apache.hivemind.internal.Module;
 import org.apache.hivemind.internal.ServicePoint;
 import org.apache.hivemind.management.MBeanRegistry;
@@ -36,6 +35,12 @@ import org.apache.hivemind.management.ManagementMessages;
 import org.apache.hivemind.management.ObjectNameBuilder;
 import org.apache.hivemind.management.mbeans.PerformanceMonitorMBean;
 import org.apache.hivemind.methodmatch.MethodMatcher;
+import org.apache.hivemind.service.BodyBuilder;
+import org.apache.hivemind.service.ClassFab;
+import org.apache.hivemind.service.ClassFabUtils;
+import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
+import org.apache.hivemind.service.InterceptorFusion;
 import org.apache.hivemind.service.MethodContribution;
 import org.apache.hivemind.service.MethodIterator;
 import org.apache.hivemind.service.MethodSignature;
@@ -46,11 +51,16 @@ import org.apache.hivemind.service.MethodSignature;
  * delegated to an {@link org.apache.hivemind.management.mbeans.PerformanceMonitorMBean MBean} that
  * is created and registered in the MBeanServer. Which methods are intercepted can be defined like
  * in the logging interceptor
+ * <p>
+ * The interceptor class is generated; it has a field for the
+ * {@link org.apache.hivemind.management.impl.PerformanceCounter} of each intercepted method, and
+ * times each invocation with {@link System#nanoTime()}. Invocations that throw an exception are not
+ * measured.
  * 
  * @author Achim Huegen
  * @since 1.1
  */
-public class PerformanceMonitorFactory implements ServiceInterceptorFactory
+public class PerformanceMonitorFactory implements FusibleInterceptorFactory
 {
     private static final String SERVICE_DECORATOR_TYPE = "PerformanceCollector";
 
@@ -58,13 +68,16 @@ public class PerformanceMonitorFactory implements ServiceInterceptorFactory
 
     private ObjectNameBuilder _objectNameBuilder;
 
+    private ClassFactory _classFactory;
+
     private String _serviceId;
 
     public PerformanceMonitorFactory(MBeanRegistry mbeanRegistry,
-            ObjectNameBuilder objectNameBuilder)
+            ObjectNameBuilder objectNameBuilder, ClassFactory classFactory)
     {
         _mbeanRegistry = mbeanRegistry;
         _objectNameBuilder = objectNameBuilder;
+        _classFactory = classFactory;
     }
 
     public void setServiceId(String string)
@@ -72,67 +85,157 @@ public class PerformanceMonitorFactory implements ServiceInterceptorFactory
         _serviceId = string;
     }
 
-    /**
-     * Dynamic Proxy that counts method calls
-     */
-    private class PerformanceMonitorHandler implements InvocationHandler
+    public void createInterceptor(InterceptorStack stack, Module invokingModule, Object parameters)
     {
-        private Object _inner;
+        ServicePoint servicePoint = invokingModule.getServicePoint(stack
+                .getServiceExtensionPointId());
+        Set methods = getInterceptedMethods(stack, (List) parameters); 
+        try
+        {
+            PerformanceCollector counter = createMBean(servicePoint, methods);
+
+            List counters = new ArrayList();
+            Class interceptorClass = constructInterceptorClass(stack, methods, counter, counters);
 
-        private PerformanceCollector _counter;
+            Constructor c = interceptorClass.getConstructors()[0];
 
-        private Set _interceptedMethods;
+            Object interceptor = c.newInstance(new Object[]
+            { stack.peek(), counters.toArray(new PerformanceCounter[counters.size()]) });
 
-        PerformanceMonitorHandler(Object inner, PerformanceCollector counter, Set interceptedMethods)
+            stack.push(interceptor);
+        }
+        catch (Exception ex)
         {
-            _inner = inner;
-            _counter = counter;
-            _interceptedMethods = interceptedMethods;
+            throw new ApplicationRuntimeException(ManagementMessages
+                    .errorInstantiatingPerformanceInterceptor(_serviceId, stack, ex), ex);
         }
+    }
+
+    /**
+     * Creates the interceptor class. The constructor takes the next object in the interceptor
+     * stack, and an array of counters (one for each intercepted method, collected into the
+     * <code>counters</code> list).
+     */
+    private Class constructInterceptorClass(InterceptorStack stack, Set methods,
+            PerformanceCollector collector, List counters)
+    {
+        Class serviceInterface = stack.getServiceInterface();
+
+        ClassFab classFab = _classFactory.newClass(
+                ClassFabUtils.generateClassName(serviceInterface),
+                Object.class);
 
-        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        classFab.addInterface(serviceInterface);
+
+        // As with the logging interceptor, use the exact class of the next object,
+        // rather than the service interface, for a faster invocation.
+
+        Class topClass = ClassFabUtils.getInstanceClass(classFab, stack.peek(), serviceInterface);
+
+        classFab.addField("_delegate", topClass);
+
+        BodyBuilder constructor = new BodyBuilder();
+        constructor.begin();
+        constructor.addln("_delegate = $1;");
+
+        MethodIterator mi = new MethodIterator(serviceInterface);
+
+        while (mi.hasNext())
         {
-            try
-            {
-                // Filter the method
-                MethodSignature signature = new MethodSignature(method);
-                if (_interceptedMethods.contains(signature))
-                {
-                    // clock the execution time
-                    long startTime = System.currentTimeMillis();
-                    Object result = method.invoke(_inner, args);
-                    long endTime = System.currentTimeMillis();
-
-                    _counter.addMeasurement(signature, endTime - startTime);
-                    return result;
-                }
-
-                return method.invoke(_inner, args);
-            }
-            catch (InvocationTargetException ex)
+            MethodSignature sig = mi.next();
+
+            if (!methods.contains(sig))
             {
-                throw ex.getTargetException();
+                addPassThruMethodImplementation(classFab, sig);
+                continue;
             }
+
+            String fieldName = "_counter" + counters.size();
+
+            classFab.addField(fieldName, PerformanceCounter.class);
+            constructor.addln("{0} = $2[{1}];", fieldName, Integer.toString(counters.size()));
+
+            counters.add(collector.getCounter(sig));
+
+            classFab.addMethod(Modifier.PUBLIC, sig, buildMonitoredMethodBody(
+                    sig,
+                    fieldName,
+                    "_delegate." + sig.getName()));
         }
 
+        constructor.end();
+
+        classFab.addConstructor(new Class[]
+        { topClass, PerformanceCounter[].class }, null, constructor.toString());
+
+        if (!mi.getToString())
+            ClassFabUtils.addToStringMethod(classFab, "<PerformanceMonitor for "
+                    + stack.getServiceExtensionPointId() + "(" + serviceInterface.getName()
+                    + ")>");
+
+        return classFab.createClass();
     }
 
-    public void createInterceptor(InterceptorStack stack, Module invokingModule, Object parameters)
+    private void addPassThruMethodImplementation(ClassFab classFab, MethodSignature sig)
+    {
+        BodyBuilder builder = new BodyBuilder();
+        builder.begin();
+
+        builder.add("return ($r) _delegate.");
+        builder.add(sig.getName());
+        builder.addln("($$);");
+
+        builder.end();
+
+        classFab.addMethod(Modifier.PUBLIC, sig, builder.toString());
+    }
+
+    private String buildMonitoredMethodBody(MethodSignature sig, String counterField, String next)
+    {
+        Class returnType = sig.getReturnType();
+        boolean isVoid = (returnType == void.class);
+
+        BodyBuilder builder = new BodyBuilder();
+        builder.begin();
+
+        builder.addln("long start = System.nanoTime();");
+
+        if (!isVoid)
+        {
+            builder.add(ClassFabUtils.getJavaClassName(returnType));
+            builder.add(" result = ");
+        }
+
+        builder.add(next);
+        builder.addln("($$);");
+
+        builder.add(counterField);
+        builder.addln(".record(System.nanoTime() - start);");
+
+        if (!isVoid)
+            builder.addln("return result;");
+
+        builder.end();
+
+        return builder.toString();
+    }
+
+    /**
+     * Creates the interceptor's fragment, for a fused interceptor; the MBean is registered
+     * immediately.
+     * 
+     * @since 2.0
+     */
+    public InterceptorFragment createInterceptorFragment(InterceptorStack stack,
+            Module invokingModule, Object parameters)
     {
         ServicePoint servicePoint = invokingModule.getServicePoint(stack
                 .getServiceExtensionPointId());
-        Set methods = getInterceptedMethods(stack, (List) parameters); 
+        Set methods = getInterceptedMethods(stack, (List) parameters);
+
         try
         {
-            PerformanceCollector counter = createMBean(servicePoint, methods);
-            InvocationHandler countHandler = new PerformanceMonitorHandler(stack.peek(), counter,
-                    methods);
-
-            Object proxy = Proxy.newProxyInstance(invokingModule.getClassResolver()
-                    .getClassLoader(), new Class[]
-            { stack.getServiceInterface() }, countHandler);
-
-            stack.push(proxy);
+            return new PerformanceMonitorFragment(methods, createMBean(servicePoint, methods));
         }
         catch (Exception ex)
         {
@@ -207,4 +310,35 @@ public class PerformanceMonitorFactory implements ServiceInterceptorFactory
         return mc == null || mc.getInclude();
     }
 
-}
\ No newline at end of file
+    private class PerformanceMonitorFragment implements InterceptorFragment
+    {
+        private Set _methods;
+
+        private PerformanceCollector _collector;
+
+        PerformanceMonitorFragment(Set methods, PerformanceCollector collector)
+        {
+            _methods = methods;
+            _collector = collector;
+        }
+
+        public void addFields(InterceptorFusion fusion)
+        {
+            // The counters are added with the methods that use them.
+        }
+
+        public boolean isIntercepted(MethodSignature sig)
+        {
+            return _methods.contains(sig);
+        }
+
+        public void addMethodImplementation(InterceptorFusion fusion, MethodSignature sig,
+                String next)
+        {
+            String fieldName = fusion.addField("_counter", PerformanceCounter.class, _collector
+                    .getCounter(sig));
+
+            fusion.addMethod(buildMonitoredMethodBody(sig, fieldName, next));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind.management.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A sum that many threads can add to without contending for a single memory location. Each thread
+ * adds to one of several cells, chosen by the thread's id; the cells are spread apart so that they
+ * don't share a cache line. Reading the sum adds up the cells, and is not atomic with respect to
+ * concurrent updates.
+ * 
+ * @since 2.0
+ */
+final class StripedCounter
+{
+    private static final int MAX_STRIPES = 64;
+
+    /**
+     * Distance, in array elements, between cells: 8 longs is 64 bytes, a typical cache line.
+     */
+    private static final int SPACING_SHIFT = 3;
+
+    private static final int STRIPES = stripeCount(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray _cells = new AtomicLongArray(STRIPES << SPACING_SHIFT);
+
+    private static int stripeCount(int processors)
+    {
+        int result = 1;
+
+        while (result < processors && result < MAX_STRIPES)
+            result <<= 1;
+
+        return result;
+    }
+
+    void add(long value)
+    {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+
+        _cells.addAndGet(stripe << SPACING_SHIFT, value);
+    }
+
+    long sum()
+    {
+        long result = 0;
+
+        for (int i = 0; i < STRIPES; i++)
+            result += _cells.get(i << SPACING_SHIFT);
+
+        return result;
+    }
+}
@@ -27,13 +27,16 @@ import javax.management.MBeanException;
 import javax.management.ReflectionException;
 
 import org.apache.hivemind.management.impl.PerformanceCollector;
+import org.apache.hivemind.management.impl.PerformanceCounter;
 import org.apache.hivemind.service.MethodSignature;
 
 /**
  * MBean that holds and calculates the performance data for service method calls intercepted by the
  * {@link org.apache.hivemind.management.impl.PerformanceMonitorFactory performanceMonitor}
- * interceptor. Creates for each intercepted method 5 MBean attributes: Number of Calls, Minimum,
- * maximum, average and last execution time
+ * interceptor. Creates for each intercepted method 13 MBean attributes: Number of Calls, Minimum,
+ * maximum, average and last execution time (in milliseconds, and again in nanoseconds), and the
+ * 50th, 90th, 99th and 99.9th percentile execution times (in nanoseconds). The names of the
+ * nanosecond attributes end with "(ns)".
  * 
  * @author Achim Huegen
  * @since 1.1
@@ -50,6 +53,32 @@ public class PerformanceMonitorMBean extends AbstractDynamicMBean implements Per
 
     protected static final String DATA_TYPE_COUNT = "Count";
 
+    /** @since 2.0 */
+    protected static final String DATA_TYPE_MAXIMUM_TIME_NANOS = "Maximum time (ns)";
+
+    /** @since 2.0 */
+    protected static final String DATA_TYPE_MINIMUM_TIME_NANOS = "Minimum time (ns)";
+
+    /** @since 2.0 */
+    protected static final String DATA_TYPE_LAST_TIME_NANOS = "Last time (ns)";
+
+    /** @since 2.0 */
+    protected static final String DATA_TYPE_AVERAGE_TIME_NANOS = "Average time (ns)";
+
+    /** @since 2.0 */
+    protected static final String DATA_TYPE_50TH_PERCENTILE = "50th percentile time (ns)";
+
+    /** @since 2.0 */
+    protected static final String DATA_TYPE_90TH_PERCENTILE = "90th percentile time (ns)";
+
+    /** @since 2.0 */
+    protected static final String DATA_TYPE_99TH_PERCENTILE = "99th percentile time (ns)";
+
+    /** @since 2.0 */
+    protected static final String DATA_TYPE_999TH_PERCENTILE = "99.9th percentile time (ns)";
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
     private Set _methods;
 
     private Map _countersByMethodSignature = new HashMap();
@@ -82,7 +111,7 @@ public class PerformanceMonitorMBean extends AbstractDynamicMBean implements Per
         for (Iterator methodIterator = _methods.iterator(); methodIterator.hasNext();)
         {
             MethodSignature method = (MethodSignature) methodIterator.next();
-            Counter counter = new Counter();
+            PerformanceCounter counter = new PerformanceCounter();
             _countersByMethodSignature.put(method, counter);
             _countersByMethodId.put(method.getUniqueId(), counter);
             
@@ -93,10 +122,11 @@ public class PerformanceMonitorMBean extends AbstractDynamicMBean implements Per
     }
 
     /**
-     * Creates for a intercepted method 5 MBean attributes: Number of Calls, Minimum, maximum,
-     * average and last execution time
+     * Creates for a intercepted method 13 MBean attributes: Number of Calls, Minimum, maximum,
+     * average and last execution time (in milliseconds and in nanoseconds), and percentiles of the
+     * execution time
      */
-    protected void initAttributes(List mBeanAttributeInfoList, Counter counter, MethodSignature method)
+    protected void initAttributes(List mBeanAttributeInfoList, PerformanceCounter counter, MethodSignature method)
     {
         addAttribute(
                 mBeanAttributeInfoList, counter,
@@ -128,13 +158,61 @@ public class PerformanceMonitorMBean extends AbstractDynamicMBean implements Per
                 Long.class,
                 DATA_TYPE_MAXIMUM_TIME,
                 "Maximum execution time in ms of method " + method);
+        addAttribute(
+                mBeanAttributeInfoList, counter,
+                method,
+                Long.class,
+                DATA_TYPE_AVERAGE_TIME_NANOS,
+                "Average execution time in ns of method " + method);
+        addAttribute(
+                mBeanAttributeInfoList, counter,
+                method,
+                Long.class,
+                DATA_TYPE_LAST_TIME_NANOS,
+                "Last execution time in ns of method " + method);
+        addAttribute(
+                mBeanAttributeInfoList, counter,
+                method,
+                Long.class,
+                DATA_TYPE_MINIMUM_TIME_NANOS,
+                "Minimum execution time in ns of method " + method);
+        addAttribute(
+                mBeanAttributeInfoList, counter,
+                method,
+                Long.class,
+                DATA_TYPE_MAXIMUM_TIME_NANOS,
+                "Maximum execution time in ns of method " + method);
+        addAttribute(
+                mBeanAttributeInfoList, counter,
+                method,
+                Long.class,
+                DATA_TYPE_50TH_PERCENTILE,
+                "Median execution time in ns of method " + method);
+        addAttribute(
+                mBeanAttributeInfoList, counter,
+                method,
+                Long.class,
+                DATA_TYPE_90TH_PERCENTILE,
+                "90th percentile execution time in ns of method " + method);
+        addAttribute(
+                mBeanAttributeInfoList, counter,
+                method,
+                Long.class,
+                DATA_TYPE_99TH_PERCENTILE,
+                "99th percentile execution time in ns of method " + method);
+        addAttribute(
+                mBeanAttributeInfoList, counter,
+                method,
+                Long.class,
+                DATA_TYPE_999TH_PERCENTILE,
+                "99.9th percentile execution time in ns of method " + method);
 
     }
 
     /**
      * Creates a new MBean Attribute for a performance counter
      */
-    private void addAttribute(List mBeanAttributeInfoList, Counter counter, MethodSignature method,
+    private void addAttribute(List mBeanAttributeInfoList, PerformanceCounter counter, MethodSignature method,
             Class attributeType, String performanceDataType, String description)
     {
         String attributeName = null;
@@ -203,8 +281,15 @@ public class PerformanceMonitorMBean extends AbstractDynamicMBean implements Per
      */
     public void addMeasurement(MethodSignature method, long executionTime)
     {
-        Counter counter = (Counter) _countersByMethodSignature.get(method);
-        counter.addMeasurement(executionTime);
+        getCounter(method).record(executionTime * NANOS_PER_MILLI);
+    }
+
+    /**
+     * @see PerformanceCollector#getCounter(MethodSignature)
+     */
+    public PerformanceCounter getCounter(MethodSignature method)
+    {
+        return (PerformanceCounter) _countersByMethodSignature.get(method);
     }
 
     protected MBeanAttributeInfo[] createMBeanAttributeInfo()
@@ -224,69 +309,46 @@ public class PerformanceMonitorMBean extends AbstractDynamicMBean implements Per
             throw new AttributeNotFoundException("Attribute '" + attribute + "' not found");
         
         String type = atcLink.type;
-        Counter counter = atcLink.counter;
+        PerformanceCounter counter = atcLink.counter;
         if (type.equals(DATA_TYPE_COUNT))
-            return new Long(counter.count);
+            return new Long(counter.getCount());
         else if (type.equals(DATA_TYPE_AVERAGE_TIME))
-            return new Long(counter.average);
+            return new Long(counter.getAverageTime() / NANOS_PER_MILLI);
         else if (type.equals(DATA_TYPE_LAST_TIME))
-            return new Long(counter.last);
+            return new Long(counter.getLastTime() / NANOS_PER_MILLI);
         else if (type.equals(DATA_TYPE_MINIMUM_TIME))
-            return new Long(counter.min);
+            return new Long(counter.getMinimumTime() / NANOS_PER_MILLI);
         else if (type.equals(DATA_TYPE_MAXIMUM_TIME))
-            return new Long(counter.max);
+            return new Long(counter.getMaximumTime() / NANOS_PER_MILLI);
+        else if (type.equals(DATA_TYPE_AVERAGE_TIME_NANOS))
+            return new Long(counter.getAverageTime());
+        else if (type.equals(DATA_TYPE_LAST_TIME_NANOS))
+            return new Long(counter.getLastTime());
+        else if (type.equals(DATA_TYPE_MINIMUM_TIME_NANOS))
+            return new Long(counter.getMinimumTime());
+        else if (type.equals(DATA_TYPE_MAXIMUM_TIME_NANOS))
+            return new Long(counter.getMaximumTime());
+        else if (type.equals(DATA_TYPE_50TH_PERCENTILE))
+            return new Long(counter.getTimeAtPercentile(0.5));
+        else if (type.equals(DATA_TYPE_90TH_PERCENTILE))
+            return new Long(counter.getTimeAtPercentile(0.9));
+        else if (type.equals(DATA_TYPE_99TH_PERCENTILE))
+            return new Long(counter.getTimeAtPercentile(0.99));
+        else if (type.equals(DATA_TYPE_999TH_PERCENTILE))
+            return new Long(counter.getTimeAtPercentile(0.999));
         else
             throw new IllegalArgumentException("Unknown performance data type");
     }
 
 }
 
-/**
- * Class that holds and calculates the performance data for a single method
- */
-
-class Counter
-{
-    long count = 0;
-
-    long last = 0;
-
-    long average = 0;
-
-    long max = 0;
-
-    long min = 0;
-
-    public String toString()
-    {
-        return "" + count;
-    }
-
-    /**
-     * Should be synchronized, but this could slow things really down
-     * 
-     * @param executionTime
-     */
-    public void addMeasurement(long executionTime)
-    {
-        count++;
-        last = executionTime;
-        // not an exact value without a complete history and stored as long
-        average = (average * (count - 1) + executionTime) / count;
-        if (executionTime < min || min == 0)
-            min = executionTime;
-        if (executionTime > max || max == 0)
-            max = executionTime;
-    }
-}
-
 class AttributeToCounterLink
 {
-    Counter counter;
+    PerformanceCounter counter;
 
     String type;
 
-    public AttributeToCounterLink(Counter counter, String type)
+    public AttributeToCounterLink(PerformanceCounter counter, String type)
     {
         this.counter = counter;
         this.type = type;
@@ -50,6 +50,10 @@ public class TestPerformanceMonitorFactory extends XmlTestCase
         // Execute some operations for code coverage
         calculator.add(123);
         
+        Long count = (Long) mbeanServer.getAttribute(objectName, "add(int) : Count");
+        assertEquals(1, count.longValue());
+        assertEquals(123, calculator.getSum());
+        
         
         // Shutdown the registry, to make sure the JMX server is shutdown
         
@@ -59,6 +59,64 @@ public class TestPerformanceMonitorMBean extends TestCase
         checkAttributeValue(monitor, method1, PerformanceMonitorMBean.DATA_TYPE_LAST_TIME, 50);
     }
     
+    /**
+     * Percentiles are reported in nanoseconds, within the precision of the histogram.
+     */
+    public void testPercentiles() throws Exception
+    {
+        Set methods = new HashSet();
+
+        MethodSignature method = new MethodSignature(void.class, "method",
+                new Class[] {}, new Class[] {} );
+        methods.add(method);
+
+        PerformanceMonitorMBean monitor = new PerformanceMonitorMBean(methods);
+
+        for (int i = 1; i <= 1000; i++)
+            monitor.getCounter(method).record(i * 1000);
+
+        checkAttributeRange(monitor, method, PerformanceMonitorMBean.DATA_TYPE_50TH_PERCENTILE, 500000);
+        checkAttributeRange(monitor, method, PerformanceMonitorMBean.DATA_TYPE_90TH_PERCENTILE, 900000);
+        checkAttributeRange(monitor, method, PerformanceMonitorMBean.DATA_TYPE_99TH_PERCENTILE, 990000);
+        checkAttributeRange(monitor, method, PerformanceMonitorMBean.DATA_TYPE_999TH_PERCENTILE, 999000);
+        checkAttributeValue(monitor, method, PerformanceMonitorMBean.DATA_TYPE_MAXIMUM_TIME, 1);
+        checkAttributeValue(monitor, method, PerformanceMonitorMBean.DATA_TYPE_COUNT, 1000);
+    }
+
+    /**
+     * Invocations shorter than a millisecond are reported as 0 ms, but are visible in the
+     * nanosecond attributes.
+     */
+    public void testNanosecondAttributes() throws Exception
+    {
+        Set methods = new HashSet();
+
+        MethodSignature method = new MethodSignature(void.class, "method",
+                new Class[] {}, new Class[] {} );
+        methods.add(method);
+
+        PerformanceMonitorMBean monitor = new PerformanceMonitorMBean(methods);
+
+        monitor.getCounter(method).record(2000);
+        monitor.getCounter(method).record(4000);
+
+        checkAttributeValue(monitor, method, PerformanceMonitorMBean.DATA_TYPE_AVERAGE_TIME, 0);
+        checkAttributeValue(monitor, method, PerformanceMonitorMBean.DATA_TYPE_AVERAGE_TIME_NANOS, 3000);
+        checkAttributeValue(monitor, method, PerformanceMonitorMBean.DATA_TYPE_LAST_TIME_NANOS, 4000);
+        checkAttributeValue(monitor, method, PerformanceMonitorMBean.DATA_TYPE_MINIMUM_TIME_NANOS, 2000);
+        checkAttributeValue(monitor, method, PerformanceMonitorMBean.DATA_TYPE_MAXIMUM_TIME_NANOS, 4000);
+    }
+
+    private void checkAttributeRange(PerformanceMonitorMBean monitor,
+            MethodSignature method, String dataType, long expectedValue) throws Exception
+    {
+        String attrName = monitor.buildAttributeName(method, 
+                dataType);
+        long value = ((Long) monitor.getAttribute(attrName)).longValue();
+        assertTrue(dataType + " was " + value, value >= expectedValue);
+        assertTrue(dataType + " was " + value, value <= expectedValue + expectedValue / 16);
+    }
+
     private void checkAttributeValue(PerformanceMonitorMBean monitor,
             MethodSignature method, String dataType, long expectedValue) throws Exception
     {
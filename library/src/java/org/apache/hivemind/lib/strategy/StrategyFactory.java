@@ -51,10 +51,14 @@ public class StrategyFactory implements ServiceImplementationFactory
     public Object createCoreServiceImplementation(
             ServiceImplementationFactoryParameters factoryParameters)
     {
-        StrategyRegistry ar = new StrategyRegistryImpl();
+        StrategyRegistryImpl ar = new StrategyRegistryImpl();
 
         buildRegistry(factoryParameters, ar);
 
+        // The registry is private to the service, so no further registrations can occur.
+
+        ar.freeze();
+
         Class implClass = buildImplementationClass(factoryParameters);
 
         try
@@ -14,17 +14,30 @@
 
 package org.apache.hivemind.lib.util;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.hivemind.service.ClassFabUtils;
 import org.apache.hivemind.util.Defense;
 
 /**
  * Thread-safe implementation of {@link org.apache.hivemind.lib.util.StrategyRegistry}.
+ * <p>
+ * {@link #getStrategy(Class)} does not lock: the registrations are an immutable snapshot, replaced
+ * as a whole by {@link #register(Class, Object)}, and each snapshot carries its own concurrent cache
+ * of search results. The cache is keyed on class name and refers to subject classes only weakly,
+ * so that it does not keep class loaders from being collected.
+ * <p>
+ * Once all strategies are registered, the registry may be {@link #freeze() frozen}; further
+ * registrations are rejected and the cache is never discarded. Search results for known subject
+ * classes may be {@link #precompute(Class[]) precomputed}.
  * 
  * @author Howard Lewis Ship
  * @since 1.1
@@ -33,49 +46,175 @@ import org.apache.hivemind.util.Defense;
 public class StrategyRegistryImpl implements StrategyRegistry
 {
     /**
-     * A Map of adaptor objects, keyed on registration Class.
+     * The current registrations and cache; replaced on each registration.
      */
 
-    private Map _registrations = new HashMap();
+    private volatile Snapshot _snapshot = new Snapshot(Collections.EMPTY_MAP);
+
+    private volatile boolean _frozen;
 
     /**
-     * A Map of adaptor objects, keyed on subject Class.
+     * An immutable Map of adaptor objects, keyed on registration Class, and a cache of search
+     * results against those registrations.
      */
+    private static final class Snapshot
+    {
+        final Map _registrations;
+
+        /**
+         * Chains of {@link CacheEntry}, keyed on subject class name. Several classes may share a
+         * name, when loaded by different class loaders.
+         */
+        final ConcurrentMap _cache = new ConcurrentHashMap();
+
+        Snapshot(Map registrations)
+        {
+            _registrations = registrations;
+        }
+
+        Object lookup(Class subjectClass)
+        {
+            CacheEntry entry = (CacheEntry) _cache.get(subjectClass.getName());
+
+            while (entry != null)
+            {
+                if (entry._subjectClass.get() == subjectClass)
+                    return entry._strategy;
+
+                entry = entry._next;
+            }
+
+            return null;
+        }
+
+        void store(Class subjectClass, Object strategy)
+        {
+            String name = subjectClass.getName();
+
+            while (true)
+            {
+                CacheEntry head = (CacheEntry) _cache.get(name);
+                CacheEntry newHead = new CacheEntry(subjectClass, strategy, prune(head));
+
+                if (head == null ? _cache.putIfAbsent(name, newHead) == null : _cache.replace(
+                        name,
+                        head,
+                        newHead))
+                    return;
+            }
+        }
+
+        /**
+         * Returns a copy of the chain without entries for collected classes.
+         */
+        private static CacheEntry prune(CacheEntry entry)
+        {
+            if (entry == null)
+                return null;
+
+            CacheEntry next = prune(entry._next);
+            Class subjectClass = (Class) entry._subjectClass.get();
+
+            return subjectClass == null ? next : new CacheEntry(subjectClass, entry._strategy, next);
+        }
+    }
+
+    private static final class CacheEntry
+    {
+        final WeakReference _subjectClass;
 
-    private Map _cache = new WeakHashMap();
+        final Object _strategy;
+
+        final CacheEntry _next;
+
+        CacheEntry(Class subjectClass, Object strategy, CacheEntry next)
+        {
+            _subjectClass = new WeakReference(subjectClass);
+            _strategy = strategy;
+            _next = next;
+        }
+    }
 
     public synchronized void register(Class registrationClass, Object adaptor)
     {
         Defense.notNull(registrationClass, "registrationClass");
         Defense.notNull(adaptor, "adaptor");
 
-        if (_registrations.containsKey(registrationClass))
+        if (_frozen)
+            throw new IllegalStateException(UtilMessages.registryFrozen(registrationClass));
+
+        Map registrations = _snapshot._registrations;
+
+        if (registrations.containsKey(registrationClass))
             throw new IllegalArgumentException(UtilMessages
                     .duplicateRegistration(registrationClass));
 
-        _registrations.put(registrationClass, adaptor);
+        Map newRegistrations = new HashMap(registrations);
+        newRegistrations.put(registrationClass, adaptor);
 
-        // Can't tell what is and isn't valid in the cache.
-        // Also, normally all registrations occur before any adaptors
+        // Can't tell what is and isn't valid in the cache, so a new snapshot starts with an
+        // empty one. Normally, all registrations occur before any adaptors
         // are searched for, so this is not a big deal.
 
-        _cache.clear();
+        _snapshot = new Snapshot(newRegistrations);
+    }
+
+    /**
+     * Prevents further registrations, and precomputes the search result for each registered class.
+     * Subsequent calls to {@link #register(Class, Object)} throw {@link IllegalStateException}.
+     */
+    public synchronized void freeze()
+    {
+        _frozen = true;
+
+        Snapshot snapshot = _snapshot;
+
+        Iterator i = snapshot._registrations.keySet().iterator();
+
+        while (i.hasNext())
+        {
+            Class registrationClass = (Class) i.next();
+
+            snapshot.store(registrationClass, searchForAdaptor(
+                    snapshot._registrations,
+                    registrationClass));
+        }
+    }
+
+    public boolean isFrozen()
+    {
+        return _frozen;
     }
 
-    public synchronized Object getStrategy(Class subjectClass)
+    /**
+     * Searches for, and caches, the strategy for each of the subject classes, so that the first
+     * request for each does not pay for the search.
+     * 
+     * @throws IllegalArgumentException
+     *             if no strategy could be found for one of the classes
+     */
+    public void precompute(Class[] subjectClasses)
+    {
+        for (int i = 0; i < subjectClasses.length; i++)
+            getStrategy(subjectClasses[i]);
+    }
+
+    public Object getStrategy(Class subjectClass)
     {
         Defense.notNull(subjectClass, "subjectClass");
 
-        Object result = _cache.get(subjectClass);
+        Snapshot snapshot = _snapshot;
+
+        Object result = snapshot.lookup(subjectClass);
 
         if (result != null)
             return result;
 
-        result = searchForAdaptor(subjectClass);
+        result = searchForAdaptor(snapshot._registrations, subjectClass);
 
         // Record the result in the cache
 
-        _cache.put(subjectClass, result);
+        snapshot.store(subjectClass, result);
 
         return result;
     }
@@ -101,12 +240,12 @@ public class StrategyRegistryImpl implements StrategyRegistry
      * <li>Multiple checks only occur if we don't find a registration
      * </ul>
      * <p>
-     * This method is only called from a synchronized block, so it is implicitly synchronized.
+     * The registrations Map is never modified, so no synchronization is needed.
      */
 
-    private Object searchForAdaptor(Class subjectClass)
+    private Object searchForAdaptor(Map registrations, Class subjectClass)
     {
-        LinkedList queue = null;
+        List queue = null;
         Object result = null;
 
         // Step one: work up through the class inheritance.
@@ -118,7 +257,7 @@ public class StrategyRegistryImpl implements StrategyRegistry
 
         while (searchClass != Object.class && searchClass != null)
         {
-            result = _registrations.get(searchClass);
+            result = registrations.get(searchClass);
             if (result != null)
                 return result;
 
@@ -129,10 +268,10 @@ public class StrategyRegistryImpl implements StrategyRegistry
             int length = interfaces.length;
 
             if (queue == null && length > 0)
-                queue = new LinkedList();
+                queue = new ArrayList();
 
             for (int i = 0; i < length; i++)
-                queue.addLast(interfaces[i]);
+                queue.add(interfaces[i]);
 
             // Advance up to the next superclass
 
@@ -141,15 +280,16 @@ public class StrategyRegistryImpl implements StrategyRegistry
         }
 
         // Ok, the easy part failed, lets start searching
-        // interfaces.
+        // interfaces. The queue is consumed from the front by index,
+        // while extended interfaces are added to the end.
 
         if (queue != null)
         {
-            while (!queue.isEmpty())
+            for (int index = 0; index < queue.size(); index++)
             {
-                searchClass = (Class) queue.removeFirst();
+                searchClass = (Class) queue.get(index);
 
-                result = _registrations.get(searchClass);
+                result = registrations.get(searchClass);
                 if (result != null)
                     return result;
 
@@ -160,14 +300,14 @@ public class StrategyRegistryImpl implements StrategyRegistry
                 int length = interfaces.length;
 
                 for (int i = 0; i < length; i++)
-                    queue.addLast(interfaces[i]);
+                    queue.add(interfaces[i]);
             }
         }
 
         // Not a match on interface; our last gasp is to check
         // for a registration for java.lang.Object
 
-        result = _registrations.get(Object.class);
+        result = registrations.get(Object.class);
         if (result != null)
             return result;
 
@@ -197,12 +337,12 @@ public class StrategyRegistryImpl implements StrategyRegistry
         return searchClass.getSuperclass();
     }
 
-    public synchronized String toString()
+    public String toString()
     {
         StringBuffer buffer = new StringBuffer();
         buffer.append("AdaptorRegistry[");
 
-        Iterator i = _registrations.entrySet().iterator();
+        Iterator i = _snapshot._registrations.entrySet().iterator();
         boolean showSep = false;
 
         while (i.hasNext())
@@ -225,4 +365,4 @@ public class StrategyRegistryImpl implements StrategyRegistry
 
         return buffer.toString();
     }
-}
\ No newline at end of file
+}
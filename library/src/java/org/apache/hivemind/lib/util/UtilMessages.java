@@ -36,4 +36,10 @@ class UtilMessages
         return _formatter
                 .format("strategy-not-found", ClassFabUtils.getJavaClassName(subjectClass));
     }
-}
\ No newline at end of file
+
+    static String registryFrozen(Class registrationClass)
+    {
+        return _formatter.format("registry-frozen", ClassFabUtils
+                .getJavaClassName(registrationClass));
+    }
+}
@@ -15,6 +15,10 @@
 package org.apache.hivemind.lib.util;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -157,4 +161,108 @@ public class TestStrategyRegistry extends HiveMindTestCase
             assertEquals(UtilMessages.duplicateRegistration(String.class), ex.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    public void testRegistrationDiscardsCachedResults()
+    {
+        StrategyRegistry r = new StrategyRegistryImpl();
+
+        r.register(Object.class, "OBJECT");
+
+        assertEquals("OBJECT", r.getStrategy(String.class));
+
+        r.register(String.class, "STRING");
+
+        assertEquals("STRING", r.getStrategy(String.class));
+    }
+
+    public void testFreeze()
+    {
+        StrategyRegistryImpl r = new StrategyRegistryImpl();
+
+        r.register(Number.class, "NUMBER");
+
+        assertFalse(r.isFrozen());
+
+        r.freeze();
+
+        assertTrue(r.isFrozen());
+        assertEquals("NUMBER", r.getStrategy(Number.class));
+        assertEquals("NUMBER", r.getStrategy(Integer.class));
+
+        try
+        {
+            r.register(String.class, "STRING");
+
+            unreachable();
+        }
+        catch (IllegalStateException ex)
+        {
+            assertEquals(UtilMessages.registryFrozen(String.class), ex.getMessage());
+        }
+    }
+
+    public void testPrecompute()
+    {
+        StrategyRegistryImpl r = new StrategyRegistryImpl();
+
+        r.register(List.class, "LIST");
+
+        r.precompute(new Class[]
+        { ArrayList.class, LinkedList.class });
+
+        assertEquals("LIST", r.getStrategy(ArrayList.class));
+        assertEquals("LIST", r.getStrategy(LinkedList.class));
+
+        try
+        {
+            r.precompute(new Class[]
+            { String.class });
+
+            unreachable();
+        }
+        catch (IllegalArgumentException ex)
+        {
+            assertEquals(UtilMessages.strategyNotFound(String.class), ex.getMessage());
+        }
+    }
+
+    public void testConcurrentLookups() throws Exception
+    {
+        final StrategyRegistry r = build();
+        final Class[] subjects =
+        { String.class, Boolean.class, String[].class, int[].class, double.class, ArrayList.class,
+                HashMap.class, TestStrategyRegistry.class };
+        final Object[] expected =
+        { "STRING", "SERIALIZABLE", "OBJECT[]", "INT[]", "DOUBLE", "LIST", "MAP", "OBJECT" };
+        final List failures = Collections.synchronizedList(new ArrayList());
+
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    for (int pass = 0; pass < 1000; pass++)
+                    {
+                        for (int j = 0; j < subjects.length; j++)
+                        {
+                            Object actual = r.getStrategy(subjects[j]);
+
+                            if (!expected[j].equals(actual))
+                                failures.add(subjects[j] + " => " + actual);
+                        }
+                    }
+                }
+            };
+
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++)
+            threads[i].join();
+
+        assertEquals(Collections.EMPTY_LIST, failures);
+    }
+}
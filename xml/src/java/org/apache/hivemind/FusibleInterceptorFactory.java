@@ -0,0 +1,40 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.hivemind;
+
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.service.InterceptorFragment;
+
+/**
+ * An interceptor factory that can also create its interceptor as an {@link InterceptorFragment}.
+ * When all the interceptors of a service come from such factories, they are fused into a single
+ * generated interceptor, rather than stacked as one object per interceptor. A factory service must
+ * declare this as its interface (rather than {@link ServiceInterceptorFactory}) for its
+ * interceptors to be fused.
+ * 
+ * @since 2.0
+ */
+public interface FusibleInterceptorFactory extends ServiceInterceptorFactory
+{
+    /**
+     * Creates the interceptor's fragment; nothing is pushed onto the stack.
+     * 
+     * @param parameters
+     *            factory specific parameters, as with
+     *            {@link ServiceInterceptorFactory#createInterceptor(InterceptorStack, Module, Object)}
+     */
+    public InterceptorFragment createInterceptorFragment(InterceptorStack stack,
+            Module invokingModule, Object parameters);
+}
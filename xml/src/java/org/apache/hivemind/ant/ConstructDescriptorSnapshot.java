@@ -0,0 +1,118 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.ant;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import org.apache.hivemind.definition.impl.RegistryDefinitionImpl;
+import org.apache.hivemind.impl.HivemoduleProvider;
+import org.apache.hivemind.impl.XmlModuleReader;
+import org.apache.hivemind.parse.DescriptorSnapshot;
+import org.apache.hivemind.util.URLResource;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.Path;
+
+/**
+ * Reads the module deployment descriptors found on a path (of JARs, directories and raw XML
+ * files) and writes a {@link DescriptorSnapshot} of them; the snapshot can then be supplied to
+ * {@link HivemoduleProvider#setSnapshotFile(File)} so that the descriptors' XML is not parsed
+ * at runtime. Sub-modules are included in the snapshot.
+ * <p>
+ * Descriptors are identified in the snapshot by URL, so the path should name the JARs and
+ * directories as they will appear on the runtime classpath; any descriptor that ends up
+ * elsewhere (or has changed) is simply parsed at runtime, and the snapshot brought up to date.
+ * 
+ * @since 2.0
+ */
+public class ConstructDescriptorSnapshot extends Task
+{
+    private File _output;
+
+    private Path _modulesPath;
+
+    public void execute() throws BuildException
+    {
+        if (_output == null)
+            throw new BuildException("You must specify an output file");
+
+        if (_modulesPath == null)
+            throw new BuildException("You must specify a set of modules");
+
+        DescriptorSnapshot snapshot = new DescriptorSnapshot();
+
+        XmlModuleReader reader = new XmlModuleReader(new RegistryDefinitionImpl());
+        reader.setDescriptorSnapshot(snapshot);
+
+        String[] paths = _modulesPath.list();
+
+        try
+        {
+            for (int i = 0; i < paths.length; i++)
+            {
+                URL descriptorURL = getDescriptorURL(new File(paths[i]));
+
+                if (descriptorURL != null)
+                    reader.readModule(new URLResource(descriptorURL));
+            }
+
+            log("Writing descriptor snapshot to " + _output);
+
+            snapshot.write(_output);
+        }
+        catch (Exception ex)
+        {
+            throw new BuildException(ex);
+        }
+    }
+
+    /**
+     * Returns the URL of the descriptor within a JAR or directory, or of a raw XML file, in the
+     * same form as the URL the class loader would find for it.
+     */
+    private URL getDescriptorURL(File file) throws IOException
+    {
+        if (file.isDirectory())
+        {
+            File descriptor = new File(file, HivemoduleProvider.HIVE_MODULE_XML);
+
+            return descriptor.exists() ? descriptor.toURL() : null;
+        }
+
+        if (file.getName().endsWith(".jar"))
+            return new URL("jar:" + file.toURL() + "!/" + HivemoduleProvider.HIVE_MODULE_XML);
+
+        return file.toURL();
+    }
+
+    public File getOutput()
+    {
+        return _output;
+    }
+
+    public void setOutput(File file)
+    {
+        _output = file;
+    }
+
+    public Path createModules()
+    {
+        _modulesPath = new Path(getProject());
+        return _modulesPath;
+    }
+}
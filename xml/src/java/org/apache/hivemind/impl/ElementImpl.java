@@ -15,29 +15,29 @@
 package org.apache.hivemind.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.hivemind.Attribute;
 import org.apache.hivemind.Element;
 import org.apache.hivemind.util.ToStringBuilder;
 
 /**
- * Implementation of {@link org.apache.hivemind.Element}.
+ * Implementation of {@link org.apache.hivemind.Element}. Contributions may consist of a great many
+ * elements, so the representation is kept compact: the attributes are held in an array exactly
+ * large enough for them (elements have few attributes, so searching it is cheap).
  *
  * @author Howard Lewis Ship
  */
 public final class ElementImpl extends BaseLocatable implements Element
 {
+    private static final Attribute[] NO_ATTRIBUTES = new Attribute[0];
+
     private String _elementName;
     private String _content;
     private List _elements;
-    private List _safeElements;
-    private List _attributes;
-    private Map _attributesMap;
-    private List _safeAttributes;
+    private Attribute[] _attributes = NO_ATTRIBUTES;
 
     public void setElementName(String elementName)
     {
@@ -51,14 +51,14 @@ public final class ElementImpl extends BaseLocatable implements Element
 
     public void addAttribute(Attribute attribute)
     {
-        if (_attributes == null)
-        {
-            _attributes = new ArrayList();
-            _attributesMap = new HashMap();
-        }
+        int count = _attributes.length;
+
+        Attribute[] attributes = new Attribute[count + 1];
+
+        System.arraycopy(_attributes, 0, attributes, 0, count);
+        attributes[count] = attribute;
 
-        _attributes.add(attribute);
-        _attributesMap.put(attribute.getName(), attribute);
+        _attributes = attributes;
     }
 
     public void addElement(Element element)
@@ -69,15 +69,12 @@ public final class ElementImpl extends BaseLocatable implements Element
         _elements.add(element);
     }
 
-    public synchronized List getAttributes()
+    public List getAttributes()
     {
-        if (_attributes == null)
+        if (_attributes.length == 0)
             return Collections.EMPTY_LIST;
 
-        if (_safeAttributes == null)
-            _safeAttributes = Collections.unmodifiableList(_attributes);
-
-        return _safeAttributes;
+        return Collections.unmodifiableList(Arrays.asList(_attributes));
     }
 
     public String getContent()
@@ -88,28 +85,27 @@ public final class ElementImpl extends BaseLocatable implements Element
         return _content;
     }
 
-    public synchronized List getElements()
+    public List getElements()
     {
         if (_elements == null)
             return Collections.EMPTY_LIST;
 
-        if (_safeElements == null)
-            _safeElements = Collections.unmodifiableList(_elements);
-
-        return _safeElements;
+        return Collections.unmodifiableList(_elements);
     }
 
     public String getAttributeValue(String attributeName)
     {
-        if (_attributesMap == null)
-            return null;
+        // Search from the end, so that a later attribute hides an earlier one with the same name.
 
-        Attribute a = (Attribute) _attributesMap.get(attributeName);
+        for (int i = _attributes.length - 1; i >= 0; i--)
+        {
+            Attribute a = _attributes[i];
 
-        if (a == null)
-            return null;
+            if (a.getName().equals(attributeName))
+                return a.getValue();
+        }
 
-        return a.getValue();
+        return null;
     }
 
     public boolean isEmpty()
@@ -127,7 +123,7 @@ public final class ElementImpl extends BaseLocatable implements Element
         ToStringBuilder builder = new ToStringBuilder(this);
 
         builder.append("elementName", _elementName);
-        builder.append("attributes", _attributes);
+        builder.append("attributes", _attributes.length == 0 ? null : Arrays.asList(_attributes));
         builder.append("elements", _elements);
         builder.append("content", _content);
 
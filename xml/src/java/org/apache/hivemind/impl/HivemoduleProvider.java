@@ -14,11 +14,15 @@
 
 package org.apache.hivemind.impl;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hivemind.ClassResolver;
 import org.apache.hivemind.ErrorHandler;
 import org.apache.hivemind.definition.RegistryDefinition;
+import org.apache.hivemind.parse.DescriptorSnapshot;
 
 /**
  * Implementation of {@link RegistryProvider} that loads all xml modules
@@ -39,6 +43,12 @@ public class HivemoduleProvider implements RegistryProvider
     
     private String _resourcePath;
 
+    private int _parserThreads = 1;
+
+    private File _snapshotFile;
+
+    private boolean _streamingParser;
+
     public HivemoduleProvider()
     {
         this(new DefaultClassResolver(), HIVE_MODULE_XML);
@@ -50,14 +60,81 @@ public class HivemoduleProvider implements RegistryProvider
         _resourcePath = resourcePath;
     }
 
+    /**
+     * Sets the number of threads used to parse the module descriptors; by default they are parsed
+     * one at a time.
+     * 
+     * @see XmlModuleReader#setParserThreads(int)
+     * @since 2.0
+     */
+    public void setParserThreads(int parserThreads)
+    {
+        _parserThreads = parserThreads;
+    }
+
+    /**
+     * If true, the module descriptors are read with a StAX parser, which uses less memory than
+     * SAX; by default they are parsed with SAX.
+     * 
+     * @see XmlModuleReader#setStreamingParser(boolean)
+     * @since 2.0
+     */
+    public void setStreamingParser(boolean streamingParser)
+    {
+        _streamingParser = streamingParser;
+    }
+
+    /**
+     * Sets a file used to hold a {@link DescriptorSnapshot snapshot} of the module descriptors,
+     * so that their XML need not be parsed (the module definitions are still built from them, and
+     * resolved, as usual). The file is created, or brought up to date, whenever
+     * descriptors have been added or changed since it was written. The file may be prepared in
+     * advance using the {@link org.apache.hivemind.ant.ConstructDescriptorSnapshot} task.
+     * 
+     * @since 2.0
+     */
+    public void setSnapshotFile(File snapshotFile)
+    {
+        _snapshotFile = snapshotFile;
+    }
+
     public void process(RegistryDefinition registryDefinition, ErrorHandler errorHandler)
     {
         XmlModuleReader xmlModuleReader = new XmlModuleReader(registryDefinition, _classResolver,
                 errorHandler);
+        xmlModuleReader.setParserThreads(_parserThreads);
+        xmlModuleReader.setStreamingParser(_streamingParser);
         if (LOG.isDebugEnabled())
             LOG.debug("Processing xml modules visible to " + _classResolver);
 
+        if (_snapshotFile == null)
+        {
+            xmlModuleReader.readClassPathModules(_resourcePath);
+            return;
+        }
+
+        DescriptorSnapshot snapshot = DescriptorSnapshot.read(_snapshotFile);
+
+        xmlModuleReader.setDescriptorSnapshot(snapshot);
         xmlModuleReader.readClassPathModules(_resourcePath);
+
+        if (snapshot.isModified())
+            writeSnapshot(snapshot);
+    }
+
+    private void writeSnapshot(DescriptorSnapshot snapshot)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Writing descriptor snapshot " + _snapshotFile);
+
+        try
+        {
+            snapshot.write(_snapshotFile);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn(XmlImplMessages.unableToWriteSnapshot(_snapshotFile, ex), ex);
+        }
     }
 
 }
@@ -17,25 +17,30 @@ package org.apache.hivemind.impl;
 import java.util.List;
 
 import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.FusibleInterceptorFactory;
 import org.apache.hivemind.InterceptorStack;
 import org.apache.hivemind.Location;
 import org.apache.hivemind.Orderable;
 import org.apache.hivemind.ServiceInterceptorFactory;
+import org.apache.hivemind.definition.FusibleInterceptorConstructor;
 import org.apache.hivemind.definition.ServicePointDefinition;
 import org.apache.hivemind.internal.AbstractServiceInterceptorConstructor;
 import org.apache.hivemind.internal.Module;
 import org.apache.hivemind.internal.ServicePoint;
 import org.apache.hivemind.schema.Schema;
+import org.apache.hivemind.service.InterceptorFragment;
 import org.apache.hivemind.util.Defense;
 import org.apache.hivemind.util.InstanceCreationUtils;
 import org.apache.hivemind.xml.definition.impl.XmlServicePointDefinitionImpl;
 
 /**
  * Constructs a new interceptor by invoking methods on another service (which implements the
- * {@link org.apache.hivemind.ServiceInterceptorFactory} interface.
+ * {@link org.apache.hivemind.ServiceInterceptorFactory} interface. If the service implements
+ * {@link org.apache.hivemind.FusibleInterceptorFactory}, the interceptor may be fused with the
+ * service's other interceptors.
  */
 public final class InvokeFactoryInterceptorConstructor extends AbstractServiceInterceptorConstructor implements
-        Orderable
+        Orderable, FusibleInterceptorConstructor
 {
     private String _factoryServiceId;
     
@@ -71,6 +76,31 @@ public final class InvokeFactoryInterceptorConstructor extends AbstractServiceIn
         _factory.createInterceptor(stack, contributingModule, _convertedParameters);
     }
 
+    /**
+     * Returns true if the factory service's interface is {@link FusibleInterceptorFactory}; the
+     * service is not constructed.
+     * 
+     * @since 2.0
+     */
+    public boolean isFusible(Module contributingModule)
+    {
+        ServicePoint factoryPoint = contributingModule.getServicePoint(_factoryServiceId);
+
+        return FusibleInterceptorFactory.class.isAssignableFrom(factoryPoint.getServiceInterface());
+    }
+
+    /** @since 2.0 */
+    public InterceptorFragment constructInterceptorFragment(InterceptorStack stack,
+            Module contributingModule)
+    {
+        setup(contributingModule);
+
+        return ((FusibleInterceptorFactory) _factory).createInterceptorFragment(
+                stack,
+                contributingModule,
+                _convertedParameters);
+    }
+
     // A lot of changes to synchronization and service construction occured between 1.1 and 1.1.1;
     // this method was split off and made synchronized ... otherwise, it was possible for the
     // pooled or threaded services to get into a potential race condition through this code.
@@ -0,0 +1,105 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.hivemind.ErrorHandler;
+import org.apache.hivemind.Location;
+
+/**
+ * An {@link ErrorHandler} that, while recording, keeps errors rather than reporting them; they are
+ * reported later, to the real handler, by {@link #replay(List, ErrorHandler)}. When not recording,
+ * errors are passed straight to the real handler. Used by {@link XmlModuleReader} so that errors
+ * found while descriptors are parsed in parallel are reported in the same order as when the
+ * descriptors are parsed one after another.
+ * <p>
+ * An instance is used by a single thread at a time.
+ * 
+ * @since 2.0
+ */
+class RecordingErrorHandler implements ErrorHandler
+{
+    private final ErrorHandler _delegate;
+
+    private List _errors;
+
+    private static final class RecordedError
+    {
+        final Log _log;
+
+        final String _message;
+
+        final Location _location;
+
+        final Throwable _cause;
+
+        RecordedError(Log log, String message, Location location, Throwable cause)
+        {
+            _log = log;
+            _message = message;
+            _location = location;
+            _cause = cause;
+        }
+    }
+
+    RecordingErrorHandler(ErrorHandler delegate)
+    {
+        _delegate = delegate;
+    }
+
+    void startRecording()
+    {
+        _errors = new ArrayList();
+    }
+
+    /**
+     * Stops recording, and returns the errors recorded since {@link #startRecording()}.
+     */
+    List stopRecording()
+    {
+        List result = _errors;
+
+        _errors = null;
+
+        return result;
+    }
+
+    public void error(Log log, String message, Location location, Throwable cause)
+    {
+        if (_errors == null)
+            _delegate.error(log, message, location, cause);
+        else
+            _errors.add(new RecordedError(log, message, location, cause));
+    }
+
+    /**
+     * Reports recorded errors, in the order they were recorded.
+     */
+    static void replay(List errors, ErrorHandler handler)
+    {
+        Iterator i = errors.iterator();
+        while (i.hasNext())
+        {
+            RecordedError error = (RecordedError) i.next();
+
+            handler.error(error._log, error._message, error._location, error._cause);
+        }
+    }
+}
@@ -14,6 +14,8 @@
 
 package org.apache.hivemind.impl;
 
+import java.io.File;
+
 import org.apache.hivemind.ClassResolver;
 import org.apache.hivemind.Element;
 import org.apache.hivemind.HiveMind;
@@ -136,6 +138,11 @@ class XmlImplMessages
         return _formatter.format("unable-to-find-module-resource", resource);
     }
 
+    static String moduleReadingInterrupted()
+    {
+        return _formatter.getMessage("module-reading-interrupted");
+    }
+
     static String noSuchSymbol(String name)
     {
         return _formatter.format("no-such-symbol", name);
@@ -151,4 +158,9 @@ class XmlImplMessages
         return _formatter.format("unknown-configurationpoint-in-schema-assignment", configurationId, schemaAssignment.getLocation());
     }
 
+    static String unableToWriteSnapshot(File file, Throwable cause)
+    {
+        return _formatter.format("unable-to-write-snapshot", file, cause);
+    }
+
 }
\ No newline at end of file
@@ -16,9 +16,17 @@ package org.apache.hivemind.impl;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -28,6 +36,7 @@ import org.apache.hivemind.ErrorHandler;
 import org.apache.hivemind.HiveMind;
 import org.apache.hivemind.Resource;
 import org.apache.hivemind.definition.RegistryDefinition;
+import org.apache.hivemind.parse.DescriptorSnapshot;
 import org.apache.hivemind.parse.ModuleDescriptor;
 import org.apache.hivemind.parse.SubModuleDescriptor;
 import org.apache.hivemind.parse.XmlResourceProcessor;
@@ -42,6 +51,12 @@ import org.apache.hivemind.util.URLResource;
  * The module files are parsed by {@link XmlResourceProcessor} and handed over
  * to {@link XmlModuleDescriptorProcessor} for interpretation and addition
  * to the registry definition.
+ * <p>
+ * When more than one {@link #setParserThreads(int) parser thread} is configured,
+ * {@link #readClassPathModules(String)} parses the descriptors (and their sub-modules) in
+ * parallel, each thread using its own parser. The parsed descriptors are still added to the
+ * registry definition, and any errors reported, in the same order as when the descriptors are
+ * parsed one at a time.
  * 
  * @author Achim Huegen
  */
@@ -62,6 +77,12 @@ public class XmlModuleReader
 
     private ClassResolver _classResolver;
 
+    private int _parserThreads = 1;
+
+    private DescriptorSnapshot _snapshot;
+
+    private boolean _streamingParser;
+
     public XmlModuleReader(RegistryDefinition registryDefinition)
     {
         this(registryDefinition, new DefaultClassResolver(), new DefaultErrorHandler());
@@ -77,6 +98,43 @@ public class XmlModuleReader
         _parser = new XmlResourceProcessor(_classResolver, _errorHandler);
     }
     
+    /**
+     * Sets the number of threads used to parse module descriptors found by
+     * {@link #readClassPathModules(String)}. The default, 1, parses the descriptors one at a time
+     * on the calling thread.
+     * 
+     * @since 2.0
+     */
+    public void setParserThreads(int parserThreads)
+    {
+        _parserThreads = parserThreads;
+    }
+
+    /**
+     * If true, module descriptors are read with a StAX parser rather than SAX.
+     * 
+     * @see XmlResourceProcessor#setStreaming(boolean)
+     * @since 2.0
+     */
+    public void setStreamingParser(boolean streamingParser)
+    {
+        _streamingParser = streamingParser;
+        _parser.setStreaming(streamingParser);
+    }
+
+    /**
+     * Sets a snapshot of previously parsed descriptors; descriptors found in the snapshot (and
+     * unchanged since) are replayed from it rather than parsed. Descriptors that are parsed are
+     * recorded into the snapshot.
+     * 
+     * @since 2.0
+     */
+    public void setDescriptorSnapshot(DescriptorSnapshot snapshot)
+    {
+        _snapshot = snapshot;
+        _parser.setSnapshot(snapshot);
+    }
+
     /**
      * Reads a module specified by a {@link Resource}
      * 
@@ -130,12 +188,23 @@ public class XmlModuleReader
         if (!foundResources.hasMoreElements())
             throw new ApplicationRuntimeException(XmlImplMessages.unableToFindModuleResource(new ClasspathResource(_classResolver, moduleFileName)));
 
+        List resources = new ArrayList();
+
         while (foundResources.hasMoreElements())
         {
             URL descriptorURL = (URL) foundResources.nextElement();
 
-            readModule(new URLResource(descriptorURL));
+            resources.add(new URLResource(descriptorURL));
         }
+
+        if (_parserThreads > 1 && resources.size() > 1)
+        {
+            readModulesInParallel(resources);
+            return;
+        }
+
+        for (Iterator i = resources.iterator(); i.hasNext();)
+            readModule((Resource) i.next());
     }
    
     private void processResource(Resource resource)
@@ -182,5 +251,218 @@ public class XmlModuleReader
             processResource(smd.getDescriptor());
         }
     }
-    
+
+    /**
+     * The outcome of parsing a descriptor on a parser thread.
+     */
+    private static final class ParseResult
+    {
+        ModuleDescriptor _descriptor;
+
+        RuntimeException _failure;
+
+        /**
+         * Errors reported while parsing, to be replayed in order.
+         */
+        List _errors;
+
+        /**
+         * For each sub-module of the descriptor, the Future result of parsing it, or null if the
+         * sub-module does not exist.
+         */
+        List _subModules;
+    }
+
+    /**
+     * A parser, and its error handler, confined to one parser thread.
+     */
+    private final class WorkerParser
+    {
+        final RecordingErrorHandler _errors = new RecordingErrorHandler(_errorHandler);
+
+        final XmlResourceProcessor _parser = new XmlResourceProcessor(_classResolver, _errors);
+
+        WorkerParser()
+        {
+            _parser.setSnapshot(_snapshot);
+            _parser.setStreaming(_streamingParser);
+        }
+    }
+
+    private void readModulesInParallel(List resources)
+    {
+        int threadCount = Math.min(_parserThreads, resources.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                threadCount,
+                new ParserThreadFactory());
+
+        try
+        {
+            ThreadLocal workerParsers = new ThreadLocal();
+            List results = new ArrayList();
+
+            for (Iterator i = resources.iterator(); i.hasNext();)
+                results.add(submitParse(executor, workerParsers, (Resource) i.next()));
+
+            for (Iterator i = results.iterator(); i.hasNext();)
+                mergeParseResult((Future) i.next());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private Future submitParse(final ExecutorService executor, final ThreadLocal workerParsers,
+            final Resource resource)
+    {
+        return executor.submit(new Callable()
+        {
+            public Object call()
+            {
+                return parse(executor, workerParsers, resource);
+            }
+        });
+    }
+
+    /**
+     * Invoked on a parser thread. Parses the descriptor and starts parsing its sub-modules.
+     */
+    private ParseResult parse(ExecutorService executor, ThreadLocal workerParsers,
+            Resource resource)
+    {
+        WorkerParser worker = (WorkerParser) workerParsers.get();
+
+        if (worker == null)
+        {
+            worker = new WorkerParser();
+            workerParsers.set(worker);
+        }
+
+        ParseResult result = new ParseResult();
+
+        worker._errors.startRecording();
+
+        try
+        {
+            result._descriptor = worker._parser.processResource(resource);
+        }
+        catch (RuntimeException ex)
+        {
+            result._failure = ex;
+        }
+        finally
+        {
+            result._errors = worker._errors.stopRecording();
+        }
+
+        List subModules = result._descriptor == null ? null : result._descriptor.getSubModules();
+
+        if (subModules != null)
+        {
+            result._subModules = new ArrayList();
+
+            for (Iterator i = subModules.iterator(); i.hasNext();)
+            {
+                SubModuleDescriptor smd = (SubModuleDescriptor) i.next();
+                Resource descriptorResource = smd.getDescriptor();
+
+                result._subModules.add(descriptorResource.getResourceURL() == null ? null
+                        : submitParse(executor, workerParsers, descriptorResource));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Invoked on the calling thread; the counterpart of {@link #processResource(Resource)} for a
+     * descriptor parsed on a parser thread.
+     */
+    private void mergeParseResult(Future future)
+    {
+        ParseResult result = getParseResult(future);
+
+        try
+        {
+            RecordingErrorHandler.replay(result._errors, _errorHandler);
+
+            if (result._failure != null)
+                throw result._failure;
+
+            ModuleDescriptor md = result._descriptor;
+
+            _processor.processModuleDescriptor(md);
+
+            mergeSubModules(md, result._subModules);
+        }
+        catch (RuntimeException ex)
+        {
+            _errorHandler.error(LOG, ex.getMessage(), HiveMind.getLocation(ex), ex);
+        }
+    }
+
+    private void mergeSubModules(ModuleDescriptor moduleDescriptor, List subModuleResults)
+    {
+        if (subModuleResults == null)
+            return;
+
+        Iterator results = subModuleResults.iterator();
+
+        for (Iterator i = moduleDescriptor.getSubModules().iterator(); i.hasNext();)
+        {
+            SubModuleDescriptor smd = (SubModuleDescriptor) i.next();
+            Future future = (Future) results.next();
+
+            if (future == null)
+            {
+                _errorHandler.error(
+                        LOG,
+                        XmlImplMessages.subModuleDoesNotExist(smd.getDescriptor()),
+                        smd.getLocation(),
+                        null);
+                continue;
+            }
+
+            mergeParseResult(future);
+        }
+    }
+
+    private ParseResult getParseResult(Future future)
+    {
+        try
+        {
+            return (ParseResult) future.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new ApplicationRuntimeException(XmlImplMessages.moduleReadingInterrupted(), ex);
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new ApplicationRuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    private static final class ParserThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger _count = new AtomicInteger();
+
+        public Thread newThread(Runnable r)
+        {
+            Thread result = new Thread(r, "HiveMind descriptor parser " + _count.incrementAndGet());
+
+            result.setDaemon(true);
+
+            return result;
+        }
+    }
 }
@@ -15,7 +15,6 @@
 package org.apache.hivemind.parse;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -365,9 +364,10 @@ public abstract class AbstractParser extends DefaultHandler
 
     private Map constructAttributesMap(Attributes attributes)
     {
-        Map result = new HashMap();
         int count = attributes.getLength();
 
+        ArrayAttributeMap result = new ArrayAttributeMap(count);
+
         for (int i = 0; i < count; i++)
         {
             String key = attributes.getLocalName(i);
@@ -377,7 +377,7 @@ public abstract class AbstractParser extends DefaultHandler
 
             String value = attributes.getValue(i);
 
-            result.put(key, value);
+            result.add(key, value);
         }
 
         return result;
@@ -0,0 +1,165 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.parse;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only map of attribute names to values, backed by a single array and searched linearly.
+ * Elements have few attributes, so this is as fast as a hash map while using a fraction of the
+ * memory. Iteration follows the order in which the attributes were added (document order).
+ * 
+ * @since 2.0
+ */
+final class ArrayAttributeMap extends AbstractMap
+{
+    /** Alternating names and values. */
+    private final String[] _entries;
+
+    private int _size;
+
+    ArrayAttributeMap(int capacity)
+    {
+        _entries = new String[2 * capacity];
+    }
+
+    /**
+     * Adds an attribute; the name must not already be present.
+     */
+    void add(String name, String value)
+    {
+        _entries[2 * _size] = name;
+        _entries[2 * _size + 1] = value;
+
+        _size++;
+    }
+
+    public int size()
+    {
+        return _size;
+    }
+
+    private int indexOf(Object name)
+    {
+        for (int i = 0; i < _size; i++)
+        {
+            if (_entries[2 * i].equals(name))
+                return i;
+        }
+
+        return -1;
+    }
+
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    public Object get(Object key)
+    {
+        int index = indexOf(key);
+
+        return index < 0 ? null : _entries[2 * index + 1];
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < 2 * _size; i++)
+            _entries[i] = null;
+
+        _size = 0;
+    }
+
+    public Set entrySet()
+    {
+        return new AbstractSet()
+        {
+            public int size()
+            {
+                return _size;
+            }
+
+            public Iterator iterator()
+            {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator
+    {
+        private int _next;
+
+        public boolean hasNext()
+        {
+            return _next < _size;
+        }
+
+        public Object next()
+        {
+            if (_next >= _size)
+                throw new NoSuchElementException();
+
+            final int index = _next++;
+
+            return new Map.Entry()
+            {
+                public Object getKey()
+                {
+                    return _entries[2 * index];
+                }
+
+                public Object getValue()
+                {
+                    return _entries[2 * index + 1];
+                }
+
+                public Object setValue(Object value)
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+                public boolean equals(Object o)
+                {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+
+                    Map.Entry e = (Map.Entry) o;
+
+                    return getKey().equals(e.getKey())
+                            && (getValue() == null ? e.getValue() == null : getValue().equals(
+                                    e.getValue()));
+                }
+
+                public int hashCode()
+                {
+                    return getKey().hashCode()
+                            ^ (getValue() == null ? 0 : getValue().hashCode());
+                }
+            };
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
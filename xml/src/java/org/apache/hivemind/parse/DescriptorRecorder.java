@@ -0,0 +1,180 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.parse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.hivemind.HiveMind;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Sits between the SAX parser and a {@link DescriptorParser}, passing each parse event through
+ * while recording it in the compact form replayed by {@link DescriptorSnapshot}. Element names,
+ * attribute names and values and character data are interned into a string table; the events
+ * refer to strings by index.
+ * 
+ * @since 2.0
+ */
+class DescriptorRecorder extends DefaultHandler
+{
+    static final int START_ELEMENT = 1;
+
+    static final int CHARACTERS = 2;
+
+    static final int END_ELEMENT = 3;
+
+    private final AbstractParser _delegate;
+
+    private final DescriptorSnapshot.StringTable _strings = new DescriptorSnapshot.StringTable();
+
+    private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream _events = new DataOutputStream(_bytes);
+
+    /**
+     * Character data is accumulated, since the parser may deliver a single run of characters in
+     * several pieces.
+     */
+    private final StringBuffer _characters = new StringBuffer();
+
+    private Locator _locator;
+
+    DescriptorRecorder(AbstractParser delegate)
+    {
+        _delegate = delegate;
+    }
+
+    public void setDocumentLocator(Locator locator)
+    {
+        _locator = locator;
+
+        _delegate.setDocumentLocator(locator);
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes attributes)
+            throws SAXException
+    {
+        flushCharacters();
+
+        String elementName = qName != null ? qName : localName;
+        int count = attributes.getLength();
+
+        writeInt(START_ELEMENT);
+        writeInt(_strings.intern(elementName));
+        writeLocation();
+        writeInt(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            String key = attributes.getLocalName(i);
+
+            if (HiveMind.isBlank(key))
+                key = attributes.getQName(i);
+
+            writeInt(_strings.intern(key));
+            writeInt(_strings.intern(attributes.getValue(i)));
+        }
+
+        _delegate.startElement(uri, localName, qName, attributes);
+    }
+
+    public void characters(char[] ch, int start, int length) throws SAXException
+    {
+        _characters.append(ch, start, length);
+
+        _delegate.characters(ch, start, length);
+    }
+
+    public void endElement(String uri, String localName, String qName) throws SAXException
+    {
+        flushCharacters();
+
+        writeInt(END_ELEMENT);
+        writeInt(_strings.intern(qName != null ? qName : localName));
+        writeLocation();
+
+        _delegate.endElement(uri, localName, qName);
+    }
+
+    public void error(SAXParseException ex) throws SAXException
+    {
+        _delegate.error(ex);
+    }
+
+    public void fatalError(SAXParseException ex) throws SAXException
+    {
+        _delegate.fatalError(ex);
+    }
+
+    public void warning(SAXParseException ex) throws SAXException
+    {
+        _delegate.warning(ex);
+    }
+
+    /**
+     * Returns the string table built up while recording; events refer to strings by their index
+     * in the table.
+     */
+    String[] getStrings()
+    {
+        return _strings.toArray();
+    }
+
+    /**
+     * Returns the recorded events.
+     */
+    byte[] getEvents()
+    {
+        return _bytes.toByteArray();
+    }
+
+    private void flushCharacters()
+    {
+        if (_characters.length() == 0)
+            return;
+
+        writeInt(CHARACTERS);
+        writeInt(_strings.intern(_characters.toString()));
+
+        _characters.setLength(0);
+    }
+
+    private void writeLocation()
+    {
+        writeInt(_locator == null ? -1 : _locator.getLineNumber());
+        writeInt(_locator == null ? -1 : _locator.getColumnNumber());
+    }
+
+    private void writeInt(int value)
+    {
+        try
+        {
+            _events.writeInt(value);
+        }
+        catch (IOException ex)
+        {
+            // Not possible when writing to a ByteArrayOutputStream.
+
+            throw new IllegalStateException(ex.getMessage());
+        }
+    }
+}
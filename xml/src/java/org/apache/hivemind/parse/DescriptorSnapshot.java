@@ -0,0 +1,596 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.parse;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hivemind.util.IOUtils;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * A precompiled form of some number of module deployment descriptors: for each descriptor, the
+ * sequence of parse events (elements, attributes, character data and their locations) produced
+ * by the SAX parser. An {@link XmlResourceProcessor} with a snapshot replays the events straight
+ * into the {@link DescriptorParser}, skipping XML parsing; the resulting
+ * {@link ModuleDescriptor}, including its locations and any errors reported along the way, is
+ * the same as from parsing the descriptor.
+ * <p>
+ * Only the XML parsing is skipped. The module definitions are still built from the replayed
+ * descriptors, and resolved and checked as the registry is constructed, as are modules from
+ * other sources (such as annotated modules).
+ * <p>
+ * Each descriptor is stamped with its size and CRC-32 checksum; for a descriptor inside a JAR
+ * these come from the JAR's directory, so checking the stamp does not read the descriptor. A
+ * descriptor whose stamp has changed (or that can't be stamped) is parsed as normal, and its
+ * events are recorded in the snapshot in place of the stale ones. {@link #isModified()} then
+ * indicates that the snapshot should be {@link #write(File) written} back.
+ * <p>
+ * The file format is a header, a table of all strings used by any descriptor (each stored once),
+ * and then one block of events per descriptor, keyed on the descriptor's URL. Events refer to
+ * strings by their index into the table. The file is memory-mapped when {@link #read(File) read}.
+ * Reading decodes the string table and checks every descriptor's events, so that a damaged file is
+ * rejected as a whole rather than failing part way through a replay; the events are only turned
+ * into parse events when a descriptor is replayed. The events are copied out of the mapping as
+ * they are checked, so the snapshot does not keep the file mapped (a mapped file can't be
+ * replaced on some platforms).
+ * <p>
+ * Instances are thread safe.
+ * 
+ * @since 2.0
+ * @see org.apache.hivemind.ant.ConstructDescriptorSnapshot
+ */
+public class DescriptorSnapshot
+{
+    private static final Log LOG = LogFactory.getLog(DescriptorSnapshot.class);
+
+    private static final int MAGIC = 0x484d5353;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Stamp for a descriptor whose size and checksum can't be determined; such descriptors are
+     * always parsed.
+     */
+    static final long UNKNOWN_STAMP = -1;
+
+    /**
+     * All entries known to the snapshot, keyed on descriptor URL.
+     */
+    private final Map _entries = new ConcurrentHashMap();
+
+    /**
+     * The entries replayed or recorded since the snapshot was read; only these are written.
+     */
+    private final Map _used = new ConcurrentHashMap();
+
+    private volatile boolean _recorded;
+
+    private static final class Entry
+    {
+        final long _stamp;
+
+        final String[] _strings;
+
+        final ByteBuffer _events;
+
+        Entry(long stamp, String[] strings, ByteBuffer events)
+        {
+            _stamp = stamp;
+            _strings = strings;
+            _events = events;
+        }
+    }
+
+    /**
+     * Reports the line and column recorded for each event as it is replayed.
+     */
+    private static final class ReplayLocator implements Locator
+    {
+        int _line;
+
+        int _column;
+
+        public int getColumnNumber()
+        {
+            return _column;
+        }
+
+        public int getLineNumber()
+        {
+            return _line;
+        }
+
+        public String getPublicId()
+        {
+            return null;
+        }
+
+        public String getSystemId()
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a snapshot previously {@link #write(File) written} to the file. If the file does not
+     * exist, or can't be read, an empty snapshot is returned (in which case all descriptors will
+     * be parsed, and recorded).
+     */
+    public static DescriptorSnapshot read(File file)
+    {
+        DescriptorSnapshot result = new DescriptorSnapshot();
+
+        if (!file.exists())
+            return result;
+
+        try
+        {
+            FileInputStream stream = new FileInputStream(file);
+
+            try
+            {
+                FileChannel channel = stream.getChannel();
+
+                result.load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+        catch (Exception ex)
+        {
+            LOG.warn(ParseMessages.unableToReadSnapshot(file, ex), ex);
+
+            return new DescriptorSnapshot();
+        }
+
+        return result;
+    }
+
+    private void load(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            throw new IOException(ParseMessages.notASnapshot());
+
+        String[] strings = new String[buffer.getInt()];
+
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = new String(getBytes(buffer, buffer.getInt()), "UTF-8");
+
+        int entryCount = buffer.getInt();
+
+        for (int i = 0; i < entryCount; i++)
+        {
+            String url = strings[buffer.getInt()];
+            long stamp = buffer.getLong();
+            int length = buffer.getInt();
+
+            // Copy the events, so that no reference to the mapped file remains once it is loaded.
+
+            if (length < 0 || length > buffer.remaining())
+                throw new IOException(ParseMessages.notASnapshot());
+
+            ByteBuffer events = ByteBuffer.wrap(getBytes(buffer, length));
+
+            // Check the events now, so that a damaged file can't cause a failure mid-replay.
+
+            transcode(events.duplicate(), strings, null, null);
+
+            _entries.put(url, new Entry(stamp, strings, events));
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer, int length)
+    {
+        byte[] result = new byte[length];
+
+        buffer.get(result);
+
+        return result;
+    }
+
+    /**
+     * Writes the snapshot to the file, replacing any previous contents. Only descriptors replayed
+     * or parsed since the snapshot was read are included.
+     */
+    public void write(File file) throws IOException
+    {
+        StringTable strings = new StringTable();
+        List urls = new ArrayList();
+        List entries = new ArrayList();
+        List events = new ArrayList();
+
+        for (Iterator i = _used.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry e = (Map.Entry) i.next();
+            Entry entry = (Entry) e.getValue();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            transcode(entry._events.duplicate(), entry._strings, strings, new DataOutputStream(
+                    bytes));
+
+            urls.add(new Integer(strings.intern((String) e.getKey())));
+            entries.add(entry);
+            events.add(bytes);
+        }
+
+        // A unique file in the same directory, so that concurrent writers don't collide and the
+        // rename stays on one file system.
+
+        File temp = File.createTempFile("snapshot", ".tmp", file.getAbsoluteFile().getParentFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                temp)));
+
+        boolean success = false;
+
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            String[] table = strings.toArray();
+
+            out.writeInt(table.length);
+
+            for (int i = 0; i < table.length; i++)
+            {
+                byte[] bytes = toUTF8(table[i]);
+
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(entries.size());
+
+            for (int i = 0; i < entries.size(); i++)
+            {
+                ByteArrayOutputStream bytes = (ByteArrayOutputStream) events.get(i);
+
+                out.writeInt(((Integer) urls.get(i)).intValue());
+                out.writeLong(((Entry) entries.get(i))._stamp);
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+            }
+
+            out.close();
+
+            // Replace the old snapshot only once the new one is complete.
+
+            if (file.exists() && !file.delete())
+                throw new IOException(ParseMessages.unableToReplaceSnapshot(file));
+
+            if (!temp.renameTo(file))
+                throw new IOException(ParseMessages.unableToReplaceSnapshot(file));
+
+            success = true;
+        }
+        finally
+        {
+            if (!success)
+            {
+                out.close();
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the snapshot is out of date with respect to the descriptors processed with
+     * it: some descriptor had to be parsed (because it was new or had changed), or some
+     * descriptor in the snapshot was never used.
+     */
+    public boolean isModified()
+    {
+        return _recorded || _used.size() != _entries.size();
+    }
+
+    /**
+     * Computes the stamp for the descriptor at the URL: its size and CRC-32 checksum, or
+     * {@link #UNKNOWN_STAMP} for a descriptor that is neither a file nor inside a JAR.
+     */
+    static long computeStamp(URL url)
+    {
+        try
+        {
+            String protocol = url.getProtocol();
+
+            if (protocol.equals("jar"))
+                return computeJarEntryStamp((JarURLConnection) url.openConnection());
+
+            if (protocol.equals("file"))
+                return computeFileStamp(url);
+        }
+        catch (IOException ex)
+        {
+            // Fall through; the descriptor will be parsed, and reading it will fail properly.
+        }
+
+        return UNKNOWN_STAMP;
+    }
+
+    private static long computeJarEntryStamp(JarURLConnection connection) throws IOException
+    {
+        connection.setUseCaches(false);
+
+        JarFile jarFile = connection.getJarFile();
+
+        try
+        {
+            JarEntry entry = connection.getJarEntry();
+
+            if (entry == null || entry.getCrc() == -1 || entry.getSize() == -1)
+                return UNKNOWN_STAMP;
+
+            return toStamp(entry.getSize(), entry.getCrc());
+        }
+        finally
+        {
+            jarFile.close();
+        }
+    }
+
+    private static long computeFileStamp(URL url) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[4096];
+        long size = 0;
+
+        InputStream stream = IOUtils.openStreamWithoutCaching(url);
+
+        try
+        {
+            while (true)
+            {
+                int length = stream.read(buffer);
+
+                if (length < 0)
+                    break;
+
+                crc.update(buffer, 0, length);
+                size += length;
+            }
+        }
+        finally
+        {
+            stream.close();
+        }
+
+        return toStamp(size, crc.getValue());
+    }
+
+    private static long toStamp(long size, long crc)
+    {
+        return (size << 32) | (crc & 0xffffffffL);
+    }
+
+    /**
+     * Replays the recorded events for the descriptor into the parser, if the snapshot contains
+     * events for the descriptor matching its stamp.
+     * 
+     * @return true if the events were replayed, false if the descriptor must be parsed
+     */
+    boolean replay(URL url, long stamp, AbstractParser parser) throws SAXException
+    {
+        if (stamp == UNKNOWN_STAMP)
+            return false;
+
+        String key = url.toExternalForm();
+        Entry entry = (Entry) _entries.get(key);
+
+        if (entry == null || entry._stamp != stamp)
+            return false;
+
+        _used.put(key, entry);
+
+        replay(entry, parser);
+
+        return true;
+    }
+
+    /**
+     * Stores events recorded while parsing the descriptor, replacing any stale events for it.
+     */
+    void store(URL url, long stamp, DescriptorRecorder recorder)
+    {
+        if (stamp == UNKNOWN_STAMP)
+            return;
+
+        String key = url.toExternalForm();
+        Entry entry = new Entry(stamp, recorder.getStrings(), ByteBuffer.wrap(recorder
+                .getEvents()));
+
+        _entries.put(key, entry);
+        _used.put(key, entry);
+
+        _recorded = true;
+    }
+
+    private void replay(Entry entry, AbstractParser parser) throws SAXException
+    {
+        ByteBuffer events = entry._events.duplicate();
+        String[] strings = entry._strings;
+        ReplayLocator locator = new ReplayLocator();
+        AttributesImpl attributes = new AttributesImpl();
+
+        parser.setDocumentLocator(locator);
+
+        while (events.hasRemaining())
+        {
+            int type = events.getInt();
+            String name = strings[events.getInt()];
+
+            switch (type)
+            {
+                case DescriptorRecorder.START_ELEMENT:
+
+                    locator._line = events.getInt();
+                    locator._column = events.getInt();
+
+                    int count = events.getInt();
+
+                    attributes.clear();
+
+                    for (int i = 0; i < count; i++)
+                    {
+                        String key = strings[events.getInt()];
+
+                        attributes.addAttribute("", key, key, "CDATA", strings[events.getInt()]);
+                    }
+
+                    parser.startElement("", name, name, attributes);
+                    break;
+
+                case DescriptorRecorder.CHARACTERS:
+
+                    char[] characters = name.toCharArray();
+
+                    parser.characters(characters, 0, characters.length);
+                    break;
+
+                default:
+
+                    locator._line = events.getInt();
+                    locator._column = events.getInt();
+
+                    parser.endElement("", name, name);
+            }
+        }
+    }
+
+    /**
+     * Copies events, converting string indexes from one string table to another. Also used, with
+     * no target, to check that events read from a file are well formed.
+     */
+    private static void transcode(ByteBuffer events, String[] strings, StringTable target,
+            DataOutputStream out) throws IOException
+    {
+        while (events.hasRemaining())
+        {
+            int type = events.getInt();
+
+            if (type != DescriptorRecorder.START_ELEMENT && type != DescriptorRecorder.CHARACTERS
+                    && type != DescriptorRecorder.END_ELEMENT)
+                throw new IOException(ParseMessages.notASnapshot());
+
+            copyInt(out, type);
+            copyString(events, strings, target, out);
+
+            if (type == DescriptorRecorder.CHARACTERS)
+                continue;
+
+            copyInt(out, events.getInt());
+            copyInt(out, events.getInt());
+
+            if (type == DescriptorRecorder.END_ELEMENT)
+                continue;
+
+            int count = events.getInt();
+
+            copyInt(out, count);
+
+            for (int i = 0; i < 2 * count; i++)
+                copyString(events, strings, target, out);
+        }
+    }
+
+    private static void copyString(ByteBuffer events, String[] strings, StringTable target,
+            DataOutputStream out) throws IOException
+    {
+        int index = events.getInt();
+
+        if (index < 0 || index >= strings.length)
+            throw new IOException(ParseMessages.notASnapshot());
+
+        if (target != null)
+            out.writeInt(target.intern(strings[index]));
+    }
+
+    private static void copyInt(DataOutputStream out, int value) throws IOException
+    {
+        if (out != null)
+            out.writeInt(value);
+    }
+
+    private static byte[] toUTF8(String value)
+    {
+        try
+        {
+            return value.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException ex)
+        {
+            // UTF-8 is always supported.
+
+            throw new IllegalStateException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Assigns each distinct string an index, in order of first use.
+     */
+    static final class StringTable
+    {
+        private final List _strings = new ArrayList();
+
+        private final Map _index = new HashMap();
+
+        int intern(String value)
+        {
+            Integer index = (Integer) _index.get(value);
+
+            if (index == null)
+            {
+                index = new Integer(_strings.size());
+
+                _strings.add(value);
+                _index.put(value, index);
+            }
+
+            return index.intValue();
+        }
+
+        String[] toArray()
+        {
+            return (String[]) _strings.toArray(new String[_strings.size()]);
+        }
+    }
+}
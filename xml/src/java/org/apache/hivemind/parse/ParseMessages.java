@@ -14,6 +14,7 @@
 
 package org.apache.hivemind.parse;
 
+import java.io.File;
 import java.util.Collection;
 
 import org.apache.hivemind.Location;
@@ -132,4 +133,19 @@ class ParseMessages
     {
         return _formatter.format("invalid-element-key-attribute", schemaId, cause);
     }
+
+    static String unableToReadSnapshot(File file, Throwable cause)
+    {
+        return _formatter.format("unable-to-read-snapshot", file, cause);
+    }
+
+    static String notASnapshot()
+    {
+        return _formatter.getMessage("not-a-snapshot");
+    }
+
+    static String unableToReplaceSnapshot(File file)
+    {
+        return _formatter.format("unable-to-replace-snapshot", file);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.parse;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads a module descriptor with a StAX (pull) parser, driving an {@link AbstractParser} directly:
+ * element and attribute names are interned, attributes are collected into an
+ * {@link ArrayAttributeMap}, and character data is passed on straight from the parser's buffer.
+ * This avoids the SAX <code>Attributes</code> and intermediate strings created for each element.
+ * 
+ * @since 2.0
+ */
+final class StreamingDescriptorReader
+{
+    private final XMLInputFactory _factory;
+
+    StreamingDescriptorReader()
+    {
+        _factory = XMLInputFactory.newInstance();
+
+        // Like the default SAX parser, treat prefixed names as simple names.
+
+        _factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        _factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    }
+
+    /**
+     * Reads the descriptor from the stream, which is not closed.
+     */
+    void read(InputStream stream, AbstractParser parser) throws XMLStreamException,
+            SAXException
+    {
+        XMLStreamReader reader = _factory.createXMLStreamReader(stream);
+
+        try
+        {
+            parser.setDocumentLocator(new StreamLocator(reader));
+
+            while (reader.hasNext())
+            {
+                switch (reader.next())
+                {
+                    case XMLStreamConstants.START_ELEMENT:
+
+                        parser.begin(getName(reader), getAttributes(reader));
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+
+                        parser.characters(
+                                reader.getTextCharacters(),
+                                reader.getTextStart(),
+                                reader.getTextLength());
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+
+                        parser.end(getName(reader));
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static String getName(XMLStreamReader reader)
+    {
+        return qualify(reader.getPrefix(), reader.getLocalName());
+    }
+
+    private static ArrayAttributeMap getAttributes(XMLStreamReader reader)
+    {
+        int count = reader.getAttributeCount();
+
+        ArrayAttributeMap result = new ArrayAttributeMap(count);
+
+        for (int i = 0; i < count; i++)
+            result.add(
+                    qualify(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                    reader.getAttributeValue(i));
+
+        return result;
+    }
+
+    private static String qualify(String prefix, String localName)
+    {
+        if (prefix == null || prefix.length() == 0)
+            return localName.intern();
+
+        return (prefix + ":" + localName).intern();
+    }
+
+    /**
+     * Reports the position of the stream reader.
+     */
+    private static final class StreamLocator implements Locator
+    {
+        private final XMLStreamReader _reader;
+
+        StreamLocator(XMLStreamReader reader)
+        {
+            _reader = reader;
+        }
+
+        public int getColumnNumber()
+        {
+            return _reader.getLocation().getColumnNumber();
+        }
+
+        public int getLineNumber()
+        {
+            return _reader.getLocation().getLineNumber();
+        }
+
+        public String getPublicId()
+        {
+            return _reader.getLocation().getPublicId();
+        }
+
+        public String getSystemId()
+        {
+            return _reader.getLocation().getSystemId();
+        }
+    }
+}
@@ -15,12 +15,14 @@
 package org.apache.hivemind.parse;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 
 import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,6 +38,8 @@ import org.xml.sax.SAXException;
  * The XmlResourceProcessor processes XML {@link Resource resources} using the
  * {@link DescriptorParser} which is used as a SAX ContentHandler. The result of
  * {@link #processResource(Resource) processing a resource} is a {@link ModuleDescriptor}.
+ * Optionally, the resources may be {@link #setStreaming(boolean) read with a StAX parser}
+ * instead.
  * 
  * @see org.apache.hivemind.parse.DescriptorParser
  * @since 1.1
@@ -53,12 +57,42 @@ public class XmlResourceProcessor
 
     private SAXParser _saxParser;
 
+    private DescriptorSnapshot _snapshot;
+
+    private boolean _streaming;
+
+    private StreamingDescriptorReader _streamingReader;
+
     public XmlResourceProcessor(ClassResolver resolver, ErrorHandler errorHandler)
     {
         _resolver = resolver;
         _errorHandler = errorHandler;
     }
 
+    /**
+     * Sets the snapshot used to avoid parsing descriptors. Descriptors are replayed from the
+     * snapshot when up to date, and otherwise parsed and recorded into it.
+     * 
+     * @since 2.0
+     */
+    public void setSnapshot(DescriptorSnapshot snapshot)
+    {
+        _snapshot = snapshot;
+    }
+
+    /**
+     * If true, descriptors are read with a StAX parser, which drives the {@link DescriptorParser}
+     * directly and allocates less per element than SAX. Descriptors recorded into a
+     * {@link #setSnapshot(DescriptorSnapshot) snapshot} are still parsed with SAX. Defaults to
+     * false.
+     * 
+     * @since 2.0
+     */
+    public void setStreaming(boolean streaming)
+    {
+        _streaming = streaming;
+    }
+
     /**
      * Initializes the {@link DescriptorParser parser},
      * {@link #processResource(Resource) processes} the Resource, resets the parser, and finally
@@ -79,7 +113,14 @@ public class XmlResourceProcessor
             if (LOG.isDebugEnabled())
                 LOG.debug("Parsing " + resource);
 
-            ModuleDescriptor descriptor = parseResource(resource, getSAXParser(), _contentHandler);
+            ModuleDescriptor descriptor;
+
+            if (_snapshot != null)
+                descriptor = processResource(resource, _snapshot);
+            else if (_streaming)
+                descriptor = readResource(resource);
+            else
+                descriptor = parseResource(resource, getSAXParser(), _contentHandler);
 
             if (LOG.isDebugEnabled())
                 LOG.debug("Result: " + descriptor);
@@ -125,13 +166,65 @@ public class XmlResourceProcessor
         return contentHandler.getModuleDescriptor();
     }
 
+    private ModuleDescriptor processResource(Resource resource, DescriptorSnapshot snapshot)
+            throws SAXException, IOException, ParserConfigurationException
+    {
+        URL url = resource.getResourceURL();
+        long stamp = url == null ? DescriptorSnapshot.UNKNOWN_STAMP : DescriptorSnapshot
+                .computeStamp(url);
+
+        if (snapshot.replay(url, stamp, _contentHandler))
+            return _contentHandler.getModuleDescriptor();
+
+        DescriptorRecorder recorder = new DescriptorRecorder(_contentHandler);
+        InputSource source = getInputSource(resource);
+
+        try
+        {
+            getSAXParser().parse(source, recorder);
+        }
+        finally
+        {
+            IOUtils.close(source.getByteStream());
+        }
+
+        snapshot.store(url, stamp, recorder);
+
+        return _contentHandler.getModuleDescriptor();
+    }
+
+    private ModuleDescriptor readResource(Resource resource) throws XMLStreamException,
+            SAXException
+    {
+        if (_streamingReader == null)
+            _streamingReader = new StreamingDescriptorReader();
+
+        InputStream stream = openStream(resource);
+
+        try
+        {
+            _streamingReader.read(stream, _contentHandler);
+        }
+        finally
+        {
+            IOUtils.close(stream);
+        }
+
+        return _contentHandler.getModuleDescriptor();
+    }
+
     private InputSource getInputSource(Resource resource)
+    {
+        return new InputSource(openStream(resource));
+    }
+
+    private InputStream openStream(Resource resource)
     {
         try
         {
             URL url = resource.getResourceURL();
 
-            return new InputSource(IOUtils.openStreamWithoutCaching(url));
+            return IOUtils.openStreamWithoutCaching(url);
         }
         catch (Exception e)
         {
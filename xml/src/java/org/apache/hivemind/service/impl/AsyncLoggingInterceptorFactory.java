@@ -0,0 +1,166 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.FusibleInterceptorFactory;
+import org.apache.hivemind.InterceptorStack;
+import org.apache.hivemind.ServiceInterceptorFactory;
+import org.apache.hivemind.events.RegistryShutdownListener;
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
+import org.apache.hivemind.service.MethodContribution;
+
+/**
+ * {@link ServiceInterceptorFactory} for logging interceptors that write their events through an
+ * {@link AsyncLogWriter}, shared by all interceptors created by the factory. The writer is
+ * started with the first interceptor, and stopped (after writing outstanding events) when the
+ * registry shuts down.
+ * 
+ * @since 2.0
+ */
+public class AsyncLoggingInterceptorFactory implements FusibleInterceptorFactory,
+        RegistryShutdownListener
+{
+    private ClassFactory _factory;
+
+    private String _serviceId;
+
+    private int _capacity = 8192;
+
+    private String _overflow = AsyncLogWriter.OVERFLOW_DROP;
+
+    private int _sampleRate = 10;
+
+    private AsyncLogWriter _writer;
+
+    /**
+     * Untyped version of {@link #createInterceptor(InterceptorStack, Module, List)}.
+     */
+    public void createInterceptor(InterceptorStack stack, Module contributingModule,
+            Object parameters)
+    {
+        createInterceptor(stack, contributingModule, (List) parameters);
+    }
+
+    /**
+     * Creates the interceptor.
+     * 
+     * @param parameters
+     *            list with instances of {@link MethodContribution}. If empty all methods are
+     *            intercepted.
+     */
+    public void createInterceptor(InterceptorStack stack, Module contributingModule,
+            List parameters)
+    {
+        LoggingInterceptorClassFactory classFactory = new LoggingInterceptorClassFactory(
+                _factory, true);
+        Class interceptorClass = classFactory.constructInterceptorClass(stack, parameters);
+
+        try
+        {
+            Constructor c = interceptorClass.getConstructors()[0];
+
+            Object interceptor = c.newInstance(new Object[]
+            { stack.getServiceLog(), getWriter(), stack.peek() });
+
+            stack.push(interceptor);
+        }
+        catch (Exception ex)
+        {
+            throw new ApplicationRuntimeException(ServiceMessages.errorInstantiatingInterceptor(
+                    _serviceId,
+                    stack,
+                    interceptorClass,
+                    ex), ex);
+        }
+    }
+
+    /**
+     * Returns the writer shared by the interceptors, starting it if necessary.
+     */
+    public synchronized AsyncLogWriter getWriter()
+    {
+        if (_writer == null)
+        {
+            _writer = new AsyncLogWriter(_capacity, _overflow);
+            _writer.setSampleRate(_sampleRate);
+        }
+
+        return _writer;
+    }
+
+    public synchronized void registryDidShutdown()
+    {
+        if (_writer != null)
+            _writer.shutdown();
+    }
+
+    /**
+     * Creates the interceptor's fragment, for a fused interceptor.
+     * 
+     * @since 2.0
+     */
+    public InterceptorFragment createInterceptorFragment(InterceptorStack stack,
+            Module contributingModule, Object parameters)
+    {
+        return new LoggingInterceptorClassFactory(_factory, true).createInterceptorFragment(
+                stack,
+                (List) parameters,
+                getWriter());
+    }
+
+    public void setFactory(ClassFactory factory)
+    {
+        _factory = factory;
+    }
+
+    public void setServiceId(String string)
+    {
+        _serviceId = string;
+    }
+
+    /**
+     * The number of events that may be recorded but not yet written; defaults to 8192.
+     */
+    public void setCapacity(int capacity)
+    {
+        _capacity = capacity;
+    }
+
+    /**
+     * What to do when events are recorded faster than they are written:
+     * {@link AsyncLogWriter#OVERFLOW_DROP drop} (the default) or
+     * {@link AsyncLogWriter#OVERFLOW_SAMPLE sample}.
+     */
+    public void setOverflow(String overflow)
+    {
+        _overflow = overflow;
+    }
+
+    /**
+     * With the sample overflow policy, one event in this many is recorded once the writer falls
+     * behind; defaults to 10.
+     */
+    public void setSampleRate(int sampleRate)
+    {
+        _sampleRate = sampleRate;
+    }
+}
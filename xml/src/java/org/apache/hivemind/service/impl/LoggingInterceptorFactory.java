@@ -18,10 +18,12 @@ import java.lang.reflect.Constructor;
 import java.util.List;
 
 import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.FusibleInterceptorFactory;
 import org.apache.hivemind.InterceptorStack;
 import org.apache.hivemind.ServiceInterceptorFactory;
 import org.apache.hivemind.internal.Module;
 import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
 import org.apache.hivemind.service.MethodContribution;
 
 /**
@@ -30,7 +32,7 @@ import org.apache.hivemind.service.MethodContribution;
  *
  * @author Achim Huegen
  */
-public class LoggingInterceptorFactory implements ServiceInterceptorFactory
+public class LoggingInterceptorFactory implements FusibleInterceptorFactory
 {
     private ClassFactory _factory;
     private String _serviceId;
@@ -90,6 +92,20 @@ public class LoggingInterceptorFactory implements ServiceInterceptorFactory
         return c.newInstance(new Object[] { stack.getServiceLog(), stackTop });
     }
 
+    /**
+     * Creates the interceptor's fragment, for a fused interceptor.
+     * 
+     * @since 2.0
+     */
+    public InterceptorFragment createInterceptorFragment(InterceptorStack stack,
+            Module contributingModule, Object parameters)
+    {
+        return new LoggingInterceptorClassFactory(_factory).createInterceptorFragment(
+                stack,
+                (List) parameters,
+                null);
+    }
+
     public void setFactory(ClassFactory factory)
     {
         _factory = factory;
@@ -0,0 +1,104 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+
+import org.apache.hivemind.ApplicationRuntimeException;
+import org.apache.hivemind.FusibleInterceptorFactory;
+import org.apache.hivemind.InterceptorStack;
+import org.apache.hivemind.ServiceInterceptorFactory;
+import org.apache.hivemind.internal.Module;
+import org.apache.hivemind.service.ClassFactory;
+import org.apache.hivemind.service.InterceptorFragment;
+import org.apache.hivemind.service.MethodSampleRate;
+import org.apache.hivemind.service.TracingSettings;
+
+/**
+ * {@link ServiceInterceptorFactory} for tracing interceptors that base on
+ * {@link TracingInterceptorClassFactory}.
+ * 
+ * @since 2.0
+ */
+public class TracingInterceptorFactory implements FusibleInterceptorFactory
+{
+    private ClassFactory _factory;
+
+    private String _serviceId;
+
+    /**
+     * Untyped version of {@link #createInterceptor(InterceptorStack, Module, List)}.
+     */
+    public void createInterceptor(InterceptorStack stack, Module contributingModule,
+            Object parameters)
+    {
+        createInterceptor(stack, contributingModule, (List) parameters);
+    }
+
+    /**
+     * Creates the interceptor.
+     * 
+     * @param parameters
+     *            list with instances of {@link MethodSampleRate} and (optionally)
+     *            {@link TracingSettings}
+     */
+    public void createInterceptor(InterceptorStack stack, Module contributingModule,
+            List parameters)
+    {
+        TracingInterceptorClassFactory classFactory = new TracingInterceptorClassFactory(_factory);
+        Class interceptorClass = classFactory.constructInterceptorClass(stack, parameters);
+
+        try
+        {
+            Constructor c = interceptorClass.getConstructors()[0];
+
+            stack.push(c.newInstance(new Object[]
+            { stack.getServiceLog(), stack.peek() }));
+        }
+        catch (Exception ex)
+        {
+            throw new ApplicationRuntimeException(ServiceMessages.errorInstantiatingInterceptor(
+                    _serviceId,
+                    stack,
+                    interceptorClass,
+                    ex), ex);
+        }
+    }
+
+    /**
+     * Creates the interceptor's fragment, for a fused interceptor.
+     * 
+     * @since 2.0
+     */
+    public InterceptorFragment createInterceptorFragment(InterceptorStack stack,
+            Module contributingModule, Object parameters)
+    {
+        return new TracingInterceptorClassFactory(_factory).createInterceptorFragment(
+                stack,
+                (List) parameters);
+    }
+
+    public void setFactory(ClassFactory factory)
+    {
+        _factory = factory;
+    }
+
+    public void setServiceId(String string)
+    {
+        _serviceId = string;
+    }
+}
@@ -0,0 +1,106 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package hivemind.test.ant;
+
+import hivemind.test.FrameworkTestCase;
+
+import java.io.File;
+import java.net.URL;
+
+import org.apache.hivemind.ant.ConstructDescriptorSnapshot;
+import org.apache.hivemind.definition.RegistryDefinition;
+import org.apache.hivemind.definition.impl.RegistryDefinitionImpl;
+import org.apache.hivemind.impl.HivemoduleProvider;
+import org.apache.hivemind.impl.XmlModuleReader;
+import org.apache.hivemind.parse.DescriptorSnapshot;
+import org.apache.hivemind.util.URLResource;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Target;
+import org.apache.tools.ant.types.Path;
+
+/**
+ * Tests for the {@link org.apache.hivemind.ant.ConstructDescriptorSnapshot} Ant task.
+ * 
+ * @since 2.0
+ */
+public class TestConstructDescriptorSnapshot extends FrameworkTestCase
+{
+    protected Project _project = new Project();
+
+    protected ConstructDescriptorSnapshot create()
+    {
+        Target t = new Target();
+
+        ConstructDescriptorSnapshot result = new ConstructDescriptorSnapshot();
+        result.setProject(_project);
+        result.setOwningTarget(t);
+        result.setTaskName("constructDescriptorSnapshot");
+
+        return result;
+    }
+
+    public void testNoFile() throws Exception
+    {
+        ConstructDescriptorSnapshot cds = create();
+
+        try
+        {
+            cds.execute();
+            unreachable();
+        }
+        catch (BuildException ex)
+        {
+            assertExceptionSubstring(ex, "You must specify an output file");
+        }
+    }
+
+    public void testJars() throws Exception
+    {
+        ConstructDescriptorSnapshot cds = create();
+
+        Path p = cds.createModules();
+
+        File master = new File(getFrameworkPath("/test-data/TestConstructRegistry/master.xml"));
+        File jar = new File(getFrameworkPath("/test-data/TestConstructRegistry/module.jar"));
+
+        p.createPath().setLocation(master);
+        p.createPath().setLocation(jar);
+
+        File output = File.createTempFile("testJars-", ".snapshot");
+
+        output.deleteOnExit();
+
+        cds.setOutput(output);
+
+        cds.execute();
+
+        DescriptorSnapshot snapshot = DescriptorSnapshot.read(output);
+        RegistryDefinition definition = new RegistryDefinitionImpl();
+
+        XmlModuleReader reader = new XmlModuleReader(definition);
+        reader.setDescriptorSnapshot(snapshot);
+
+        reader.readModule(new URLResource(master.toURL()));
+        reader.readModule(new URLResource(new URL("jar:" + jar.toURL() + "!/"
+                + HivemoduleProvider.HIVE_MODULE_XML)));
+
+        // Both descriptors were replayed from the snapshot.
+
+        assertFalse(snapshot.isModified());
+        assertEquals(2, definition.getModules().size());
+    }
+}
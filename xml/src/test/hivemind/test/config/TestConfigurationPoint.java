@@ -335,6 +335,64 @@ public class TestConfigurationPoint extends XmlTestCase
         assertEquals(l2.toString(), l.toString());
     }
 
+    public void testConfigurationIsUnmodifiable() throws Exception
+    {
+        Registry r = buildFrameworkRegistry("Simple.xml");
+
+        List l = (List) r.getConfiguration("hivemind.test.config.Simple");
+
+        try
+        {
+            l.add("extra");
+            unreachable();
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // Expected
+        }
+
+        assertEquals(2, l.size());
+    }
+
+    public void testConcurrentAccess() throws Exception
+    {
+        final Registry r = buildFrameworkRegistry("Simple.xml");
+
+        final List[] results = new List[8];
+        Thread[] threads = new Thread[results.length];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int index = i;
+
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    List l = (List) r.getConfiguration("hivemind.test.config.Simple");
+
+                    // Forces construction of the configuration behind the proxy
+
+                    l.size();
+
+                    results[index] = l;
+                }
+            };
+        }
+
+        for (int i = 0; i < threads.length; i++)
+            threads[i].start();
+
+        for (int i = 0; i < threads.length; i++)
+            threads[i].join();
+
+        for (int i = 0; i < results.length; i++)
+        {
+            assertEquals(2, results[i].size());
+            assertEquals(results[0], results[i]);
+        }
+    }
+
     public void testTooFew() throws Exception
     {
 
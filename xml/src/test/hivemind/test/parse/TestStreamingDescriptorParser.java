@@ -0,0 +1,41 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package hivemind.test.parse;
+
+import org.apache.hivemind.Resource;
+import org.apache.hivemind.impl.DefaultErrorHandler;
+import org.apache.hivemind.parse.ModuleDescriptor;
+import org.apache.hivemind.parse.XmlResourceProcessor;
+
+/**
+ * Runs the tests of {@link TestDescriptorParser} against descriptors read with the StAX parser (see
+ * {@link XmlResourceProcessor#setStreaming(boolean)}).
+ * 
+ * @since 2.0
+ */
+public class TestStreamingDescriptorParser extends TestDescriptorParser
+{
+    protected ModuleDescriptor parse(String file) throws Exception
+    {
+        Resource location = getResource(file);
+
+        XmlResourceProcessor p = new XmlResourceProcessor(getClassResolver(),
+                new DefaultErrorHandler());
+        p.setStreaming(true);
+
+        return p.processResource(location);
+    }
+}
@@ -0,0 +1,160 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.impl;
+
+import hivemind.test.FrameworkTestCase;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.hivemind.ErrorHandler;
+import org.apache.hivemind.Location;
+import org.apache.hivemind.definition.RegistryDefinition;
+import org.apache.hivemind.definition.impl.RegistryDefinitionImpl;
+
+/**
+ * Tests for {@link org.apache.hivemind.impl.XmlModuleReader}.
+ * 
+ * @since 2.0
+ */
+public class TestXmlModuleReader extends FrameworkTestCase
+{
+    private static final String DESCRIPTOR_NAME = "test/hivemodule.xml";
+
+    /**
+     * Finds a fixed list of descriptors.
+     */
+    private static class DescriptorClassLoader extends ClassLoader
+    {
+        private final List _urls;
+
+        DescriptorClassLoader(ClassLoader parent, List urls)
+        {
+            super(parent);
+
+            _urls = urls;
+        }
+
+        public Enumeration getResources(String name) throws IOException
+        {
+            if (name.equals(DESCRIPTOR_NAME))
+                return Collections.enumeration(_urls);
+
+            return super.getResources(name);
+        }
+    }
+
+    private static class ErrorCollector implements ErrorHandler
+    {
+        private final List _messages = Collections.synchronizedList(new ArrayList());
+
+        public void error(Log log, String message, Location location, Throwable cause)
+        {
+            _messages.add(message);
+        }
+    }
+
+    private List getDescriptorURLs()
+    {
+        String[] paths =
+        { "/org/apache/hivemind/xml/OuterModule.xml",
+                "/org/apache/hivemind/xml/MissingSubModule.xml",
+                "/hivemind/test/parse/BadElementAttributeKey.xml",
+                "/hivemind/test/parse/BadElement.xml",
+                "/org/apache/hivemind/xml/OuterModule.xml" };
+
+        List result = new ArrayList();
+
+        for (int i = 0; i < paths.length; i++)
+        {
+            URL url = getClass().getResource(paths[i]);
+
+            assertNotNull(paths[i], url);
+
+            result.add(url);
+        }
+
+        return result;
+    }
+
+    private List read(int parserThreads, RegistryDefinition definition)
+    {
+        return read(parserThreads, false, definition);
+    }
+
+    private List read(int parserThreads, boolean streaming, RegistryDefinition definition)
+    {
+        ErrorCollector errors = new ErrorCollector();
+        ClassLoader loader = new DescriptorClassLoader(getClass().getClassLoader(),
+                getDescriptorURLs());
+
+        XmlModuleReader reader = new XmlModuleReader(definition, new DefaultClassResolver(loader),
+                errors);
+        reader.setParserThreads(parserThreads);
+        reader.setStreamingParser(streaming);
+
+        reader.readClassPathModules(DESCRIPTOR_NAME);
+
+        return errors._messages;
+    }
+
+    public void testParallelMatchesSequential()
+    {
+        RegistryDefinition sequentialDefinition = new RegistryDefinitionImpl();
+        List expected = read(1, sequentialDefinition);
+
+        // Parse errors, a missing sub-module and duplicate modules are all reported.
+
+        assertEquals(5, expected.size());
+        assertTrue(((String) expected.get(0)).indexOf("DoesNotExist.xml") > 0);
+        assertEquals(
+                "Schema Bad is invalid: Key attribute 'bad' of element 'foo' never declared.",
+                expected.get(1));
+        assertEquals("A module with id hivemind.test.outer has already been defined.", expected
+                .get(4));
+
+        for (int pass = 0; pass < 5; pass++)
+        {
+            RegistryDefinition definition = new RegistryDefinitionImpl();
+
+            assertEquals(expected, read(4, definition));
+            assertEquals(sequentialDefinition.getModules().size(), definition.getModules().size());
+            assertNotNull(definition.getModule("hivemind.test.outer"));
+            assertNotNull(definition.getModule("hivemind.test.outer.submodule"));
+        }
+    }
+
+    public void testStreamingMatchesSax()
+    {
+        RegistryDefinition saxDefinition = new RegistryDefinitionImpl();
+        List expected = read(1, saxDefinition);
+
+        for (int parserThreads = 1; parserThreads <= 4; parserThreads += 3)
+        {
+            RegistryDefinition definition = new RegistryDefinitionImpl();
+
+            assertEquals(expected, read(parserThreads, true, definition));
+            assertEquals(saxDefinition.getModules().size(), definition.getModules().size());
+            assertNotNull(definition.getModule("hivemind.test.outer"));
+            assertNotNull(definition.getModule("hivemind.test.outer.submodule"));
+        }
+    }
+}
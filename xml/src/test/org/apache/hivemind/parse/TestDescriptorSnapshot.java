@@ -0,0 +1,224 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.parse;
+
+import hivemind.test.FrameworkTestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hivemind.Resource;
+import org.apache.hivemind.impl.DefaultErrorHandler;
+import org.apache.hivemind.util.URLResource;
+
+/**
+ * Tests for {@link org.apache.hivemind.parse.DescriptorSnapshot}.
+ * 
+ * @since 2.0
+ */
+public class TestDescriptorSnapshot extends FrameworkTestCase
+{
+    private ModuleDescriptor process(Resource resource, DescriptorSnapshot snapshot)
+    {
+        XmlResourceProcessor processor = new XmlResourceProcessor(getClassResolver(),
+                new DefaultErrorHandler());
+        processor.setSnapshot(snapshot);
+
+        return processor.processResource(resource);
+    }
+
+    private File createTempFile(String prefix) throws Exception
+    {
+        File result = File.createTempFile(prefix, ".tmp");
+
+        result.deleteOnExit();
+
+        return result;
+    }
+
+    private void copy(URL url, File file) throws Exception
+    {
+        InputStream in = url.openStream();
+        OutputStream out = new FileOutputStream(file);
+
+        byte[] buffer = new byte[1024];
+
+        while (true)
+        {
+            int length = in.read(buffer);
+
+            if (length < 0)
+                break;
+
+            out.write(buffer, 0, length);
+        }
+
+        in.close();
+        out.close();
+    }
+
+    private void assertSameDescriptor(ModuleDescriptor expected, ModuleDescriptor actual)
+    {
+        assertEquals(expected.getModuleId(), actual.getModuleId());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getLocation(), actual.getLocation());
+
+        List expectedPoints = expected.getServicePoints();
+        List actualPoints = actual.getServicePoints();
+
+        assertEquals(expectedPoints.size(), actualPoints.size());
+
+        for (int i = 0; i < expectedPoints.size(); i++)
+        {
+            ServicePointDescriptor expectedPoint = (ServicePointDescriptor) expectedPoints.get(i);
+            ServicePointDescriptor actualPoint = (ServicePointDescriptor) actualPoints.get(i);
+
+            assertEquals(expectedPoint.getId(), actualPoint.getId());
+            assertEquals(expectedPoint.getInterfaceClassName(), actualPoint
+                    .getInterfaceClassName());
+            assertEquals(expectedPoint.getLocation(), actualPoint.getLocation());
+        }
+
+        assertEquals(size(expected.getConfigurationPoints()), size(actual
+                .getConfigurationPoints()));
+        assertEquals(size(expected.getContributions()), size(actual.getContributions()));
+    }
+
+    private int size(List list)
+    {
+        return list == null ? 0 : list.size();
+    }
+
+    public void testReplayMatchesParse() throws Exception
+    {
+        Resource resource = new URLResource(getClass().getResource(
+                "/org/apache/hivemind/impl/ComplexModule.xml"));
+
+        ModuleDescriptor parsed = process(resource, null);
+
+        DescriptorSnapshot snapshot = new DescriptorSnapshot();
+
+        assertSameDescriptor(parsed, process(resource, snapshot));
+        assertTrue(snapshot.isModified());
+
+        File file = createTempFile("testReplayMatchesParse-");
+
+        snapshot.write(file);
+
+        DescriptorSnapshot loaded = DescriptorSnapshot.read(file);
+
+        assertSameDescriptor(parsed, process(resource, loaded));
+
+        // Replayed, not parsed, so nothing to write back.
+
+        assertFalse(loaded.isModified());
+    }
+
+    public void testChangedDescriptorIsParsed() throws Exception
+    {
+        File descriptor = createTempFile("testChangedDescriptorIsParsed-");
+
+        copy(getClass().getResource("/org/apache/hivemind/xml/Submodule.xml"), descriptor);
+
+        Resource resource = new URLResource(descriptor.toURL());
+        DescriptorSnapshot snapshot = new DescriptorSnapshot();
+
+        process(resource, snapshot);
+
+        File file = createTempFile("testChangedDescriptorIsParsed-");
+
+        snapshot.write(file);
+
+        copy(getClass().getResource("/org/apache/hivemind/xml/OuterModule.xml"), descriptor);
+
+        DescriptorSnapshot loaded = DescriptorSnapshot.read(file);
+
+        assertEquals("hivemind.test.outer", process(resource, loaded).getModuleId());
+        assertTrue(loaded.isModified());
+
+        // Written back, the snapshot now replays the new descriptor.
+
+        loaded.write(file);
+
+        DescriptorSnapshot rewritten = DescriptorSnapshot.read(file);
+
+        assertEquals("hivemind.test.outer", process(resource, rewritten).getModuleId());
+        assertFalse(rewritten.isModified());
+    }
+
+    public void testRewriteReplacesSnapshot() throws Exception
+    {
+        File directory = createTempFile("testRewriteReplacesSnapshot-");
+
+        directory.delete();
+        directory.mkdir();
+
+        File file = new File(directory, "descriptors.snapshot");
+
+        Resource resource = new URLResource(getClass().getResource(
+                "/org/apache/hivemind/xml/OuterModule.xml"));
+
+        DescriptorSnapshot snapshot = new DescriptorSnapshot();
+
+        process(resource, snapshot);
+
+        snapshot.write(file);
+
+        DescriptorSnapshot loaded = DescriptorSnapshot.read(file);
+
+        assertEquals("hivemind.test.outer", process(resource, loaded).getModuleId());
+
+        // The loaded snapshot is still in use while the file is replaced.
+
+        loaded.write(file);
+
+        assertEquals("hivemind.test.outer", process(resource, loaded).getModuleId());
+        assertEquals(Collections.singletonList(file.getName()), Arrays.asList(directory.list()));
+
+        DescriptorSnapshot rewritten = DescriptorSnapshot.read(file);
+
+        assertEquals("hivemind.test.outer", process(resource, rewritten).getModuleId());
+        assertFalse(rewritten.isModified());
+
+        file.delete();
+        directory.delete();
+    }
+
+    public void testDamagedSnapshotIsIgnored() throws Exception
+    {
+        File file = createTempFile("testDamagedSnapshotIsIgnored-");
+
+        copy(getClass().getResource("/org/apache/hivemind/xml/OuterModule.xml"), file);
+
+        interceptLogging(DescriptorSnapshot.class.getName());
+
+        DescriptorSnapshot snapshot = DescriptorSnapshot.read(file);
+
+        assertLoggedMessagePattern("Unable to read descriptor snapshot");
+
+        Resource resource = new URLResource(getClass().getResource(
+                "/org/apache/hivemind/xml/OuterModule.xml"));
+
+        assertEquals("hivemind.test.outer", process(resource, snapshot).getModuleId());
+        assertTrue(snapshot.isModified());
+    }
+}
@@ -16,6 +16,9 @@ package org.apache.hivemind.parse;
 
 import hivemind.test.FrameworkTestCase;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
 import java.net.URL;
 
 import org.apache.hivemind.ApplicationRuntimeException;
@@ -49,4 +52,32 @@ public class TestXmlResourceProcessor extends FrameworkTestCase
             }
         }
     }
-}
\ No newline at end of file
+
+    public void testStreamingReadError() throws Exception
+    {
+        File file = File.createTempFile("testStreamingReadError-", ".xml");
+        file.deleteOnExit();
+
+        Writer writer = new FileWriter(file);
+        writer.write("<module id=\"hivemind.test.parse\" version=\"1.0.0\">\n</modul>");
+        writer.close();
+
+        XmlResourceProcessor processor = new XmlResourceProcessor(getClassResolver(),
+                new DefaultErrorHandler());
+        processor.setStreaming(true);
+
+        Resource resource = new FileResource(file.getPath());
+
+        try
+        {
+            processor.processResource(resource);
+
+            unreachable();
+        }
+        catch (ApplicationRuntimeException ex)
+        {
+            assertExceptionSubstring(ex, "Unable to read descriptor " + resource);
+            assertNotNull(ex.getLocation());
+        }
+    }
+}
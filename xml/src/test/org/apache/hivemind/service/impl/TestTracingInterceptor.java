@@ -0,0 +1,68 @@
+// Copyright 2007 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.hivemind.service.impl;
+
+import hivemind.test.services.SimpleService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hivemind.Registry;
+import org.apache.hivemind.xml.XmlTestCase;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Tests for the <code>hivemind.TracingInterceptor</code> service, and its parameters.
+ * 
+ * @since 2.0
+ */
+public class TestTracingInterceptor extends XmlTestCase
+{
+    public void testSampleRate() throws Exception
+    {
+        Registry r = buildFrameworkRegistry("TracingInterceptor.xml");
+
+        SimpleService s = (SimpleService) r.getService(
+                "hivemind.test.tracing.SimpleService",
+                SimpleService.class);
+
+        interceptLogging("hivemind.test.tracing.SimpleService");
+
+        for (int i = 0; i < 4; i++)
+            assertEquals(i + 5, s.add(i, 5));
+
+        List traces = new ArrayList();
+
+        // The service is realized by the first call, which is logged at debug level.
+
+        Iterator i = getInterceptedLogEvents().iterator();
+        while (i.hasNext())
+        {
+            LoggingEvent event = (LoggingEvent) i.next();
+
+            if (Level.INFO.equals(event.getLevel()))
+                traces.add(event.getMessage());
+        }
+
+        assertEquals(2, traces.size());
+        assertRegexp("TRACE add\\(1, 5\\) \\[6\\] \\(\\d+\\.\\d{3} ms\\)", (String) traces.get(0));
+        assertRegexp("TRACE add\\(3, 5\\) \\[8\\] \\(\\d+\\.\\d{3} ms\\)", (String) traces.get(1));
+
+        r.shutdown();
+    }
+}
@@ -252,6 +252,8 @@ public class TestHiveMindFilter extends HiveMindTestCase
 
         f.doFilter(request, response, chain);
 
+        f.waitForRebuild();
+
         verifyControls();
 
         assertEquals(true, l.getDidShutdown());